@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs Mondrian's benchmarks.
+ *
+ * <p>Accepts the same arguments as JMH's own main class. For example,
+ * <code>java -jar benchmarks.jar CellKey -p axisCount=2</code> runs the
+ * CellKey benchmarks for two axes. Unlike JMH's main class, results are
+ * written as JSON by default, to <code>jmh-result.json</code> in the
+ * current directory, so that runs on different commits can be compared;
+ * specify <code>-rf</code> or <code>-rff</code> to override.</p>
+ */
+public class BenchmarkMain {
+    /** Default name of the result file. */
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList()
+            || cmdOptions.shouldListWithParams()
+            || cmdOptions.shouldListProfilers()
+            || cmdOptions.shouldListResultFormats())
+        {
+            // Let JMH's own main class handle informational options.
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        final ChainedOptionsBuilder builder =
+            new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
+
+// End BenchmarkMain.java
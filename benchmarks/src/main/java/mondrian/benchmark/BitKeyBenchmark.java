@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.BitKey;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link BitKey}, which identifies sets of star columns in
+ * aggregation keys, segment headers and aggregate table matching.
+ *
+ * <p>Each invocation operates on {@link #count} pairs of keys.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitKeyBenchmark {
+    /**
+     * Number of bits; 64 and 128 have specialized implementations, larger
+     * keys use an array of longs.
+     */
+    @Param({"64", "128", "512"})
+    public int size;
+
+    /** Probability that a bit is set. */
+    @Param({"0.05", "0.5"})
+    public double density;
+
+    @Param({"1000"})
+    public int count;
+
+    private BitKey[] keys;
+    private BitKey[] otherKeys;
+    private Map<BitKey, Integer> map;
+
+    @Setup
+    public void setup() {
+        keys = SyntheticData.bitKeys(count, size, density, SyntheticData.SEED);
+        otherKeys =
+            SyntheticData.bitKeys(count, size, density, SyntheticData.SEED + 1);
+        map = new HashMap<BitKey, Integer>();
+        for (int i = 0; i < count; i += 2) {
+            map.put(keys[i].copy(), i);
+        }
+    }
+
+    @Benchmark
+    public void or(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(keys[i].or(otherKeys[i]));
+        }
+    }
+
+    @Benchmark
+    public void and(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(keys[i].and(otherKeys[i]));
+        }
+    }
+
+    @Benchmark
+    public int isSuperSetOf() {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[i].isSuperSetOf(otherKeys[i])) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int intersects() {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[i].intersects(otherKeys[i])) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int nextSetBit() {
+        int sum = 0;
+        for (BitKey key : keys) {
+            for (int bit = key.nextSetBit(0); bit >= 0;
+                 bit = key.nextSetBit(bit + 1))
+            {
+                sum += bit;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int lookup() {
+        int hits = 0;
+        for (BitKey key : keys) {
+            if (map.get(key) != null) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+}
+
+// End BitKeyBenchmark.java
@@ -0,0 +1,79 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.CellInfoFixture;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap occupied by the cells of a large result, built by
+ * {@link CellInfoFixture}.
+ *
+ * <p>The result of interest is the secondary result
+ * <code>bytesPerCell</code>: heap in use after storing the cells, less
+ * heap in use before, divided by {@link #cellCount}. The time score is
+ * the time to store the cells.</p>
+ *
+ * <p>{@link #storage} "columns" is the container that results use: values
+ * in primitive arrays, format strings in a dictionary. "pool" is the
+ * previous container, which holds a <code>CellInfo</code> object per
+ * cell.</p>
+ *
+ * <p>The default of ten million cells needs a large heap, which the
+ * forked JVM is given.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class CellInfoFootprintBenchmark {
+    @Param({"10000000"})
+    public int cellCount;
+
+    @Param({"columns", "pool"})
+    public String storage;
+
+    /** Secondary results, reported alongside the time score. */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerCell;
+    }
+
+    @Benchmark
+    public CellInfoFixture build(Footprint footprint) {
+        final long before = usedHeap();
+        final CellInfoFixture fixture =
+            new CellInfoFixture(cellCount, storage.equals("columns"));
+        final long after = usedHeap();
+        footprint.bytesPerCell = (after - before) / cellCount;
+        return fixture;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// End CellInfoFootprintBenchmark.java
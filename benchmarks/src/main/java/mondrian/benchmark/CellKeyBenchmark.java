@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.CellKey;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CellKey}: creation, hashing and equality (as used when
+ * a key is looked up in a map of cells), and raster offset.
+ *
+ * <p>Each invocation processes {@link #count} keys, so divide the score by
+ * that number to get the cost per key.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellKeyBenchmark {
+    /** Number of axes; 1 to 4 have specialized implementations. */
+    @Param({"1", "2", "3", "4", "6"})
+    public int axisCount;
+
+    /** Number of keys processed per invocation. */
+    @Param({"1000"})
+    public int count;
+
+    /** Fraction of the keys that are present in the map. */
+    @Param({"0.5"})
+    public double density;
+
+    private int[][] coordinates;
+    private CellKey[] keys;
+    private Map<CellKey, Integer> map;
+    private int[] axisMultipliers;
+
+    @Setup
+    public void setup() {
+        final int axisLength = 20;
+        coordinates =
+            SyntheticData.coordinates(
+                count, axisCount, axisLength, SyntheticData.SEED);
+        keys = new CellKey[count];
+        map = new HashMap<CellKey, Integer>();
+        for (int i = 0; i < count; i++) {
+            keys[i] = CellKey.Generator.newCellKey(coordinates[i]);
+            if (i < count * density) {
+                map.put(CellKey.Generator.newCellKey(coordinates[i]), i);
+            }
+        }
+        axisMultipliers = new int[axisCount];
+        int multiplier = 1;
+        for (int i = axisCount - 1; i >= 0; i--) {
+            axisMultipliers[i] = multiplier;
+            multiplier *= axisLength;
+        }
+    }
+
+    @Benchmark
+    public void create(Blackhole blackhole) {
+        for (int[] pos : coordinates) {
+            blackhole.consume(CellKey.Generator.newCellKey(pos));
+        }
+    }
+
+    @Benchmark
+    public int lookup() {
+        int hits = 0;
+        for (CellKey key : keys) {
+            if (map.get(key) != null) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Reuses one mutable key for every lookup, as a reader iterating over a
+     * result does.
+     */
+    @Benchmark
+    public int lookupReusingKey() {
+        final CellKey key = CellKey.Generator.newCellKey(axisCount);
+        int hits = 0;
+        for (int[] pos : coordinates) {
+            key.setOrdinals(pos);
+            if (map.get(key) != null) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int offset() {
+        int sum = 0;
+        for (CellKey key : keys) {
+            sum += key.getOffset(axisMultipliers);
+        }
+        return sum;
+    }
+}
+
+// End CellKeyBenchmark.java
@@ -0,0 +1,112 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.calc.TupleCursor;
+import mondrian.calc.TupleList;
+import mondrian.calc.impl.UnaryTupleList;
+import mondrian.olap.Member;
+import mondrian.olap.fun.CrossJoinFunDef;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CrossJoinFunDef#mutableCrossJoin(List)}, the cartesian
+ * product behind <code>CrossJoin</code> and <code>*</code>, and iteration
+ * over its result.
+ *
+ * <p>Members are synthetic (see {@link SyntheticData#members}); crossjoin
+ * copies members without looking inside them.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrossJoinBenchmark {
+    @Param({"10", "100", "1000"})
+    public int leftSize;
+
+    @Param({"10", "100"})
+    public int rightSize;
+
+    /** Size of a third set; 0 to join only two sets. */
+    @Param({"0", "5"})
+    public int thirdSize;
+
+    private List<TupleList> lists;
+    private TupleList product;
+    private Locus locus;
+
+    /**
+     * Creates the sets. Crossjoin checks for cancellation, which requires
+     * an execution on the thread's locus stack.
+     */
+    @Setup
+    public void setup() {
+        locus = new Locus(Execution.NONE, "CrossJoinBenchmark", null);
+        Locus.push(locus);
+        final TupleList left =
+            new UnaryTupleList(
+                Arrays.asList(SyntheticData.members("A", leftSize)));
+        final TupleList right =
+            new UnaryTupleList(
+                Arrays.asList(SyntheticData.members("B", rightSize)));
+        if (thirdSize == 0) {
+            lists = Arrays.asList(left, right);
+        } else {
+            lists =
+                Arrays.asList(
+                    left, right,
+                    new UnaryTupleList(
+                        Arrays.asList(
+                            SyntheticData.members("C", thirdSize))));
+        }
+        product = CrossJoinFunDef.mutableCrossJoin(lists);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Locus.pop(locus);
+    }
+
+    @Benchmark
+    public TupleList crossJoin() {
+        return CrossJoinFunDef.mutableCrossJoin(lists);
+    }
+
+    @Benchmark
+    public int iterate() {
+        final Member[] members = new Member[product.getArity()];
+        final TupleCursor cursor = product.tupleCursor();
+        int n = 0;
+        while (cursor.forward()) {
+            cursor.currentToArray(members, 0);
+            if (members[0] != null) {
+                ++n;
+            }
+        }
+        return n;
+    }
+}
+
+// End CrossJoinBenchmark.java
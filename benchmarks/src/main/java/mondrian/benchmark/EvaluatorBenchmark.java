@@ -0,0 +1,92 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.EvaluatorFixture;
+import mondrian.rolap.RolapEvaluator;
+import mondrian.rolap.RolapMember;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link RolapEvaluator} context changes: pushing a child
+ * evaluator, and setting context members then restoring to a savepoint.
+ * Calculated members, crossjoins and filters do one or the other for every
+ * tuple they visit.
+ *
+ * <p>The evaluator is built over a synthetic cube by
+ * {@link EvaluatorFixture}, so no schema or database is needed.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+    /** Number of hierarchies in the cube. */
+    @Param({"10", "50"})
+    public int hierarchyCount;
+
+    /** Number of context members set per operation. */
+    @Param({"1", "4"})
+    public int depth;
+
+    private static final int MEMBER_COUNT = 16;
+
+    private RolapEvaluator evaluator;
+    private RolapMember[][] tuples;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final EvaluatorFixture fixture =
+            new EvaluatorFixture(hierarchyCount, MEMBER_COUNT);
+        evaluator = fixture.getEvaluator();
+        // Tuples of 'depth' members of different hierarchies, spread across
+        // the cube.
+        tuples = new RolapMember[MEMBER_COUNT][depth];
+        for (int t = 0; t < MEMBER_COUNT; t++) {
+            for (int d = 0; d < depth; d++) {
+                final int h =
+                    (t + d * (hierarchyCount / depth)) % hierarchyCount;
+                tuples[t][d] = fixture.getMember(h, (t + d) % MEMBER_COUNT);
+            }
+        }
+    }
+
+    private RolapMember[] nextTuple() {
+        return tuples[next++ & (MEMBER_COUNT - 1)];
+    }
+
+    @Benchmark
+    public RolapEvaluator push() {
+        return evaluator.push(nextTuple());
+    }
+
+    @Benchmark
+    public int setContextAndRestore() {
+        final int savepoint = evaluator.savepoint();
+        for (RolapMember member : nextTuple()) {
+            evaluator.setContext(member);
+        }
+        evaluator.restore(savepoint);
+        return savepoint;
+    }
+}
+
+// End EvaluatorBenchmark.java
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.util.Format;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Format}, which formats every cell value that a client
+ * asks for with a format string.
+ *
+ * <p>Each invocation formats {@link #count} values.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    @Param({
+        "Standard",
+        "#,##0.00",
+        "Currency",
+        "0.00%",
+        "#,##0;(#,##0);\\Z\\e\\r\\o"
+    })
+    public String formatString;
+
+    @Param({"1000"})
+    public int count;
+
+    /** Proportion of values that are not null. */
+    @Param({"0.9"})
+    public double density;
+
+    private Object[] values;
+    private Format format;
+
+    @Setup
+    public void setup() {
+        values = SyntheticData.values(count, density, SyntheticData.SEED);
+        format = new Format(formatString, Locale.US);
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(format.format(value));
+        }
+    }
+
+    /**
+     * Looks up the format in the cache for each value, as a cell set
+     * does when each cell has its own format string.
+     */
+    @Benchmark
+    public void getAndFormat(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(
+                Format.get(formatString, Locale.US).format(value));
+        }
+    }
+}
+
+// End FormatBenchmark.java
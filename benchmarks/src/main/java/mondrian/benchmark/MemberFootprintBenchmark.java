@@ -0,0 +1,97 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.MemberFixture;
+import mondrian.rolap.RolapMemberBase;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap occupied by the members of a large level, built by
+ * {@link MemberFixture}.
+ *
+ * <p>The result of interest is the secondary result
+ * <code>bytesPerMember</code>: heap in use after building the level, less
+ * heap in use before, divided by {@link #memberCount}. The time score is
+ * the time to build the level.</p>
+ *
+ * <p>{@link #storage} "compact" is the default member representation:
+ * properties in slots of the level's layout, values pooled. "map" stores
+ * each member's properties in a map, as before, and does not pool values.
+ * If {@link #uniqueNames} is true, the unique name of every member is
+ * computed, as a query that displays them all would.</p>
+ *
+ * <p>The default of ten million members needs a large heap, which the
+ * forked JVM is given.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+public class MemberFootprintBenchmark {
+    @Param({"10000000"})
+    public int memberCount;
+
+    @Param({"compact", "map"})
+    public String storage;
+
+    @Param({"false", "true"})
+    public boolean uniqueNames;
+
+    /** Secondary results, reported alongside the time score. */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerMember;
+    }
+
+    @Setup
+    public void setup() {
+        if (storage.equals("map")) {
+            MondrianProperties.instance().PropertyValueMapFactoryClass.set(
+                RolapMemberBase.DefaultPropertyValueMapFactory.class
+                    .getName());
+        }
+    }
+
+    @Benchmark
+    public MemberFixture build(Footprint footprint) {
+        final long before = usedHeap();
+        final MemberFixture fixture =
+            new MemberFixture(memberCount, storage.equals("compact"));
+        if (uniqueNames) {
+            fixture.materializeUniqueNames();
+        }
+        final long after = usedHeap();
+        footprint.bytesPerMember = (after - before) / memberCount;
+        return fixture;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// End MemberFootprintBenchmark.java
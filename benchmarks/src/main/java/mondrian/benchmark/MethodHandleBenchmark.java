@@ -0,0 +1,199 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.calc.*;
+import mondrian.calc.impl.*;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.olap.fun.BuiltinFunTable;
+import mondrian.olap.fun.FunUtil;
+import mondrian.olap.fun.Resolver;
+import mondrian.olap.type.NumericType;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks arithmetic in calculated measures compiled by
+ * {@link MethodHandleExpCompiler} against the tree of calculators that
+ * {@link BetterExpCompiler} builds from the operators of
+ * {@link BuiltinFunTable}.
+ *
+ * <p>Each formula is evaluated once per row, as a cell calculation does,
+ * and over all rows in one call, as <code>Filter</code>, <code>Sum</code> and
+ * <code>Order</code> do. The leaves of the formulas stand for measures; they
+ * read generated values, some of them null, so that the benchmark measures
+ * the operators rather than cell lookup.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodHandleBenchmark {
+    /**
+     * Formula: "ratio" is <code>(a - b) / a</code>; "polynomial" is
+     * <code>(a - b) * (a - b) / (c + 1.5) - 2 * a</code>.
+     */
+    @Param({"ratio", "polynomial"})
+    public String formula;
+
+    @Param({"1000"})
+    public int size;
+
+    /** Proportion of leaf values that are not null. */
+    @Param({"0.9"})
+    public double density;
+
+    private final int[] row = {0};
+    private DoubleCalc treeCalc;
+    private DoubleCalc methodHandleCalc;
+    private TupleList list;
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        final ColumnExp a = new ColumnExp(column(0));
+        final ColumnExp b = new ColumnExp(column(1));
+        final Exp exp;
+        if (formula.equals("ratio")) {
+            exp = call("/", call("-", a, b), a);
+        } else {
+            final ColumnExp c = new ColumnExp(column(2));
+            exp =
+                call(
+                    "-",
+                    call(
+                        "/",
+                        call("*", call("-", a, b), call("-", a, b)),
+                        call("+", c, Literal.create(1.5d))),
+                    call("*", Literal.create(2d), a));
+        }
+        treeCalc = new BetterExpCompiler(null, null).compileDouble(exp);
+        methodHandleCalc =
+            new MethodHandleExpCompiler(null, null).compileDouble(exp);
+        list = new UnaryTupleList(Arrays.asList(new Member[size]));
+        values = new double[size];
+    }
+
+    private double[] column(int ordinal) {
+        final Object[] objects =
+            SyntheticData.values(size, density, SyntheticData.SEED + ordinal);
+        final double[] column = new double[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = objects[i] == null
+                ? FunUtil.DoubleNull
+                : (Double) objects[i];
+        }
+        return column;
+    }
+
+    /**
+     * Creates a call to the numeric form of an infix operator. Some
+     * operators, such as <code>*</code>, are also defined for sets.
+     */
+    private static Exp call(String name, Exp... args) {
+        for (Resolver resolver
+            : BuiltinFunTable.instance().getResolvers(name, Syntax.Infix))
+        {
+            final FunDef funDef = resolver.getFunDef();
+            if (funDef != null
+                && funDef.getReturnCategory() == Category.Numeric
+                && funDef.getParameterCategories()[0] == Category.Numeric)
+            {
+                return new ResolvedFunCall(funDef, args, new NumericType());
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private double evaluateRows(DoubleCalc calc) {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            row[0] = i;
+            sum += calc.evaluateDouble(null);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double treeScalar() {
+        return evaluateRows(treeCalc);
+    }
+
+    @Benchmark
+    public double methodHandleScalar() {
+        return evaluateRows(methodHandleCalc);
+    }
+
+    @Benchmark
+    public double[] treeBatch() {
+        BatchCalcs.evaluateDoubles(treeCalc, null, list, values);
+        return values;
+    }
+
+    @Benchmark
+    public double[] methodHandleBatch() {
+        BatchCalcs.evaluateDoubles(methodHandleCalc, null, list, values);
+        return values;
+    }
+
+    /**
+     * Leaf of a formula, which compiles to a calculator that reads the
+     * current row of a column of values.
+     */
+    private class ColumnExp extends DummyExp {
+        private final double[] column;
+
+        ColumnExp(double[] column) {
+            super(new NumericType());
+            this.column = column;
+        }
+
+        public Calc accept(ExpCompiler compiler) {
+            return new ColumnCalc(this, column);
+        }
+    }
+
+    private class ColumnCalc
+        extends AbstractDoubleCalc
+        implements DoubleBatchCalc
+    {
+        private final double[] column;
+
+        ColumnCalc(Exp exp, double[] column) {
+            super(exp, new Calc[0]);
+            this.column = column;
+        }
+
+        public double evaluateDouble(Evaluator evaluator) {
+            return column[row[0]];
+        }
+
+        public void evaluateDoubles(
+            Evaluator evaluator,
+            TupleList list,
+            double[] values)
+        {
+            System.arraycopy(column, 0, values, 0, list.size());
+        }
+    }
+}
+
+// End MethodHandleBenchmark.java
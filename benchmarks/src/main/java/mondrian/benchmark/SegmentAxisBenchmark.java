@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.agg.SegmentAxisFixture;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks resolving keys to offsets on a segment axis, as is done for
+ * every coordinate of every cell read from a segment.
+ *
+ * <p>{@link #keyType} chooses the index the axis uses: "int" keys are
+ * consecutive integers (a dense array), "long" keys are spread over the
+ * range of <code>long</code> (a hash table of primitives), "string" keys
+ * are strings (a hash table that stores hash codes). The benchmark
+ * <code>map</code> looks the same keys up in a <code>HashMap</code>, as
+ * axes used to.
+ *
+ * <p>Each invocation looks up {@link #count} keys, a tenth of which are not
+ * on the axis. Keys are distinct objects from the axis keys, as the values
+ * of a cell request are, except for small integers, which are cached.
+ * Divide the score by {@link #count} to get the cost per key.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentAxisBenchmark {
+    /** Number of keys on the axis. */
+    @Param({"10", "1000", "100000", "1000000"})
+    public int keyCount;
+
+    @Param({"int", "long", "string"})
+    public String keyType;
+
+    /** Number of keys looked up per invocation. */
+    @Param({"1000"})
+    public int count;
+
+    private SegmentAxisFixture fixture;
+    private Comparable[] probes;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(SyntheticData.SEED);
+        final Comparable[] keys = new Comparable[keyCount];
+        final long[] values = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            values[i] = keyType.equals("long") ? random.nextLong() : i;
+        }
+        Arrays.sort(values);
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = key(values[i]);
+        }
+        if (keyType.equals("string")) {
+            // Sort as strings, not as numbers.
+            Arrays.sort(keys);
+        }
+        fixture = new SegmentAxisFixture(keys);
+        probes = new Comparable[count];
+        for (int i = 0; i < count; i++) {
+            probes[i] =
+                i % 10 == 0
+                    ? key(keyType.equals("long") ? random.nextLong() : -1 - i)
+                    : key(values[random.nextInt(keyCount)]);
+        }
+    }
+
+    private Comparable key(long value) {
+        if (keyType.equals("int")) {
+            return Integer.valueOf((int) value);
+        } else if (keyType.equals("long")) {
+            return Long.valueOf(value);
+        } else {
+            return "Key #" + value;
+        }
+    }
+
+    @Benchmark
+    public int axis() {
+        int sum = 0;
+        for (Comparable probe : probes) {
+            sum += fixture.getOffset(probe);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int map() {
+        int sum = 0;
+        for (Comparable probe : probes) {
+            sum += fixture.getOffsetFromMap(probe);
+        }
+        return sum;
+    }
+}
+
+// End SegmentAxisBenchmark.java
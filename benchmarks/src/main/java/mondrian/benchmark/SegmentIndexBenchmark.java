@@ -0,0 +1,153 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.rolap.BitKey;
+import mondrian.rolap.cache.SegmentCacheIndexImpl;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.util.ByteString;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SegmentCacheIndexImpl#locate}, which the cache manager
+ * calls for every cell request that misses the thread-local segment lookup.
+ *
+ * <p>The index holds {@link #segmentCount} segments of one measure, all
+ * constrained on the same {@link #columnCount} columns. Each segment
+ * constrains each column to a random subset of {@link #valueCount} values,
+ * the subset's size governed by {@link #density}; the sparser the segments,
+ * the fewer match a given cell.</p>
+ *
+ * <p>Each invocation locates {@link #requestCount} cells.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentIndexBenchmark {
+    private static final String SCHEMA = "Schema";
+    private static final ByteString CHECKSUM =
+        new ByteString(new byte[] {1, 2, 3, 4});
+    private static final String CUBE = "Cube";
+    private static final String MEASURE = "Measure";
+    private static final String FACT = "fact";
+
+    @Param({"10", "100", "1000"})
+    public int segmentCount;
+
+    @Param({"2", "4"})
+    public int columnCount;
+
+    @Param({"0.1", "0.5"})
+    public double density;
+
+    @Param({"50"})
+    public int valueCount;
+
+    @Param({"100"})
+    public int requestCount;
+
+    private SegmentCacheIndexImpl index;
+    private BitKey bitKey;
+    private BitKey otherBitKey;
+    private List<Map<String, Comparable>> requests;
+
+    /**
+     * Populates the index. The index checks that it is only used by the
+     * thread that created it; JMH runs setup for thread-scoped state on the
+     * benchmark thread, so that holds.
+     */
+    @Setup
+    public void setup() {
+        final Random random = new Random(SyntheticData.SEED);
+        index = new SegmentCacheIndexImpl(Thread.currentThread());
+        bitKey = BitKey.Factory.makeBitKey(columnCount + 1);
+        for (int c = 0; c < columnCount; c++) {
+            bitKey.set(c);
+        }
+        otherBitKey = bitKey.copy();
+        otherBitKey.set(columnCount);
+        for (int s = 0; s < segmentCount; s++) {
+            final List<SegmentColumn> columns =
+                new ArrayList<SegmentColumn>();
+            for (int c = 0; c < columnCount; c++) {
+                columns.add(
+                    new SegmentColumn(
+                        column(c),
+                        valueCount,
+                        SyntheticData.sample(valueCount, density, random)));
+            }
+            final SegmentHeader header =
+                new SegmentHeader(
+                    SCHEMA,
+                    CHECKSUM,
+                    CUBE,
+                    MEASURE,
+                    columns,
+                    Collections.<String>emptyList(),
+                    FACT,
+                    bitKey,
+                    Collections.<SegmentColumn>emptyList());
+            index.add(header, null, false);
+        }
+        requests = new ArrayList<Map<String, Comparable>>();
+        for (int r = 0; r < requestCount; r++) {
+            final Map<String, Comparable> coordinates =
+                new HashMap<String, Comparable>();
+            for (int c = 0; c < columnCount; c++) {
+                coordinates.put(column(c), random.nextInt(valueCount));
+            }
+            requests.add(coordinates);
+        }
+    }
+
+    private static String column(int c) {
+        return "fact.col" + c;
+    }
+
+    @Benchmark
+    public int locate() {
+        int n = 0;
+        for (Map<String, Comparable> coordinates : requests) {
+            n += index.locate(
+                SCHEMA, CHECKSUM, CUBE, MEASURE, FACT, bitKey, coordinates,
+                Collections.<String>emptyList()).size();
+        }
+        return n;
+    }
+
+    /**
+     * Locates cells whose set of columns matches no segment.
+     */
+    @Benchmark
+    public int locateNoMatch() {
+        int n = 0;
+        for (Map<String, Comparable> coordinates : requests) {
+            n += index.locate(
+                SCHEMA, CHECKSUM, CUBE, MEASURE, FACT, otherBitKey,
+                coordinates, Collections.<String>emptyList()).size();
+        }
+        return n;
+    }
+}
+
+// End SegmentIndexBenchmark.java
@@ -0,0 +1,94 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.olap.fun.sort.Sorter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Sorter}'s partial sort and MDX value comparison, which
+ * underlie <code>TopCount</code>, <code>BottomCount</code> and
+ * <code>Order</code>.
+ *
+ * <p>Values are doubles with a proportion of nulls; nulls collate as MDX
+ * requires. The default {@link #algorithm} of 0 lets Sorter choose based on
+ * the ratio of {@link #limitPercent} to size, as the engine does; 1, 2 and 4
+ * force a particular algorithm.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SorterBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    /** Proportion of values that are not null. */
+    @Param({"0.9"})
+    public double density;
+
+    /** Number of values to return, as a percentage of size. */
+    @Param({"1", "10", "100"})
+    public int limitPercent;
+
+    @Param({"0"})
+    public int algorithm;
+
+    private List<Object> values;
+    private int limit;
+    private double[] doubles;
+
+    private static final Comparator<Object> DESC =
+        new Comparator<Object>() {
+            public int compare(Object o1, Object o2) {
+                return Sorter.compareValues(o2, o1);
+            }
+        };
+
+    @Setup
+    public void setup() {
+        values =
+            Arrays.asList(
+                SyntheticData.values(size, density, SyntheticData.SEED));
+        limit = Math.max(1, (int) ((long) size * limitPercent / 100));
+        doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            final Object value = values.get(i);
+            doubles[i] = value == null ? Double.NaN : (Double) value;
+        }
+    }
+
+    @Benchmark
+    public List<Object> partialSort() {
+        return Sorter.stablePartialSort(values, DESC, limit, algorithm);
+    }
+
+    @Benchmark
+    public int compareValues() {
+        int sum = 0;
+        for (int i = 1; i < doubles.length; i++) {
+            sum += Sorter.compareValues(doubles[i - 1], doubles[i]);
+        }
+        return sum;
+    }
+}
+
+// End SorterBenchmark.java
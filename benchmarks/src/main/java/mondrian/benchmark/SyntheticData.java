@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.benchmark;
+
+import mondrian.olap.Member;
+import mondrian.rolap.BitKey;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * Generates synthetic data for benchmarks.
+ *
+ * <p>Every generator takes a seed, so that a benchmark sees the same data on
+ * every run and results can be compared across commits. Generators that
+ * model a sparse structure take a <em>density</em> between 0 and 1, the
+ * fraction of possible positions that are populated.</p>
+ */
+public abstract class SyntheticData {
+    /** Seed used by benchmarks unless they need several independent sets. */
+    public static final long SEED = 1234567L;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Generates cell coordinates.
+     *
+     * @param count Number of coordinate arrays
+     * @param axisCount Number of axes in each
+     * @param axisLength Number of positions on each axis
+     * @param seed Random seed
+     * @return Array of coordinate arrays
+     */
+    public static int[][] coordinates(
+        int count, int axisCount, int axisLength, long seed)
+    {
+        final Random random = new Random(seed);
+        final int[][] coordinates = new int[count][];
+        for (int i = 0; i < count; i++) {
+            final int[] pos = new int[axisCount];
+            for (int j = 0; j < axisCount; j++) {
+                pos[j] = random.nextInt(axisLength);
+            }
+            coordinates[i] = pos;
+        }
+        return coordinates;
+    }
+
+    /**
+     * Generates bit keys.
+     *
+     * @param count Number of keys
+     * @param size Number of bits in each key
+     * @param density Probability that a given bit is set
+     * @param seed Random seed
+     * @return Array of bit keys
+     */
+    public static BitKey[] bitKeys(
+        int count, int size, double density, long seed)
+    {
+        final Random random = new Random(seed);
+        final BitKey[] bitKeys = new BitKey[count];
+        for (int i = 0; i < count; i++) {
+            final BitKey bitKey = BitKey.Factory.makeBitKey(size);
+            for (int bit = 0; bit < size; bit++) {
+                if (random.nextDouble() < density) {
+                    bitKey.set(bit);
+                }
+            }
+            bitKeys[i] = bitKey;
+        }
+        return bitKeys;
+    }
+
+    /**
+     * Generates cell values, some of which are null.
+     *
+     * @param count Number of values
+     * @param density Probability that a value is not null
+     * @param seed Random seed
+     * @return Array of values; each element is a {@link Double} or null
+     */
+    public static Object[] values(int count, double density, long seed) {
+        final Random random = new Random(seed);
+        final Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            if (random.nextDouble() < density) {
+                values[i] = (random.nextDouble() - 0.25d) * 1e6d;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Chooses a subset of the integers {@code 0 .. valueCount - 1}.
+     *
+     * @param valueCount Number of candidate values
+     * @param density Probability that a given value is chosen
+     * @param random Random number generator
+     * @return Sorted set of chosen values; never empty
+     */
+    public static SortedSet<Comparable> sample(
+        int valueCount, double density, Random random)
+    {
+        final SortedSet<Comparable> set = new TreeSet<Comparable>();
+        for (int i = 0; i < valueCount; i++) {
+            if (random.nextDouble() < density) {
+                set.add(i);
+            }
+        }
+        if (set.isEmpty()) {
+            set.add(random.nextInt(valueCount));
+        }
+        return set;
+    }
+
+    /**
+     * Creates members that have a name and identity but no schema behind
+     * them. They are sufficient for operations such as crossjoin that copy
+     * members but do not look inside them; any other method returns null,
+     * zero or false.
+     *
+     * @param prefix Prefix of member names
+     * @param count Number of members
+     * @return Array of members
+     */
+    public static Member[] members(String prefix, int count) {
+        final Member[] members = new Member[count];
+        for (int i = 0; i < count; i++) {
+            members[i] =
+                (Member) Proxy.newProxyInstance(
+                    SyntheticData.class.getClassLoader(),
+                    new Class[] {Member.class},
+                    new MemberHandler("[" + prefix + "].[" + i + "]"));
+        }
+        return members;
+    }
+
+    /**
+     * Handler for synthetic members.
+     */
+    private static class MemberHandler implements InvocationHandler {
+        private final String uniqueName;
+
+        MemberHandler(String uniqueName) {
+            this.uniqueName = uniqueName;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")
+                || name.equals("getUniqueName")
+                || name.equals("getName"))
+            {
+                return uniqueName;
+            }
+            final Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            } else if (returnType == int.class) {
+                return 0;
+            } else if (returnType == long.class) {
+                return 0L;
+            } else if (returnType == double.class) {
+                return 0d;
+            }
+            return null;
+        }
+    }
+}
+
+// End SyntheticData.java
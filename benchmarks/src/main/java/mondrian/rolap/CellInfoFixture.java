@@ -0,0 +1,64 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.rolap;
+
+import java.util.Locale;
+
+/**
+ * Fills the container in which a {@link RolapResult} holds its cells, so
+ * that its heap footprint can be measured.
+ *
+ * <p>Cells lie on a two-axis grid, 1000 cells wide, and every cell has a
+ * numeric value and the same format string, as in a typical result.</p>
+ *
+ * <p>This class lives in package <code>mondrian.rolap</code> because
+ * {@link RolapResult.CellInfoContainer} and its implementations are
+ * package-protected.</p>
+ */
+public class CellInfoFixture {
+    private final RolapResult.CellInfoContainer cellInfos;
+
+    /**
+     * Creates a CellInfoFixture.
+     *
+     * @param cellCount Number of cells
+     * @param columnar Whether to use {@link RolapResult.CellInfoColumns}, as
+     *   results do, rather than {@link RolapResult.CellInfoPool}
+     */
+    public CellInfoFixture(int cellCount, boolean columnar) {
+        final RolapResult.ValueFormatter formatter =
+            new RolapResult.FormatValueFormatter(Locale.US);
+        cellInfos =
+            columnar
+                ? new RolapResult.CellInfoColumns(2)
+                : new RolapResult.CellInfoPool(2);
+        final int[] pos = new int[2];
+        for (int i = 0; i < cellCount; i++) {
+            pos[0] = i % 1000;
+            pos[1] = i / 1000;
+            cellInfos.store(pos, i * 1.5d, "#,##0.00", formatter);
+        }
+        cellInfos.trimToSize();
+    }
+
+    /**
+     * Returns the number of cells.
+     */
+    public int size() {
+        return cellInfos.size();
+    }
+}
+
+// End CellInfoFixture.java
@@ -0,0 +1,187 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.rolap;
+
+import mondrian.olap.Annotation;
+import mondrian.olap.Query;
+import mondrian.olap.SchemaReader;
+import mondrian.olap.Util;
+import mondrian.server.Execution;
+import mondrian.server.StatementImpl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds a {@link RolapEvaluator} over a synthetic cube, without a schema
+ * or database, so that evaluator context operations can be benchmarked.
+ *
+ * <p>The cube has a given number of hierarchies, each with an 'all' member
+ * (the default) and some regular members. The statement, query, cube,
+ * schema reader and JDBC objects are mocks; they are only consulted while
+ * the evaluator's root is created. Hierarchies and members are real
+ * subclasses, because the evaluator calls them on every context change.</p>
+ *
+ * <p>This class lives in package <code>mondrian.rolap</code> because
+ * hierarchy constructors are package-protected.</p>
+ */
+public class EvaluatorFixture {
+    private final List<RolapHierarchy> hierarchies;
+    private final RolapMember[][] members;
+    private final RolapEvaluator evaluator;
+
+    /**
+     * Creates an EvaluatorFixture.
+     *
+     * @param hierarchyCount Number of hierarchies in the cube
+     * @param memberCount Number of regular members in each hierarchy
+     */
+    public EvaluatorFixture(int hierarchyCount, int memberCount) {
+        hierarchies = new ArrayList<RolapHierarchy>();
+        members = new RolapMember[hierarchyCount][];
+        final SchemaReader schemaReader = mock(SchemaReader.class);
+        for (int h = 0; h < hierarchyCount; h++) {
+            final RolapDimension dimension = mock(RolapDimension.class);
+            when(dimension.getName()).thenReturn("D" + h);
+            when(dimension.getUniqueName()).thenReturn("[D" + h + "]");
+            final SyntheticHierarchy hierarchy =
+                new SyntheticHierarchy(dimension, h);
+            hierarchies.add(hierarchy);
+            final SyntheticMember allMember =
+                new SyntheticMember(hierarchy, "All D" + h, true);
+            when(schemaReader.getHierarchyDefaultMember(hierarchy))
+                .thenReturn(allMember);
+            members[h] = new RolapMember[memberCount];
+            for (int m = 0; m < memberCount; m++) {
+                members[h][m] =
+                    new SyntheticMember(hierarchy, "M" + m, false);
+            }
+        }
+        when(schemaReader.getDataSource()).thenReturn(dataSource());
+
+        final RolapCube cube = mock(RolapCube.class);
+        when(cube.getHierarchies()).thenReturn(hierarchies);
+        final Query query = mock(Query.class);
+        when(query.getCube()).thenReturn(cube);
+        when(query.getSchemaReader(true)).thenReturn(schemaReader);
+        final StatementImpl statement = mock(StatementImpl.class);
+        when(statement.getQuery()).thenReturn(query);
+        when(statement.getMondrianConnection())
+            .thenReturn(mock(RolapConnection.class));
+
+        final Execution execution = new Execution(statement, 0);
+        evaluator = new RolapEvaluator(new RolapEvaluatorRoot(execution));
+    }
+
+    /**
+     * Returns a data source good enough for the evaluator root to create a
+     * dialect.
+     */
+    private static DataSource dataSource() {
+        try {
+            final DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+            when(metaData.getDatabaseProductName())
+                .thenReturn("HSQL Database Engine");
+            when(metaData.getDatabaseProductVersion()).thenReturn("2.7.2");
+            when(metaData.getIdentifierQuoteString()).thenReturn("\"");
+            final Statement statement = mock(Statement.class);
+            when(statement.executeQuery(anyString()))
+                .thenReturn(mock(ResultSet.class));
+            final Connection connection = mock(Connection.class);
+            when(connection.getMetaData()).thenReturn(metaData);
+            when(connection.createStatement()).thenReturn(statement);
+            final DataSource dataSource = mock(DataSource.class);
+            when(dataSource.getConnection()).thenReturn(connection);
+            return dataSource;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public RolapEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Returns a regular member.
+     *
+     * @param hierarchy Ordinal of hierarchy
+     * @param member Ordinal of member within hierarchy
+     * @return Member
+     */
+    public RolapMember getMember(int hierarchy, int member) {
+        return members[hierarchy][member];
+    }
+
+    /**
+     * Hierarchy whose ordinal in the cube is fixed.
+     */
+    private static class SyntheticHierarchy extends RolapHierarchy {
+        private final int ordinal;
+
+        SyntheticHierarchy(RolapDimension dimension, int ordinal) {
+            super(
+                dimension, null, null, true, null, null, false, null,
+                Collections.<String, Annotation>emptyMap());
+            this.ordinal = ordinal;
+        }
+
+        public int getOrdinalInCube() {
+            return ordinal;
+        }
+    }
+
+    /**
+     * Member that belongs to a synthetic hierarchy.
+     */
+    private static class SyntheticMember extends RolapMemberBase {
+        private final RolapHierarchy hierarchy;
+        private final String name;
+        private final boolean all;
+
+        SyntheticMember(RolapHierarchy hierarchy, String name, boolean all) {
+            this.hierarchy = hierarchy;
+            this.name = name;
+            this.all = all;
+            this.uniqueName =
+                Util.makeFqName(hierarchy, name);
+        }
+
+        public RolapHierarchy getHierarchy() {
+            return hierarchy;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAll() {
+            return all;
+        }
+    }
+}
+
+// End EvaluatorFixture.java
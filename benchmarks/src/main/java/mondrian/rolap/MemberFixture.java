@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.rolap;
+
+import mondrian.olap.Annotation;
+import mondrian.olap.LevelType;
+import mondrian.olap.Property;
+import mondrian.spi.Dialect;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds the members of a large synthetic level, without a schema or
+ * database, so that their heap footprint can be measured.
+ *
+ * <p>The hierarchy has a 'Region' level of {@link #PARENT_COUNT} members and
+ * a 'Customer' level below it, whose members are unique. Each customer has
+ * a name that differs from its key, and {@link #PROPERTY_COUNT} properties
+ * of low cardinality. As when members are read via JDBC, every value is a
+ * distinct object, so that value pooling has duplicates to remove.</p>
+ *
+ * <p>Members are created the way {@link SqlMemberSource#makeMember} creates
+ * them. This class lives in package <code>mondrian.rolap</code> because the
+ * constructors of levels, properties and members are package-protected.</p>
+ */
+public class MemberFixture {
+    /** Number of members of the parent level. */
+    public static final int PARENT_COUNT = 1000;
+
+    /** Number of properties of each member of the large level. */
+    public static final int PROPERTY_COUNT = 4;
+
+    private static final String[] GENDERS = {"F", "M"};
+    private static final String[] STATUSES = {"Married", "Single", "Other"};
+
+    private final RolapMember[] members;
+
+    /**
+     * Creates a MemberFixture.
+     *
+     * @param memberCount Number of members of the large level
+     * @param pool Whether to pool keys and property values, as
+     *   {@link SqlMemberSource.WeakValuePoolFactory} does
+     */
+    public MemberFixture(int memberCount, boolean pool) {
+        final RolapDimension dimension = mock(RolapDimension.class);
+        when(dimension.getName()).thenReturn("Customers");
+        when(dimension.getUniqueName()).thenReturn("[Customers]");
+        final SyntheticHierarchy hierarchy = new SyntheticHierarchy(dimension);
+        final RolapProperty[] properties = new RolapProperty[PROPERTY_COUNT];
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            properties[i] = new RolapProperty(
+                "Property " + i, Property.Datatype.TYPE_STRING, null, null,
+                null, null, false, null);
+        }
+        final RolapLevel regionLevel =
+            hierarchy.addLevel("Region", new RolapProperty[0], 0);
+        final RolapLevel customerLevel =
+            hierarchy.addLevel("Customer", properties, RolapLevel.FLAG_UNIQUE);
+
+        final Map<Object, Object> valuePool =
+            pool
+                ? new SqlMemberSource.WeakValuePoolFactory().create(null)
+                : null;
+        final RolapMember[] parents = new RolapMember[PARENT_COUNT];
+        for (int i = 0; i < PARENT_COUNT; i++) {
+            parents[i] = new RolapMemberBase(null, regionLevel, "R" + i);
+        }
+        members = new RolapMember[memberCount];
+        for (int i = 0; i < memberCount; i++) {
+            // Keys of a unique level are not pooled; see makeMember.
+            final RolapMemberBase member = new RolapMemberBase(
+                parents[i % PARENT_COUNT], customerLevel, i);
+            member.setProperty(Property.NAME.name, "Customer " + i);
+            member.setProperty(
+                properties[0].getName(),
+                pooled(valuePool, new String(GENDERS[i % GENDERS.length])));
+            member.setProperty(
+                properties[1].getName(),
+                pooled(valuePool, new String(STATUSES[i % STATUSES.length])));
+            member.setProperty(
+                properties[2].getName(),
+                pooled(valuePool, "City " + (i % 5000)));
+            member.setProperty(
+                properties[3].getName(),
+                pooled(valuePool, Integer.valueOf(10000 + (i % 100) * 1000)));
+            members[i] = member;
+        }
+    }
+
+    private static Object pooled(Map<Object, Object> valuePool, Object value) {
+        if (valuePool == null) {
+            return value;
+        }
+        final Object pooled = valuePool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        valuePool.put(value, value);
+        return value;
+    }
+
+    /**
+     * Computes the unique name of every member of the large level, as a
+     * query that displays them all would.
+     */
+    public void materializeUniqueNames() {
+        for (RolapMember member : members) {
+            member.getUniqueName();
+        }
+    }
+
+    public RolapMember[] getMembers() {
+        return members;
+    }
+
+    /**
+     * Hierarchy whose levels are created by the fixture.
+     */
+    private static class SyntheticHierarchy extends RolapHierarchy {
+        SyntheticHierarchy(RolapDimension dimension) {
+            super(
+                dimension, null, null, true, null, null, false, null,
+                Collections.<String, Annotation>emptyMap());
+            levels = new RolapLevel[0];
+        }
+
+        RolapLevel addLevel(
+            String name, RolapProperty[] properties, int flags)
+        {
+            final int depth = levels.length;
+            final RolapLevel[] newLevels = new RolapLevel[depth + 1];
+            System.arraycopy(levels, 0, newLevels, 0, depth);
+            levels = newLevels;
+            final RolapLevel level = new RolapLevel(
+                this, name, null, true, null, depth, null, null, null, null,
+                null, null, null, properties, flags, Dialect.Datatype.String,
+                null, RolapLevel.HideMemberCondition.Never, LevelType.Regular,
+                null, Collections.<String, Annotation>emptyMap());
+            levels[depth] = level;
+            return level;
+        }
+    }
+}
+
+// End MemberFixture.java
@@ -0,0 +1,66 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.rolap.agg;
+
+import mondrian.util.ArraySortedSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link SegmentAxis} over given keys, and the map from key to offset
+ * that axes used before {@link SegmentAxisIndex}, for comparison.
+ *
+ * <p>This class lives in package <code>mondrian.rolap.agg</code> because
+ * {@link SegmentAxis#getOffset} is package-protected.</p>
+ */
+public class SegmentAxisFixture {
+    private final SegmentAxis axis;
+    private final Map<Comparable, Integer> map;
+
+    /**
+     * Creates a SegmentAxisFixture.
+     *
+     * @param keys Distinct keys, sorted
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentAxisFixture(Comparable[] keys) {
+        axis = new SegmentAxis(
+            LiteralStarPredicate.TRUE,
+            new ArraySortedSet(keys),
+            false);
+        map = new HashMap<Comparable, Integer>(keys.length * 3 / 2);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+    }
+
+    /**
+     * Returns the offset of a key in the axis, or -1.
+     */
+    public int getOffset(Comparable key) {
+        return axis.getOffset(key);
+    }
+
+    /**
+     * Returns the offset of a key as axes used to, or -1.
+     */
+    public int getOffsetFromMap(Comparable key) {
+        final Integer offset = map.get(key);
+        return offset == null ? -1 : offset;
+    }
+}
+
+// End SegmentAxisFixture.java
@@ -14,11 +14,20 @@
 
 package mondrian.calc.impl;
 
+import mondrian.calc.Calc;
+import mondrian.calc.DoubleCalc;
+import mondrian.calc.DummyExp;
+import mondrian.calc.TupleList;
+import mondrian.olap.Evaluator;
+import mondrian.olap.Member;
 import mondrian.olap.fun.FunUtil;
 import mondrian.olap.type.NullType;
+import mondrian.olap.type.NumericType;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+
 /**
  * Test for <code>ConstantCalc</code>
  * @author Matt
@@ -33,6 +42,68 @@ public class ConstantCalcTest extends TestCase {
         ConstantCalc constantCalc = new ConstantCalc(new NullType(), null);
         assertEquals(FunUtil.IntegerNull, constantCalc.evaluateInteger(null));
     }
+
+    /**
+     * Tests that batch evaluation of constants and of operators over them
+     * agrees with evaluating one tuple at a time.
+     */
+    public void testBatchEvaluation() {
+        final TupleList list =
+            new UnaryTupleList(Arrays.asList(new Member[3]));
+        final DoubleCalc seven = ConstantCalc.constantDouble(7);
+        final DoubleCalc nullCalc = new ConstantCalc(new NullType(), null);
+        final AbstractBinaryDoubleCalc minus =
+            new AbstractBinaryDoubleCalc(
+                new DummyExp(new NumericType()), seven, nullCalc)
+            {
+                protected double combine(double v0, double v1) {
+                    return v1 == FunUtil.DoubleNull ? v0 : v0 - v1;
+                }
+            };
+        final double[] values = new double[list.size()];
+        BatchCalcs.evaluateDoubles(minus, null, list, values);
+        for (double value : values) {
+            assertEquals(minus.evaluateDouble(null), value);
+            assertEquals(7d, value);
+        }
+
+        final AbstractDoubleComparisonCalc greater =
+            new AbstractDoubleComparisonCalc(
+                new DummyExp(new NumericType()), seven, nullCalc)
+            {
+                protected boolean compare(double v0, double v1) {
+                    return v0 > v1;
+                }
+            };
+        final boolean[] flags = {true, true, true};
+        BatchCalcs.evaluateBooleans(greater, null, list, flags);
+        for (boolean flag : flags) {
+            assertEquals(greater.evaluateBoolean(null), flag);
+            assertEquals(FunUtil.BooleanNull, flag);
+        }
+        assertTrue(BatchCalcs.isBatchable(minus));
+        assertTrue(BatchCalcs.isBatchable(greater));
+
+        // An operand that can only be evaluated one tuple at a time makes
+        // the whole expression unbatchable.
+        final DoubleCalc scalar =
+            new AbstractDoubleCalc(
+                new DummyExp(new NumericType()), new Calc[0])
+            {
+                public double evaluateDouble(Evaluator evaluator) {
+                    return 7;
+                }
+            };
+        final AbstractBinaryDoubleCalc scalarMinus =
+            new AbstractBinaryDoubleCalc(
+                new DummyExp(new NumericType()), seven, scalar)
+            {
+                protected double combine(double v0, double v1) {
+                    return v0 - v1;
+                }
+            };
+        assertFalse(BatchCalcs.isBatchable(scalarMinus));
+    }
 }
 
 // End ConstantCalcTest.java
@@ -0,0 +1,93 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc.impl;
+
+import mondrian.rolap.RolapSchema;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.util.Map;
+
+/**
+ * Unit test for {@link MethodHandleExpCompiler}.
+ */
+public class MethodHandleExpCompilerTest extends FoodMartTestCase {
+    private static final String QUERY =
+        "with member [Measures].[Double] as '[Measures].[Unit Sales] * 2'\n"
+        + "member [Measures].[Triple] as '[Measures].[Unit Sales] * 3'\n"
+        + "member [Measures].[Ratio] as\n"
+        + " '-([Measures].[Store Sales] - [Measures].[Store Cost])\n"
+        + "   / ([Measures].[Unit Sales] - 1.5)'\n"
+        + "member [Measures].[Null Ratio] as\n"
+        + " '[Measures].[Unit Sales] / ([Measures].[Store Cost] * NULL)'\n"
+        + "select {[Measures].[Double], [Measures].[Triple],\n"
+        + "  [Measures].[Ratio], [Measures].[Null Ratio]} on 0,\n"
+        + " Filter([Product].[Product Department].Members,\n"
+        + "  [Measures].[Unit Sales] * 2 - 1 > 10000) on 1\n"
+        + "from [Sales]";
+
+    /**
+     * Runs a query with and without method handles, and checks that the
+     * results are identical.
+     */
+    private void assertSameResults() {
+        propSaver.set(propSaver.properties.EnableMethodHandleCalcs, false);
+        final String expected = TestContext.toString(executeQuery(QUERY));
+        propSaver.set(propSaver.properties.EnableMethodHandleCalcs, true);
+        final String actual = TestContext.toString(executeQuery(QUERY));
+        assertEquals(expected, actual);
+    }
+
+    public void testSameResults() {
+        assertSameResults();
+    }
+
+    public void testSameResultsNullDenominatorProducesNull() {
+        propSaver.set(propSaver.properties.NullDenominatorProducesNull, true);
+        assertSameResults();
+    }
+
+    /**
+     * Tests that formulas which differ only in their literals share one
+     * composed method handle.
+     */
+    public void testLiteralsShareShape() {
+        propSaver.set(propSaver.properties.EnableMethodHandleCalcs, true);
+        propSaver.set(propSaver.properties.NullDenominatorProducesNull, false);
+        executeQuery(QUERY);
+        final Map<String, MethodHandleExpCompiler.Shape> cache =
+            ((RolapSchema) getConnection().getSchema())
+                .getCompiledExpressionCache();
+        assertTrue(cache.containsKey("i:*($,#)"));
+        for (String key : cache.keySet()) {
+            assertFalse(key, key.matches(".*[0-9].*"));
+        }
+    }
+
+    public void testCacheIsBounded() {
+        final Map<String, MethodHandleExpCompiler.Shape> cache =
+            MethodHandleExpCompiler.createCache();
+        for (int i = 0; i <= MethodHandleExpCompiler.CACHE_SIZE; i++) {
+            cache.put("k" + i, null);
+            // Keep the first entry recently used.
+            cache.get("k0");
+        }
+        assertEquals(MethodHandleExpCompiler.CACHE_SIZE, cache.size());
+        assertTrue(cache.containsKey("k0"));
+        assertFalse(cache.containsKey("k1"));
+    }
+}
+
+// End MethodHandleExpCompilerTest.java
@@ -21,6 +21,10 @@ import junit.framework.TestCase;
 
 import java.sql.Driver;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -1555,6 +1559,39 @@ public class UtilTestCase extends TestCase {
             // ok
         }
     }
+
+    /**
+     * Tests {@link Util#newThreadFactory(String, boolean)}. Whether or not
+     * the JVM supports virtual threads, an executor built with the factory
+     * runs tasks on threads with the given name prefix.
+     */
+    public void testNewThreadFactory() throws Exception {
+        for (boolean virtual : new boolean[] {false, true}) {
+            final String name = "mondrian.test.threads$" + virtual;
+            final ExecutorService executor =
+                Util.getExecutorService(
+                    2, 2, 1,
+                    Util.newThreadFactory(name, virtual),
+                    null,
+                    new LinkedBlockingQueue<Runnable>());
+            try {
+                final Future<Thread> future =
+                    executor.submit(
+                        new Callable<Thread>() {
+                            public Thread call() {
+                                return Thread.currentThread();
+                            }
+                        });
+                final Thread thread = future.get(10, TimeUnit.SECONDS);
+                assertTrue(
+                    thread.getName(),
+                    thread.getName().startsWith(name + "_"));
+                assertTrue(thread.isDaemon());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
 }
 
 // End UtilTestCase.java
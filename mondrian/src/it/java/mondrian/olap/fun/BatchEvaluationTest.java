@@ -0,0 +1,230 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.olap.fun;
+
+import mondrian.calc.Calc;
+import mondrian.calc.impl.AbstractCalc;
+import mondrian.calc.impl.BatchCalcs;
+import mondrian.olap.Query;
+import mondrian.olap.type.ScalarType;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Tests that Filter, Order, TopCount and Sum return the same results whether
+ * or not they evaluate their numeric expression over the whole list in one
+ * call.
+ *
+ * @see mondrian.calc.impl.BatchCalcs
+ * @see mondrian.olap.MondrianProperties#EnableBatchEvaluation
+ */
+public class BatchEvaluationTest extends FoodMartTestCase {
+    private static final String PROFIT =
+        "with member [Measures].[Margin] as"
+        + " '[Measures].[Store Sales] - [Measures].[Store Cost]'\n";
+
+    /**
+     * Runs a query with batch evaluation disabled and then enabled, and
+     * checks that the results are identical.
+     */
+    private void assertBatchMatches(String query) {
+        propSaver.set(propSaver.properties.EnableBatchEvaluation, false);
+        final String expected =
+            TestContext.toString(executeQuery(query));
+        propSaver.set(propSaver.properties.EnableBatchEvaluation, true);
+        final String actual =
+            TestContext.toString(executeQuery(query));
+        assertEquals(query, expected, actual);
+    }
+
+    /**
+     * Compiles an expression and returns its first scalar operand; for
+     * example, the condition of a <code>Filter</code> or the numeric
+     * expression of a <code>Sum</code>.
+     */
+    private Calc compileOperand(String expression, boolean scalar) {
+        final Query query =
+            getConnection().parseQuery(
+                scalar
+                    ? "with member [Measures].[Foo] as '" + expression + "'\n"
+                    + "select {[Measures].[Foo]} on 0 from [Sales]"
+                    : "select {" + expression + "} on 0 from [Sales]");
+        final Calc calc =
+            query.compileExpression(
+                scalar
+                    ? query.getFormulas()[0].getExpression()
+                    : query.getAxes()[0].getSet(),
+                scalar,
+                null);
+        final Calc operand = findScalarOperand(calc);
+        assertNotNull(expression, operand);
+        return operand;
+    }
+
+    private static Calc findScalarOperand(Calc calc) {
+        if (!(calc instanceof AbstractCalc)) {
+            return null;
+        }
+        for (Calc operand : ((AbstractCalc) calc).getCalcs()) {
+            if (operand.getType() instanceof ScalarType) {
+                return operand;
+            }
+            final Calc found = findScalarOperand(operand);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that an expression over stored measures takes the batch path,
+     * and that it does not when batch evaluation is disabled.
+     */
+    private void assertBatchable(String expression, boolean scalar) {
+        propSaver.set(propSaver.properties.EnableBatchEvaluation, true);
+        assertTrue(
+            expression,
+            BatchCalcs.isBatchable(compileOperand(expression, scalar)));
+        propSaver.set(propSaver.properties.EnableBatchEvaluation, false);
+        assertFalse(
+            expression,
+            BatchCalcs.isBatchable(compileOperand(expression, scalar)));
+    }
+
+    public void testStoredMeasureIsBatchable() {
+        assertBatchable(
+            "Filter([Store].[Store City].Members,"
+            + " [Measures].[Unit Sales] > 1000)",
+            false);
+        assertBatchable(
+            "Filter([Store].[Store City].Members,"
+            + " [Measures].[Unit Sales] - [Measures].[Store Cost] > 10000)",
+            false);
+        assertBatchable(
+            "Sum([Store].[Store City].Members, [Measures].[Unit Sales])",
+            true);
+        assertBatchable(
+            "Sum([Store].[Store City].Members,"
+            + " IIf([Measures].[Unit Sales] > 1000, [Measures].[Store Sales],"
+            + " CoalesceEmpty([Measures].[Store Cost], 0)))",
+            true);
+    }
+
+    public void testNotBatchable() {
+        // IsEmpty does not implement a batch interface, so the condition is
+        // evaluated one tuple at a time.
+        propSaver.set(propSaver.properties.EnableBatchEvaluation, true);
+        assertFalse(
+            BatchCalcs.isBatchable(
+                compileOperand(
+                    "Filter([Store].[Store City].Members,"
+                    + " IsEmpty([Measures].[Unit Sales]) or"
+                    + " [Measures].[Unit Sales] > 1000)",
+                    false)));
+    }
+
+    public void testFilterStoredMeasure() {
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Filter([Store].[Store City].Members,\n"
+            + "   [Measures].[Unit Sales] - [Measures].[Store Cost] > 10000)"
+            + " on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testIifCoalesceEmpty() {
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Filter([Store].[Store City].Members,\n"
+            + "   IIf([Measures].[Unit Sales] > 20000,\n"
+            + "     [Measures].[Store Sales],\n"
+            + "     CoalesceEmpty([Measures].[Store Cost], 1) * 10) > 40000)"
+            + " on 1\n"
+            + "from [Sales]");
+        assertBatchMatches(
+            "with member [Measures].[Total] as\n"
+            + " 'Sum([Store].[Store City].Members,\n"
+            + "   IIf([Measures].[Unit Sales] > 1000, [Measures].[Store Sales],"
+            + " CoalesceEmpty([Measures].[Store Cost], 0)))'\n"
+            + "select {[Measures].[Total]} on 0,\n"
+            + " [Product].[Product Family].Members on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testFilterCalculatedMeasure() {
+        assertBatchMatches(
+            PROFIT
+            + "select {[Measures].[Margin]} on 0,\n"
+            + " Filter([Product].[Product Department].Members,\n"
+            + "   [Measures].[Margin] * 2 >= [Measures].[Unit Sales])"
+            + " on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testFilterConstant() {
+        // Every operand is a constant, so the condition is batchable.
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Filter([Store].[Store City].Members, 2 * 3 > 5) on 1\n"
+            + "from [Sales]");
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Filter([Store].[Store City].Members, 1 - NULL > 0) on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testOrder() {
+        assertBatchMatches(
+            PROFIT
+            + "select {[Measures].[Unit Sales], [Measures].[Margin]} on 0,\n"
+            + " Order([Product].[Product Department].Members,\n"
+            + "   [Measures].[Margin] / [Measures].[Unit Sales], BDESC) on 1\n"
+            + "from [Sales]");
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Order([Store].[Store City].Members, 10 - 3, BASC) on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testTopCount() {
+        assertBatchMatches(
+            PROFIT
+            + "select {[Measures].[Unit Sales]} on 0,\n"
+            + " TopCount([Customers].[City].Members, 10,\n"
+            + "   [Measures].[Unit Sales] - [Measures].[Margin]) on 1\n"
+            + "from [Sales]");
+        assertBatchMatches(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " BottomCount([Store].[Store City].Members, 5,\n"
+            + "   [Measures].[Store Sales] * 2) on 1\n"
+            + "from [Sales]");
+    }
+
+    public void testSum() {
+        assertBatchMatches(
+            PROFIT
+            + "member [Measures].[Total] as\n"
+            + " 'Sum([Store].[Store City].Members,\n"
+            + "   [Measures].[Margin] - [Measures].[Unit Sales] / 2)'\n"
+            + "member [Measures].[Constant] as\n"
+            + " 'Sum([Store].[Store City].Members, 2 * 3)'\n"
+            + "select {[Measures].[Total], [Measures].[Constant]} on 0,\n"
+            + " [Product].[Product Family].Members on 1\n"
+            + "from [Sales]");
+    }
+}
+
+// End BatchEvaluationTest.java
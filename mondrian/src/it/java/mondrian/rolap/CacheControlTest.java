@@ -15,6 +15,7 @@ package mondrian.rolap;
 
 import mondrian.olap.*;
 import mondrian.olap.CacheControl.CellRegion;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.test.*;
 
 import java.io.PrintWriter;
@@ -1219,6 +1220,65 @@ public class CacheControlTest extends FoodMartTestCase {
         cacheControl.flush(flushRegion);
     }
 
+    /**
+     * Tests {@link CacheControl#refresh(CellRegion)}. No rows are appended to
+     * the database, so refreshing January counts its rows twice in the cached
+     * cells of sum and count measures; the distinct-count measure is
+     * invalidated, and is read again correctly.
+     */
+    public void testRefresh() {
+        if (MondrianProperties.instance().DisableCaching.get()) {
+            return;
+        }
+        final String query =
+            "select {[Measures].[Unit Sales], [Measures].[Sales Count],\n"
+            + " [Measures].[Customer Count]} on columns,\n"
+            + " {[Time].[1997], [Time].[1997].[Q1].[1],\n"
+            + "  [Time].[1997].[Q1].[2]} on rows\n"
+            + "from [Sales]";
+        final TestContext testContext = getTestContext();
+        flushCache(testContext);
+        final Result before = testContext.executeQuery(query);
+
+        final CacheControl cacheControl = testContext.getCacheControl();
+        final Cube salesCube =
+            testContext.getConnection().getSchema().lookupCube("Sales", true);
+        final Member january =
+            salesCube.getSchemaReader(null).getMemberByUniqueName(
+                Id.Segment.toList("Time", "1997", "Q1", "1"), true);
+        final long merged =
+            MondrianMetrics.SEGMENT_REFRESHES.get("merged").get();
+        cacheControl.refresh(
+            cacheControl.createCrossjoinRegion(
+                cacheControl.createMeasuresRegion(salesCube),
+                cacheControl.createMemberRegion(january, false)));
+        assertTrue(
+            MondrianMetrics.SEGMENT_REFRESHES.get("merged").get() > merged);
+
+        final Result after = testContext.executeQuery(query);
+        for (int column = 0; column < 2; column++) {
+            final double year = getValue(before, column, 0);
+            final double jan = getValue(before, column, 1);
+            final double feb = getValue(before, column, 2);
+            assertEquals(year + jan, getValue(after, column, 0), 0.001d);
+            assertEquals(2d * jan, getValue(after, column, 1), 0.001d);
+            assertEquals(feb, getValue(after, column, 2), 0.001d);
+        }
+        for (int row = 0; row < 3; row++) {
+            assertEquals(getValue(before, 2, row), getValue(after, 2, row));
+        }
+
+        flushCache(testContext);
+        assertEquals(
+            TestContext.toString(before),
+            TestContext.toString(testContext.executeQuery(query)));
+    }
+
+    private static double getValue(Result result, int column, int row) {
+        return ((Number) result.getCell(new int[] {column, row}).getValue())
+            .doubleValue();
+    }
+
     public void testMondrian1094() throws Exception {
         final String query =
             "select NON EMPTY {[Measures].[Unit Sales]} ON COLUMNS, \n"
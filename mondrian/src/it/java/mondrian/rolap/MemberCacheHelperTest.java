@@ -14,6 +14,7 @@
 package mondrian.rolap;
 
 import mondrian.rolap.sql.MemberChildrenConstraint;
+import mondrian.rolap.sql.TupleConstraint;
 
 import junit.framework.TestCase;
 
@@ -26,6 +27,13 @@ import org.mockito.stubbing.Answer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -167,6 +175,67 @@ public class MemberCacheHelperTest extends TestCase {
             children.subList(1, 3), members);
     }
 
+    /**
+     * Tests that when two threads miss the same level in cache at the same
+     * time, only one of them reads it; the other waits for it.
+     */
+    public void testConcurrentLoadsAreShared() throws Exception {
+        fillChildren(children, 3);
+        final RolapLevel level = mock(RolapLevel.class);
+        final TupleConstraint constraint = DefaultTupleConstraint.instance();
+        final Object key = cacheHelper.levelLoadKey(level, constraint);
+        assertNotNull(key);
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<List<RolapMember>> task =
+            () -> cacheHelper.getOrLoad(
+                key,
+                () -> cacheHelper.getLevelMembersFromCache(level, constraint),
+                () -> {
+                    loadCount.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    cacheHelper.putChildren(level, constraint, children);
+                    return children;
+                });
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<List<RolapMember>> future1 = executor.submit(task);
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            final Future<List<RolapMember>> future2 = executor.submit(task);
+            // Give the second thread time to start waiting.
+            Thread.sleep(100);
+            release.countDown();
+            assertSame(children, future1.get(10, TimeUnit.SECONDS));
+            assertSame(children, future2.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a thread that starts a load it is already performing
+     * does not wait for itself.
+     */
+    public void testNestedLoadDoesNotWaitForItself() {
+        final Object key = "k";
+        final MemberCacheHelper.Load outer = cacheHelper.beginLoad(key);
+        assertTrue(outer.isOwner());
+        final MemberCacheHelper.Load inner = cacheHelper.beginLoad(key);
+        assertTrue(inner.isOwner());
+        assertNotSame(outer, inner);
+        cacheHelper.endLoad(key, inner);
+        // The outer load is still registered, and ends normally.
+        cacheHelper.endLoad(key, outer);
+        outer.await();
+    }
+
     private MemberKey mockMemberKey() {
         MemberKey mock = mock(MemberKey.class);
         when(mock.getLevel()).thenReturn(mock(RolapLevel.class));
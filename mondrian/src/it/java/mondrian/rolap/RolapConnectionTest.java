@@ -19,6 +19,7 @@ import mondrian.olap.MondrianProperties;
 import mondrian.olap.Query;
 import mondrian.olap.Result;
 import mondrian.olap.Util;
+import mondrian.server.Execution;
 import mondrian.spi.Dialect;
 import mondrian.test.TestContext;
 import mondrian.util.Pair;
@@ -27,14 +28,22 @@ import junit.framework.TestCase;
 
 import org.apache.commons.lang3.StringUtils;
 
+import org.olap4j.OlapConnection;
+
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -555,6 +564,203 @@ public class RolapConnectionTest extends TestCase {
         assertFalse(StringUtils.isBlank(connectInfo.toString()));
         assertFalse(connectInfo.toString().contains("integratedSecurity"));
     }
+
+    /**
+     * Tests that {@link RolapResultShepherd} queues executions while all of
+     * its threads are busy, starts them in order of priority, and rejects
+     * an execution only when the queue is full.
+     */
+    public void testShepherdWaitQueue() throws Exception {
+        final RolapResultShepherd shepherd = createShepherd(1, 2);
+        try {
+            final OlapConnection connection =
+                TestContext.instance().getOlap4jConnection();
+            final List<String> started =
+                Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CompletableFuture<Result> running =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0),
+                    new Callable<Result>() {
+                        public Result call() throws Exception {
+                            started.add("running");
+                            latch.await();
+                            return null;
+                        }
+                    });
+            final CompletableFuture<Result> low =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0), recorder(started, "low"));
+            final CompletableFuture<Result> high =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 5), recorder(started, "high"));
+
+            // The queue is full, so the execution fails, whatever its
+            // priority.
+            final CompletableFuture<Result> rejected =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 10), recorder(started, "rejected"));
+            try {
+                rejected.get(10, TimeUnit.SECONDS);
+                fail("expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof MondrianException);
+                assertTrue(
+                    e.getCause().getMessage(),
+                    e.getCause().getMessage().contains(
+                        "mondrian.rolap.maxQueuedQueries"));
+            }
+
+            latch.countDown();
+            running.get(10, TimeUnit.SECONDS);
+            low.get(10, TimeUnit.SECONDS);
+            high.get(10, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("running", "high", "low"), started);
+        } finally {
+            shepherd.shutdown();
+        }
+    }
+
+    /**
+     * Tests that cancelling the future of a queued execution removes it
+     * from the queue, so that another execution can take its place.
+     */
+    public void testShepherdCancelQueued() throws Exception {
+        final RolapResultShepherd shepherd = createShepherd(1, 1);
+        try {
+            final OlapConnection connection =
+                TestContext.instance().getOlap4jConnection();
+            final List<String> started =
+                Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CompletableFuture<Result> running =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0),
+                    new Callable<Result>() {
+                        public Result call() throws Exception {
+                            latch.await();
+                            return null;
+                        }
+                    });
+            final CompletableFuture<Result> canceled =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0), recorder(started, "canceled"));
+            assertTrue(canceled.cancel(true));
+            final CompletableFuture<Result> next =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0), recorder(started, "next"));
+            assertFalse(next.isCompletedExceptionally());
+
+            latch.countDown();
+            running.get(10, TimeUnit.SECONDS);
+            next.get(10, TimeUnit.SECONDS);
+            assertTrue(canceled.isCancelled());
+            assertEquals(Collections.singletonList("next"), started);
+        } finally {
+            shepherd.shutdown();
+        }
+    }
+
+    /**
+     * Tests that requests wait in the same queue as executions, and that a
+     * request runs its executions on its own thread, so that requests
+     * holding every thread do not wait forever.
+     */
+    public void testShepherdRequests() throws Exception {
+        final RolapResultShepherd shepherd = createShepherd(1, 1);
+        try {
+            final OlapConnection connection =
+                TestContext.instance().getOlap4jConnection();
+            final List<String> started =
+                Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+            shepherd.execute(
+                new Runnable() {
+                    public void run() {
+                        try {
+                            latch.await();
+                            // This request holds the only thread.
+                            shepherd.shepherdExecution(
+                                execution(connection, 0),
+                                recorder(started, "request"));
+                            done.countDown();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                },
+                0);
+            final CompletableFuture<Result> queued =
+                shepherd.shepherdExecutionAsync(
+                    execution(connection, 0), recorder(started, "queued"));
+
+            // The queue is full, so the request is rejected.
+            try {
+                shepherd.execute(
+                    new Runnable() {
+                        public void run() {
+                            started.add("rejected");
+                        }
+                    },
+                    10);
+                fail("expected exception");
+            } catch (MondrianException e) {
+                assertTrue(
+                    e.getMessage(),
+                    e.getMessage().contains("mondrian.rolap.maxQueuedQueries"));
+            }
+
+            latch.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            queued.get(10, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("request", "queued"), started);
+        } finally {
+            shepherd.shutdown();
+        }
+    }
+
+    private static RolapResultShepherd createShepherd(
+        int threadCount,
+        int queueSize)
+    {
+        final MondrianProperties properties = MondrianProperties.instance();
+        final int threadCount0 =
+            properties.RolapConnectionShepherdNbThreads.get();
+        final int queueSize0 =
+            properties.RolapConnectionShepherdQueueSize.get();
+        properties.RolapConnectionShepherdNbThreads.set(threadCount);
+        properties.RolapConnectionShepherdQueueSize.set(queueSize);
+        try {
+            return new RolapResultShepherd();
+        } finally {
+            properties.RolapConnectionShepherdNbThreads.set(threadCount0);
+            properties.RolapConnectionShepherdQueueSize.set(queueSize0);
+        }
+    }
+
+    private static Execution execution(
+        OlapConnection connection,
+        int priority) throws SQLException
+    {
+        final mondrian.server.Statement statement =
+            connection.createStatement().unwrap(
+                mondrian.server.Statement.class);
+        statement.setPriority(priority);
+        return new Execution(statement, 0);
+    }
+
+    private static Callable<Result> recorder(
+        final List<String> started,
+        final String name)
+    {
+        return new Callable<Result>() {
+            public Result call() {
+                started.add(name);
+                return null;
+            }
+        };
+    }
 }
 
 // End RolapConnectionTest.java
@@ -182,5 +182,55 @@ public class RolapMemberBaseTest extends TestCase {
         assertNotNull(captionValue);
         assertEquals(Integer.MIN_VALUE, captionValue);
     }
+
+    /**
+     * <p>
+     * Given regular members of a level with a property layout.
+     * </p>
+     * When properties are set,
+     * then they are stored in slots shared by the level's members
+     * and can be read back, matching case or not.
+     */
+    public void testShouldStorePropertiesInLevelSlots() {
+        final MemberPropertyLayout layout = new MemberPropertyLayout();
+        when(level.getMemberPropertyLayout()).thenReturn(layout);
+        final RolapMemberBase member2 = new RolapMemberBase(
+            mock(RolapMember.class), level, 2, null,
+            Member.MemberType.REGULAR);
+
+        rolapMemberBase.setProperty(PROPERTY_NAME_1, "a");
+        member2.setProperty(PROPERTY_NAME_2, "b");
+        member2.setProperty(PROPERTY_NAME_1, "c");
+
+        assertEquals(2, layout.size());
+        assertEquals("a", rolapMemberBase.getPropertyValue(PROPERTY_NAME_1));
+        assertNull(rolapMemberBase.getPropertyValue(PROPERTY_NAME_2));
+        assertEquals("c", member2.getPropertyValue(PROPERTY_NAME_1));
+        assertEquals(
+            "b",
+            member2.getPropertyValue(PROPERTY_NAME_2.toUpperCase(), false));
+        assertNull(
+            member2.getPropertyValue(PROPERTY_NAME_2.toUpperCase(), true));
+    }
+
+    /**
+     * <p>
+     * Given rolap member below the first level.
+     * </p>
+     * When unique name is requested,
+     * then it is derived from the parent's unique name and the member's
+     * current name.
+     */
+    public void testShouldDeriveUniqueNameFromParent() {
+        final RolapMember parent = mock(RolapMember.class);
+        when(parent.getUniqueName()).thenReturn("[Dim].[Parent]");
+        final RolapMemberBase member = new RolapMemberBase(
+            parent, level, 7, null, Member.MemberType.REGULAR);
+
+        assertEquals("[Dim].[Parent].[7]", member.getUniqueName());
+
+        member.setProperty(Property.NAME.name, "Seven");
+        assertEquals("[Dim].[Parent].[Seven]", member.getUniqueName());
+    }
 }
 // End RolapMemberBaseTest.java
\ No newline at end of file
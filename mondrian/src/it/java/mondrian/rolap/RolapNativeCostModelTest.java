@@ -0,0 +1,112 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.QueryTiming;
+import mondrian.spi.ProfileHandler;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import org.olap4j.CellSet;
+import org.olap4j.OlapConnection;
+import org.olap4j.OlapStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link RolapNativeCostModel}.
+ */
+public class RolapNativeCostModelTest extends FoodMartTestCase {
+    private static final String QUERY =
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " NON EMPTY Crossjoin([Customers].[City].Members,\n"
+        + "   [Product].[Product Family].Members) on rows\n"
+        + "from [Sales]\n"
+        + "where [Time].[1997].[Q1]";
+
+    public RolapNativeCostModelTest() {
+    }
+
+    public RolapNativeCostModelTest(String name) {
+        super(name);
+    }
+
+    public void testEstimate() {
+        final RolapNativeCostModel.Estimate cheapNative =
+            new RolapNativeCostModel.Estimate(
+                1000, 0d, 20000000L, 10000L, 30000000d, 40000000d);
+        assertTrue(cheapNative.isNative());
+        assertEquals(
+            "native (tuples=1000, cached=0%, native=30.000ms,"
+            + " in-memory=40.000ms, statement=20.000ms, row=10000ns)",
+            cheapNative.toString());
+
+        final RolapNativeCostModel.Estimate cached =
+            new RolapNativeCostModel.Estimate(
+                10, 1d, 20000000L, 10000L, 20100000d, 20000d);
+        assertFalse(cached.isNative());
+        assertTrue(cached.toString().startsWith("in-memory (tuples=10,"));
+    }
+
+    public void testMarkDecision() {
+        final QueryTiming timing = new QueryTiming();
+        timing.init(true);
+        timing.markDecision("RolapNativeFilter", "native");
+        timing.markDecision("RolapNativeFilter", "native");
+        timing.markDecision("RolapNativeTopCount", "in-memory");
+        final String s = timing.toString();
+        assertTrue(s, s.contains("Plan Decisions:"));
+        assertTrue(s, s.contains("RolapNativeFilter: native (2 times)"));
+        assertTrue(s, s.contains("RolapNativeTopCount: in-memory (1 times)"));
+
+        timing.init(true);
+        assertFalse(timing.toString().contains("Plan Decisions:"));
+    }
+
+    /**
+     * Tests that a crossjoin gives the same result whichever plan the cost
+     * model chooses, and that the decision is reported by the profiler.
+     */
+    public void testDecisionRecorded() throws Exception {
+        propSaver.set(MondrianProperties.instance().NativeCostModel, false);
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final String expected =
+            TestContext.toString(testContext.executeQuery(QUERY));
+
+        propSaver.set(MondrianProperties.instance().NativeCostModel, true);
+        final String actual =
+            TestContext.toString(testContext.executeQuery(QUERY));
+        assertEquals(expected, actual);
+
+        final OlapConnection connection = testContext.getOlap4jConnection();
+        final OlapStatement statement = connection.createStatement();
+        final List<String> timings = new ArrayList<String>();
+        ((mondrian.server.Statement) statement).enableProfiling(
+            new ProfileHandler() {
+                public void explain(String plan, QueryTiming timing) {
+                    timings.add(String.valueOf(timing));
+                }
+            });
+        final CellSet cellSet = statement.executeOlapQuery(QUERY);
+        cellSet.close();
+        assertEquals(1, timings.size());
+        assertTrue(
+            timings.get(0),
+            timings.get(0).contains("RolapNativeCrossJoin: "));
+    }
+}
+
+// End RolapNativeCostModelTest.java
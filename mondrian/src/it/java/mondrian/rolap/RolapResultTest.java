@@ -15,9 +15,12 @@
 package mondrian.rolap;
 
 import mondrian.olap.Result;
+import mondrian.olap.Util;
 import mondrian.rolap.aggmatcher.AggTableTestCase;
 import mondrian.test.TestContext;
 
+import java.util.Locale;
+
 /**
  * Testcase for
  *
@@ -323,6 +326,108 @@ Axis #2:
             + "Row #2: \n"
             + "Row #2: \n");
     }
+
+    /**
+     * Tests that {@link RolapResult.CellInfoColumns} returns the same cells
+     * as {@link RolapResult.CellInfoPool}.
+     */
+    public void testCellInfoColumns() {
+        final RolapResult.ValueFormatter formatter =
+            new RolapResult.FormatValueFormatter(Locale.US);
+        final Throwable error = new RuntimeException("boom");
+        final Object[] values = {
+            1.5, Util.nullValue, "text", error, 7, null, 0d
+        };
+        final RolapResult.CellInfoContainer pool =
+            new RolapResult.CellInfoPool(2);
+        final RolapResult.CellInfoContainer columns =
+            new RolapResult.CellInfoColumns(2);
+        for (int i = 0; i < 1000; i++) {
+            final int[] pos = {i % 37, i / 37};
+            final Object value = values[i % values.length];
+            final String formatString = i % 3 == 0 ? null : "#,##0.00";
+            pool.store(pos, value, formatString, formatter);
+            columns.store(pos, value, formatString, formatter);
+        }
+        assertEquals(pool.size(), columns.size());
+        columns.trimToSize();
+        for (int i = 0; i < 1100; i++) {
+            final int[] pos = {i % 37, i / 37};
+            final RolapResult.CellInfo expected = pool.lookup(pos);
+            final RolapResult.CellInfo actual = columns.lookup(pos);
+            assertEquals(expected.value, actual.value);
+            assertEquals(expected.formatString, actual.formatString);
+            assertEquals(expected.getFormatValue(), actual.getFormatValue());
+        }
+
+        // Storing null leaves the value unchanged.
+        columns.store(new int[] {0, 0}, null, "0", formatter);
+        assertEquals(1.5, columns.lookup(new int[] {0, 0}).value);
+        assertEquals("0", columns.lookup(new int[] {0, 0}).formatString);
+
+        // A format string evaluated on demand is stored, and the value and
+        // formatter are kept.
+        columns.setFormatString(new int[] {0, 0}, "#");
+        assertEquals("#", columns.lookup(new int[] {0, 0}).formatString);
+        assertEquals(1.5, columns.lookup(new int[] {0, 0}).value);
+        assertSame(formatter, columns.lookup(new int[] {0, 0}).valueFormatter);
+        pool.setFormatString(new int[] {0, 0}, "#");
+        assertEquals("#", pool.lookup(new int[] {0, 0}).formatString);
+
+        columns.clear();
+        assertEquals(0, columns.size());
+        assertNull(columns.lookup(new int[] {0, 0}).value);
+    }
+
+    /**
+     * Tests {@link RolapResult.CellInfoColumns} on a result of numeric cells
+     * large enough that its hash table and columns grow several times.
+     * (The memory it saves is measured by the benchmark
+     * <code>CellInfoFootprintBenchmark</code>.)
+     */
+    public void testCellInfoColumnsNumeric() {
+        final RolapResult.ValueFormatter formatter =
+            new RolapResult.FormatValueFormatter(Locale.US);
+        final int cellCount = 100000;
+        final RolapResult.CellInfoContainer cellInfos =
+            new RolapResult.CellInfoColumns(2);
+        for (int i = 0; i < cellCount; i++) {
+            final int[] pos = {i % 1000, i / 1000};
+            cellInfos.store(
+                pos, i * 1.5d, i % 2 == 0 ? "#,##0.00" : "#", formatter);
+        }
+        assertEquals(cellCount, cellInfos.size());
+
+        // Storing a cell again replaces it rather than adding one.
+        cellInfos.store(new int[] {5, 0}, 2.5d, "0.0", formatter);
+        assertEquals(cellCount, cellInfos.size());
+
+        cellInfos.trimToSize();
+        assertEquals(cellCount, cellInfos.size());
+        for (int i = 0; i < cellCount; i += 997) {
+            final RolapResult.CellInfo cellInfo =
+                cellInfos.lookup(new int[] {i % 1000, i / 1000});
+            assertEquals(i * 1.5d, cellInfo.value);
+            assertEquals(
+                i % 2 == 0 ? "#,##0.00" : "#", cellInfo.formatString);
+            assertSame(formatter, cellInfo.valueFormatter);
+        }
+        final RolapResult.CellInfo replaced =
+            cellInfos.lookup(new int[] {5, 0});
+        assertEquals(2.5d, replaced.value);
+        assertEquals("2.5", replaced.getFormatValue());
+        assertEquals(
+            "1,497.00",
+            cellInfos.lookup(new int[] {998, 0}).getFormatValue());
+
+        // A cell that was never stored has no value, and looking it up does
+        // not add it.
+        final RolapResult.CellInfo missing =
+            cellInfos.lookup(new int[] {0, cellCount / 1000});
+        assertNull(missing.value);
+        assertNull(missing.formatString);
+        assertEquals(cellCount, cellInfos.size());
+    }
 }
 
 // End RolapResultTest.java
@@ -0,0 +1,149 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.CacheControl;
+import mondrian.olap.Cube;
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapStar;
+import mondrian.server.monitor.MondrianMetrics;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for {@link AdaptiveBatchSizer}.
+ */
+public class AdaptiveBatchSizerTest extends FoodMartTestCase {
+    private static final BitKey BIT_KEY = BitKey.Factory.makeBitKey(4);
+
+    public AdaptiveBatchSizerTest() {
+    }
+
+    public AdaptiveBatchSizerTest(String name) {
+        super(name);
+    }
+
+    public void testFitLatency() {
+        final SegmentRequestLog log = new SegmentRequestLog(10);
+        assertNull(log.fitLatency(0));
+
+        // 10 ms per statement plus 100 microseconds per row.
+        log.record(BIT_KEY, BIT_KEY, 100, 20000000L);
+        log.record(BIT_KEY, BIT_KEY, 1000, 110000000L);
+        final SegmentRequestLog.Latency latency = log.fitLatency(0);
+        assertEquals(2, latency.observationCount);
+        assertEquals(10000000L, latency.statementNanos, 1000L);
+        assertEquals(100000L, latency.rowNanos, 10L);
+        assertEquals(60000000d, latency.estimateNanos(500), 10000d);
+    }
+
+    public void testFixed() {
+        propSaver.set(MondrianProperties.instance().CellBatchAdaptive, false);
+        final SegmentRequestLog log = new SegmentRequestLog(10);
+        log.record(BIT_KEY, BIT_KEY, 100, 20000000L);
+        log.record(BIT_KEY, BIT_KEY, 1000, 110000000L);
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(log);
+        assertEquals(
+            AdaptiveBatchSizer.DEFAULT_CELL_REQUEST_LIMIT,
+            sizer.getCellRequestLimit());
+        assertEquals(1, sizer.getPartitionCount(1000000000L));
+
+        propSaver.set(MondrianProperties.instance().CellBatchSize, 500);
+        assertEquals(500, sizer.getCellRequestLimit());
+    }
+
+    public void testAdaptive() {
+        propSaver.set(MondrianProperties.instance().CellBatchAdaptive, true);
+        propSaver.set(
+            MondrianProperties.instance().CellBatchTargetMillis, 2000);
+        propSaver.set(MondrianProperties.instance().CellBatchMaxPartitions, 4);
+        final SegmentRequestLog log = new SegmentRequestLog(10);
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(log);
+
+        // No history: as if not adaptive.
+        assertEquals(
+            AdaptiveBatchSizer.DEFAULT_CELL_REQUEST_LIMIT,
+            sizer.getCellRequestLimit());
+        assertEquals(1, sizer.getPartitionCount(1000000000L));
+
+        // 100 microseconds per row: 20,000 rows fit in 2 seconds.
+        log.record(BIT_KEY, BIT_KEY, 100, 20000000L);
+        log.record(BIT_KEY, BIT_KEY, 1000, 110000000L);
+        sizer.invalidate();
+        assertEquals(20000, sizer.getCellRequestLimit(), 10);
+        assertEquals(1, sizer.getPartitionCount(10000));
+        assertEquals(3, sizer.getPartitionCount(50000));
+        assertEquals(4, sizer.getPartitionCount(1000000));
+
+        // The fixed limit is an upper bound.
+        propSaver.set(MondrianProperties.instance().CellBatchSize, 5000);
+        assertEquals(5000, sizer.getCellRequestLimit());
+
+        // Splitting can be disabled.
+        propSaver.set(MondrianProperties.instance().CellBatchMaxPartitions, 1);
+        assertEquals(1, sizer.getPartitionCount(1000000));
+    }
+
+    /**
+     * Tests that a batch that is split into parallel statements gives the
+     * same result as one that is not.
+     */
+    public void testSplitBatch() {
+        final String query =
+            "select {[Measures].[Unit Sales], [Measures].[Customer Count]}"
+            + " on columns,\n"
+            + " [Store].[Store Name].Members on rows\n"
+            + "from [Sales]";
+        final TestContext testContext = getTestContext();
+        final Cube salesCube =
+            testContext.getConnection().getSchema().lookupCube("Sales", true);
+        final RolapStar star = ((RolapCube) salesCube).getStar();
+        final CacheControl cacheControl =
+            testContext.getConnection().getCacheControl(null);
+
+        propSaver.set(MondrianProperties.instance().CellBatchAdaptive, false);
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        final String expected =
+            TestContext.toString(testContext.executeQuery(query));
+
+        // Pretend that every row takes a millisecond, so that any batch of
+        // more than one row is split.
+        propSaver.set(MondrianProperties.instance().CellBatchAdaptive, true);
+        propSaver.set(MondrianProperties.instance().CellBatchTargetMillis, 1);
+        propSaver.set(MondrianProperties.instance().CellBatchMaxPartitions, 4);
+        final BitKey bitKey = BitKey.Factory.makeBitKey(star.getColumnCount());
+        star.getSegmentRequestLog().clear();
+        for (int i = 1; i <= 100; i++) {
+            star.getSegmentRequestLog().record(
+                bitKey, bitKey, i * 10, i * 10000000L);
+        }
+        star.getBatchSizer().invalidate();
+        final long partitionCount =
+            MondrianMetrics.CELL_BATCH_PARTITIONS.get().get();
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        final String actual =
+            TestContext.toString(testContext.executeQuery(query));
+        assertEquals(expected, actual);
+        assertTrue(
+            MondrianMetrics.CELL_BATCH_PARTITIONS.get().get()
+            > partitionCount);
+
+        star.getSegmentRequestLog().clear();
+        star.getBatchSizer().invalidate();
+    }
+}
+
+// End AdaptiveBatchSizerTest.java
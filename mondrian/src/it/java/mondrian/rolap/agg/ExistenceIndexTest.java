@@ -0,0 +1,136 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapStar;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Unit test for {@link ExistenceBitmap}, {@link ExistenceIndex} and
+ * {@link ExistenceIndexRegistry}.
+ */
+public class ExistenceIndexTest extends FoodMartTestCase {
+    private static final String QUERY =
+        "with member [Measures].[Average Price] as\n"
+        + " '[Measures].[Store Sales] / [Measures].[Unit Sales]'\n"
+        + "select {[Measures].[Average Price]} on columns,\n"
+        + " NON EMPTY Crossjoin([Customers].[City].Members,\n"
+        + "   [Product].[Product Family].Members) on rows\n"
+        + "from [Sales]\n"
+        + "where [Time].[1997].[Q1]";
+
+    public ExistenceIndexTest() {
+    }
+
+    public ExistenceIndexTest(String name) {
+        super(name);
+    }
+
+    public void testBitmap() {
+        final Random random = new Random(1234);
+        final TreeSet<Long> expected = new TreeSet<Long>();
+        final long[] values = new long[20000];
+        int n = 0;
+        // A dense run, which needs a bitmap container.
+        for (long v = 70000; v < 80000; v++) {
+            values[n++] = v;
+        }
+        // Sparse values, with duplicates, in array containers.
+        while (n < values.length) {
+            final long v = Math.abs(random.nextLong() % 10000000000L);
+            values[n++] = v;
+            values[n++] = v;
+        }
+        for (long value : values) {
+            expected.add(value);
+        }
+        final ExistenceBitmap bitmap = ExistenceBitmap.of(values, n);
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertTrue(bitmap.getBitmapContainerCount() > 0);
+        for (long value : expected) {
+            assertTrue(bitmap.contains(value));
+        }
+        for (int i = 0; i < 10000; i++) {
+            final long v = Math.abs(random.nextLong() % 10000000000L);
+            assertEquals(expected.contains(v), bitmap.contains(v));
+        }
+        assertFalse(bitmap.contains(69999));
+        assertFalse(bitmap.contains(80000));
+        assertFalse(bitmap.contains(-1));
+
+        final ExistenceBitmap empty = ExistenceBitmap.of(new long[0], 0);
+        assertEquals(0, empty.cardinality());
+        assertFalse(empty.contains(0));
+    }
+
+    public void testNormalize() {
+        assertEquals(1997L, ExistenceIndex.normalize(1997));
+        assertEquals(1997L, ExistenceIndex.normalize(1997.0d));
+        assertEquals(1997L, ExistenceIndex.normalize(new BigDecimal("1997")));
+        assertEquals(2.5d, ExistenceIndex.normalize(new BigDecimal("2.5")));
+        assertEquals("Q1", ExistenceIndex.normalize("Q1"));
+    }
+
+    /**
+     * Tests that a non-empty crossjoin evaluated in memory gives the same
+     * result with and without existence indexes, and that an index is built.
+     */
+    public void testNonEmptyCrossJoin() {
+        propSaver.set(
+            MondrianProperties.instance().EnableNativeCrossJoin, false);
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final RolapStar star =
+            ((RolapCube) testContext.getConnection().getSchema()
+                .lookupCube("Sales", true)).getStar();
+
+        propSaver.set(MondrianProperties.instance().ExistenceIndex, false);
+        final String expected =
+            TestContext.toString(testContext.executeQuery(QUERY));
+        assertEquals(0, star.getExistenceIndexes().size());
+
+        propSaver.set(MondrianProperties.instance().ExistenceIndex, true);
+        final String actual =
+            TestContext.toString(testContext.executeQuery(QUERY));
+        assertEquals(expected, actual);
+        assertTrue(star.getExistenceIndexes().size() > 0);
+
+        star.getExistenceIndexes().clear();
+        assertEquals(0, star.getExistenceIndexes().size());
+    }
+
+    /**
+     * Tests that no index is built if it would have too many combinations.
+     */
+    public void testTooManyRows() {
+        propSaver.set(
+            MondrianProperties.instance().EnableNativeCrossJoin, false);
+        propSaver.set(MondrianProperties.instance().ExistenceIndex, true);
+        propSaver.set(MondrianProperties.instance().ExistenceIndexMaxRows, 10);
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final RolapStar star =
+            ((RolapCube) testContext.getConnection().getSchema()
+                .lookupCube("Sales", true)).getStar();
+        testContext.executeQuery(QUERY);
+        assertEquals(0, star.getExistenceIndexes().size());
+    }
+}
+
+// End ExistenceIndexTest.java
@@ -0,0 +1,201 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.*;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapStar;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link MemoryAggregate} and {@link MemoryAggregateRegistry}.
+ */
+public class MemoryAggregateTest extends FoodMartTestCase {
+    private static final String SCHEMA =
+        "<Schema name=\"MemoryAggregates\">\n"
+        + "<Cube name=\"Sales\">\n"
+        + "  <Annotations>\n"
+        + "    <Annotation name=\"MemoryAggregates\">"
+        + "[Gender].[Gender], [Time].[Quarter];"
+        + " [Marital Status].[Marital Status]; [Product].[Bogus]"
+        + "</Annotation>\n"
+        + "  </Annotations>\n"
+        + "  <Table name=\"sales_fact_1997\"/>\n"
+        + "  <Dimension name=\"Time\" foreignKey=\"time_id\">\n"
+        + "    <Hierarchy hasAll=\"true\" primaryKey=\"time_id\">\n"
+        + "      <Table name=\"time_by_day\"/>\n"
+        + "      <Level name=\"Year\" column=\"the_year\" type=\"Numeric\"\n"
+        + "          uniqueMembers=\"true\"/>\n"
+        + "      <Level name=\"Quarter\" column=\"quarter\"\n"
+        + "          uniqueMembers=\"false\"/>\n"
+        + "    </Hierarchy>\n"
+        + "  </Dimension>\n"
+        + "  <Dimension name=\"Gender\" foreignKey=\"customer_id\">\n"
+        + "    <Hierarchy hasAll=\"true\" primaryKey=\"customer_id\">\n"
+        + "      <Table name=\"customer\"/>\n"
+        + "      <Level name=\"Gender\" column=\"gender\"\n"
+        + "          uniqueMembers=\"true\"/>\n"
+        + "    </Hierarchy>\n"
+        + "  </Dimension>\n"
+        + "  <Dimension name=\"Marital Status\" foreignKey=\"customer_id\">\n"
+        + "    <Hierarchy hasAll=\"true\" primaryKey=\"customer_id\">\n"
+        + "      <Table name=\"customer\"/>\n"
+        + "      <Level name=\"Marital Status\" column=\"marital_status\"\n"
+        + "          uniqueMembers=\"true\"/>\n"
+        + "    </Hierarchy>\n"
+        + "  </Dimension>\n"
+        + "  <Measure name=\"Unit Sales\" column=\"unit_sales\"\n"
+        + "      aggregator=\"sum\" formatString=\"Standard\"/>\n"
+        + "  <Measure name=\"Sales Count\" column=\"product_id\"\n"
+        + "      aggregator=\"count\" formatString=\"#,###\"/>\n"
+        + "  <Measure name=\"Max Sales\" column=\"store_sales\"\n"
+        + "      aggregator=\"max\" formatString=\"#,###.00\"/>\n"
+        + "  <Measure name=\"Customer Count\" column=\"customer_id\"\n"
+        + "      aggregator=\"distinct-count\" formatString=\"#,###\"/>\n"
+        + "</Cube>\n"
+        + "</Schema>";
+
+    private static final String QUERY =
+        "select {[Measures].[Unit Sales], [Measures].[Sales Count],"
+        + " [Measures].[Max Sales]} on columns,\n"
+        + " [Gender].[Gender].Members * [Time].[1997].Children on rows\n"
+        + "from [Sales]";
+
+    private RolapStar star;
+
+    public MemoryAggregateTest() {
+    }
+
+    public MemoryAggregateTest(String name) {
+        super(name);
+    }
+
+    protected void tearDown() throws Exception {
+        if (star != null) {
+            star.getMemoryAggregates().close();
+            star = null;
+        }
+        super.tearDown();
+    }
+
+    /**
+     * Tests that the aggregates declared by the annotation are loaded, answer
+     * queries without SQL, and give the same results as SQL.
+     */
+    public void testAnswersFromMemory() throws Exception {
+        propSaver.set(MondrianProperties.instance().MemoryAggregates, true);
+        final TestContext testContext = createContext();
+        final List<MemoryAggregate> aggregates =
+            star.getMemoryAggregates().getAggregates();
+        // The combination with an unknown level is ignored.
+        assertEquals(2, aggregates.size());
+        // Quarter brings its parent, Year.
+        assertEquals(3, aggregates.get(0).getColumnsBitKey().cardinality());
+        assertEquals(1, aggregates.get(1).getColumnsBitKey().cardinality());
+        // Distinct-count measure is not held.
+        for (RolapStar.Column column : star.getFactTable().getColumns()) {
+            if (column instanceof RolapStar.Measure) {
+                assertEquals(
+                    column.getName(),
+                    !((RolapStar.Measure) column).getAggregator().isDistinct(),
+                    aggregates.get(0).getMeasureBitKey().get(
+                        column.getBitPosition()));
+            }
+        }
+        waitUntilLoaded(aggregates);
+        assertTrue(aggregates.get(0).getRowCount() > 0);
+
+        final Connection connection = testContext.getConnection();
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        final Cube cube = connection.getSchema().lookupCube("Sales", true);
+        star.getSegmentRequestLog().clear();
+        final String fromMemory =
+            TestContext.toString(testContext.executeQuery(QUERY));
+        assertEquals(0, star.getSegmentRequestLog().getObservations(0).size());
+
+        // Flushing discards the aggregates; when they have been read again,
+        // they have the same contents.
+        final int rowCount = aggregates.get(0).getRowCount();
+        cacheControl.flush(cacheControl.createMeasuresRegion(cube));
+        waitUntilLoaded(aggregates);
+        assertEquals(rowCount, aggregates.get(0).getRowCount());
+
+        // Without aggregates, the same query uses SQL, with the same result.
+        star.getMemoryAggregates().close();
+        cacheControl.flush(cacheControl.createMeasuresRegion(cube));
+        final String fromSql =
+            TestContext.toString(testContext.executeQuery(QUERY));
+        assertFalse(star.getSegmentRequestLog().getObservations(0).isEmpty());
+        assertEquals(fromSql, fromMemory);
+    }
+
+    /**
+     * Tests that a request with a measure the aggregates do not hold is
+     * loaded from SQL.
+     */
+    public void testDistinctCountUsesSql() throws Exception {
+        propSaver.set(MondrianProperties.instance().MemoryAggregates, true);
+        final TestContext testContext = createContext();
+        waitUntilLoaded(star.getMemoryAggregates().getAggregates());
+        star.getSegmentRequestLog().clear();
+        testContext.executeQuery(
+            "select {[Measures].[Customer Count]} on columns,\n"
+            + " [Gender].[Gender].Members on rows\n"
+            + "from [Sales]");
+        assertFalse(star.getSegmentRequestLog().getObservations(0).isEmpty());
+    }
+
+    /**
+     * Tests that no aggregates are declared if the feature is disabled.
+     */
+    public void testDisabled() {
+        propSaver.set(MondrianProperties.instance().MemoryAggregates, false);
+        createContext();
+        assertEquals(0, star.getMemoryAggregates().getAggregates().size());
+    }
+
+    public void testSplitLevelNames() {
+        assertEquals(
+            Arrays.asList("[Time].[Month]", "[Store].[A, B]", ""),
+            MemoryAggregateRegistry.splitLevelNames(
+                " [Time].[Month],[Store].[A, B] ,"));
+    }
+
+    private TestContext createContext() {
+        final TestContext testContext =
+            TestContext.instance().withSchema(SCHEMA).withFreshConnection();
+        final RolapCube cube =
+            (RolapCube) testContext.getConnection().getSchema()
+                .lookupCube("Sales", true);
+        star = cube.getStar();
+        return testContext;
+    }
+
+    private static void waitUntilLoaded(List<MemoryAggregate> aggregates)
+        throws InterruptedException
+    {
+        for (MemoryAggregate aggregate : aggregates) {
+            for (int i = 0; !aggregate.isLoaded(); i++) {
+                assertTrue("timed out loading " + aggregate, i < 600);
+                Thread.sleep(100);
+            }
+        }
+    }
+}
+
+// End MemoryAggregateTest.java
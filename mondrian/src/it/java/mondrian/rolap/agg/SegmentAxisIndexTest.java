@@ -0,0 +1,121 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.rolap.RolapUtil;
+
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+
+/**
+ * Unit test for {@link SegmentAxisIndex}.
+ */
+public class SegmentAxisIndexTest extends TestCase {
+    public void testEmpty() {
+        assertIndex(
+            SegmentAxisIndex.EmptyIndex.class,
+            new Comparable[0], 1);
+        final SegmentAxisIndex index =
+            assertIndex(
+                SegmentAxisIndex.EmptyIndex.class,
+                new Comparable[] {RolapUtil.sqlNullValue}, 1);
+        assertEquals(0, index.getOffset(RolapUtil.sqlNullValue));
+    }
+
+    public void testDense() {
+        final SegmentAxisIndex index =
+            assertIndex(
+                SegmentAxisIndex.DenseIndex.class,
+                new Comparable[] {
+                    1000, 1001, 1003, 1004, RolapUtil.sqlNullValue
+                },
+                1002);
+        assertEquals(-1, index.getOffset(999));
+        assertEquals(-1, index.getOffset(1005));
+        // Equal value, different type; not found, as by a HashMap.
+        assertEquals(-1, index.getOffset(1003L));
+        assertEquals(-1, index.getOffset("1003"));
+        assertEquals(-1, index.getOffset(null));
+    }
+
+    public void testLong() {
+        final SegmentAxisIndex index =
+            assertIndex(
+                SegmentAxisIndex.LongIndex.class,
+                new Comparable[] {
+                    Long.MIN_VALUE, -5L, 0L, 1L << 40, Long.MAX_VALUE
+                },
+                7L);
+        assertEquals(-1, index.getOffset(0));
+        assertEquals(-1, index.getOffset(RolapUtil.sqlNullValue));
+    }
+
+    public void testLongMany() {
+        final Comparable[] keys = new Comparable[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i * 1000003L;
+        }
+        assertIndex(SegmentAxisIndex.LongIndex.class, keys, 1000004L);
+    }
+
+    public void testString() {
+        final SegmentAxisIndex index =
+            assertIndex(
+                SegmentAxisIndex.StringIndex.class,
+                new Comparable[] {
+                    "Aa", "BB", "F", "M", RolapUtil.sqlNullValue
+                },
+                "G");
+        // "Aa" and "BB" have the same hash code.
+        assertEquals(0, index.getOffset(new String("Aa")));
+        assertEquals(1, index.getOffset(new String("BB")));
+        assertEquals(-1, index.getOffset(1));
+    }
+
+    public void testGeneric() {
+        assertIndex(
+            SegmentAxisIndex.GenericIndex.class,
+            new Comparable[] {
+                new BigDecimal("1.5"), new BigDecimal("2.5"),
+                RolapUtil.sqlNullValue
+            },
+            new BigDecimal("3.5"));
+        // Mixed types
+        assertIndex(
+            SegmentAxisIndex.GenericIndex.class,
+            new Comparable[] {1, 2L, "x", RolapUtil.sqlNullValue},
+            3);
+    }
+
+    /**
+     * Asserts that the index created for some keys has a given class, finds
+     * each key at its position, and does not find another key.
+     */
+    private static SegmentAxisIndex assertIndex(
+        Class<? extends SegmentAxisIndex> expectedClass,
+        Comparable[] keys,
+        Comparable missingKey)
+    {
+        final SegmentAxisIndex index = SegmentAxisIndex.create(keys);
+        assertEquals(expectedClass, index.getClass());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.getOffset(keys[i]));
+        }
+        assertEquals(-1, index.getOffset(missingKey));
+        return index;
+    }
+}
+
+// End SegmentAxisIndexTest.java
@@ -195,6 +195,47 @@ public class SegmentBuilderTest extends BatchTestCase {
                 .get(0).columnExpression);
     }
 
+    /**
+     * Tests merging the aggregates of new rows into a segment body, as an
+     * incremental refresh does. The new rows have a value that the segment
+     * did not have, and a null value.
+     */
+    public void testMerge() {
+        final List<Pair<SortedSet<Comparable>, Boolean>> bodyAxes =
+            new ArrayList<Pair<SortedSet<Comparable>, Boolean>>();
+        bodyAxes.add(of(toSortedSet("a", "b"), false));
+        final SegmentBody body =
+            new DenseDoubleSegmentBody(
+                new BitSet(), new double[] {1d, 2d}, bodyAxes);
+        final List<Pair<SortedSet<Comparable>, Boolean>> deltaAxes =
+            new ArrayList<Pair<SortedSet<Comparable>, Boolean>>();
+        deltaAxes.add(of(toSortedSet("b", "c"), true));
+        final SegmentBody delta =
+            new DenseDoubleSegmentBody(
+                new BitSet(), new double[] {10d, 5d, 7d}, deltaAxes);
+
+        final SegmentBody sum =
+            SegmentBuilder.merge(
+                body, delta, RolapAggregator.Sum, Dialect.Datatype.Numeric);
+        assertEquals(toSortedSet("a", "b", "c"), sum.getAxisValueSets()[0]);
+        assertTrue(sum.getNullAxisFlags()[0]);
+        final Map<CellKey, Object> sumMap = sum.getValueMap();
+        assertEquals(4, sumMap.size());
+        assertEquals(1d, sumMap.get(cellKey(0)));
+        assertEquals(12d, sumMap.get(cellKey(1)));
+        assertEquals(5d, sumMap.get(cellKey(2)));
+        assertEquals(7d, sumMap.get(cellKey(3)));
+
+        final SegmentBody min =
+            SegmentBuilder.merge(
+                body, delta, RolapAggregator.Min, Dialect.Datatype.Numeric);
+        assertEquals(2d, min.getValueMap().get(cellKey(1)));
+    }
+
+    private static CellKey cellKey(int... pos) {
+        return CellKey.Generator.newCellKey(pos);
+    }
+
     private void assertArraysAreEqual(double[] expected, double[] actual) {
         assertTrue(
             "Expected double array:  "
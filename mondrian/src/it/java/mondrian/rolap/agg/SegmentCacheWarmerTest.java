@@ -0,0 +1,222 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.*;
+import mondrian.rolap.RolapConnection;
+import mondrian.rolap.RolapSchema;
+import mondrian.server.monitor.CacheWarmupInfo;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link SegmentCacheWarmer}.
+ */
+public class SegmentCacheWarmerTest extends FoodMartTestCase {
+    private File directory;
+
+    public SegmentCacheWarmerTest() {
+    }
+
+    public SegmentCacheWarmerTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("warmup", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        propSaver.set(
+            MondrianProperties.instance().CacheWarmupDirectory,
+            directory.getPath());
+        propSaver.set(MondrianProperties.instance().CacheWarmupPause, 0);
+    }
+
+    protected void tearDown() throws Exception {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Tests that the segments a query used are written to the profile, and
+     * that a warm-up loads them again after the cache has been flushed.
+     */
+    public void testSaveAndWarm() throws Exception {
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final RolapConnection connection =
+            (RolapConnection) testContext.getConnection();
+        final RolapSchema schema = connection.getSchema();
+        testContext.executeQuery(
+            "select {[Measures].[Unit Sales], [Measures].[Store Sales]}"
+            + " on columns,\n"
+            + " [Gender].[Gender].Members on rows\n"
+            + "from [Sales]");
+
+        final int count = SegmentCacheWarmer.save(schema);
+        assertTrue(count > 0);
+        final File file = SegmentCacheWarmer.getProfileFile(schema);
+        assertTrue(file.exists());
+        final List<SegmentHeader> headers = SegmentCacheWarmer.read(file);
+        assertEquals(count, headers.size());
+        for (SegmentHeader header : headers) {
+            assertEquals(schema.getChecksum(), header.schemaChecksum);
+        }
+
+        // Every segment is in the cache, so a warm-up skips them all.
+        SegmentCacheWarmer warmer = SegmentCacheWarmer.start(schema);
+        assertNotNull(warmer);
+        waitUntilDone(warmer);
+        assertEquals(0, warmer.getLoadCount());
+        assertEquals(count, warmer.getSkipCount());
+
+        // After a flush, the warm-up loads them.
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        final Cube cube = schema.lookupCube("Sales", true);
+        cacheControl.flush(cacheControl.createMeasuresRegion(cube));
+        warmer = SegmentCacheWarmer.start(schema);
+        waitUntilDone(warmer);
+        assertEquals(0, warmer.getFailureCount());
+        assertTrue(warmer.getLoadCount() > 0);
+
+        boolean found = false;
+        for (CacheWarmupInfo info
+            : MondrianServer.forConnection(connection).getMonitor()
+                .getCacheWarmups())
+        {
+            if (info.schemaId.equals(schema.getId())) {
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    /**
+     * Tests that a header whose bit positions now hold different columns is
+     * skipped, and that the profile file is specific to the schema's content.
+     */
+    public void testColumnMismatch() throws Exception {
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final RolapConnection connection =
+            (RolapConnection) testContext.getConnection();
+        final RolapSchema schema = connection.getSchema();
+        testContext.executeQuery(
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " [Gender].[Gender].Members on rows\n"
+            + "from [Sales]");
+        final int count = SegmentCacheWarmer.save(schema);
+        assertTrue(count > 0);
+        final File file = SegmentCacheWarmer.getProfileFile(schema);
+        assertTrue(file.getName(), file.getName().endsWith(".segments"));
+        assertFalse(file.getName(), file.getName().equals("FoodMart.segments"));
+
+        // Rewrite the profile as if each bit position held another column.
+        final List<SegmentHeader> headers = new ArrayList<SegmentHeader>();
+        for (SegmentHeader header : SegmentCacheWarmer.read(file)) {
+            final List<SegmentColumn> columns =
+                new ArrayList<SegmentColumn>();
+            for (SegmentColumn column : header.getConstrainedColumns()) {
+                columns.add(
+                    new SegmentColumn(
+                        column.columnExpression + "_moved",
+                        column.valueCount,
+                        column.values));
+            }
+            headers.add(
+                new SegmentHeader(
+                    header.schemaName,
+                    header.schemaChecksum,
+                    header.cubeName,
+                    header.measureName,
+                    columns,
+                    header.compoundPredicates,
+                    header.rolapStarFactTableName,
+                    header.constrainedColsBitKey,
+                    header.getExcludedRegions()));
+        }
+        final ObjectOutputStream out =
+            new ObjectOutputStream(new FileOutputStream(file));
+        try {
+            out.writeObject(headers);
+        } finally {
+            out.close();
+        }
+
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        cacheControl.flush(
+            cacheControl.createMeasuresRegion(
+                schema.lookupCube("Sales", true)));
+        final SegmentCacheWarmer warmer = SegmentCacheWarmer.start(schema);
+        assertNotNull(warmer);
+        waitUntilDone(warmer);
+        assertEquals(0, warmer.getLoadCount());
+        assertEquals(headers.size(), warmer.getSkipCount());
+    }
+
+    /**
+     * Tests that nothing is saved or warmed if no directory is set.
+     */
+    public void testDisabled() {
+        propSaver.set(MondrianProperties.instance().CacheWarmupDirectory, "");
+        final RolapSchema schema =
+            (RolapSchema) getTestContext().getConnection().getSchema();
+        assertNull(SegmentCacheWarmer.getProfileFile(schema));
+        assertEquals(0, SegmentCacheWarmer.save(schema));
+        assertNull(SegmentCacheWarmer.start(schema));
+    }
+
+    /**
+     * Tests that a cancelled warm-up stops.
+     */
+    public void testCancel() throws Exception {
+        final TestContext testContext = getTestContext().withFreshConnection();
+        final RolapSchema schema =
+            ((RolapConnection) testContext.getConnection()).getSchema();
+        testContext.executeQuery(
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " [Store].[Store State].Members on rows\n"
+            + "from [Sales]");
+        SegmentCacheWarmer.save(schema);
+        final SegmentCacheWarmer warmer = SegmentCacheWarmer.start(schema);
+        assertNotNull(warmer);
+        warmer.cancel();
+        waitUntilDone(warmer);
+        assertTrue(
+            warmer.getLoadCount() + warmer.getSkipCount()
+            + warmer.getFailureCount() <= warmer.getSegmentCount());
+    }
+
+    private static void waitUntilDone(SegmentCacheWarmer warmer)
+        throws InterruptedException
+    {
+        for (int i = 0; !warmer.isDone(); i++) {
+            assertTrue("timed out warming cache", i < 600);
+            Thread.sleep(100);
+        }
+    }
+}
+
+// End SegmentCacheWarmerTest.java
@@ -0,0 +1,188 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.*;
+import mondrian.rolap.*;
+import mondrian.server.Locus;
+import mondrian.test.FoodMartTestCase;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Unit test for {@link SegmentDirectory} and the cell lookup path of
+ * {@link RolapStar#getCellFromCache}.
+ */
+public class SegmentDirectoryTest extends FoodMartTestCase {
+    private static final int READ_COUNT = 100000;
+
+    private static final String QUERY =
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " {[Gender].[F], [Gender].[M]} on rows\n"
+        + "from [Sales]";
+
+    public SegmentDirectoryTest() {
+    }
+
+    public SegmentDirectoryTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that a segment registered with a star is found by a cell
+     * request with the same columns and measure, and not by a request
+     * for a different measure.
+     */
+    public void testLookup() {
+        executeQuery(QUERY);
+        execute(
+            new Locus.Action<Void>() {
+                public Void execute() {
+                    final CellRequest request =
+                        makeRequest("[Measures].[Unit Sales]", "[Gender].[F]");
+                    final RolapStar star = request.getMeasure().getStar();
+                    // Each execution has its own local cache, initially empty.
+                    assertNull(star.getCellFromCache(request, null));
+
+                    final SegmentWithData segment = peek(request);
+                    star.register(segment);
+                    final Object value = star.getCellFromCache(request, null);
+                    assertEquals(
+                        segment.getCellValue(request.getSingleValues()),
+                        value);
+                    assertEquals(131558d, ((Number) value).doubleValue());
+                    assertNotNull(
+                        star.getCellFromCache(
+                            makeRequest(
+                                "[Measures].[Unit Sales]", "[Gender].[M]"),
+                            null));
+
+                    // Same columns, different measure.
+                    assertNull(
+                        star.getCellFromCache(
+                            makeRequest(
+                                "[Measures].[Store Sales]", "[Gender].[F]"),
+                            null));
+                    return null;
+                }
+            });
+    }
+
+    /**
+     * Tests that reading a cell that is in the local cache does not
+     * allocate memory.
+     *
+     * <p>Reads through {@link FastBatchingCellReader#get}, as evaluation does,
+     * so the measurement includes making the cell request from the
+     * evaluator's context, and boxing the cell's value.
+     */
+    public void testCachedCellReadAllocatesNothing() {
+        if (!(ManagementFactory.getThreadMXBean()
+            instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        executeQuery(QUERY);
+        execute(
+            new Locus.Action<Void>() {
+                public Void execute() {
+                    final Query query = getConnection().parseQuery(QUERY);
+                    final RolapEvaluator evaluator =
+                        ((RolapEvaluator) RolapEvaluator.create(
+                            query.getStatement()))
+                            .push(
+                                members(
+                                    "[Measures].[Unit Sales]",
+                                    "[Gender].[F]"));
+                    final FastBatchingCellReader reader =
+                        new FastBatchingCellReader(
+                            Locus.peek().execution,
+                            (RolapCube) query.getCube(),
+                            ((RolapConnection) getConnection()).getServer()
+                                .getAggregationManager());
+
+                    // The first read copies the segment from the global
+                    // cache into the local cache.
+                    final Object value = reader.get(evaluator);
+                    assertEquals(131558d, ((Number) value).doubleValue());
+                    for (int i = 0; i < READ_COUNT; i++) {
+                        assertSame(value, reader.get(evaluator));
+                    }
+                    final long threadId = Thread.currentThread().getId();
+                    // Allocated by getThreadAllocatedBytes itself, if any.
+                    final long start =
+                        threadBean.getThreadAllocatedBytes(threadId);
+                    final long overhead =
+                        threadBean.getThreadAllocatedBytes(threadId) - start;
+                    final long before =
+                        threadBean.getThreadAllocatedBytes(threadId);
+                    for (int i = 0; i < READ_COUNT; i++) {
+                        if (reader.get(evaluator) != value) {
+                            fail("cell not in cache");
+                        }
+                    }
+                    final long after =
+                        threadBean.getThreadAllocatedBytes(threadId);
+                    final long bytes = after - before - overhead;
+                    // Less than one byte per read means no read allocated.
+                    assertTrue(
+                        bytes + " bytes allocated by " + READ_COUNT + " reads",
+                        bytes < READ_COUNT);
+                    assertEquals(0, reader.getMissCount());
+                    return null;
+                }
+            });
+    }
+
+    private void execute(Locus.Action<Void> action) {
+        Locus.execute(
+            (RolapConnection) getConnection(),
+            getName(),
+            action);
+    }
+
+    private CellRequest makeRequest(String... memberNames) {
+        return RolapAggregationManager.makeRequest(members(memberNames));
+    }
+
+    private Member[] members(String... memberNames) {
+        final Cube salesCube =
+            getConnection().getSchema().lookupCube("Sales", true);
+        final SchemaReader schemaReader =
+            salesCube.getSchemaReader(null).withLocus();
+        final Member[] members = new Member[memberNames.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = schemaReader.getMemberByUniqueName(
+                Util.parseIdentifier(memberNames[i]), true);
+        }
+        return members;
+    }
+
+    private SegmentWithData peek(CellRequest request) {
+        final SegmentWithData segment =
+            ((RolapConnection) getConnection()).getServer()
+                .getAggregationManager().cacheMgr.peek(request);
+        assertNotNull(segment);
+        return segment;
+    }
+}
+
+// End SegmentDirectoryTest.java
@@ -18,8 +18,10 @@ import mondrian.olap.*;
 import mondrian.rolap.*;
 import mondrian.server.*;
 import mondrian.server.Statement;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.spi.Dialect;
 import mondrian.test.SqlPattern;
+import mondrian.test.TestContext;
 import mondrian.util.DelegatingInvocationHandler;
 
 import java.io.PrintWriter;
@@ -638,6 +640,151 @@ public class SegmentLoaderTest extends BatchTestCase {
         }
     }
 
+    public void testRowListAddAll() {
+        final List<SqlStatement.Type> types =
+            Arrays.asList(
+                SqlStatement.Type.STRING,
+                SqlStatement.Type.INT,
+                SqlStatement.Type.DOUBLE);
+        final SegmentLoader.RowList rows = new SegmentLoader.RowList(types, 2);
+        rows.createRow();
+        rows.setObject(0, "a");
+        rows.setInt(1, 1);
+        rows.setDouble(2, 1.5d);
+        final SegmentLoader.RowList other =
+            new SegmentLoader.RowList(types, 2);
+        for (int i = 0; i < 3; i++) {
+            other.createRow();
+            other.setObject(0, "b" + i);
+            other.setInt(1, i);
+            other.setDouble(2, 0d);
+            if (i == 1) {
+                other.setNull(1, true);
+                other.setNull(2, true);
+            }
+        }
+        rows.addAll(other);
+        assertEquals(4, rows.size());
+        rows.first();
+        assertTrue(rows.next());
+        assertEquals("a", rows.getObject(0));
+        assertEquals(1.5d, rows.getDouble(2));
+        assertTrue(rows.next());
+        assertEquals("b0", rows.getObject(0));
+        assertEquals(0, rows.getInt(1));
+        assertFalse(rows.isNull(1));
+        assertFalse(rows.isNull(2));
+        assertTrue(rows.next());
+        assertEquals("b1", rows.getObject(0));
+        assertTrue(rows.isNull(1));
+        assertTrue(rows.isNull(2));
+        assertTrue(rows.next());
+        assertEquals(2, rows.getInt(1));
+        assertFalse(rows.next());
+
+        final SegmentLoader.RowList wrongTypes =
+            new SegmentLoader.RowList(
+                Collections.nCopies(3, SqlStatement.Type.OBJECT));
+        try {
+            rows.addAll(wrongTypes);
+            fail("expected error");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("Cannot merge rows"));
+        }
+    }
+
+    /**
+     * Tests that a large segment load is split on the column with the most
+     * values, and only when partitioning is enabled.
+     */
+    public void testPartition() {
+        final GroupingSet groupingSet =
+            getGroupingSet(
+                new String[] {tableProductClass, tableTime},
+                new String[] {fieldProductDepartment, fieldYear},
+                new String[][] {
+                    {"Baked Goods", "Dairy", "Produce", "Seafood"},
+                    fieldValuesYear},
+                cubeNameSales,
+                measureUnitSales);
+        final GroupingSetsList groupingSetsList =
+            new GroupingSetsList(Collections.singletonList(groupingSet));
+        final SegmentLoader loader = new SegmentLoader(cacheMgr);
+
+        propSaver.set(
+            MondrianProperties.instance().SegmentLoadPartitionRows, 0);
+        assertNull(loader.partition(groupingSetsList));
+
+        propSaver.set(
+            MondrianProperties.instance().SegmentLoadPartitionRows, 1000);
+        assertNull(loader.partition(groupingSetsList));
+
+        propSaver.set(
+            MondrianProperties.instance().SegmentLoadPartitionRows, 2);
+        propSaver.set(MondrianProperties.instance().SegmentLoadPartitions, 2);
+        final List<GroupingSetsList> partitions =
+            loader.partition(groupingSetsList);
+        assertNotNull(partitions);
+        assertEquals(2, partitions.size());
+        final StarColumnPredicate[] predicates = groupingSet.getPredicates();
+        int valueCount = 0;
+        for (GroupingSetsList partition : partitions) {
+            final StarColumnPredicate[] partitionPredicates =
+                partition.getDefaultPredicates();
+            assertEquals(predicates.length, partitionPredicates.length);
+            for (int i = 0; i < predicates.length; i++) {
+                if (predicates[i] instanceof ListColumnPredicate
+                    && ((ListColumnPredicate) predicates[i])
+                        .getPredicates().size() == 4)
+                {
+                    valueCount +=
+                        ((ListColumnPredicate) partitionPredicates[i])
+                            .getPredicates().size();
+                } else {
+                    assertSame(predicates[i], partitionPredicates[i]);
+                }
+            }
+            assertEquals(
+                groupingSet.getSegments().size(),
+                partition.getDefaultSegments().size());
+        }
+        assertEquals(4, valueCount);
+    }
+
+    /**
+     * Tests that a segment loaded in parallel partitions gives the same
+     * result as one loaded by a single statement.
+     */
+    public void testPartitionedLoad() {
+        final String query =
+            "select {[Measures].[Unit Sales], [Measures].[Store Sales]}"
+            + " on columns,\n"
+            + " {[Customers].[USA].[CA].Children,"
+            + " [Customers].[USA].[WA].Children} on rows\n"
+            + "from [Sales]";
+        final Cube salesCube =
+            getConnection().getSchema().lookupCube("Sales", true);
+        final CacheControl cacheControl =
+            getConnection().getCacheControl(null);
+
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        final String expected =
+            TestContext.toString(executeQuery(query));
+
+        propSaver.set(
+            MondrianProperties.instance().SegmentLoadPartitionRows, 1);
+        propSaver.set(MondrianProperties.instance().SegmentLoadPartitions, 3);
+        final long partitionCount =
+            MondrianMetrics.SEGMENT_LOAD_PARTITIONS.get().get();
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        final String actual =
+            TestContext.toString(executeQuery(query));
+        assertEquals(expected, actual);
+        assertTrue(
+            MondrianMetrics.SEGMENT_LOAD_PARTITIONS.get().get()
+            > partitionCount);
+    }
+
     public void testGetGroupingBitKey() throws SQLException {
         Object[] data = {
             "1997", "Food", "Deli", "M", "6047", 0, 0, 0, 0
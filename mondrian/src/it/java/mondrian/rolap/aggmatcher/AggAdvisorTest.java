@@ -0,0 +1,231 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.aggmatcher;
+
+import mondrian.olap.*;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.agg.SegmentRequestLog;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import org.eigenbase.xom.DOMWrapper;
+import org.eigenbase.xom.XOMUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link AggAdvisor} and {@link SegmentRequestLog}.
+ */
+public class AggAdvisorTest extends FoodMartTestCase {
+    private static final String[] QUERIES = {
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " [Gender].[Gender].Members on rows\n"
+        + "from [Sales]\n"
+        + "where [Time].[1997]",
+        "select {[Measures].[Store Sales]} on columns,\n"
+        + " [Time].[1997].Children * [Marital Status].[Marital Status].Members"
+        + " on rows\n"
+        + "from [Sales]",
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " [Gender].[Gender].Members * [Marital Status].[Marital Status]"
+        + ".Members on rows\n"
+        + "from [Sales]",
+    };
+
+    private TestContext testContext;
+    private RolapCube salesCube;
+
+    public AggAdvisorTest() {
+    }
+
+    public AggAdvisorTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        final MondrianProperties props = MondrianProperties.instance();
+        propSaver.set(props.UseAggregates, false);
+        propSaver.set(props.ReadAggregates, false);
+        testContext = getTestContext().withFreshConnection();
+        final Connection connection = testContext.getConnection();
+        salesCube =
+            (RolapCube) connection.getSchema().lookupCube("Sales", true);
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        salesCube.getStar().getSegmentRequestLog().clear();
+    }
+
+    protected void tearDown() throws Exception {
+        testContext = null;
+        salesCube = null;
+        super.tearDown();
+    }
+
+    /**
+     * Tests that a log keeps the most recent observations, oldest first.
+     */
+    public void testLogIsRing() {
+        final SegmentRequestLog log = new SegmentRequestLog(3);
+        final BitKey bitKey = BitKey.Factory.makeBitKey(4);
+        for (int i = 0; i < 5; i++) {
+            log.record(bitKey, bitKey, i, i);
+        }
+        final List<SegmentRequestLog.Observation> observations =
+            log.getObservations(0);
+        assertEquals(3, observations.size());
+        assertEquals(2, observations.get(0).rowCount);
+        assertEquals(4, observations.get(2).rowCount);
+        assertEquals(
+            0,
+            log.getObservations(System.currentTimeMillis() + 1000).size());
+
+        final SegmentRequestLog disabled = new SegmentRequestLog(0);
+        disabled.record(bitKey, bitKey, 1, 1);
+        assertEquals(0, disabled.getObservations(0).size());
+    }
+
+    /**
+     * Tests that loading segments records them in the star's log.
+     */
+    public void testSegmentLoadsAreRecorded() {
+        testContext.executeQuery(QUERIES[0]);
+        final List<SegmentRequestLog.Observation> observations =
+            salesCube.getStar().getSegmentRequestLog().getObservations(0);
+        assertFalse(observations.isEmpty());
+        for (SegmentRequestLog.Observation observation : observations) {
+            assertFalse(observation.measureBitKey.isEmpty());
+            assertTrue(observation.rowCount > 0);
+            assertTrue(observation.sqlNanos > 0);
+        }
+    }
+
+    /**
+     * Tests that there are no recommendations if there is no workload.
+     */
+    public void testNoWorkload() {
+        assertEquals(0, new AggAdvisor(salesCube).recommend(5).size());
+        testContext.executeQuery(QUERIES[0]);
+        // Window is in the past.
+        assertEquals(0, new AggAdvisor(salesCube, -60000).recommend(5).size());
+    }
+
+    /**
+     * Tests that recommended tables cover the workload, and that their SQL
+     * and schema elements are consistent.
+     */
+    public void testRecommend() throws Exception {
+        for (String query : QUERIES) {
+            testContext.executeQuery(query);
+        }
+        final List<SegmentRequestLog.Observation> observations =
+            salesCube.getStar().getSegmentRequestLog().getObservations(0);
+
+        final List<AggAdvisor.Recommendation> recommendations =
+            new AggAdvisor(salesCube).recommend(10);
+        assertFalse(recommendations.isEmpty());
+
+        // Every observed set of columns is in some recommended table.
+        for (SegmentRequestLog.Observation observation : observations) {
+            boolean covered = false;
+            for (AggAdvisor.Recommendation recommendation : recommendations) {
+                covered |= recommendation.getColumnsBitKey().isSuperSetOf(
+                    observation.columnsBitKey);
+            }
+            assertTrue(observation.toString(), covered);
+        }
+
+        final List<String> levelNames = new ArrayList<String>();
+        for (int i = 0; i < recommendations.size(); i++) {
+            final AggAdvisor.Recommendation recommendation =
+                recommendations.get(i);
+            final String tableName = "agg_c_adv" + (i + 1) + "_sales_fact_1997";
+            assertEquals(tableName, recommendation.getTableName());
+            assertTrue(recommendation.getEstimatedRowCount() < 86837);
+            assertTrue(recommendation.getBenefitNanos() > 0);
+            assertTrue(recommendation.getQueryCount() > 0);
+            assertTrue(
+                recommendation.getCreateSql().startsWith(
+                    "CREATE TABLE " + tableName + " ("));
+            assertTrue(
+                recommendation.getInsertSql().startsWith(
+                    "INSERT INTO " + tableName + " ("));
+
+            // The schema element parses, and declares the table's columns.
+            final DOMWrapper def =
+                XOMUtil.createDefaultParser().parse(
+                    recommendation.getAggName().toXML());
+            final MondrianDef.AggName aggName = new MondrianDef.AggName(def);
+            assertEquals(tableName, aggName.getNameAttribute());
+            assertEquals("fact_count", aggName.factcount.getColumnName());
+            assertContainsColumn(recommendation, "fact_count");
+            boolean hasUnitSales = false;
+            for (MondrianDef.AggMeasure aggMeasure : aggName.measures) {
+                assertContainsColumn(recommendation, aggMeasure.column);
+                if (aggMeasure.name.equals("[Measures].[Unit Sales]")) {
+                    assertEquals("unit_sales", aggMeasure.column);
+                    hasUnitSales = true;
+                }
+            }
+            assertTrue(hasUnitSales);
+            assertEquals(
+                recommendation.getColumns().size(), aggName.levels.length);
+            for (MondrianDef.AggLevel aggLevel : aggName.levels) {
+                assertContainsColumn(recommendation, aggLevel.column);
+                levelNames.add(aggLevel.name);
+            }
+        }
+        assertTrue(
+            levelNames.toString(), levelNames.contains("[Gender].[Gender]"));
+        assertTrue(
+            levelNames.toString(),
+            levelNames.contains("[Marital Status].[Marital Status]"));
+        assertTrue(levelNames.toString(), levelNames.contains("[Time].[Year]"));
+        assertTrue(
+            levelNames.toString(), levelNames.contains("[Time].[Quarter]"));
+        // Collapsing gender does not drag in the customer hierarchy, whose
+        // columns are in the same table.
+        assertFalse(
+            levelNames.toString(), levelNames.contains("[Customers].[City]"));
+    }
+
+    /**
+     * Tests that the advisor rejects a virtual cube.
+     */
+    public void testVirtualCube() {
+        final Cube cube =
+            testContext.getConnection().getSchema().lookupCube(
+                "Warehouse and Sales", true);
+        try {
+            new AggAdvisor((RolapCube) cube);
+            fail("expected error");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("virtual"));
+        }
+    }
+
+    private static void assertContainsColumn(
+        AggAdvisor.Recommendation recommendation,
+        String column)
+    {
+        assertTrue(
+            column,
+            recommendation.getCreateSql().contains(column + " ")
+            && recommendation.getInsertSql().contains(column));
+    }
+}
+
+// End AggAdvisorTest.java
@@ -21,10 +21,13 @@ import mondrian.rolap.RolapConnectionProperties;
 import mondrian.test.FoodMartTestCase;
 
 import javax.sql.DataSource;
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
   * Test if AggSchemaScan and AggCatalogScan properties are used in JdbcSchema loadTablesOfType
@@ -145,4 +148,121 @@ public class AggSchemaScanTest extends FoodMartTestCase {
       }
     }
   }
+
+  /**
+   * Tests that loading the columns of several tables at once gives the same
+   * columns as loading them table by table, and that tables and columns
+   * survive a round trip through the snapshot file.
+   */
+  public void testBatchedColumnsAndSnapshot() throws Exception {
+    final RolapConnection rolapConn = (RolapConnection) getConnection();
+    final DataSource dataSource = rolapConn.getDataSource();
+    final File dir = File.createTempFile( "jdbcschema", "" );
+    assertTrue( dir.delete() );
+    propSaver.set( propSaver.properties.AggregateMetadataSnapshotDir, dir.getPath() );
+    try {
+      final JdbcSchema tableByTable = new JdbcSchema( dataSource );
+      tableByTable.loadTables( new Util.PropertyList() );
+      final JdbcSchema batched = new JdbcSchema( dataSource );
+      batched.loadTables( new Util.PropertyList() );
+
+      final List<JdbcSchema.Table> tables = new ArrayList<>();
+      for ( JdbcSchema.Table table : batched.getTables() ) {
+        if ( table.getName().equalsIgnoreCase( "sales_fact_1997" )
+          || table.getName().equalsIgnoreCase( "agg_c_10_sales_fact_1997" ) ) {
+          tables.add( table );
+        }
+      }
+      Assert.assertEquals( 2, tables.size() );
+      batched.loadColumns( tables );
+      for ( JdbcSchema.Table table : tables ) {
+        final JdbcSchema.Table expected = tableByTable.getTable( table.getName() );
+        expected.load();
+        Assert.assertEquals(
+          expected.getColumnMap().keySet(), table.getColumnMap().keySet() );
+        Assert.assertEquals(
+          expected.getTotalColumnSize(), table.getTotalColumnSize() );
+      }
+      batched.saveSnapshot();
+
+      // A new schema reads tables and loaded columns from the snapshot.
+      final JdbcSchema restored = new JdbcSchema( dataSource );
+      restored.loadTables( new Util.PropertyList() );
+      Assert.assertEquals(
+        batched.getTablesMap().keySet(), restored.getTablesMap().keySet() );
+      for ( JdbcSchema.Table table : tables ) {
+        final JdbcSchema.Table restoredTable = restored.getTable( table.getName() );
+        Assert.assertEquals(
+          table.getColumnMap().keySet(), restoredTable.getColumnMap().keySet() );
+        final JdbcSchema.Table.Column column =
+          table.getColumns().iterator().next();
+        final JdbcSchema.Table.Column restoredColumn =
+          restoredTable.getColumn( column.getName() );
+        Assert.assertEquals( column.getType(), restoredColumn.getType() );
+        Assert.assertEquals( column.getTypeName(), restoredColumn.getTypeName() );
+        Assert.assertEquals( column.isNullable(), restoredColumn.isNullable() );
+      }
+    } finally {
+      final File[] files = dir.listFiles();
+      if ( files != null ) {
+        for ( File file : files ) {
+          file.delete();
+        }
+      }
+      dir.delete();
+    }
+  }
+
+  /**
+   * Tests that an expired snapshot is ignored, and that clearing the schema
+   * (as flushing it does) deletes its snapshot.
+   */
+  public void testSnapshotInvalidation() throws Exception {
+    final RolapConnection rolapConn = (RolapConnection) getConnection();
+    final DataSource dataSource = rolapConn.getDataSource();
+    final File dir = File.createTempFile( "jdbcschema", "" );
+    assertTrue( dir.delete() );
+    propSaver.set( propSaver.properties.AggregateMetadataSnapshotDir, dir.getPath() );
+    propSaver.set( propSaver.properties.AggregateMetadataSnapshotMaxAge, 60 );
+    try {
+      final JdbcSchema scanned = new JdbcSchema( dataSource );
+      scanned.loadTables( new Util.PropertyList() );
+      scanned.saveSnapshot();
+      final File[] files = dir.listFiles();
+      Assert.assertNotNull( files );
+      Assert.assertEquals( 1, files.length );
+      final File file = files[0];
+
+      // A fresh snapshot is read, so there is nothing new to save.
+      final long written = System.currentTimeMillis() - 10000L;
+      assertTrue( file.setLastModified( written ) );
+      final JdbcSchema fresh = new JdbcSchema( dataSource );
+      fresh.loadTables( new Util.PropertyList() );
+      fresh.saveSnapshot();
+      Assert.assertEquals( written / 1000L, file.lastModified() / 1000L );
+
+      // An expired snapshot is ignored; the catalog is scanned and the
+      // snapshot rewritten.
+      final long expired = System.currentTimeMillis() - 120000L;
+      assertTrue( file.setLastModified( expired ) );
+      final JdbcSchema rescanned = new JdbcSchema( dataSource );
+      rescanned.loadTables( new Util.PropertyList() );
+      Assert.assertEquals(
+        scanned.getTablesMap().keySet(), rescanned.getTablesMap().keySet() );
+      rescanned.saveSnapshot();
+      assertTrue( file.lastModified() > expired + 60000L );
+
+      // Clearing the schema deletes the snapshot.
+      rescanned.clear();
+      assertFalse( file.exists() );
+    } finally {
+      final File[] files = dir.listFiles();
+      if ( files != null ) {
+        for ( File file : files ) {
+          file.delete();
+        }
+      }
+      dir.delete();
+    }
+  }
 }
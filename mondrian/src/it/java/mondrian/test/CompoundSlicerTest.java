@@ -1445,6 +1445,69 @@ public class CompoundSlicerTest extends FoodMartTestCase {
                 + ",[*SORTED_ROW_AXIS] ON ROWS\n"
                 + "FROM [Sales]", "", getTestContext() );
     }
+
+    /**
+     * Tests that Aggregate and Sum over a large set of members, with a
+     * distributive stored measure, give the same results whether they are
+     * evaluated one cell per tuple or pushed down into a single cell request
+     * (see {@link mondrian.olap.MondrianProperties#AggregatePushdownThreshold}).
+     */
+    public void testAggregatePushdown() {
+        final TestContext testContext =
+            TestContext.instance().createSubstitutingCube(
+                "Sales",
+                null,
+                "<Measure name='Count Unit Sales' aggregator='count' column='unit_sales'/>\n"
+                + "<Measure name='Min Unit Sales' aggregator='min' column='unit_sales'/>\n"
+                + "<Measure name='Max Unit Sales' aggregator='max' column='unit_sales'/>\n",
+                null,
+                null);
+        final String[] queries = {
+            // compound slicer over members
+            "select {[Measures].[Unit Sales], [Measures].[Count Unit Sales],\n"
+            + "  [Measures].[Min Unit Sales], [Measures].[Max Unit Sales]} on 0,\n"
+            + "  [Gender].Members on 1\n"
+            + "from [Sales]\n"
+            + "where [Customers].[USA].[OR].Children",
+            // compound slicer over tuples
+            "select [Measures].[Store Sales] on 0,\n"
+            + "  [Marital Status].Members on 1\n"
+            + "from [Sales]\n"
+            + "where [Store].[USA].[CA].Children * [Time].[1997].Children",
+            // calculated member aggregating over a set, and explicit measure
+            "with member [Product].[Agg] as\n"
+            + "  'Aggregate([Product].[Brand Name].Members)'\n"
+            + " member [Measures].[Agg Sales] as\n"
+            + "  'Aggregate([Store].[Store City].Members, [Measures].[Store Sales])'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[Agg Sales]} on 0,\n"
+            + "  {[Product].[Agg], [Product].[Drink]} on 1\n"
+            + "from [Sales]",
+            // Sum over a set
+            "with member [Measures].[Sum Unit Sales] as\n"
+            + "  'Sum([Customers].[City].Members)'\n"
+            + " member [Measures].[Sum Count] as\n"
+            + "  'Sum([Customers].[City].Members, [Measures].[Count Unit Sales])'\n"
+            + "select {[Measures].[Sum Unit Sales], [Measures].[Sum Count]} on 0,\n"
+            + "  [Time].[1997].Children on 1\n"
+            + "from [Sales]",
+            // set containing overlapping members; must not be pushed down
+            "with member [Measures].[Sum Unit Sales] as\n"
+            + "  'Sum({[Store].[USA], [Store].[USA].[CA], [Store].[USA].[WA]})'\n"
+            + "select [Measures].[Sum Unit Sales] on 0\n"
+            + "from [Sales]"
+        };
+        for (String query : queries) {
+            propSaver.set(propSaver.properties.AggregatePushdownThreshold, 0);
+            final String expected =
+                TestContext.toString(testContext.executeQuery(query));
+            testContext.flushSchemaCache();
+            propSaver.set(propSaver.properties.AggregatePushdownThreshold, 2);
+            final String actual =
+                TestContext.toString(testContext.executeQuery(query));
+            TestContext.assertEqualsVerbose(expected, actual);
+            testContext.flushSchemaCache();
+        }
+    }
 }
 
 // End CompoundSlicerTest.java
@@ -27,6 +27,7 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import mondrian.calc.impl.ConstantCalcTest;
+import mondrian.calc.impl.MethodHandleExpCompilerTest;
 import mondrian.olap.CellPropertyTest;
 import mondrian.olap.CustomizedParserTest;
 import mondrian.olap.HierarchyBugTest;
@@ -36,6 +37,7 @@ import mondrian.olap.NullMemberRepresentationTest;
 import mondrian.olap.ParserTest;
 import mondrian.olap.QueryTest;
 import mondrian.olap.UtilTestCase;
+import mondrian.olap.fun.BatchEvaluationTest;
 import mondrian.olap.fun.CachedExistsTest;
 import mondrian.olap.fun.CrossJoinTest;
 import mondrian.olap.fun.FunctionTest;
@@ -81,6 +83,7 @@ import mondrian.rolap.RolapCubeHierarchyTest;
 import mondrian.rolap.RolapCubeTest;
 import mondrian.rolap.RolapEvaluatorTest;
 import mondrian.rolap.RolapMemberBaseTest;
+import mondrian.rolap.RolapNativeCostModelTest;
 import mondrian.rolap.RolapNativeSqlInjectionTest;
 import mondrian.rolap.RolapNativeTopCountTest;
 import mondrian.rolap.RolapNativeTopCountVersusNonNativeTest;
@@ -99,15 +102,22 @@ import mondrian.rolap.TestAggregationManager;
 import mondrian.rolap.TopCountNativeEvaluatorTest;
 import mondrian.rolap.TopCountWithTwoParamsVersusHeadTest;
 import mondrian.rolap.VirtualCubeTest;
+import mondrian.rolap.agg.AdaptiveBatchSizerTest;
 import mondrian.rolap.agg.AggregationOnDistinctCountMeasuresTest;
 import mondrian.rolap.agg.AggregationOnInvalidRoleTest;
 import mondrian.rolap.agg.AggregationOnInvalidRoleWhenNotIgnoringTest;
 import mondrian.rolap.agg.DenseDoubleSegmentBodyTest;
 import mondrian.rolap.agg.DenseIntSegmentBodyTest;
+import mondrian.rolap.agg.ExistenceIndexTest;
 import mondrian.rolap.agg.GroupingSetsListTest;
+import mondrian.rolap.agg.MemoryAggregateTest;
+import mondrian.rolap.agg.SegmentAxisIndexTest;
 import mondrian.rolap.agg.SegmentBuilderTest;
 import mondrian.rolap.agg.SegmentCacheTest;
+import mondrian.rolap.agg.SegmentCacheWarmerTest;
+import mondrian.rolap.agg.SegmentDirectoryTest;
 import mondrian.rolap.agg.SegmentLoaderTest;
+import mondrian.rolap.aggmatcher.AggAdvisorTest;
 import mondrian.rolap.aggmatcher.AggGenTest;
 import mondrian.rolap.aggmatcher.AggSchemaScanTest;
 import mondrian.rolap.aggmatcher.AggregationOverAggTableTest;
@@ -161,6 +171,7 @@ import mondrian.test.clearview.TopBottomTest;
 import mondrian.test.comp.ResultComparatorTest;
 import mondrian.tui.NamespaceContextImplTest;
 import mondrian.tui.XmlUtilTest;
+import mondrian.tui.WorkloadReplayerTest;
 import mondrian.udf.CurrentDateMemberUdfTest;
 import mondrian.udf.NullValueTest;
 import mondrian.util.Base64Test;
@@ -173,6 +184,7 @@ import mondrian.util.ExpiringReferenceTest;
 import mondrian.util.FilteredIterableTest;
 import mondrian.util.FormatTest;
 import mondrian.util.MemoryMonitorTest;
+import mondrian.util.MpscRingBufferTest;
 import mondrian.util.ObjectPoolTest;
 import mondrian.util.PartiallyOrderedSetTest;
 import mondrian.util.PrimeFinderTest;
@@ -289,7 +301,13 @@ public class Main extends TestSuite {
       addTest( suite, IifFunDefTest.class );
       addTest( suite, GroupingSetsListTest.class );
       addTest( suite, PropertiesFunctionTest.class );
+      addTest( suite, SegmentAxisIndexTest.class );
+      addTest( suite, MemoryAggregateTest.class );
+      addTest( suite, SegmentCacheWarmerTest.class );
+      addTest( suite, ExistenceIndexTest.class );
+      addTest( suite, AdaptiveBatchSizerTest.class );
       addTest( suite, SegmentBuilderTest.class );
+      addTest( suite, SegmentDirectoryTest.class );
       addTest( suite, DenseDoubleSegmentBodyTest.class );
       addTest( suite, DenseIntSegmentBodyTest.class );
       addTest( suite, NativeFilterMatchingTest.class );
@@ -337,6 +355,7 @@ public class Main extends TestSuite {
       addTest( suite, ExpiringReferenceTest.class );
       addTest( suite, Olap4jTest.class );
       addTest( suite, SortTest.class );
+      addTest( suite, BatchEvaluationTest.class );
       addTest( suite, SorterTest.class );
       if ( isRunOnce() ) {
         addTest( suite, TestAggregationManager.class );
@@ -399,6 +418,7 @@ public class Main extends TestSuite {
         addTest( suite, RolapResultTest.class );
       }
       addTest( suite, ConstantCalcTest.class );
+      addTest( suite, MethodHandleExpCompilerTest.class );
       addTest( suite, SharedDimensionTest.class );
       addTest( suite, CellPropertyTest.class );
       addTest( suite, QueryTest.class );
@@ -406,6 +426,7 @@ public class Main extends TestSuite {
       addTest( suite, RolapCubeTest.class );
       addTest( suite, NumberSqlCompilerTest.class );
       addTest( suite, RolapEvaluatorTest.class );
+      addTest( suite, RolapNativeCostModelTest.class );
       addTest( suite, RolapNativeSqlInjectionTest.class );
       addTest( suite, RolapNativeTopCountTest.class );
       addTest( suite, RolapNativeTopCountVersusNonNativeTest.class );
@@ -438,6 +459,7 @@ public class Main extends TestSuite {
       addTest( suite, DeadlockTest.class );
 
       addTest( suite, BlockingHashMapTest.class );
+      addTest( suite, MpscRingBufferTest.class );
       addTest( suite, FileRepositoryTest.class );
       addTest( suite, XmlaExtraTest.class );
       addTest( suite, CrossJoinArgFactoryTest.class );
@@ -475,8 +497,10 @@ public class Main extends TestSuite {
       addTest( suite, SqlQueryTest.class );
       addTest( suite, CodeSetTest.class );
       addTest( suite, ExplicitRecognizerTest.class );
+      addTest( suite, AggAdvisorTest.class );
       addTest( suite, AggregationOverAggTableTest.class );
       addTest( suite, XmlUtilTest.class );
+      addTest( suite, WorkloadReplayerTest.class );
       addTest( suite, NativeEvalVirtualCubeTest.class );
       addTest( suite, NamespaceContextImplTest.class );
       addTest( suite, CancellationTest.class );
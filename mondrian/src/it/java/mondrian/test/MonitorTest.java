@@ -15,6 +15,9 @@ package mondrian.test;
 
 import mondrian.olap.MondrianServer;
 import mondrian.server.monitor.*;
+import mondrian.tui.MockHttpServletRequest;
+import mondrian.tui.MockHttpServletResponse;
+import mondrian.web.servlet.MetricsServlet;
 
 import org.olap4j.CellSet;
 import org.olap4j.OlapStatement;
@@ -23,7 +26,10 @@ import org.olap4j.layout.RectangularCellSetFormatter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Unit test for monitoring, including {@link mondrian.server.monitor.Monitor}.
@@ -157,6 +163,208 @@ public class MonitorTest extends FoodMartTestCase {
         // sort
         // (other expensive operations similar to sort?)
     }
+
+    /**
+     * Tests that many threads can send events at once without waiting for
+     * the monitor thread, and that the server totals count every event even
+     * if some were dropped from the event buffer.
+     */
+    public void testConcurrentSendEvent() throws Exception {
+        final MondrianServer mondrianServer =
+            MondrianServer.forConnection(getConnection());
+        final Monitor monitor = mondrianServer.getMonitor();
+        final int serverId = mondrianServer.getId();
+        final int threadCount = 8;
+        final int perThread = 20000;
+        final ServerInfo before = monitor.getServer();
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threadCount; t++) {
+                final int base = -1 - t * perThread;
+                futures.add(
+                    executor.submit(
+                        new Runnable() {
+                            public void run() {
+                                for (int i = 0; i < perThread; i++) {
+                                    final long now =
+                                        System.currentTimeMillis();
+                                    monitor.sendEvent(
+                                        new ConnectionStartEvent(
+                                            now, serverId, base - i));
+                                    monitor.sendEvent(
+                                        new ConnectionEndEvent(
+                                            now, serverId, base - i));
+                                }
+                            }
+                        }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final ServerInfo after = monitor.getServer();
+        println("dropped: " + after.monitorEventDropCount);
+        assertEquals(
+            threadCount * perThread,
+            after.connectionStartCount - before.connectionStartCount);
+        assertEquals(
+            threadCount * perThread,
+            after.connectionEndCount - before.connectionEndCount);
+        assertTrue(
+            after.monitorEventDropCount >= before.monitorEventDropCount);
+
+        // The monitor thread is still alive and answering commands.
+        assertNotNull(monitor.getConnections());
+    }
+
+    /**
+     * Tests the histogram's bucketing and percentiles, and the text format,
+     * on a private registry.
+     */
+    public void testMetricsRegistry() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final MetricsRegistry.Histogram h =
+            registry.histogram("test_seconds", "Test.", "kind").get("a");
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000000L); // 1ms .. 100ms
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(5050000000L, h.getSumNanos());
+        // Percentiles are accurate to within 12.5%.
+        assertEquals(50e6, h.getQuantileNanos(0.5), 50e6 * 0.125);
+        assertEquals(99e6, h.getQuantileNanos(0.99), 99e6 * 0.125);
+
+        registry.counter("test_events", "Events.", null).get().add(3);
+        registry.gauge("test_level", "Level.", () -> 2.5);
+        final StringWriter w = new StringWriter();
+        registry.write(w, false);
+        final String text = w.toString();
+        assertTrue(text, text.contains("# TYPE test_events_total counter\n"));
+        assertTrue(text, text.contains("test_events_total 3\n"));
+        assertTrue(text, text.contains("test_level 2.5\n"));
+        assertTrue(text, text.contains("# TYPE test_seconds histogram\n"));
+        assertTrue(
+            text, text.contains("test_seconds_bucket{kind=\"a\",le=\"+Inf\"} 100\n"));
+        assertTrue(text, text.contains("test_seconds_count{kind=\"a\"} 100\n"));
+        assertTrue(text, text.contains("test_seconds_sum{kind=\"a\"} 5.05\n"));
+        assertCumulative(text, "test_seconds_bucket{");
+
+        final Map<String, Double> metrics = registry.getMetrics();
+        assertEquals(3d, metrics.get("test_events_total"));
+        assertEquals(100d, metrics.get("test_seconds_count{kind=\"a\"}"));
+
+        try {
+            registry.counter("test_seconds", "Wrong type.", "kind");
+            fail("expected error");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Scrapes {@link MetricsServlet} after running a query, using the mock
+     * servlet request and response as a stand-in for a servlet container.
+     */
+    public void testMetricsServlet() throws Exception {
+        executeQuery(
+            "select [Gender].Children on 0,\n"
+            + " NON EMPTY [Product].[Product Family].Members on 1\n"
+            + "from [Sales]");
+
+        final MetricsServlet servlet = new MetricsServlet();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.service(request, response);
+        assertEquals(200, response.getStatusCode());
+        assertEquals(
+            MetricsRegistry.PROMETHEUS_CONTENT_TYPE, response.getContentType());
+        String text = new String(response.toByteArray(), "UTF-8");
+        println(text);
+        assertTrue(
+            text, text.contains("# TYPE mondrian_mdx_execute_seconds histogram"));
+        assertTrue(
+            text, text.contains("mondrian_mdx_execute_seconds_count{state=\"DONE\"} "));
+        assertTrue(text, text.contains("mondrian_cell_cache_requests_total{"));
+        assertTrue(text, text.contains("mondrian_native_evaluations_total{"));
+        assertTrue(text, text.contains("mondrian_sql_statements_executing "));
+        assertCumulative(text, "mondrian_mdx_execute_seconds_bucket{state=\"DONE\"");
+        assertFalse(text, text.contains("# EOF"));
+
+        // OpenMetrics, chosen by Accept header.
+        request = new MockHttpServletRequest();
+        request.setMethod("GET");
+        request.setHeader(
+            "Accept", "application/openmetrics-text; version=1.0.0");
+        response = new MockHttpServletResponse();
+        servlet.service(request, response);
+        assertEquals(
+            MetricsRegistry.OPENMETRICS_CONTENT_TYPE, response.getContentType());
+        text = new String(response.toByteArray(), "UTF-8");
+        assertTrue(text, text.endsWith("# EOF\n"));
+        assertTrue(
+            text, text.contains("# TYPE mondrian_cell_cache_requests counter"));
+
+        // The same registry is visible over JMX.
+        final Map<String, Double> metrics =
+            MetricsRegistry.instance().getMetrics();
+        assertTrue(
+            metrics.get("mondrian_mdx_execute_seconds_count{state=\"DONE\"}")
+            >= 1d);
+    }
+
+    /**
+     * Tests that the time a segment load waits for a SQL thread is recorded
+     * under the purpose of the statement that it executes.
+     */
+    public void testSqlQueueWait() {
+        final mondrian.olap.CacheControl cacheControl =
+            getConnection().getCacheControl(null);
+        cacheControl.flush(
+            cacheControl.createMeasuresRegion(
+                getConnection().getSchema().lookupCube("Sales", true)));
+        final long segmentCount =
+            MondrianMetrics.SQL_QUEUE_WAIT.get(
+                SqlStatementEvent.Purpose.CELL_SEGMENT.name()).getCount();
+        final long otherCount =
+            MondrianMetrics.SQL_QUEUE_WAIT.get(
+                SqlStatementEvent.Purpose.OTHER.name()).getCount();
+        executeQuery(
+            "select [Gender].Children on 0,\n"
+            + " [Product].[Product Family].Members on 1\n"
+            + "from [Sales]");
+        assertTrue(
+            MondrianMetrics.SQL_QUEUE_WAIT.get(
+                SqlStatementEvent.Purpose.CELL_SEGMENT.name()).getCount()
+            > segmentCount);
+        assertEquals(
+            otherCount,
+            MondrianMetrics.SQL_QUEUE_WAIT.get(
+                SqlStatementEvent.Purpose.OTHER.name()).getCount());
+    }
+
+    /**
+     * Checks that the histogram buckets of a series are in increasing order
+     * of bound and count.
+     */
+    private void assertCumulative(String text, String prefix) {
+        long previous = -1;
+        int n = 0;
+        for (String line : text.split("\n")) {
+            if (line.startsWith(prefix)) {
+                final long count =
+                    Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                assertTrue(line, count >= previous);
+                previous = count;
+                ++n;
+            }
+        }
+        assertTrue(text, n > 1);
+    }
 }
 
 // End MonitorTest.java
@@ -15,6 +15,7 @@
 package mondrian.test;
 
 import mondrian.olap.*;
+import mondrian.olap4j.AsyncOlapStatement;
 import mondrian.xmla.XmlaHandler;
 
 import org.olap4j.*;
@@ -695,6 +696,46 @@ public class Olap4jTest extends FoodMartTestCase {
                                         .getSegmentList())
                         .isVisible());
     }
+
+    /**
+     * Tests {@link AsyncOlapStatement#executeOlapQueryAsync(String)}:
+     * concurrent asynchronous executions give the same results as a
+     * synchronous one, and a query that cannot be parsed fails on the
+     * calling thread.
+     */
+    public void testExecuteOlapQueryAsync() throws Exception {
+        final String mdx =
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " [Gender].Members on 1\n"
+            + "from [Sales]";
+        final OlapConnection connection =
+            getTestContext().getOlap4jConnection();
+        final String expected =
+            TestContext.toString(
+                connection.createStatement().executeOlapQuery(mdx));
+        final List<CompletableFuture<CellSet>> futures =
+            new ArrayList<CompletableFuture<CellSet>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(
+                connection.createStatement()
+                    .unwrap(AsyncOlapStatement.class)
+                    .executeOlapQueryAsync(mdx));
+        }
+        for (CompletableFuture<CellSet> future : futures) {
+            assertEquals(
+                expected,
+                TestContext.toString(future.get(30, TimeUnit.SECONDS)));
+        }
+
+        try {
+            connection.createStatement()
+                .unwrap(AsyncOlapStatement.class)
+                .executeOlapQueryAsync("select [Bad on 0 from [Sales]");
+            fail("expected exception");
+        } catch (OlapException e) {
+            // ok
+        }
+    }
 }
 
 // End Olap4jTest.java
@@ -26,6 +26,7 @@ import mondrian.olap.type.NumericType;
 import mondrian.olap.type.Type;
 import mondrian.spi.UserDefinedFunction;
 import mondrian.util.Bug;
+import mondrian.util.Format;
 import org.apache.commons.collections.ComparatorUtils;
 
 import org.apache.logging.log4j.Logger;
@@ -35,6 +36,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -489,6 +491,94 @@ public class PerformanceTest extends FoodMartTestCase {
     printDuration( "in-memory calc", start );
   }
 
+  /**
+   * Benchmark for {@link mondrian.calc.impl.MethodHandleExpCompiler}, on
+   * typical ratio and variance formulas. Checks that the results are the same
+   * as with the default compiler; durations are printed if debug is enabled.
+   */
+  public void testMethodHandleCalcs() {
+    final String mdx =
+      "with member [Measures].[Profit Ratio] as\n"
+        + "  ([Measures].[Store Sales] - [Measures].[Store Cost])\n"
+        + "   / [Measures].[Store Sales]\n"
+        + "member [Measures].[Sales Variance] as\n"
+        + "  IIf(([Measures].[Store Sales], [Time].PrevMember) = 0,\n"
+        + "    NULL,\n"
+        + "    ([Measures].[Store Sales]\n"
+        + "       - ([Measures].[Store Sales], [Time].PrevMember))\n"
+        + "     / ([Measures].[Store Sales], [Time].PrevMember) * 100)\n"
+        + "member [Measures].[Margin] as\n"
+        + "  -([Measures].[Store Cost] * 1.5 - [Measures].[Unit Sales] + 2)\n"
+        + "select\n"
+        + "  Crossjoin(\n"
+        + "    [Time].[1997].Children,\n"
+        + "    {[Measures].[Profit Ratio],\n"
+        + "     [Measures].[Sales Variance],\n"
+        + "     [Measures].[Margin]}) on 0,\n"
+        + "  [Product].[Product Name].Members on 1\n"
+        + "from [Sales]";
+    final int n = LOGGER.isDebugEnabled() ? 20 : 1;
+    String expected = null;
+    for ( boolean enabled : new boolean[] { false, true } ) {
+      propSaver.set( propSaver.properties.EnableMethodHandleCalcs, enabled );
+      final Statistician statistician =
+        new Statistician( "testMethodHandleCalcs enabled=" + enabled );
+      String actual = null;
+      for ( int i = 0; i < n; i++ ) {
+        long start = System.currentTimeMillis();
+        actual = TestContext.toString( getTestContext().executeQuery( mdx ) );
+        statistician.record( start );
+      }
+      statistician.printDurations();
+      if ( expected == null ) {
+        expected = actual;
+      } else {
+        assertEquals( expected, actual );
+      }
+    }
+  }
+
+  /**
+   * Benchmark for formatting cell values from many threads at once, as
+   * happens when many queries format large results. Durations are printed if
+   * debug is enabled.
+   */
+  public void testFormatThroughput() throws Exception {
+    final int threadCount = 16;
+    final int valueCount = LOGGER.isDebugEnabled() ? 1000000 : 10000;
+    final String[] formatStrings = { "#,##0.00", "Standard", "Percent" };
+    final Statistician statistician =
+      new Statistician( "testFormatThroughput" );
+    for ( int i = 0; i < ( LOGGER.isDebugEnabled() ? 10 : 1 ); i++ ) {
+      final AtomicInteger length = new AtomicInteger();
+      final List<Thread> threads = new ArrayList<Thread>();
+      for ( int t = 0; t < threadCount; t++ ) {
+        final int seed = t;
+        threads.add(
+          new Thread( () -> {
+            int n = 0;
+            for ( int j = 0; j < valueCount; j++ ) {
+              final Format format =
+                Format.get(
+                  formatStrings[ j % formatStrings.length ], Locale.US );
+              n += format.format( ( j + seed ) * 1.37d ).length();
+            }
+            length.addAndGet( n );
+          } ) );
+      }
+      long start = System.currentTimeMillis();
+      for ( Thread thread : threads ) {
+        thread.start();
+      }
+      for ( Thread thread : threads ) {
+        thread.join();
+      }
+      statistician.record( start );
+      assertTrue( length.get() > 0 );
+    }
+    statistician.printDurations();
+  }
+
   /**
    * Test case for
    * <a href="http://jira.pentaho.com/browse/MONDRIAN-843">
@@ -21,7 +21,9 @@ import mondrian.olap.Level;
 import mondrian.rolap.RolapConnection;
 import mondrian.rolap.RolapConnectionProperties;
 import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapCubeHierarchy;
 import mondrian.rolap.RolapSchema;
+import mondrian.rolap.RolapStar;
 import mondrian.rolap.aggmatcher.AggTableManager;
 import mondrian.spi.Dialect;
 import mondrian.spi.PropertyFormatter;
@@ -4915,6 +4917,219 @@ public class SchemaTest extends FoodMartTestCase {
 );
   }
 
+    /**
+     * Tests that cubes and virtual cubes are created correctly when
+     * {@link MondrianProperties#SchemaLoadThreads} allows them to be created
+     * in parallel, and that the load phases are recorded.
+     */
+    public void testParallelCubeLoad() throws Exception {
+        propSaver.set(propSaver.properties.SchemaLoadThreads, 4);
+        final TestContext testContext =
+            getTestContext().withFreshConnection();
+        final RolapSchema schema =
+            testContext.getOlap4jConnection().unwrap(RolapConnection.class)
+                .getSchema();
+
+        final Map<String, Long> phases = schema.getLoadPhaseNanos();
+        for (String phase
+            : new String[] {"parse", "cubes", "roles", "aggregates"})
+        {
+            assertTrue(phase, phases.containsKey(phase));
+        }
+        for (RolapCube cube : schema.getCubeList()) {
+            assertTrue(
+                cube.getName(),
+                phases.containsKey("cube " + cube.getName()));
+        }
+
+        // Virtual cube needs both of its base cubes.
+        testContext.assertQueryReturns(
+            "select {[Measures].[Unit Sales], [Measures].[Warehouse Sales]}"
+            + " on 0\n"
+            + "from [Warehouse and Sales]",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "{[Measures].[Warehouse Sales]}\n"
+            + "Row #0: 266,773\n"
+            + "Row #0: 196,770.888\n");
+    }
+
+    /**
+     * Cubes on the same fact table share a star. When they are loaded in
+     * parallel, the star's columns must get the same bit positions on every
+     * load, and in particular two columns must never get the same position.
+     */
+    public void testParallelCubeLoadSharedStar() throws Exception {
+        propSaver.set(propSaver.properties.SchemaLoadThreads, 4);
+        final TestContext testContext = getTestContext().withSchema(
+            "<Schema name=\"FoodMart\">\n"
+            + "<Cube name=\"Sales A\">\n"
+            + "  <Table name=\"sales_fact_1997\"/>\n"
+            + "  <Dimension name=\"Store\" foreignKey=\"store_id\">\n"
+            + "    <Hierarchy hasAll=\"true\" primaryKey=\"store_id\">\n"
+            + "      <Table name=\"store\"/>\n"
+            + "      <Level name=\"Store Country\" column=\"store_country\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "      <Level name=\"Store State\" column=\"store_state\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "    </Hierarchy>\n"
+            + "  </Dimension>\n"
+            + "  <Dimension name=\"Promotion Media\""
+            + " foreignKey=\"promotion_id\">\n"
+            + "    <Hierarchy hasAll=\"true\" primaryKey=\"promotion_id\">\n"
+            + "      <Table name=\"promotion\"/>\n"
+            + "      <Level name=\"Media Type\" column=\"media_type\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "    </Hierarchy>\n"
+            + "  </Dimension>\n"
+            + "  <Measure name=\"Unit Sales\" column=\"unit_sales\""
+            + " aggregator=\"sum\" formatString=\"Standard\"/>\n"
+            + "</Cube>\n"
+            + "<Cube name=\"Sales B\">\n"
+            + "  <Table name=\"sales_fact_1997\"/>\n"
+            + "  <Dimension name=\"Gender\" foreignKey=\"customer_id\">\n"
+            + "    <Hierarchy hasAll=\"true\" primaryKey=\"customer_id\">\n"
+            + "      <Table name=\"customer\"/>\n"
+            + "      <Level name=\"Gender\" column=\"gender\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "    </Hierarchy>\n"
+            + "  </Dimension>\n"
+            + "  <Dimension name=\"Store\" foreignKey=\"store_id\">\n"
+            + "    <Hierarchy hasAll=\"true\" primaryKey=\"store_id\">\n"
+            + "      <Table name=\"store\"/>\n"
+            + "      <Level name=\"Store Type\" column=\"store_type\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "      <Level name=\"Store Country\" column=\"store_country\""
+            + " uniqueMembers=\"true\"/>\n"
+            + "    </Hierarchy>\n"
+            + "  </Dimension>\n"
+            + "  <Measure name=\"Store Sales\" column=\"store_sales\""
+            + " aggregator=\"sum\" formatString=\"#,###.00\"/>\n"
+            + "</Cube>\n"
+            + "</Schema>");
+        final String queryA =
+            "select [Store].[Store State].Members on 0,\n"
+            + " [Promotion Media].[Media Type].Members on 1\n"
+            + "from [Sales A]";
+        final String queryB =
+            "select [Store].[Store Type].Members on 0,\n"
+            + " [Gender].[Gender].Members on 1\n"
+            + "from [Sales B]";
+
+        String expectedColumns = null;
+        String expectedResults = null;
+        for (int i = 0; i < 50; i++) {
+            final TestContext freshContext = testContext.withFreshConnection();
+            final RolapSchema schema =
+                (RolapSchema) freshContext.getConnection().getSchema();
+            final RolapStar starA =
+                ((RolapCube) schema.lookupCube("Sales A", true)).getStar();
+            final RolapStar starB =
+                ((RolapCube) schema.lookupCube("Sales B", true)).getStar();
+            assertSame(starA, starB);
+
+            final StringBuilder columns = new StringBuilder();
+            for (int bit = 0; bit < starA.getColumnCount(); bit++) {
+                final RolapStar.Column column = starA.getColumn(bit);
+                assertEquals(bit, column.getBitPosition());
+                columns.append(bit).append(':')
+                    .append(column.getTable().getAlias()).append('.')
+                    .append(column.getName()).append('\n');
+            }
+            final String results =
+                TestContext.toString(freshContext.executeQuery(queryA))
+                + TestContext.toString(freshContext.executeQuery(queryB));
+
+            if (expectedColumns == null) {
+                expectedColumns = columns.toString();
+                expectedResults = results;
+            } else {
+                assertEquals("load " + i, expectedColumns, columns.toString());
+                assertEquals("load " + i, expectedResults, results);
+            }
+            freshContext.getConnection().close();
+        }
+    }
+
+    /**
+     * Cubes on different fact tables are loaded in parallel. Those that use
+     * the same shared dimension must get the same hierarchy object, rather
+     * than each cube creating its own.
+     */
+    public void testParallelCubeLoadSharedDimension() throws Exception {
+        final String[] cubeNames = {"Sales 1997", "Sales 1998", "Inventory"};
+        final String[] factTables =
+            {"sales_fact_1997", "sales_fact_1998", "inventory_fact_1997"};
+        final StringBuilder buf = new StringBuilder();
+        buf.append("<Schema name=\"FoodMart\">\n")
+            .append("<Dimension name=\"Store\">\n")
+            .append("  <Hierarchy hasAll=\"true\" primaryKey=\"store_id\">\n")
+            .append("    <Table name=\"store\"/>\n")
+            .append("    <Level name=\"Store Country\"")
+            .append(" column=\"store_country\" uniqueMembers=\"true\"/>\n")
+            .append("    <Level name=\"Store State\" column=\"store_state\"")
+            .append(" uniqueMembers=\"true\"/>\n")
+            .append("  </Hierarchy>\n")
+            .append("</Dimension>\n");
+        for (int i = 0; i < cubeNames.length; i++) {
+            buf.append("<Cube name=\"").append(cubeNames[i]).append("\">\n")
+                .append("  <Table name=\"").append(factTables[i])
+                .append("\"/>\n")
+                .append("  <DimensionUsage name=\"Store\" source=\"Store\"")
+                .append(" foreignKey=\"store_id\"/>\n")
+                .append("  <Measure name=\"Fact Count\" aggregator=\"count\"")
+                .append(" column=\"store_id\"/>\n")
+                .append("</Cube>\n");
+        }
+        buf.append("</Schema>");
+        final TestContext testContext =
+            getTestContext().withSchema(buf.toString());
+        final String query =
+            "select [Store].[Store Country].Members on 0,\n"
+            + " {[Measures].[Fact Count]} on 1\n"
+            + "from [Inventory]";
+
+        // Load once sequentially for the expected result.
+        propSaver.set(propSaver.properties.SchemaLoadThreads, 1);
+        final TestContext sequentialContext =
+            testContext.withFreshConnection();
+        final String expected =
+            TestContext.toString(sequentialContext.executeQuery(query));
+        sequentialContext.getConnection().close();
+        propSaver.set(propSaver.properties.SchemaLoadThreads, 4);
+
+        for (int i = 0; i < 20; i++) {
+            final TestContext freshContext = testContext.withFreshConnection();
+            final RolapSchema schema =
+                (RolapSchema) freshContext.getConnection().getSchema();
+            final Hierarchy[] sharedHierarchies =
+                schema.getSharedHierarchies();
+            assertEquals("load " + i, 1, sharedHierarchies.length);
+            for (String cubeName : cubeNames) {
+                final Cube cube = schema.lookupCube(cubeName, true);
+                RolapCubeHierarchy hierarchy = null;
+                for (Dimension dimension : cube.getDimensions()) {
+                    if (dimension.getName().equals("Store")) {
+                        hierarchy =
+                            (RolapCubeHierarchy) dimension.getHierarchies()[0];
+                    }
+                }
+                assertNotNull(cubeName, hierarchy);
+                assertSame(
+                    "load " + i + ", cube " + cubeName,
+                    sharedHierarchies[0],
+                    hierarchy.getRolapHierarchy());
+            }
+            assertEquals(
+                "load " + i,
+                expected,
+                TestContext.toString(freshContext.executeQuery(query)));
+            freshContext.getConnection().close();
+        }
+    }
+
     public void testMondrian1275() throws Exception {
         final TestContext tc =
                 getTestContext()
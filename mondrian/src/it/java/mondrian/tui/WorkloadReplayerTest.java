@@ -0,0 +1,173 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.tui;
+
+import mondrian.server.WorkloadLog;
+import mondrian.test.FoodMartTestCase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests {@link WorkloadLog} and {@link WorkloadReplayer}.
+ */
+public class WorkloadReplayerTest extends FoodMartTestCase {
+
+    public void testTemplate() {
+        assertEquals(
+            "select {[Measures].[Unit Sales]} on 0 from [Sales]"
+            + " where [Time].[1997].&[?]",
+            WorkloadLog.template(
+                "select {[Measures].[Unit Sales]} on 0\n  from [Sales]\n"
+                + "where [Time].[1997].&[4]"));
+        assertEquals(
+            "with member [Measures].[X] as ? + [Measures].[Y2]"
+            + " select from [Sales]",
+            WorkloadLog.template(
+                "with member [Measures].[X] as '1.5 + [Measures].[Y2]'\n"
+                + "select from [Sales]"));
+        assertEquals(
+            "select Filter(X, [M] > ?)",
+            WorkloadLog.template("select Filter(X, [M] > 100)"));
+    }
+
+    /**
+     * Captures a few queries against FoodMart, reads the capture file back,
+     * and replays it on two threads.
+     */
+    public void testCaptureAndReplay() throws Exception {
+        final File file = File.createTempFile("workload", ".log");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+        final String q1 =
+            "with member [Measures].[Scaled] as '[Measures].[Unit Sales] * 2'\n"
+            + "select {[Measures].[Scaled]} on 0,\n"
+            + " [Gender].Members on 1\n"
+            + "from [Sales]";
+        final String q3 =
+            "select {[Measures].[Store Sales]} on 0 from [Sales]"
+            + " where [Store].[USA].[CA]";
+
+        final long droppedCount = WorkloadLog.getDroppedCount();
+        propSaver.set(
+            propSaver.properties.WorkloadCaptureFile, file.getPath());
+        executeQuery(q1);
+        executeQuery(q3);
+        executeQuery(q1);
+        executeQuery(q3);
+        propSaver.reset();
+
+        // Capture is off now; this query is not recorded.
+        executeQuery(q1);
+
+        // Queries are written in the background.
+        WorkloadLog.flush();
+        assertEquals(droppedCount, WorkloadLog.getDroppedCount());
+
+        final List<WorkloadLog.Entry> entries;
+        final Reader reader =
+            new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8);
+        try {
+            entries = WorkloadLog.read(reader);
+        } finally {
+            reader.close();
+        }
+        assertEquals(4, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final WorkloadLog.Entry entry = entries.get(i);
+            assertEquals("FoodMart", entry.catalog);
+            assertEquals("", entry.role);
+            assertTrue(entry.elapsedMillis >= 0);
+            if (i > 0) {
+                assertTrue(entry.timestamp >= entries.get(i - 1).timestamp);
+            }
+        }
+        assertTrue(entries.get(0).mdx.contains("[Gender]"));
+        assertTrue(entries.get(1).mdx.contains("[Store Sales]"));
+
+        // Add a query that differs from the first only in a literal. It must
+        // be reported under the same template.
+        final String q2 = entries.get(0).mdx.replace("2", "3");
+        assertFalse(q2.equals(entries.get(0).mdx));
+        entries.add(
+            new WorkloadLog.Entry(
+                entries.get(3).timestamp + 1, 0, "FoodMart", "", q2));
+
+        final WorkloadReplayer replayer =
+            new WorkloadReplayer(
+                getTestContext().getConnectionProperties(), 2, 0d);
+        final WorkloadReplayer.Report report = replayer.replay(entries);
+        final List<WorkloadReplayer.TemplateStats> templates =
+            report.getTemplates();
+        int total = 0;
+        for (WorkloadReplayer.TemplateStats stats : templates) {
+            assertEquals(
+                String.valueOf(stats.getFirstError()),
+                0, stats.getErrorCount());
+            assertTrue(
+                stats.getPercentileMillis(50)
+                <= stats.getPercentileMillis(99));
+            total += stats.getCount();
+        }
+        assertEquals(5, total);
+        assertEquals(
+            String.valueOf(templates), 2, templates.size());
+        final WorkloadReplayer.TemplateStats gender =
+            templates.get(0).template.contains("[Gender]")
+                ? templates.get(0)
+                : templates.get(1);
+        assertEquals(3, gender.getCount());
+
+        final StringWriter sw = new StringWriter();
+        report.print(new PrintWriter(sw));
+        assertTrue(
+            sw.toString(),
+            sw.toString().startsWith("Replayed 5 queries, 2 templates"));
+    }
+
+    /**
+     * Tests that a workload is rejected if it was captured against a catalog
+     * other than the one being replayed against, or against several.
+     */
+    public void testReplayChecksCatalog() throws Exception {
+        final String mdx = "select from [Sales]";
+        final WorkloadReplayer replayer =
+            new WorkloadReplayer(
+                getTestContext().getConnectionProperties(), 1, 0d);
+        try {
+            replayer.replay(
+                Arrays.asList(
+                    new WorkloadLog.Entry(1, 0, "FoodMart", "", mdx),
+                    new WorkloadLog.Entry(2, 0, "Steel Wheels", "", mdx)));
+            fail("expected error");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("[FoodMart,"));
+        }
+        try {
+            replayer.replay(
+                Arrays.asList(
+                    new WorkloadLog.Entry(1, 0, "Steel Wheels", "", mdx)));
+            fail("expected error");
+        } catch (IllegalArgumentException e) {
+            assertTrue(
+                e.getMessage(), e.getMessage().contains("'Steel Wheels'"));
+        }
+    }
+}
+
+// End WorkloadReplayerTest.java
@@ -918,6 +918,56 @@ public class FormatTest extends TestCase {
       checkFormat(null, new BigDecimal("100000001.1"), format, "0000100000001");
       checkFormat(null, new BigDecimal("100000000.5"), format, "0000100000001");
       }
+
+    /**
+     * Tests that the fast path for simple numeric formats gives the same
+     * results as formatting via {@link MondrianFloatingDecimal}, including
+     * for values near a rounding boundary.
+     */
+    public void testFastNumericFormat() {
+        final String[] formatStrings = {
+            "#,##0.00", "Standard", "Percent", "Currency", "#,##0", "0.00",
+            "#.00", "000,000.0", "#,##0.00;(#,##0.00)", "#,##0,", "0.000%"
+        };
+        final Locale[] locales = {Locale.US, Locale.GERMANY, null};
+        final Random random = new Random(1234);
+        try {
+            for (String formatString : formatStrings) {
+                for (Locale locale : locales) {
+                    final Format format = new Format(formatString, locale);
+                    for (int i = 0; i < 20000; i++) {
+                        final double d;
+                        switch (i % 5) {
+                        case 0:
+                            // Exactly half a cent, in decimal.
+                            d = random.nextInt(1000000) / 100.0 + 0.005;
+                            break;
+                        case 1:
+                            d = (random.nextDouble() - 0.5)
+                                * Math.pow(10, random.nextInt(16));
+                            break;
+                        case 2:
+                            d = random.nextInt(100000) / 1000.0;
+                            break;
+                        case 3:
+                            // Negative, rounds to zero.
+                            d = -random.nextDouble() * 0.01;
+                            break;
+                        default:
+                            d = random.nextInt(2000000) - 1000000;
+                        }
+                        Format.enableFastNumericFormat = true;
+                        final String fast = format.format(d);
+                        Format.enableFastNumericFormat = false;
+                        final String slow = format.format(d);
+                        assertEquals(formatString + " " + d, slow, fast);
+                    }
+                }
+            }
+        } finally {
+            Format.enableFastNumericFormat = true;
+        }
+    }
 }
 
 // End FormatTest.java
@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Testcase for {@link MpscRingBuffer}.
+ */
+public class MpscRingBufferTest extends TestCase {
+
+    /**
+     * Tests order, capacity rounding, and that a full buffer rejects
+     * elements rather than blocking.
+     */
+    public void testSingleThread() {
+        final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<Integer>(5);
+        assertEquals(8, buffer.capacity());
+        assertNull(buffer.poll());
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++) {
+                assertTrue(buffer.offer(i));
+            }
+            assertFalse(buffer.offer(8));
+            assertEquals(8, buffer.size());
+            for (int i = 0; i < 8; i++) {
+                assertEquals(Integer.valueOf(i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    /**
+     * Many producers and one consumer. Every element that a producer
+     * successfully offered must be taken exactly once, and each producer's
+     * elements must arrive in the order that producer offered them.
+     */
+    public void testManyProducers() throws Exception {
+        final int producerCount = 8;
+        final int perProducer = 100000;
+        final MpscRingBuffer<long[]> buffer = new MpscRingBuffer<long[]>(64);
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(producerCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        try {
+            for (int p = 0; p < producerCount; p++) {
+                final int producer = p;
+                futures.add(
+                    executor.submit(
+                        new Callable<Integer>() {
+                            public Integer call() throws Exception {
+                                start.await();
+                                int offered = 0;
+                                for (int i = 0; i < perProducer; i++) {
+                                    if (buffer.offer(
+                                            new long[] {producer, offered}))
+                                    {
+                                        ++offered;
+                                    }
+                                }
+                                return offered;
+                            }
+                        }));
+            }
+            final long[] next = new long[producerCount];
+            int taken = 0;
+            start.countDown();
+            for (;;) {
+                final long[] e = buffer.poll();
+                if (e == null) {
+                    boolean done = true;
+                    for (Future<Integer> future : futures) {
+                        done &= future.isDone();
+                    }
+                    if (done && buffer.size() == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                assertEquals(next[(int) e[0]], e[1]);
+                ++next[(int) e[0]];
+                ++taken;
+            }
+            int offered = 0;
+            for (int p = 0; p < producerCount; p++) {
+                assertEquals(
+                    futures.get(p).get().intValue(), (int) next[p]);
+                offered += futures.get(p).get();
+            }
+            assertEquals(offered, taken);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a consumer blocked in {@link MpscRingBuffer#take()} is woken
+     * by a producer.
+     */
+    public void testTake() throws Exception {
+        final MpscRingBuffer<String> buffer = new MpscRingBuffer<String>(4);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> future =
+                executor.submit(
+                    new Callable<String>() {
+                        public String call() throws Exception {
+                            return buffer.take() + buffer.take();
+                        }
+                    });
+            Thread.sleep(50);
+            assertTrue(buffer.offer("a"));
+            Thread.sleep(50);
+            assertTrue(buffer.offer("b"));
+            assertEquals("ab", future.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
+
+// End MpscRingBufferTest.java
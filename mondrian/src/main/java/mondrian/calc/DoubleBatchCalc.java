@@ -0,0 +1,54 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc;
+
+import mondrian.olap.Evaluator;
+
+/**
+ * Compiled expression which can evaluate a <code>double</code> value for
+ * every tuple in a list in one call.
+ *
+ * <p>Evaluating a whole column at a time lets a composite expression, such as
+ * <code>[Measures].[Unit Sales] - [Measures].[Store Cost]</code>, evaluate
+ * each operand over the list and then combine the resulting arrays in a tight
+ * loop, rather than descending the expression tree once per tuple.
+ *
+ * <p>Callers should not invoke {@link #evaluateDoubles} directly; use
+ * {@link mondrian.calc.impl.BatchCalcs#evaluateDoubles}, which falls back to
+ * per-tuple evaluation unless every operand of the expression implements a
+ * batch interface.
+ *
+ * @see mondrian.calc.impl.BatchCalcs
+ */
+public interface DoubleBatchCalc extends DoubleCalc {
+    /**
+     * Evaluates this expression in the context of each tuple of a list.
+     *
+     * <p>On return, <code>values[i]</code> holds the value the expression
+     * would have returned from {@link #evaluateDouble(Evaluator)} had the
+     * evaluator been positioned on the <code>i</code>th tuple; null values
+     * are represented by {@link mondrian.olap.fun.FunUtil#DoubleNull}.
+     *
+     * <p>The context of the evaluator is the same on return as on entry.
+     *
+     * @param evaluator Evaluation context
+     * @param list List of tuples
+     * @param values Array to populate; must have at least
+     *     <code>list.size()</code> elements
+     */
+    void evaluateDoubles(Evaluator evaluator, TupleList list, double[] values);
+}
+
+// End DoubleBatchCalc.java
@@ -15,6 +15,7 @@
 package mondrian.calc;
 
 import mondrian.calc.impl.BetterExpCompiler;
+import mondrian.calc.impl.MethodHandleExpCompiler;
 import mondrian.olap.*;
 import mondrian.olap.type.Type;
 import mondrian.util.CreationException;
@@ -355,6 +356,10 @@ public interface ExpCompiler {
             // directory into the "calc" interface definition directory.
             // This can be avoided if we were to use reflection to
             // create this the default ExpCompiler implementation.
+            if (MondrianProperties.instance().EnableMethodHandleCalcs.get()) {
+                return new MethodHandleExpCompiler(
+                    evaluator, validator, resultStyles);
+            }
             return new BetterExpCompiler(
                 evaluator, validator, resultStyles);
         }
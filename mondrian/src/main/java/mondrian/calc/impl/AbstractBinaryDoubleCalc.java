@@ -0,0 +1,85 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.olap.Evaluator;
+import mondrian.olap.Exp;
+
+/**
+ * Abstract implementation of a {@link mondrian.calc.DoubleCalc} which
+ * combines the values of two <code>double</code> operands, such as an
+ * arithmetic operator.
+ *
+ * <p>The derived class must implement the {@link #combine(double, double)}
+ * method, which receives operands that may be
+ * {@link mondrian.olap.fun.FunUtil#DoubleNull}. Both single-tuple and batch
+ * evaluation call it, so they always agree.
+ */
+public abstract class AbstractBinaryDoubleCalc
+    extends AbstractDoubleCalc
+    implements DoubleBatchCalc
+{
+    protected final DoubleCalc calc0;
+    protected final DoubleCalc calc1;
+
+    /**
+     * Creates an AbstractBinaryDoubleCalc.
+     *
+     * @param exp Source expression
+     * @param calc0 Left operand
+     * @param calc1 Right operand
+     */
+    protected AbstractBinaryDoubleCalc(
+        Exp exp,
+        DoubleCalc calc0,
+        DoubleCalc calc1)
+    {
+        super(exp, new Calc[] {calc0, calc1});
+        this.calc0 = calc0;
+        this.calc1 = calc1;
+    }
+
+    /**
+     * Combines the values of the two operands.
+     *
+     * @param v0 Value of left operand, possibly DoubleNull
+     * @param v1 Value of right operand, possibly DoubleNull
+     * @return Result, possibly DoubleNull
+     */
+    protected abstract double combine(double v0, double v1);
+
+    public double evaluateDouble(Evaluator evaluator) {
+        final double v0 = calc0.evaluateDouble(evaluator);
+        final double v1 = calc1.evaluateDouble(evaluator);
+        return combine(v0, v1);
+    }
+
+    public void evaluateDoubles(
+        Evaluator evaluator,
+        TupleList list,
+        double[] values)
+    {
+        final int n = list.size();
+        final double[] values1 = new double[n];
+        BatchCalcs.evaluateDoubles(calc0, evaluator, list, values);
+        BatchCalcs.evaluateDoubles(calc1, evaluator, list, values1);
+        for (int i = 0; i < n; i++) {
+            values[i] = combine(values[i], values1[i]);
+        }
+    }
+}
+
+// End AbstractBinaryDoubleCalc.java
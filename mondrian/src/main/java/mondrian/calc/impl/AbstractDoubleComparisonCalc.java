@@ -0,0 +1,97 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.olap.Evaluator;
+import mondrian.olap.Exp;
+import mondrian.olap.fun.FunUtil;
+
+/**
+ * Abstract implementation of a {@link mondrian.calc.BooleanCalc} which
+ * compares the values of two <code>double</code> operands.
+ *
+ * <p>If either operand is null or NaN, the result is
+ * {@link mondrian.olap.fun.FunUtil#BooleanNull}; otherwise the derived class's
+ * {@link #compare(double, double)} method decides. Both single-tuple and batch
+ * evaluation call it, so they always agree.
+ */
+public abstract class AbstractDoubleComparisonCalc
+    extends AbstractBooleanCalc
+    implements BooleanBatchCalc
+{
+    protected final DoubleCalc calc0;
+    protected final DoubleCalc calc1;
+
+    /**
+     * Creates an AbstractDoubleComparisonCalc.
+     *
+     * @param exp Source expression
+     * @param calc0 Left operand
+     * @param calc1 Right operand
+     */
+    protected AbstractDoubleComparisonCalc(
+        Exp exp,
+        DoubleCalc calc0,
+        DoubleCalc calc1)
+    {
+        super(exp, new Calc[] {calc0, calc1});
+        this.calc0 = calc0;
+        this.calc1 = calc1;
+    }
+
+    /**
+     * Compares the values of the two operands. Neither value is null or NaN.
+     *
+     * @param v0 Value of left operand
+     * @param v1 Value of right operand
+     * @return Result of comparison
+     */
+    protected abstract boolean compare(double v0, double v1);
+
+    public boolean evaluateBoolean(Evaluator evaluator) {
+        final double v0 = calc0.evaluateDouble(evaluator);
+        final double v1 = calc1.evaluateDouble(evaluator);
+        return apply(v0, v1);
+    }
+
+    public void evaluateBooleans(
+        Evaluator evaluator,
+        TupleList list,
+        boolean[] values)
+    {
+        final int n = list.size();
+        final double[] values0 = new double[n];
+        final double[] values1 = new double[n];
+        BatchCalcs.evaluateDoubles(calc0, evaluator, list, values0);
+        BatchCalcs.evaluateDoubles(calc1, evaluator, list, values1);
+        for (int i = 0; i < n; i++) {
+            values[i] = apply(values0[i], values1[i]);
+        }
+    }
+
+    private boolean apply(double v0, double v1) {
+        if (Double.isNaN(v0)
+            || Double.isNaN(v1)
+            || v0 == FunUtil.DoubleNull
+            || v1 == FunUtil.DoubleNull)
+        {
+            return FunUtil.BooleanNull;
+        }
+        return compare(v0, v1);
+    }
+}
+
+// End AbstractDoubleComparisonCalc.java
@@ -0,0 +1,204 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.olap.Evaluator;
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.type.ScalarType;
+import mondrian.server.Execution;
+import mondrian.util.CancellationChecker;
+
+/**
+ * Utilities for evaluating compiled expressions over a list of tuples at a
+ * time.
+ *
+ * @see mondrian.calc.DoubleBatchCalc
+ * @see mondrian.calc.BooleanBatchCalc
+ */
+public class BatchCalcs {
+    private BatchCalcs() {
+    }
+
+    /**
+     * Returns whether a calculator evaluates lists of tuples more efficiently
+     * than one tuple at a time.
+     *
+     * <p>The calculator and all of its scalar operands must implement a
+     * batch interface. (Operands of other types, such as the member of
+     * <code>([Measures].[Unit Sales])</code>, are evaluated by their parent
+     * and need not.) If any operand would fall back to per-tuple evaluation,
+     * it is cheaper to evaluate the whole expression one tuple at a time than
+     * to loop once per operand and hold each operand's values in an array.
+     *
+     * @param calc Calculator
+     * @return Whether calculator and its operands implement a batch interface
+     *
+     * @see mondrian.olap.MondrianProperties#EnableBatchEvaluation
+     */
+    public static boolean isBatchable(Calc calc) {
+        return MondrianProperties.instance().EnableBatchEvaluation.get()
+            && isBatchableTree(calc);
+    }
+
+    private static boolean isBatchableTree(Calc calc) {
+        if (!(calc instanceof DoubleBatchCalc
+            || calc instanceof BooleanBatchCalc))
+        {
+            return false;
+        }
+        if (calc instanceof AbstractCalc) {
+            for (Calc operand : ((AbstractCalc) calc).getCalcs()) {
+                if (operand.getType() instanceof ScalarType
+                    && !isBatchableTree(operand))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates a <code>double</code> expression for each tuple in a list.
+     *
+     * <p>Uses {@link DoubleBatchCalc#evaluateDoubles} if the calculator is
+     * {@link #isBatchable batchable}, otherwise sets the context to each
+     * tuple in turn.
+     *
+     * @param calc Calculator
+     * @param evaluator Evaluation context
+     * @param list List of tuples
+     * @param values Array to populate
+     */
+    public static void evaluateDoubles(
+        DoubleCalc calc,
+        Evaluator evaluator,
+        TupleList list,
+        double[] values)
+    {
+        if (list.isEmpty()) {
+            return;
+        }
+        if (calc instanceof DoubleBatchCalc && isBatchable(calc)) {
+            ((DoubleBatchCalc) calc).evaluateDoubles(evaluator, list, values);
+            return;
+        }
+        final int savepoint = evaluator.savepoint();
+        try {
+            final TupleCursor cursor = list.tupleCursor();
+            final Execution execution = currentExecution(evaluator);
+            int i = 0;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(i, execution);
+                cursor.setContext(evaluator);
+                values[i++] = calc.evaluateDouble(evaluator);
+            }
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
+    /**
+     * Evaluates a <code>boolean</code> expression for each tuple in a list.
+     *
+     * <p>Uses {@link BooleanBatchCalc#evaluateBooleans} if the calculator is
+     * {@link #isBatchable batchable}, otherwise sets the context to each
+     * tuple in turn.
+     *
+     * @param calc Calculator
+     * @param evaluator Evaluation context
+     * @param list List of tuples
+     * @param values Array to populate
+     */
+    public static void evaluateBooleans(
+        BooleanCalc calc,
+        Evaluator evaluator,
+        TupleList list,
+        boolean[] values)
+    {
+        if (list.isEmpty()) {
+            return;
+        }
+        if (calc instanceof BooleanBatchCalc && isBatchable(calc)) {
+            ((BooleanBatchCalc) calc).evaluateBooleans(
+                evaluator, list, values);
+            return;
+        }
+        final int savepoint = evaluator.savepoint();
+        try {
+            final TupleCursor cursor = list.tupleCursor();
+            final Execution execution = currentExecution(evaluator);
+            int i = 0;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(i, execution);
+                cursor.setContext(evaluator);
+                values[i++] = calc.evaluateBoolean(evaluator);
+            }
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
+    /**
+     * Evaluates a <code>double</code> expression for some of the tuples in a
+     * list.
+     *
+     * <p>Used by conditional expressions, which evaluate each operand only
+     * for the tuples that need it. Element <code>positions[k]</code> of
+     * <code>values</code> receives the value for tuple
+     * <code>positions[k]</code>, for each <code>k</code> less than
+     * <code>count</code>; other elements are unchanged.
+     *
+     * @param calc Calculator
+     * @param evaluator Evaluation context
+     * @param list List of tuples
+     * @param positions Positions of tuples to evaluate, ascending
+     * @param count Number of positions
+     * @param values Array to populate
+     */
+    public static void evaluateDoubles(
+        DoubleCalc calc,
+        Evaluator evaluator,
+        TupleList list,
+        int[] positions,
+        int count,
+        double[] values)
+    {
+        if (count == 0) {
+            return;
+        }
+        if (count == list.size()) {
+            evaluateDoubles(calc, evaluator, list, values);
+            return;
+        }
+        final TupleList subList =
+            TupleCollections.createList(list.getArity(), count);
+        for (int k = 0; k < count; k++) {
+            subList.add(list.get(positions[k]));
+        }
+        final double[] subValues = new double[count];
+        evaluateDoubles(calc, evaluator, subList, subValues);
+        for (int k = 0; k < count; k++) {
+            values[positions[k]] = subValues[k];
+        }
+    }
+
+    static Execution currentExecution(Evaluator evaluator) {
+        return evaluator.getQuery().getStatement().getCurrentExecution();
+    }
+}
+
+// End BatchCalcs.java
@@ -21,6 +21,7 @@ import mondrian.olap.type.*;
 import mondrian.olap.type.DimensionType;
 import mondrian.olap.type.LevelType;
 
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -29,7 +30,10 @@ import java.util.Map;
  * @author jhyde
  * @since Sep 27, 2005
  */
-public class ConstantCalc extends GenericCalc {
+public class ConstantCalc
+    extends GenericCalc
+    implements DoubleBatchCalc
+{
     private final Object o;
     private final int i;
     private final double d;
@@ -98,6 +102,14 @@ public class ConstantCalc extends GenericCalc {
         return d;
     }
 
+    public void evaluateDoubles(
+        Evaluator evaluator,
+        TupleList list,
+        double[] values)
+    {
+        Arrays.fill(values, 0, list.size(), d);
+    }
+
     public boolean dependsOn(Hierarchy hierarchy) {
         // A constant -- including a catalog element -- will evaluate to the
         // same result regardless of the evaluation context. For example, the
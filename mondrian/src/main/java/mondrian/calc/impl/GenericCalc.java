@@ -112,7 +112,18 @@ public abstract class GenericCalc
     }
 
     public double evaluateDouble(Evaluator evaluator) {
-        final Object o = evaluate(evaluator);
+        return toDouble(evaluator, evaluate(evaluator));
+    }
+
+    /**
+     * Converts a value returned by {@link #evaluate} to the value that
+     * {@link #evaluateDouble} would return.
+     *
+     * @param evaluator Evaluation context
+     * @param o Value
+     * @return Value as a double; null becomes {@link FunUtil#DoubleNull}
+     */
+    protected double toDouble(Evaluator evaluator, Object o) {
         try {
             final Number number = (Number) o;
             return numberToDouble(number);
@@ -14,11 +14,12 @@
 
 package mondrian.calc.impl;
 
-import mondrian.calc.Calc;
-import mondrian.calc.MemberCalc;
+import mondrian.calc.*;
 import mondrian.olap.*;
 import mondrian.olap.type.ScalarType;
 import mondrian.olap.type.Type;
+import mondrian.server.Execution;
+import mondrian.util.CancellationChecker;
 
 /**
  * Expression which evaluates a few member expressions,
@@ -34,7 +35,10 @@ import mondrian.olap.type.Type;
  * @author jhyde
  * @since Sep 27, 2005
  */
-public class MemberValueCalc extends GenericCalc {
+public class MemberValueCalc
+    extends GenericCalc
+    implements DoubleBatchCalc
+{
     private final MemberCalc memberCalc;
     private final boolean nullCheck;
 
@@ -90,20 +94,64 @@ public class MemberValueCalc extends GenericCalc {
         final int savepoint = evaluator.savepoint();
         try {
             final Member member = memberCalc.evaluateMember(evaluator);
-            if (member == null
-                || member.isNull())
-            {
-                return null;
-            }
-            evaluator.setContext(member);
-            if (nullCheck
-                && evaluator.needToReturnNullForUnrelatedDimension(
-                    new Member[] {member}))
-            {
-                return null;
+            return evaluateAt(evaluator, member);
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
+    /**
+     * Sets the context to a member and evaluates the current cell. Does not
+     * restore the context.
+     */
+    private Object evaluateAt(Evaluator evaluator, Member member) {
+        if (member == null
+            || member.isNull())
+        {
+            return null;
+        }
+        evaluator.setContext(member);
+        if (nullCheck
+            && evaluator.needToReturnNullForUnrelatedDimension(
+                new Member[] {member}))
+        {
+            return null;
+        }
+        return evaluator.evaluateCurrent();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the member is constant, as it is for a stored measure such as
+     * <code>[Measures].[Unit Sales]</code>, evaluates it once for the whole
+     * list, and saves and restores the context once rather than once per
+     * tuple.
+     */
+    public void evaluateDoubles(
+        Evaluator evaluator,
+        TupleList list,
+        double[] values)
+    {
+        final int savepoint = evaluator.savepoint();
+        try {
+            final Member member =
+                memberCalc instanceof ConstantCalc
+                    ? memberCalc.evaluateMember(evaluator)
+                    : null;
+            final TupleCursor cursor = list.tupleCursor();
+            final Execution execution =
+                BatchCalcs.currentExecution(evaluator);
+            int i = 0;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(i, execution);
+                cursor.setContext(evaluator);
+                final Object o =
+                    member == null
+                        ? evaluate(evaluator)
+                        : evaluateAt(evaluator, member);
+                values[i++] = toDouble(evaluator, o);
             }
-            final Object result = evaluator.evaluateCurrent();
-            return result;
         } finally {
             evaluator.restore(savepoint);
         }
@@ -0,0 +1,487 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.olap.fun.BuiltinFunTable;
+import mondrian.olap.fun.ParenthesesFunDef;
+import mondrian.olap.type.NumericType;
+import mondrian.rolap.RolapSchema;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expression compiler which turns arithmetic on numeric expressions into a
+ * single {@link MethodHandle}.
+ *
+ * <p>A calculated measure such as
+ * <code>([Measures].[Store Sales] - [Measures].[Store Cost])
+ * / [Measures].[Store Sales]</code> normally compiles to a tree of
+ * anonymous calculators, and every query shares the same megamorphic
+ * <code>evaluateDouble</code> call sites. This compiler composes the
+ * operators (<code>+</code>, binary and unary <code>-</code>,
+ * <code>*</code>, <code>/</code>, parentheses and numeric literals) into
+ * one method handle, which the JIT can inline as a unit. Any other
+ * sub-expression &mdash; a measure, a function call, an <code>IIf</code>
+ * &mdash; is compiled as usual by {@link BetterExpCompiler} and becomes a
+ * leaf of the handle, so unsupported functions fall back transparently.
+ *
+ * <p>The operators have the semantics of the corresponding methods of
+ * {@link BuiltinFunTable}, such as {@link BuiltinFunTable#plus}, which the
+ * handles call.
+ *
+ * <p>Composing method handles spins new lambda forms, so the composed
+ * handle, with its leaves and numeric literals as parameters, is cached per
+ * schema, keyed by the shape of the expression. Queries that use the same
+ * formula, or formulas that differ only in their literals, bind the cached
+ * handle to their own leaf calculators and literal values. The cache holds
+ * at most {@link #CACHE_SIZE} shapes, and discards the least recently used.
+ *
+ * <p>Enabled by {@link MondrianProperties#EnableMethodHandleCalcs}.
+ */
+public class MethodHandleExpCompiler extends BetterExpCompiler {
+    /**
+     * Maximum number of shapes held by a cache created by
+     * {@link #createCache()}.
+     */
+    public static final int CACHE_SIZE = 1000;
+
+    private static final MethodHandle LEAF;
+    private static final MethodHandle LITERAL;
+    private static final MethodHandle ROW_LEAF;
+    private static final MethodHandle ROW_LITERAL;
+    private static final MethodHandle PLUS;
+    private static final MethodHandle MINUS;
+    private static final MethodHandle MULTIPLY;
+    private static final MethodHandle DIVIDE;
+    private static final MethodHandle DIVIDE_NULL;
+    private static final MethodHandle NEGATE;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodType binaryType =
+            MethodType.methodType(double.class, double.class, double.class);
+        final MethodType leafType =
+            MethodType.methodType(
+                double.class,
+                int.class,
+                DoubleCalc[].class,
+                double[].class,
+                Evaluator.class);
+        final MethodType rowType =
+            MethodType.methodType(
+                double.class,
+                int.class,
+                double[][].class,
+                double[].class,
+                int.class);
+        try {
+            LEAF = lookup.findStatic(
+                MethodHandleExpCompiler.class, "leaf", leafType);
+            LITERAL = lookup.findStatic(
+                MethodHandleExpCompiler.class, "literal", leafType);
+            ROW_LEAF = lookup.findStatic(
+                MethodHandleExpCompiler.class, "rowLeaf", rowType);
+            ROW_LITERAL = lookup.findStatic(
+                MethodHandleExpCompiler.class, "rowLiteral", rowType);
+            PLUS = lookup.findStatic(
+                BuiltinFunTable.class, "plus", binaryType);
+            MINUS = lookup.findStatic(
+                BuiltinFunTable.class, "minus", binaryType);
+            MULTIPLY = lookup.findStatic(
+                BuiltinFunTable.class, "multiply", binaryType);
+            DIVIDE = lookup.findStatic(
+                BuiltinFunTable.class, "divide", binaryType);
+            DIVIDE_NULL = lookup.findStatic(
+                BuiltinFunTable.class,
+                "divideNullDenominatorProducesNull",
+                binaryType);
+            NEGATE = lookup.findStatic(
+                BuiltinFunTable.class,
+                "negate",
+                MethodType.methodType(double.class, double.class));
+        } catch (ReflectiveOperationException e) {
+            throw Util.newInternal(e, "while initializing method handles");
+        }
+    }
+
+    /**
+     * Cache used if the evaluator's schema is not a {@link RolapSchema}.
+     */
+    private static final Map<String, Shape> DEFAULT_CACHE = createCache();
+
+    public MethodHandleExpCompiler(Evaluator evaluator, Validator validator) {
+        super(evaluator, validator);
+    }
+
+    public MethodHandleExpCompiler(
+        Evaluator evaluator,
+        Validator validator,
+        List<ResultStyle> resultStyles)
+    {
+        super(evaluator, validator, resultStyles);
+    }
+
+    /**
+     * Creates a cache of composed method handles, keyed by the shape of the
+     * expression, which holds at most {@link #CACHE_SIZE} entries and
+     * discards the least recently used. It is safe to use from several
+     * threads.
+     *
+     * @return Cache
+     */
+    public static Map<String, Shape> createCache() {
+        return Collections.synchronizedMap(
+            new LinkedHashMap<String, Shape>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, Shape> eldest)
+                {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    }
+
+    public Calc compile(Exp exp) {
+        if (!isOperator(exp)) {
+            return super.compile(exp);
+        }
+        final StringBuilder buf = new StringBuilder();
+        final List<Exp> leafExps = new ArrayList<Exp>();
+        final List<Double> literalList = new ArrayList<Double>();
+        final boolean nullDenominatorProducesNull =
+            MondrianProperties.instance().NullDenominatorProducesNull.get();
+        buf.append(nullDenominatorProducesNull ? "n:" : "i:");
+        describe(exp, buf, leafExps, literalList);
+        final String key = buf.toString();
+
+        final DoubleCalc[] leaves = new DoubleCalc[leafExps.size()];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = compileDouble(leafExps.get(i));
+        }
+        final double[] literals = new double[literalList.size()];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = literalList.get(i);
+        }
+
+        final Map<String, Shape> cache = getCache();
+        Shape shape = cache.get(key);
+        if (shape == null) {
+            shape = new Shape(exp, nullDenominatorProducesNull);
+            cache.put(key, shape);
+        }
+        return new MethodHandleCalc(exp, leaves, literals, shape);
+    }
+
+    private Map<String, Shape> getCache() {
+        final Evaluator evaluator = getEvaluator();
+        if (evaluator != null
+            && evaluator.getSchemaReader().getSchema() instanceof RolapSchema)
+        {
+            return ((RolapSchema) evaluator.getSchemaReader().getSchema())
+                .getCompiledExpressionCache();
+        }
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * Returns whether an expression is an operator that this compiler
+     * composes into a method handle.
+     */
+    private static boolean isOperator(Exp exp) {
+        if (!(exp instanceof ResolvedFunCall)
+            || !(exp.getType() instanceof NumericType))
+        {
+            return false;
+        }
+        final ResolvedFunCall call = (ResolvedFunCall) exp;
+        for (Exp arg : call.getArgs()) {
+            if (!(arg.getType() instanceof NumericType)) {
+                return false;
+            }
+        }
+        final String name = call.getFunName();
+        switch (call.getSyntax()) {
+        case Infix:
+            return call.getArgCount() == 2
+                && (name.equals("+")
+                    || name.equals("-")
+                    || name.equals("*")
+                    || name.equals("/"));
+        case Prefix:
+            return call.getArgCount() == 1 && name.equals("-");
+        case Parentheses:
+            return call.getArgCount() == 1
+                && call.getFunDef() instanceof ParenthesesFunDef;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether an expression is a numeric literal.
+     */
+    private static boolean isNumericLiteral(Exp exp) {
+        return exp instanceof Literal
+            && ((Literal) exp).getValue() instanceof Number;
+    }
+
+    /**
+     * Appends a description of the shape of an expression to a buffer, and
+     * collects its leaves and the values of its numeric literals. Two
+     * expressions with the same description can share a composed method
+     * handle.
+     */
+    private static void describe(
+        Exp exp,
+        StringBuilder buf,
+        List<Exp> leaves,
+        List<Double> literals)
+    {
+        if (isNumericLiteral(exp)) {
+            buf.append('#');
+            literals.add(((Number) ((Literal) exp).getValue()).doubleValue());
+        } else if (isOperator(exp)) {
+            final ResolvedFunCall call = (ResolvedFunCall) exp;
+            buf.append(call.getSyntax() == Syntax.Prefix ? "neg" : "")
+                .append(call.getSyntax() == Syntax.Infix
+                    ? call.getFunName()
+                    : "")
+                .append('(');
+            for (int i = 0; i < call.getArgCount(); i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                describe(call.getArg(i), buf, leaves, literals);
+            }
+            buf.append(')');
+        } else {
+            buf.append('$');
+            leaves.add(exp);
+        }
+    }
+
+    /**
+     * Composes a method handle for an expression. Leaves and literals are
+     * numbered in the same order as {@link #describe} collects them.
+     *
+     * @param exp Expression
+     * @param ordinals Next leaf ordinal and next literal ordinal
+     * @param leaf Handle of type <code>(int, P...)double</code> which
+     *     returns the value of the leaf with a given ordinal
+     * @param literal Handle of the same type which returns the value of the
+     *     literal with a given ordinal
+     * @param nullDenominatorProducesNull Value of
+     *     {@link MondrianProperties#NullDenominatorProducesNull}
+     * @return Handle of type <code>(P...)double</code>
+     */
+    private static MethodHandle compose(
+        Exp exp,
+        int[] ordinals,
+        MethodHandle leaf,
+        MethodHandle literal,
+        boolean nullDenominatorProducesNull)
+    {
+        if (isNumericLiteral(exp)) {
+            return MethodHandles.insertArguments(literal, 0, ordinals[1]++);
+        }
+        if (!isOperator(exp)) {
+            return MethodHandles.insertArguments(leaf, 0, ordinals[0]++);
+        }
+        final ResolvedFunCall call = (ResolvedFunCall) exp;
+        final MethodHandle h0 =
+            compose(
+                call.getArg(0), ordinals, leaf, literal,
+                nullDenominatorProducesNull);
+        switch (call.getSyntax()) {
+        case Parentheses:
+            return h0;
+        case Prefix:
+            return MethodHandles.filterReturnValue(h0, NEGATE);
+        default:
+            final MethodHandle h1 =
+                compose(
+                    call.getArg(1), ordinals, leaf, literal,
+                    nullDenominatorProducesNull);
+            final MethodHandle op;
+            final String name = call.getFunName();
+            if (name.equals("+")) {
+                op = PLUS;
+            } else if (name.equals("-")) {
+                op = MINUS;
+            } else if (name.equals("*")) {
+                op = MULTIPLY;
+            } else if (nullDenominatorProducesNull) {
+                op = DIVIDE_NULL;
+            } else {
+                op = DIVIDE;
+            }
+            // (P..., P...)double, then merge the duplicated parameters.
+            final int n = h0.type().parameterCount();
+            final MethodHandle combined =
+                MethodHandles.collectArguments(
+                    MethodHandles.collectArguments(op, 0, h0), n, h1);
+            final int[] reorder = new int[n * 2];
+            for (int i = 0; i < n; i++) {
+                reorder[i] = i;
+                reorder[n + i] = i;
+            }
+            return MethodHandles.permuteArguments(
+                combined, h0.type(), reorder);
+        }
+    }
+
+    private static double leaf(
+        int ordinal,
+        DoubleCalc[] leaves,
+        double[] literals,
+        Evaluator evaluator)
+    {
+        return leaves[ordinal].evaluateDouble(evaluator);
+    }
+
+    private static double literal(
+        int ordinal,
+        DoubleCalc[] leaves,
+        double[] literals,
+        Evaluator evaluator)
+    {
+        return literals[ordinal];
+    }
+
+    private static double rowLeaf(
+        int ordinal,
+        double[][] columns,
+        double[] literals,
+        int row)
+    {
+        return columns[ordinal][row];
+    }
+
+    private static double rowLiteral(
+        int ordinal,
+        double[][] columns,
+        double[] literals,
+        int row)
+    {
+        return literals[ordinal];
+    }
+
+    /**
+     * Composed method handles for one shape of expression.
+     *
+     * <p>{@link #handle} has type
+     * <code>(DoubleCalc[], double[], Evaluator)double</code>: it evaluates
+     * each leaf calculator in the current context. {@link #rowHandle} has
+     * type <code>(double[][], double[], int)double</code>: it combines the
+     * values of the leaves, already evaluated over a list of tuples, for one
+     * row of that list.
+     */
+    public static final class Shape {
+        final MethodHandle handle;
+        final MethodHandle rowHandle;
+
+        Shape(Exp exp, boolean nullDenominatorProducesNull) {
+            this.handle =
+                compose(
+                    exp, new int[2], LEAF, LITERAL,
+                    nullDenominatorProducesNull);
+            this.rowHandle =
+                compose(
+                    exp, new int[2], ROW_LEAF, ROW_LITERAL,
+                    nullDenominatorProducesNull);
+        }
+    }
+
+    /**
+     * Calculator which invokes a composed method handle.
+     *
+     * <p>It supports batch evaluation if its leaves do: it evaluates each leaf
+     * over the list, then combines the leaf values row by row.
+     */
+    private static class MethodHandleCalc
+        extends AbstractDoubleCalc
+        implements DoubleBatchCalc
+    {
+        private final DoubleCalc[] leaves;
+        private final MethodHandle handle;
+        private final MethodHandle rowHandle;
+
+        MethodHandleCalc(
+            Exp exp,
+            DoubleCalc[] leaves,
+            double[] literals,
+            Shape shape)
+        {
+            super(exp, leaves);
+            this.leaves = leaves;
+            this.handle =
+                MethodHandles.insertArguments(
+                    shape.handle, 0, leaves, literals);
+            this.rowHandle =
+                MethodHandles.insertArguments(
+                    shape.rowHandle, 1, (Object) literals);
+        }
+
+        public double evaluateDouble(Evaluator evaluator) {
+            try {
+                return (double) handle.invokeExact(evaluator);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw Util.newInternal(e, "while evaluating " + exp);
+            }
+        }
+
+        public void evaluateDoubles(
+            Evaluator evaluator,
+            TupleList list,
+            double[] values)
+        {
+            final int n = list.size();
+            final double[][] columns = new double[leaves.length][];
+            for (int i = 0; i < leaves.length; i++) {
+                columns[i] = new double[n];
+                BatchCalcs.evaluateDoubles(
+                    leaves[i], evaluator, list, columns[i]);
+            }
+            try {
+                for (int row = 0; row < n; row++) {
+                    values[row] = (double) rowHandle.invokeExact(columns, row);
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw Util.newInternal(e, "while evaluating " + exp);
+            }
+        }
+    }
+}
+
+// End MethodHandleExpCompiler.java
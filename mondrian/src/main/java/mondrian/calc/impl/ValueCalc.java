@@ -14,8 +14,10 @@
 
 package mondrian.calc.impl;
 
-import mondrian.calc.Calc;
+import mondrian.calc.*;
 import mondrian.olap.*;
+import mondrian.server.Execution;
+import mondrian.util.CancellationChecker;
 
 /**
  * Expression which yields the value of the current member in the current
@@ -26,7 +28,7 @@ import mondrian.olap.*;
  * @author jhyde
  * @since Sep 27, 2005
  */
-public class ValueCalc extends GenericCalc {
+public class ValueCalc extends GenericCalc implements DoubleBatchCalc {
     /**
      * Creates a ValueCalc.
      *
@@ -40,6 +42,27 @@ public class ValueCalc extends GenericCalc {
         return evaluator.evaluateCurrent();
     }
 
+    public void evaluateDoubles(
+        Evaluator evaluator,
+        TupleList list,
+        double[] values)
+    {
+        final int savepoint = evaluator.savepoint();
+        try {
+            final TupleCursor cursor = list.tupleCursor();
+            final Execution execution =
+                BatchCalcs.currentExecution(evaluator);
+            int i = 0;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(i, execution);
+                cursor.setContext(evaluator);
+                values[i++] = toDouble(evaluator, evaluator.evaluateCurrent());
+            }
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
     public boolean dependsOn(Hierarchy hierarchy) {
         return true;
     }
@@ -35,6 +35,7 @@ import javax.sql.DataSource;
  * <li>{@link #createCrossjoinRegion(mondrian.olap.CacheControl.CellRegion[])}</li>
  * <li>{@link #createMeasuresRegion(Cube)}</li>
  * <li>{@link #flush(mondrian.olap.CacheControl.CellRegion)}</li>
+ * <li>{@link #refresh(mondrian.olap.CacheControl.CellRegion)}</li>
  * </ul></p>
  *
  * <p>Methods concerning member cache:<ul>
@@ -183,6 +184,27 @@ public interface CacheControl {
      */
     void flush(CellRegion region);
 
+    /**
+     * Incrementally refreshes the cells in the cell cache that correspond to
+     * measures in a cube and to a given region, after rows have been appended
+     * to the fact table within the region.
+     *
+     * <p>The aggregates of the rows within the region are read from the
+     * database and merged into the cached cells of measures whose aggregator
+     * is distributive (sum, count, min or max). Cells of other measures, and
+     * cells that cannot be merged, are flushed as by
+     * {@link #flush(mondrian.olap.CacheControl.CellRegion)}.
+     *
+     * <p>All of the region's rows must be new: a row that had been read into
+     * the cell cache before this call is counted twice. Typically the region
+     * is a member, such as a day, whose rows have just been loaded, and the
+     * rows are committed before this method is called and before any query
+     * reads them.
+     *
+     * @param region a region
+     */
+    void refresh(CellRegion region);
+
     /**
      * Prints the state of the cell cache as it pertains to a given region.
      * @param pw the output target
@@ -42,6 +42,7 @@ public class QueryTiming {
   private final HashMap<String, Integer> currentTimingDepth = new HashMap<>();
   private final Map<String, DurationCount> timings = new HashMap<>();
   private final Map<String, DurationCount> fullTimings = new HashMap<>();
+  private final Map<String, Integer> decisions = new LinkedHashMap<>();
 
   /**
    * Initializes (or re-initializes) a query timing, also setting whether enabled. All previous stats are removed.
@@ -54,6 +55,7 @@ public class QueryTiming {
     currentTimings.clear();
     timings.clear();
     fullTimings.clear();
+    decisions.clear();
   }
 
   public void done() {
@@ -100,6 +102,23 @@ public class QueryTiming {
     }
   }
 
+  /**
+   * Records a planning decision made by a Query component, such as whether to evaluate a function in SQL, with the
+   * estimates that led to it. Identical decisions are counted.
+   *
+   * @param name
+   *          Name of the component
+   * @param decision
+   *          Description of the decision
+   */
+  public synchronized final void markDecision( String name, String decision ) {
+    if ( enabled ) {
+      final String key = name + ": " + decision;
+      final Integer count = decisions.get( key );
+      decisions.put( key, count == null ? 1 : count + 1 );
+    }
+  }
+
   private void markStartInternal( String name ) {
     currentTimings.push( new TimingInfo( name ) );
     Integer depth = currentTimingDepth.get( name );
@@ -159,6 +178,12 @@ public class QueryTiming {
           " times for total of " ).append( entry.getValue().duration ).append( "ms.  (Avg. " ).append( entry
               .getValue().duration / entry.getValue().count ).append( "ms/invocation)" );
     }
+    if ( !decisions.isEmpty() ) {
+      sb.append( Util.nl ).append( "Plan Decisions:" );
+      for ( Map.Entry<String, Integer> entry : decisions.entrySet() ) {
+        sb.append( Util.nl ).append( entry.getKey() ).append( " (" ).append( entry.getValue() ).append( " times)" );
+      }
+    }
     sb.append( Util.nl );
     return sb.toString();
   }
@@ -62,6 +62,7 @@ import java.util.SortedSet;
 import java.util.Timer;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -290,21 +291,52 @@ public class Util extends XOMUtil {
         final String name,
         RejectedExecutionHandler rejectionPolicy)
     {
-        // We must create a factory where the threads
-        // have the right name and are marked as daemon threads.
-        final ThreadFactory factory =
-            new ThreadFactory() {
-                private final AtomicInteger counter = new AtomicInteger(0);
-                public Thread newThread(Runnable r) {
-                    final Thread t =
-                        Executors.defaultThreadFactory().newThread(r);
-                    t.setDaemon(true);
-                    t.setName(name + '_' + counter.incrementAndGet());
-                    return t;
-                }
-            };
-
-        // Ok, create the executor
+        return getExecutorService(
+            maximumPoolSize,
+            corePoolSize,
+            keepAliveTime,
+            newThreadFactory(name, false),
+            rejectionPolicy,
+            // we use a sync queue. any other type of queue
+            // will prevent the tasks from running concurrently
+            // because the executors API requires blocking queues.
+            // Important to pass true here. This makes the
+            // order of tasks deterministic.
+            // TODO Write a non-blocking queue which implements
+            // the blocking queue API so we can pass that to the
+            // executor.
+            new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * Creates an {@link ExecutorService} object backed by a thread pool
+     * whose threads are created by a given factory and whose waiting tasks
+     * are held in a given queue.
+     *
+     * <p>The queue determines the order in which waiting tasks start, and,
+     * if it is bounded, when tasks are rejected.
+     *
+     * @param maximumPoolSize Maximum number of concurrent
+     * threads.
+     * @param corePoolSize Minimum number of concurrent
+     * threads to maintain in the pool, even if they are
+     * idle.
+     * @param keepAliveTime Time, in seconds, for which to
+     * keep alive unused threads.
+     * @param threadFactory Factory for threads; see
+     * {@link #newThreadFactory(String, boolean)}.
+     * @param rejectionPolicy The rejection policy to enforce.
+     * @param workQueue Queue of tasks waiting for a thread.
+     * @return An executor service preconfigured.
+     */
+    public static ExecutorService getExecutorService(
+        int maximumPoolSize,
+        int corePoolSize,
+        long keepAliveTime,
+        ThreadFactory threadFactory,
+        RejectedExecutionHandler rejectionPolicy,
+        BlockingQueue<Runnable> workQueue)
+    {
         final ThreadPoolExecutor executor =
             new ThreadPoolExecutor(
                 corePoolSize,
@@ -313,16 +345,8 @@ public class Util extends XOMUtil {
                     : Integer.MAX_VALUE,
                 keepAliveTime,
                 TimeUnit.SECONDS,
-                // we use a sync queue. any other type of queue
-                // will prevent the tasks from running concurrently
-                // because the executors API requires blocking queues.
-                // Important to pass true here. This makes the
-                // order of tasks deterministic.
-                // TODO Write a non-blocking queue which implements
-                // the blocking queue API so we can pass that to the
-                // executor.
-                new LinkedBlockingQueue<Runnable>(),
-                factory);
+                workQueue,
+                threadFactory);
 
         // Set the rejection policy if required.
         if (rejectionPolicy != null) {
@@ -334,6 +358,94 @@ public class Util extends XOMUtil {
         return executor;
     }
 
+    /**
+     * Creates a factory for the threads of an executor.
+     *
+     * <p>If <code>virtual</code> is false, or the JVM does not support
+     * virtual threads (they require JDK 21 or later), threads are platform
+     * daemon threads. Otherwise they are virtual threads, which are cheap
+     * to create and do not hold an operating system thread while blocked
+     * on I/O, so a pool of them can be much larger than a pool of platform
+     * threads. In either case, threads are named <code>name_1</code>,
+     * <code>name_2</code>, and so forth.
+     *
+     * @param name The name of the threads.
+     * @param virtual Whether to create virtual threads
+     * @return Thread factory
+     */
+    public static ThreadFactory newThreadFactory(
+        final String name,
+        boolean virtual)
+    {
+        if (virtual) {
+            final ThreadFactory factory = VirtualThreads.factory(name);
+            if (factory != null) {
+                return factory;
+            }
+        }
+        // We must create a factory where the threads
+        // have the right name and are marked as daemon threads.
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+            public Thread newThread(Runnable r) {
+                final Thread t =
+                    Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                t.setName(name + '_' + counter.incrementAndGet());
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Access to JDK 21 virtual threads. Mondrian compiles against earlier
+     * JDKs, so the API is called via reflection, once per factory.
+     */
+    private static class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method FACTORY;
+
+        static {
+            Method ofVirtual = null;
+            Method nameMethod = null;
+            Method factoryMethod = null;
+            try {
+                final Class<?> builderClass =
+                    Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                nameMethod =
+                    builderClass.getMethod("name", String.class, long.class);
+                factoryMethod = builderClass.getMethod("factory");
+            } catch (Exception e) {
+                LOGGER.warn(
+                    "Virtual threads are not supported by this JVM; "
+                    + "using platform threads");
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = nameMethod;
+            FACTORY = factoryMethod;
+        }
+
+        /**
+         * Returns a factory for virtual threads, or null if the JVM does
+         * not support them.
+         */
+        static ThreadFactory factory(String name) {
+            if (OF_VIRTUAL == null) {
+                return null;
+            }
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = NAME.invoke(builder, name + '_', 1L);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     /**
      * Creates an {@link ScheduledExecutorService} object backed by a
      * thread pool with a fixed number of threads..
@@ -21,6 +21,8 @@ import mondrian.olap.*;
 import mondrian.olap.Role.RollupPolicy;
 import mondrian.rolap.RolapAggregator;
 import mondrian.rolap.RolapEvaluator;
+import mondrian.rolap.RolapLevel;
+import mondrian.rolap.RolapStoredMeasure;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -109,7 +111,9 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
                 if (member != null) {
                     evaluator.setContext(member);
                 }
-                return aggregate(calc, evaluator, list);
+                return aggregate(
+                    calc, evaluator, list,
+                    member != null || calc instanceof ValueCalc);
             } finally {
                 evaluator.restore(savepoint);
                 evaluator.getTiming().markEnd(TIMING_NAME);
@@ -130,6 +134,32 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             Calc calc,
             Evaluator evaluator,
             TupleList tupleList)
+        {
+            return aggregate(
+                calc, evaluator, tupleList, calc instanceof ValueCalc);
+        }
+
+        /**
+         * Computes an expression for each element of a list, and aggregates
+         * the result according to the evaluation context's current aggregation
+         * strategy.
+         *
+         * <p>If {@code currentValue} is true, {@code calc} is known to return
+         * the value of the current cell, and the aggregation may be pushed
+         * down into a single cell request; see
+         * {@link #canPushDown(Evaluator, TupleList)}.
+         *
+         * @param calc Compiled expression to evaluate a scalar
+         * @param evaluator Evaluation context
+         * @param tupleList List of members or tuples
+         * @param currentValue Whether calc evaluates the current cell
+         * @return Aggregated result
+         */
+        static Object aggregate(
+            Calc calc,
+            Evaluator evaluator,
+            TupleList tupleList,
+            boolean currentValue)
         {
             Aggregator aggregator =
                 (Aggregator) evaluator.getProperty(
@@ -148,6 +178,16 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             if (aggregator != RolapAggregator.DistinctCount
                 && aggregator != RolapAggregator.Avg)
             {
+                if (currentValue
+                    && aggregator instanceof RolapAggregator
+                    && ((RolapAggregator) aggregator).isDistributive()
+                    && canPushDown(evaluator, tupleList))
+                {
+                    final Object o = pushDown(evaluator, tupleList);
+                    if (o != null) {
+                        return o;
+                    }
+                }
                 final int savepoint = evaluator.savepoint();
                 try {
                     evaluator.setNonEmpty(false);
@@ -209,6 +249,133 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             return evaluator2.evaluateCurrent();
         }
 
+        /**
+         * Returns whether the value of the current stored measure, aggregated
+         * over a list of tuples, can be computed by a single cell request
+         * whose context is constrained by the list (the technique used for
+         * distinct-count measures), rather than by evaluating one cell per
+         * tuple.
+         *
+         * <p>The caller must ensure that the measure's aggregator is
+         * distributive. This method checks that the list is large enough to
+         * be worth it (see
+         * {@link MondrianProperties#AggregatePushdownThreshold}), that the
+         * current measure is stored, that the context contains no calculated
+         * members that would be evaluated over the aggregate, and that the
+         * tuples are distinct, non-calculated and of uniform levels, so that
+         * they denote disjoint sets of fact rows.
+         *
+         * @param evaluator Evaluation context
+         * @param tupleList List of members or tuples
+         * @return Whether the aggregation can be pushed down
+         */
+        static boolean canPushDown(
+            Evaluator evaluator,
+            TupleList tupleList)
+        {
+            final int threshold =
+                MondrianProperties.instance().AggregatePushdownThreshold.get();
+            if (threshold <= 0
+                || tupleList.size() < threshold
+                || !(evaluator instanceof RolapEvaluator))
+            {
+                return false;
+            }
+            final List<Member> firstTuple = tupleList.get(0);
+            final Set<Hierarchy> hierarchies = new HashSet<Hierarchy>();
+            final Level[] levels = new Level[firstTuple.size()];
+            for (int i = 0; i < levels.length; i++) {
+                final Member member = firstTuple.get(i);
+                if (!hierarchies.add(member.getHierarchy())) {
+                    return false;
+                }
+                levels[i] = member.getLevel();
+                if (levels[i] instanceof RolapLevel
+                    && ((RolapLevel) levels[i]).isParentChild())
+                {
+                    // A member of a parent-child level includes its
+                    // descendants, which are in the same level.
+                    return false;
+                }
+            }
+            final Member[] contextMembers = evaluator.getMembers();
+            if (!(contextMembers[0] instanceof RolapStoredMeasure)) {
+                return false;
+            }
+            for (Member member : contextMembers) {
+                if (member.isCalculated()
+                    && !hierarchies.contains(member.getHierarchy()))
+                {
+                    return false;
+                }
+            }
+            final Set<Object> tuples = new HashSet<Object>();
+            for (List<Member> tuple : tupleList) {
+                for (int i = 0; i < levels.length; i++) {
+                    final Member member = tuple.get(i);
+                    if (member.getLevel() != levels[i]
+                        || member.isCalculated()
+                        || member.isMeasure()
+                        || member.isNull())
+                    {
+                        return false;
+                    }
+                }
+                if (!tuples.add(levels.length == 1 ? tuple.get(0) : tuple)) {
+                    // Duplicate tuples would be counted more than once.
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Evaluates the current stored measure over a list of tuples by
+         * pushing the list into the evaluation context as a compound
+         * predicate. The cell is then read from (or loaded into) the segment
+         * cache by one request, typically one SQL statement with an
+         * {@code IN} list, rather than one cell per tuple.
+         *
+         * <p>The caller must have checked
+         * {@link #canPushDown(Evaluator, TupleList)}. If the DBMS limits the
+         * size of an {@code IN} list and the tuples cannot be collapsed to fit
+         * within {@link MondrianProperties#MaxConstraints}, returns null and
+         * the caller must aggregate tuple by tuple.
+         *
+         * @param evaluator Evaluation context
+         * @param tupleList List of members or tuples
+         * @return Aggregated value, {@link Util#nullValue} if empty, or null
+         *   if the aggregation could not be pushed down
+         */
+        static Object pushDown(
+            Evaluator evaluator,
+            TupleList tupleList)
+        {
+            final int maxConstraints =
+                MondrianProperties.instance().MaxConstraints.get();
+            if (tupleList.size() > maxConstraints
+                && !((RolapEvaluator) evaluator).getDialect()
+                    .supportsUnlimitedValueList())
+            {
+                tupleList = optimizeTupleList(evaluator, tupleList, false);
+                if (tupleList.size() > maxConstraints) {
+                    return null;
+                }
+            }
+            final Evaluator evaluator2 =
+                evaluator.pushAggregation(tupleList);
+            evaluator2.setNonEmpty(false);
+            final Object o = evaluator2.evaluateCurrent();
+            if (o == null) {
+                return Util.nullValue;
+            }
+            if (o instanceof Number && !(o instanceof Double)) {
+                // Be consistent with the result of the rollup aggregators.
+                return ((Number) o).doubleValue();
+            }
+            return o;
+        }
+
         /**
          * Analyzes a list of tuples and determines if the list can
          * be safely optimized. If a member of the tuple list is on
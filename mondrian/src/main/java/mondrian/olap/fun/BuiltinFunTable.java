@@ -30,8 +30,10 @@ import mondrian.calc.ListCalc;
 import mondrian.calc.MemberCalc;
 import mondrian.calc.StringCalc;
 import mondrian.calc.TupleList;
+import mondrian.calc.impl.AbstractBinaryDoubleCalc;
 import mondrian.calc.impl.AbstractBooleanCalc;
 import mondrian.calc.impl.AbstractDoubleCalc;
+import mondrian.calc.impl.AbstractDoubleComparisonCalc;
 import mondrian.calc.impl.AbstractIntegerCalc;
 import mondrian.calc.impl.AbstractLevelCalc;
 import mondrian.calc.impl.AbstractListCalc;
@@ -1304,23 +1306,9 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractDoubleCalc( call, new Calc[] { calc0, calc1 } ) {
-            public double evaluateDouble( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( v0 == DoubleNull ) {
-                if ( v1 == DoubleNull ) {
-                  return DoubleNull;
-                } else {
-                  return v1;
-                }
-              } else {
-                if ( v1 == DoubleNull ) {
-                  return v0;
-                } else {
-                  return v0 + v1;
-                }
-              }
+          return new AbstractBinaryDoubleCalc( call, calc0, calc1 ) {
+            protected double combine( double v0, double v1 ) {
+              return plus( v0, v1 );
             }
           };
         }
@@ -1336,23 +1324,9 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractDoubleCalc( call, new Calc[] { calc0, calc1 } ) {
-            public double evaluateDouble( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( v0 == DoubleNull ) {
-                if ( v1 == DoubleNull ) {
-                  return DoubleNull;
-                } else {
-                  return -v1;
-                }
-              } else {
-                if ( v1 == DoubleNull ) {
-                  return v0;
-                } else {
-                  return v0 - v1;
-                }
-              }
+          return new AbstractBinaryDoubleCalc( call, calc0, calc1 ) {
+            protected double combine( double v0, double v1 ) {
+              return minus( v0, v1 );
             }
           };
         }
@@ -1368,17 +1342,9 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractDoubleCalc( call, new Calc[] { calc0, calc1 } ) {
-            public double evaluateDouble( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              // Multiply and divide return null if EITHER arg is
-              // null.
-              if ( v0 == DoubleNull || v1 == DoubleNull ) {
-                return DoubleNull;
-              } else {
-                return v0 * v1;
-              }
+          return new AbstractBinaryDoubleCalc( call, calc0, calc1 ) {
+            protected double combine( double v0, double v1 ) {
+              return multiply( v0, v1 );
             }
           };
         }
@@ -1398,45 +1364,16 @@ public class BuiltinFunTable extends FunTableImpl {
             MondrianProperties.instance().NullDenominatorProducesNull
               .get();
 
-          // If the mondrian property
-          //   mondrian.olap.NullOrZeroDenominatorProducesNull
-          // is false(default), Null in denominator with numeric numerator
-          // returns infinity. This is consistent with MSAS.
-          //
-          // If this property is true, Null or zero in denominator returns
-          // Null. This is only used by certain applications and does not
-          // conform to MSAS behavior.
           if ( !isNullDenominatorProducesNull ) {
-            return new AbstractDoubleCalc(
-              call, new Calc[] { calc0, calc1 } ) {
-              public double evaluateDouble( Evaluator evaluator ) {
-                final double v0 = calc0.evaluateDouble( evaluator );
-                final double v1 = calc1.evaluateDouble( evaluator );
-                // Null in numerator always returns DoubleNull.
-                //
-                if ( v0 == DoubleNull ) {
-                  return DoubleNull;
-                } else if ( v1 == DoubleNull ) {
-                  // Null only in denominator returns Infinity.
-                  return Double.POSITIVE_INFINITY;
-                } else {
-                  return v0 / v1;
-                }
+            return new AbstractBinaryDoubleCalc( call, calc0, calc1 ) {
+              protected double combine( double v0, double v1 ) {
+                return divide( v0, v1 );
               }
             };
           } else {
-            return new AbstractDoubleCalc(
-              call, new Calc[] { calc0, calc1 } ) {
-              public double evaluateDouble( Evaluator evaluator ) {
-                final double v0 = calc0.evaluateDouble( evaluator );
-                final double v1 = calc1.evaluateDouble( evaluator );
-                // Null in numerator or denominator returns
-                // DoubleNull.
-                if ( v0 == DoubleNull || v1 == DoubleNull ) {
-                  return DoubleNull;
-                } else {
-                  return v0 / v1;
-                }
+            return new AbstractBinaryDoubleCalc( call, calc0, calc1 ) {
+              protected double combine( double v0, double v1 ) {
+                return divideNullDenominatorProducesNull( v0, v1 );
               }
             };
           }
@@ -1454,12 +1391,7 @@ public class BuiltinFunTable extends FunTableImpl {
           final DoubleCalc calc = compiler.compileDouble( call.getArg( 0 ) );
           return new AbstractDoubleCalc( call, new Calc[] { calc } ) {
             public double evaluateDouble( Evaluator evaluator ) {
-              final double v = calc.evaluateDouble( evaluator );
-              if ( v == DoubleNull ) {
-                return DoubleNull;
-              } else {
-                return -v;
-              }
+              return negate( calc.evaluateDouble( evaluator ) );
             }
           };
         }
@@ -1614,16 +1546,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 == v1;
             }
           };
@@ -1663,16 +1587,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 != v1;
             }
           };
@@ -1689,16 +1605,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 < v1;
             }
           };
@@ -1738,16 +1646,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 <= v1;
             }
           };
@@ -1787,16 +1687,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 > v1;
             }
           };
@@ -1836,16 +1728,8 @@ public class BuiltinFunTable extends FunTableImpl {
         public Calc compileCall( ResolvedFunCall call, ExpCompiler compiler ) {
           final DoubleCalc calc0 = compiler.compileDouble( call.getArg( 0 ) );
           final DoubleCalc calc1 = compiler.compileDouble( call.getArg( 1 ) );
-          return new AbstractBooleanCalc( call, new Calc[] { calc0, calc1 } ) {
-            public boolean evaluateBoolean( Evaluator evaluator ) {
-              final double v0 = calc0.evaluateDouble( evaluator );
-              final double v1 = calc1.evaluateDouble( evaluator );
-              if ( Double.isNaN( v0 )
-                || Double.isNaN( v1 )
-                || v0 == DoubleNull
-                || v1 == DoubleNull ) {
-                return BooleanNull;
-              }
+          return new AbstractDoubleComparisonCalc( call, calc0, calc1 ) {
+            protected boolean compare( double v0, double v1 ) {
               return v0 >= v1;
             }
           };
@@ -1958,4 +1842,97 @@ public class BuiltinFunTable extends FunTableImpl {
     return instance;
   }
 
+  // The following methods implement the arithmetic operators. Arguments and
+  // results may be DoubleNull. They are public so that other compilers, such
+  // as MethodHandleExpCompiler, give the same results as these operators.
+
+  /**
+   * Implements the <code>+</code> operator. Null is ignored, unless both
+   * arguments are null.
+   */
+  public static double plus( double v0, double v1 ) {
+    if ( v0 == FunUtil.DoubleNull ) {
+      if ( v1 == FunUtil.DoubleNull ) {
+        return FunUtil.DoubleNull;
+      } else {
+        return v1;
+      }
+    } else {
+      if ( v1 == FunUtil.DoubleNull ) {
+        return v0;
+      } else {
+        return v0 + v1;
+      }
+    }
+  }
+
+  /**
+   * Implements the binary <code>-</code> operator. Null is treated as zero,
+   * unless both arguments are null.
+   */
+  public static double minus( double v0, double v1 ) {
+    if ( v0 == FunUtil.DoubleNull ) {
+      if ( v1 == FunUtil.DoubleNull ) {
+        return FunUtil.DoubleNull;
+      } else {
+        return -v1;
+      }
+    } else {
+      if ( v1 == FunUtil.DoubleNull ) {
+        return v0;
+      } else {
+        return v0 - v1;
+      }
+    }
+  }
+
+  /**
+   * Implements the <code>*</code> operator. Returns null if either argument
+   * is null.
+   */
+  public static double multiply( double v0, double v1 ) {
+    if ( v0 == FunUtil.DoubleNull || v1 == FunUtil.DoubleNull ) {
+      return FunUtil.DoubleNull;
+    } else {
+      return v0 * v1;
+    }
+  }
+
+  /**
+   * Implements the <code>/</code> operator if
+   * {@link MondrianProperties#NullDenominatorProducesNull} is false (the
+   * default). Null in the numerator returns null; null only in the
+   * denominator returns infinity. This is consistent with MSAS.
+   */
+  public static double divide( double v0, double v1 ) {
+    if ( v0 == FunUtil.DoubleNull ) {
+      return FunUtil.DoubleNull;
+    } else if ( v1 == FunUtil.DoubleNull ) {
+      return Double.POSITIVE_INFINITY;
+    } else {
+      return v0 / v1;
+    }
+  }
+
+  /**
+   * Implements the <code>/</code> operator if
+   * {@link MondrianProperties#NullDenominatorProducesNull} is true. Null in
+   * the numerator or denominator returns null. This is only used by certain
+   * applications and does not conform to MSAS behavior.
+   */
+  public static double divideNullDenominatorProducesNull(
+    double v0, double v1 ) {
+    if ( v0 == FunUtil.DoubleNull || v1 == FunUtil.DoubleNull ) {
+      return FunUtil.DoubleNull;
+    } else {
+      return v0 / v1;
+    }
+  }
+
+  /**
+   * Implements the unary <code>-</code> operator.
+   */
+  public static double negate( double v ) {
+    return v == FunUtil.DoubleNull ? FunUtil.DoubleNull : -v;
+  }
 }
@@ -14,11 +14,12 @@
 
 package mondrian.olap.fun;
 
-import mondrian.calc.Calc;
-import mondrian.calc.ExpCompiler;
+import mondrian.calc.*;
+import mondrian.calc.impl.BatchCalcs;
 import mondrian.calc.impl.GenericCalc;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
+import mondrian.olap.type.NumericType;
 
 import java.util.List;
 
@@ -44,6 +45,9 @@ public class CoalesceEmptyFunDef extends FunDefBase {
         for (int i = 0; i < args.length; i++) {
             calcs[i] = compiler.compileScalar(args[i], true);
         }
+        if (call.getType() instanceof NumericType && allDouble(calcs)) {
+            return new NumericCoalesceEmptyCalc(call, calcs);
+        }
         return new GenericCalc(call) {
             public Object evaluate(Evaluator evaluator) {
                 for (Calc calc : calcs) {
@@ -61,6 +65,65 @@ public class CoalesceEmptyFunDef extends FunDefBase {
         };
     }
 
+    private static boolean allDouble(Calc[] calcs) {
+        for (Calc calc : calcs) {
+            if (!(calc instanceof DoubleCalc)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compiled numeric <code>CoalesceEmpty</code> expression.
+     *
+     * <p>Over a list of tuples, evaluates each argument only for the tuples
+     * whose previous arguments were all empty.
+     */
+    private static class NumericCoalesceEmptyCalc
+        extends GenericCalc
+        implements DoubleBatchCalc
+    {
+        NumericCoalesceEmptyCalc(Exp exp, Calc[] calcs) {
+            super(exp, calcs);
+        }
+
+        public Object evaluate(Evaluator evaluator) {
+            for (Calc calc : getCalcs()) {
+                final Object o = calc.evaluate(evaluator);
+                if (o != null) {
+                    return o;
+                }
+            }
+            return null;
+        }
+
+        public void evaluateDoubles(
+            Evaluator evaluator,
+            TupleList list,
+            double[] values)
+        {
+            final int n = list.size();
+            final int[] positions = new int[n];
+            for (int i = 0; i < n; i++) {
+                positions[i] = i;
+            }
+            int count = n;
+            for (Calc calc : getCalcs()) {
+                BatchCalcs.evaluateDoubles(
+                    (DoubleCalc) calc, evaluator, list, positions, count,
+                    values);
+                int remaining = 0;
+                for (int k = 0; k < count; k++) {
+                    if (values[positions[k]] == FunUtil.DoubleNull) {
+                        positions[remaining++] = positions[k];
+                    }
+                }
+                count = remaining;
+            }
+        }
+    }
+
     private static class ResolverImpl extends ResolverBase {
         public ResolverImpl() {
             super(
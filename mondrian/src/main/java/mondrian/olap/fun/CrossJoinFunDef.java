@@ -55,6 +55,7 @@ import mondrian.olap.type.Type;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.RolapEvaluator;
 import mondrian.rolap.SqlConstraintUtils;
+import mondrian.rolap.agg.ExistenceIndexRegistry;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
 import mondrian.util.CancellationChecker;
@@ -873,7 +874,15 @@ public class CrossJoinFunDef extends FunDefBase {
       final TupleCursor cursor = list.tupleCursor();
       int currentIteration = 0;
       Execution execution = query.getStatement().getCurrentExecution();
+      // Tuples whose keys do not occur together in the fact table are
+      // empty; discard them without evaluating cells.
+      final ExistenceIndexRegistry.Filter existenceFilter =
+        ExistenceIndexRegistry.createFilter( evaluator, measureSet, memberSet );
       while ( cursor.forward() ) {
+        if ( existenceFilter != null && !existenceFilter.mayExist( cursor.current() ) ) {
+          CancellationChecker.checkCancelOrTimeout( currentIteration++, execution );
+          continue;
+        }
         cursor.setContext( evaluator );
         for ( Member member : memberSet ) {
           // memberSet contains members referenced within measures.
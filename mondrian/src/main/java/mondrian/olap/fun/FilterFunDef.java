@@ -160,6 +160,9 @@ class FilterFunDef extends FunDefBase {
                     TupleCollections.createList(
                         list.getArity(), list.size() / 2);
                 evaluator.setNonEmpty(false);
+                if (BatchCalcs.isBatchable(bcalc)) {
+                    return filterBatch(evaluator, list, bcalc, result);
+                }
                 TupleCursor cursor = list.tupleCursor();
                 int currentIteration = 0;
                 Execution execution =
@@ -198,6 +201,9 @@ class FilterFunDef extends FunDefBase {
             final int savepoint = evaluator.savepoint();
             try {
                 evaluator.setNonEmpty(false);
+                if (BatchCalcs.isBatchable(bcalc)) {
+                    return filterBatch(evaluator, members, bcalc, result);
+                }
                 TupleCursor cursor = members.tupleCursor();
                 int currentIteration = 0;
                 Execution execution =
@@ -339,6 +345,9 @@ class FilterFunDef extends FunDefBase {
             final int savepoint = evaluator.savepoint();
             try {
                 evaluator.setNonEmpty(false);
+                if (BatchCalcs.isBatchable(bcalc)) {
+                    return filterBatch(evaluator, members0, bcalc, result);
+                }
                 final TupleCursor cursor = members0.tupleCursor();
                 int currentIteration = 0;
                 Execution execution =
@@ -378,6 +387,9 @@ class FilterFunDef extends FunDefBase {
                 // for capacity planning, guess selectivity = .5
                 TupleList result = members0.cloneList(members0.size() / 2);
                 evaluator.setNonEmpty(false);
+                if (BatchCalcs.isBatchable(bcalc)) {
+                    return filterBatch(evaluator, members0, bcalc, result);
+                }
                 final TupleCursor cursor = members0.tupleCursor();
                 int currentIteration = 0;
                 Execution execution = evaluator.getQuery()
@@ -397,6 +409,32 @@ class FilterFunDef extends FunDefBase {
             }
         }
     }
+
+    /**
+     * Filters a list using the batch form of a condition, evaluating the
+     * condition for every tuple in one call rather than one tuple at a time.
+     *
+     * @param evaluator Evaluator
+     * @param list List to filter
+     * @param bcalc Condition; implements a batch interface
+     * @param result List to which to add tuples that match the condition
+     * @return Result list
+     */
+    private static TupleList filterBatch(
+        Evaluator evaluator,
+        TupleList list,
+        BooleanCalc bcalc,
+        TupleList result)
+    {
+        final boolean[] flags = new boolean[list.size()];
+        BatchCalcs.evaluateBooleans(bcalc, evaluator, list, flags);
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i]) {
+                result.add(list.get(i));
+            }
+        }
+        return result;
+    }
 }
 
 // End FilterFunDef.java
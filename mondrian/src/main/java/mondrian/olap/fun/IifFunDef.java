@@ -146,6 +146,13 @@ public class IifFunDef extends FunDefBase {
                     compiler.compileBoolean(call.getArg(0));
                 final Calc calc1 = compiler.compileScalar(call.getArg(1), true);
                 final Calc calc2 = compiler.compileScalar(call.getArg(2), true);
+                if (calc1 instanceof DoubleCalc
+                    && calc2 instanceof DoubleCalc)
+                {
+                    return new NumericIifCalc(
+                        call, booleanCalc, (DoubleCalc) calc1,
+                        (DoubleCalc) calc2);
+                }
                 return new GenericCalc(call) {
                     public Object evaluate(Evaluator evaluator) {
                         final boolean b =
@@ -251,6 +258,65 @@ public class IifFunDef extends FunDefBase {
             "IIf",
             "Returns one of two set values determined by a logical test.",
             "fxbxx");
+
+    /**
+     * Compiled numeric <code>IIf</code> expression.
+     *
+     * <p>Over a list of tuples, evaluates the condition for every tuple, then
+     * each branch only for the tuples that select it.
+     */
+    private static class NumericIifCalc
+        extends GenericCalc
+        implements DoubleBatchCalc
+    {
+        private final BooleanCalc booleanCalc;
+        private final DoubleCalc calc1;
+        private final DoubleCalc calc2;
+
+        NumericIifCalc(
+            Exp exp,
+            BooleanCalc booleanCalc,
+            DoubleCalc calc1,
+            DoubleCalc calc2)
+        {
+            super(exp, new Calc[] {booleanCalc, calc1, calc2});
+            this.booleanCalc = booleanCalc;
+            this.calc1 = calc1;
+            this.calc2 = calc2;
+        }
+
+        public Object evaluate(Evaluator evaluator) {
+            final boolean b = booleanCalc.evaluateBoolean(evaluator);
+            Calc calc = b ? calc1 : calc2;
+            return calc.evaluate(evaluator);
+        }
+
+        public void evaluateDoubles(
+            Evaluator evaluator,
+            TupleList list,
+            double[] values)
+        {
+            final int n = list.size();
+            final boolean[] conditions = new boolean[n];
+            BatchCalcs.evaluateBooleans(
+                booleanCalc, evaluator, list, conditions);
+            final int[] positions1 = new int[n];
+            final int[] positions2 = new int[n];
+            int count1 = 0;
+            int count2 = 0;
+            for (int i = 0; i < n; i++) {
+                if (conditions[i]) {
+                    positions1[count1++] = i;
+                } else {
+                    positions2[count2++] = i;
+                }
+            }
+            BatchCalcs.evaluateDoubles(
+                calc1, evaluator, list, positions1, count1, values);
+            BatchCalcs.evaluateDoubles(
+                calc2, evaluator, list, positions2, count2, values);
+        }
+    }
 }
 
 // End IifFunDef.java
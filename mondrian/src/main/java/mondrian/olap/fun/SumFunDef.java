@@ -16,9 +16,11 @@ package mondrian.olap.fun;
 
 import mondrian.calc.*;
 import mondrian.calc.impl.AbstractDoubleCalc;
+import mondrian.calc.impl.BatchCalcs;
 import mondrian.calc.impl.ValueCalc;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
+import mondrian.rolap.RolapAggregator;
 
 /**
  * Definition of the <code>Sum</code> MDX function.
@@ -115,6 +117,20 @@ class SumFunDef extends AbstractAggregateFunDef {
         try {
           TupleList memberList = evaluateCurrentList( listCalc, evaluator );
           evaluator.setNonEmpty( false );
+          if ( calc instanceof ValueCalc && isSummable( evaluator )
+            && AggregateFunDef.AggregateCalc.canPushDown( evaluator, memberList ) ) {
+            final Object o = AggregateFunDef.AggregateCalc.pushDown( evaluator, memberList );
+            if ( o == Util.nullValue ) {
+              return DoubleNull;
+            } else if ( o instanceof Number ) {
+              return ( (Number) o ).doubleValue();
+            } else if ( o != null ) {
+              return Double.NaN;
+            }
+          }
+          if ( calc instanceof DoubleBatchCalc && BatchCalcs.isBatchable( calc ) ) {
+            return sumBatch( evaluator, memberList, (DoubleCalc) calc );
+          }
           return sumDouble( evaluator, memberList, calc );
         } finally {
           evaluator.restore( savepoint );
@@ -127,6 +143,34 @@ class SumFunDef extends AbstractAggregateFunDef {
       }
     };
   }
+
+  /**
+   * Sums a numeric expression over a list, evaluating the expression for every tuple in one call. Gives the same
+   * result as {@link FunUtil#sumDouble(Evaluator, TupleList, Calc)}: null values are ignored, and the sum of no
+   * values is null.
+   */
+  private static double sumBatch( Evaluator evaluator, TupleList list, DoubleCalc calc ) {
+    final double[] values = new double[ list.size() ];
+    BatchCalcs.evaluateDoubles( calc, evaluator, list, values );
+    double sum = 0.0;
+    boolean empty = true;
+    for ( double value : values ) {
+      if ( value != DoubleNull ) {
+        sum += value;
+        empty = false;
+      }
+    }
+    return empty ? DoubleNull : sum;
+  }
+
+  /**
+   * Returns whether the sum of the current measure over a set of tuples equals the value of the measure over the
+   * union of the tuples; true if the measure is aggregated using sum or count.
+   */
+  private static boolean isSummable( Evaluator evaluator ) {
+    final Object aggregator = evaluator.getProperty( Property.AGGREGATION_TYPE.name, null );
+    return aggregator == RolapAggregator.Sum || aggregator == RolapAggregator.Count;
+  }
 }
 
 // End SumFunDef.java
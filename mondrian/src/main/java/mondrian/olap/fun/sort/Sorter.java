@@ -15,16 +15,21 @@ package mondrian.olap.fun.sort;
 
 import com.google.common.annotations.VisibleForTesting;
 import mondrian.calc.Calc;
+import mondrian.calc.DoubleBatchCalc;
+import mondrian.calc.DoubleCalc;
 import mondrian.calc.TupleCollections;
 import mondrian.calc.TupleCursor;
 import mondrian.calc.TupleIterable;
 import mondrian.calc.TupleList;
+import mondrian.calc.impl.BatchCalcs;
 import mondrian.calc.impl.DelegatingTupleList;
+import mondrian.calc.impl.UnaryTupleList;
 import mondrian.olap.Dimension;
 import mondrian.olap.Evaluator;
 import mondrian.olap.Member;
 import mondrian.olap.Util;
 import mondrian.olap.fun.MemberOrderKeyFunDef;
+import mondrian.olap.type.NumericType;
 import mondrian.olap.type.ScalarType;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.RolapHierarchy;
@@ -82,6 +87,21 @@ public class Sorter {
     Iterable<Member> memberIter,
     List<Member> memberList,
     boolean parentsToo ) {
+    if ( !parentsToo && isBatchable( exp ) ) {
+      final List<Member> members = new ArrayList<>();
+      for ( Member member : memberIter ) {
+        members.add( member );
+      }
+      if ( memberList != null ) {
+        memberList.addAll( members );
+      }
+      final Object[] values = evaluateBatch( evaluator, exp, new UnaryTupleList( members ) );
+      final Map<Member, Object> mapMemberToValue = new HashMap<>();
+      for ( int i = 0; i < values.length; i++ ) {
+        mapMemberToValue.put( members.get( i ), values[ i ] );
+      }
+      return mapMemberToValue;
+    }
     final int savepoint = evaluator.savepoint();
     try {
       assert exp.getType() instanceof ScalarType;
@@ -126,6 +146,14 @@ public class Sorter {
     Evaluator evaluator,
     Calc exp,
     TupleList tuples ) {
+    if ( isBatchable( exp ) ) {
+      final Object[] values = evaluateBatch( evaluator, exp, tuples );
+      final Map<List<Member>, Object> mapMemberToValue = new HashMap<>();
+      for ( int i = 0; i < values.length; i++ ) {
+        mapMemberToValue.put( tuples.get( i ), values[ i ] );
+      }
+      return mapMemberToValue;
+    }
     final int savepoint = evaluator.savepoint();
 
     try {
@@ -146,6 +174,33 @@ public class Sorter {
     }
   }
 
+  /**
+   * Returns whether the sort key can be evaluated for a whole list in one call. The expression must be numeric, so
+   * that the value it yields via {@link Calc#evaluate} compares equal to the boxed form of its <code>double</code>
+   * value, and the batch result is indistinguishable from evaluating one tuple at a time. (A measure such as
+   * <code>[Measures].[Unit Sales]</code> has no declared type and might yield strings, so is not batched.)
+   */
+  private static boolean isBatchable( Calc exp ) {
+    return exp instanceof DoubleBatchCalc
+      && exp.getType() instanceof NumericType
+      && BatchCalcs.isBatchable( exp );
+  }
+
+  /**
+   * Evaluates a numeric sort key for every tuple in a list, returning the values as they would be stored in a value
+   * map (with {@link Util#nullValue} standing for null).
+   */
+  private static Object[] evaluateBatch( Evaluator evaluator, Calc exp, TupleList list ) {
+    final int n = list.size();
+    final double[] doubles = new double[ n ];
+    BatchCalcs.evaluateDoubles( (DoubleCalc) exp, evaluator, list, doubles );
+    final Object[] values = new Object[ n ];
+    for ( int i = 0; i < n; i++ ) {
+      values[ i ] = doubles[ i ] == DoubleNull ? Util.nullValue : doubles[ i ];
+    }
+    return values;
+  }
+
   /**
    * Helper function to sort a list of members according to an expression.
    *
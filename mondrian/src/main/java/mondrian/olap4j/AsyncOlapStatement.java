@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.olap4j;
+
+import org.olap4j.CellSet;
+import org.olap4j.OlapException;
+import org.olap4j.OlapStatement;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Extension to {@link OlapStatement} that executes queries without blocking
+ * the calling thread.
+ *
+ * <p>Statements created by mondrian's olap4j driver implement this
+ * interface. To use it, call
+ * {@code statement.unwrap(AsyncOlapStatement.class)}.</p>
+ */
+public interface AsyncOlapStatement extends OlapStatement {
+    /**
+     * Executes an MDX query without blocking the calling thread.
+     *
+     * <p>The query is parsed, and any previously open cell set closed, on
+     * the calling thread; the query then waits for, and runs on, one of the
+     * server's query threads. The returned future completes with the cell
+     * set, or exceptionally with an {@link OlapException} if the query
+     * fails, is canceled, or times out. Cancelling the future cancels
+     * the query.</p>
+     *
+     * @param mdx MDX query string
+     * @return Future cell set
+     * @throws OlapException if the query cannot be parsed
+     */
+    CompletableFuture<CellSet> executeOlapQueryAsync(String mdx)
+        throws OlapException;
+}
+
+// End AsyncOlapStatement.java
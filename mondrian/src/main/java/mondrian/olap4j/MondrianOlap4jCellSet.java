@@ -31,6 +31,7 @@ import java.net.URL;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of {@link CellSet}
@@ -89,9 +90,59 @@ abstract class MondrianOlap4jCellSet
      * @throws org.olap4j.OlapException on error
      */
     void execute() throws OlapException {
-        result =
+        initialize(
             olap4jStatement.olap4jConnection.getMondrianConnection().execute(
-                this);
+                this));
+    }
+
+    /**
+     * Executes a query without blocking the calling thread. Not part of the
+     * olap4j API; internal to the mondrian driver.
+     *
+     * <p>The returned future completes once this cell set's axes are
+     * initialized, or exceptionally with the exception that
+     * {@link #execute()} would have thrown, unwrapped. Cancelling the future
+     * cancels the execution.
+     *
+     * @return Future result
+     * @throws org.olap4j.OlapException on error
+     */
+    CompletableFuture<Result> executeAsync() throws OlapException {
+        final CompletableFuture<Result> execution =
+            olap4jStatement.olap4jConnection.getMondrianConnection()
+                .executeAsync(this);
+        final CompletableFuture<Result> future =
+            new CompletableFuture<Result>() {
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    final boolean canceled =
+                        super.cancel(mayInterruptIfRunning);
+                    execution.cancel(mayInterruptIfRunning);
+                    return canceled;
+                }
+            };
+        execution.whenComplete(
+            (result, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    initialize(result);
+                    future.complete(result);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        return future;
+    }
+
+    /**
+     * Initializes this cell set's axes from the result of its execution.
+     *
+     * @param result Result
+     */
+    private void initialize(Result result) {
+        this.result = result;
 
         // initialize axes
         mondrian.olap.Axis[] axes = result.getAxes();
@@ -29,6 +29,8 @@ import java.io.StringWriter;
 import java.sql.*;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of {@link org.olap4j.OlapStatement}
@@ -39,7 +41,7 @@ import java.util.List;
  */
 abstract class MondrianOlap4jStatement
     extends StatementImpl
-    implements OlapStatement, mondrian.server.Statement
+    implements OlapStatement, AsyncOlapStatement, mondrian.server.Statement
 {
     final MondrianOlap4jConnection olap4jConnection;
     private boolean closed;
@@ -395,40 +397,113 @@ abstract class MondrianOlap4jStatement
         Query query,
         MondrianOlap4jCellSetMetaData cellSetMetaData) throws OlapException
     {
-        // Close the previous open CellSet, if there is one.
-        synchronized (this) {
-            if (openCellSet != null) {
-                final MondrianOlap4jCellSet cs = openCellSet;
-                openCellSet = null;
-                try {
-                    cs.close();
-                } catch (Exception e) {
-                    throw olap4jConnection.helper.createException(
-                        null, "Error while closing previous CellSet", e);
+        final MondrianOlap4jCellSet cellSet = newOpenCellSet(query);
+        // Release the monitor before executing, to give another thread the
+        // opportunity to call cancel.
+        try {
+            cellSet.execute();
+        } catch (MondrianException e) {
+            throw createExecuteException(e);
+        }
+        return cellSet;
+    }
+
+    public CompletableFuture<CellSet> executeOlapQueryAsync(String mdx)
+        throws OlapException
+    {
+        final Pair<Query, MondrianOlap4jCellSetMetaData> pair = parseQuery(mdx);
+        final MondrianOlap4jCellSet cellSet = newOpenCellSet(pair.left);
+        final CompletableFuture<Result> execution = cellSet.executeAsync();
+        final CompletableFuture<CellSet> future =
+            new CompletableFuture<CellSet>() {
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    final boolean canceled =
+                        super.cancel(mayInterruptIfRunning);
+                    execution.cancel(mayInterruptIfRunning);
+                    return canceled;
                 }
-            }
+            };
+        execution.whenComplete(
+            (result, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(createExecuteException(e));
+                } else {
+                    future.complete(cellSet);
+                }
+            });
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Executes via a new cell set, which becomes this statement's open
+     * cell set; see {@link #start(Execution)}.
+     */
+    @Override
+    public CompletableFuture<Result> executeAsync() {
+        try {
+            return newOpenCellSet(query).executeAsync();
+        } catch (OlapException e) {
+            final CompletableFuture<Result> future =
+                new CompletableFuture<Result>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
 
-            if (olap4jConnection.preferList) {
-                query.setResultStyle(ResultStyle.LIST);
+    /**
+     * Closes the previous open cell set, if there is one, and creates a
+     * cell set for a query, which becomes the open cell set.
+     *
+     * @param query Parsed query
+     * @return Cell set, not yet executed
+     * @throws OlapException if the previous cell set cannot be closed
+     */
+    private synchronized MondrianOlap4jCellSet newOpenCellSet(Query query)
+        throws OlapException
+    {
+        if (openCellSet != null) {
+            final MondrianOlap4jCellSet cs = openCellSet;
+            openCellSet = null;
+            try {
+                cs.close();
+            } catch (Exception e) {
+                throw olap4jConnection.helper.createException(
+                    null, "Error while closing previous CellSet", e);
             }
-            this.query = query;
-            openCellSet = olap4jConnection.factory.newCellSet(this);
         }
-        // Release the monitor before executing, to give another thread the
-        // opportunity to call cancel.
-        try {
-            openCellSet.execute();
-        } catch (QueryCanceledException e) {
-            throw olap4jConnection.helper.createException(
+
+        if (olap4jConnection.preferList) {
+            query.setResultStyle(ResultStyle.LIST);
+        }
+        this.query = query;
+        openCellSet = olap4jConnection.factory.newCellSet(this);
+        return openCellSet;
+    }
+
+    /**
+     * Converts an exception thrown while executing a query into an
+     * {@link OlapException}.
+     *
+     * @param e Exception
+     * @return OlapException
+     */
+    private OlapException createExecuteException(Throwable e) {
+        if (e instanceof OlapException) {
+            return (OlapException) e;
+        } else if (e instanceof QueryCanceledException
+            || e instanceof CancellationException)
+        {
+            return olap4jConnection.helper.createException(
                 "Query canceled", e);
-        } catch (QueryTimeoutException e) {
-            throw olap4jConnection.helper.createException(
+        } else if (e instanceof QueryTimeoutException) {
+            return olap4jConnection.helper.createException(
                 e.getMessage(), e);
-        } catch (MondrianException e) {
-            throw olap4jConnection.helper.createException(
+        } else {
+            return olap4jConnection.helper.createException(
                 "mondrian gave exception while executing query", e);
         }
-        return openCellSet;
     }
 
     @Override
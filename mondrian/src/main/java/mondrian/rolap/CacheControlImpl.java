@@ -210,6 +210,32 @@ public class CacheControlImpl implements CacheControl {
         }
     }
 
+    public void refresh(final CellRegion region) {
+        Locus.execute(
+            connection,
+            "Refresh",
+            new Locus.Action<Void>() {
+                public Void execute() {
+                    refreshInternal(region);
+                    return null;
+                }
+            });
+    }
+
+    private void refreshInternal(CellRegion region) {
+        if (region instanceof EmptyCellRegion) {
+            return;
+        }
+        if (!containsMeasures(region)) {
+            throw MondrianResource.instance().CacheFlushRegionMustContainMembers
+                .ex();
+        }
+        final UnionCellRegion union = normalize((CellRegionImpl) region);
+        for (CellRegionImpl cellRegion : union.regions) {
+            refreshNonUnion(cellRegion);
+        }
+    }
+
     /**
      * Flushes a list of cell regions.
      *
@@ -313,6 +339,10 @@ public class CacheControlImpl implements CacheControl {
         throw new UnsupportedOperationException();
     }
 
+    protected void refreshNonUnion(CellRegion region) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Normalizes a CellRegion into a union of crossjoins of member regions.
      *
@@ -1772,12 +1802,14 @@ public class CacheControlImpl implements CacheControl {
 
                 // Remove the member from its parent's lists. First try the
                 // unconstrained cache.
-                final List<RolapMember> childrenList =
+                List<RolapMember> childrenList =
                     memberCache.getChildrenFromCache(
                         previousParent,
                         DefaultMemberChildrenConstraint.instance());
                 if (childrenList != null) {
-                    // A list existed before. Let's splice it.
+                    // A list existed before. Let's splice a copy of it;
+                    // readers of the cache do not lock.
+                    childrenList = new ArrayList<RolapMember>(childrenList);
                     childrenList.remove(member);
                     memberCache.putChildren(
                         previousParent,
@@ -1793,17 +1825,18 @@ public class CacheControlImpl implements CacheControl {
                     null);
 
                 // Let's update the level members cache.
-                final List<RolapMember> levelMembers =
+                List<RolapMember> levelMembers =
                     memberCache
                         .getLevelMembersFromCache(
                             member.getLevel(),
                             DefaultTupleConstraint.instance());
                 if (levelMembers != null) {
+                    levelMembers = new ArrayList<RolapMember>(levelMembers);
                     levelMembers.remove(member);
                     memberCache.putChildren(
                         member.getLevel(),
                         DefaultTupleConstraint.instance(),
-                        childrenList);
+                        levelMembers);
                 }
 
                 // Remove the member itself. The MemberCacheHelper takes care of
@@ -1853,10 +1886,9 @@ public class CacheControlImpl implements CacheControl {
                     // There was no cached list. We can ignore.
                 } else {
                     // A list existed before. We can save a SQL query.
-                    // Might be immutable. Let's append to it.
-                    if (childrenList.isEmpty()) {
-                        childrenList = new ArrayList<RolapMember>();
-                    }
+                    // Append to a copy of it; it might be immutable, and
+                    // readers of the cache do not lock.
+                    childrenList = new ArrayList<RolapMember>(childrenList);
                     childrenList.add(member);
                     memberCache.putChildren(
                         parent,
@@ -1864,14 +1896,15 @@ public class CacheControlImpl implements CacheControl {
                         childrenList);
                 }
 
-                final List<RolapMember> levelMembers =
+                List<RolapMember> levelMembers =
                     memberCache
                         .getLevelMembersFromCache(
                             member.getLevel(),
                             DefaultTupleConstraint.instance());
                 if (levelMembers != null) {
                     // There was already a cached list.
-                    // Let's append to it.
+                    // Let's append to a copy of it.
+                    levelMembers = new ArrayList<RolapMember>(levelMembers);
                     levelMembers.add(member);
                     memberCache.putChildren(
                         member.getLevel(),
@@ -21,6 +21,7 @@ import mondrian.rolap.cache.SegmentCacheIndex;
 import mondrian.rolap.cache.SegmentCacheIndexImpl;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.spi.*;
 import mondrian.util.*;
 
@@ -85,6 +86,13 @@ public class FastBatchingCellReader implements CellReader {
 
     private final List<CellRequest> cellRequests = new ArrayList<CellRequest>();
 
+    /**
+     * Request that was last found in cache, and is reused for the next cell;
+     * or null. A request that misses may become part of a batch, so is not
+     * reused.
+     */
+    private CellRequest spareRequest;
+
     private final Execution execution;
 
     /**
@@ -110,14 +118,14 @@ public class FastBatchingCellReader implements CellReader {
         cacheEnabled = !MondrianProperties.instance().DisableCaching.get();
 
         cellRequestLimit =
-            MondrianProperties.instance().CellBatchSize.get() <= 0
-                ? 100000 // TODO Make this logic into a pluggable algorithm.
-                : MondrianProperties.instance().CellBatchSize.get();
+            cube.getStar() == null
+                ? AdaptiveBatchSizer.getFixedCellRequestLimit()
+                : cube.getStar().getBatchSizer().getCellRequestLimit();
     }
 
     public Object get(RolapEvaluator evaluator) {
         final CellRequest request =
-            RolapAggregationManager.makeRequest(evaluator);
+            RolapAggregationManager.makeRequest(evaluator, spareRequest);
 
         if (request == null || request.isUnsatisfiable()) {
             return Util.nullValue; // request not satisfiable.
@@ -130,8 +138,10 @@ public class FastBatchingCellReader implements CellReader {
         assert o != Boolean.TRUE : "getCellFromCache no longer returns TRUE";
         if (o != null) {
             ++hitCount;
+            spareRequest = request;
             return o;
         }
+        spareRequest = null;
 
         // If this query has not had any cache misses, it's worth doing a
         // synchronous request for the cell segment. If it is in the cache, it
@@ -231,6 +241,9 @@ public class FastBatchingCellReader implements CellReader {
             return false;
         }
 
+        final long startNanos = System.nanoTime();
+        final int cellRequestCount = cellRequests.size();
+
         // List of futures yielding segments populated by SQL statements. If
         // loading requires several iterations, we just append to the list. We
         // don't mind if it takes a while for SQL statements to return.
@@ -445,6 +458,14 @@ public class FastBatchingCellReader implements CellReader {
 
         dirty = false;
         cellRequests.clear();
+
+        final String mode =
+            MondrianProperties.instance().CellBatchAdaptive.get()
+                ? "adaptive"
+                : "fixed";
+        MondrianMetrics.CELL_BATCH_LOAD.get(mode)
+            .record(System.nanoTime() - startNanos);
+        MondrianMetrics.CELL_BATCH_CELLS.get(mode).add(cellRequestCount);
         return true;
     }
 
@@ -1254,13 +1275,109 @@ class BatchLoader {
             final StarColumnPredicate[] predicates = initPredicates();
             final long t1 = System.currentTimeMillis();
 
+            // A batch that is not part of a grouping-sets statement may be
+            // split into several statements, which run in parallel.
+            final List<StarColumnPredicate[]> partitions =
+                groupingSetsCollector.useGroupingSets()
+                    ? Collections.singletonList(predicates)
+                    : partition(predicates);
+            if (partitions.size() == 1) {
+                loadPartition(
+                    predicates,
+                    measuresList,
+                    cellRequestCount,
+                    groupingSetsCollector,
+                    segmentFutures);
+            } else {
+                MondrianMetrics.CELL_BATCH_PARTITIONS.get()
+                    .add(partitions.size());
+                for (StarColumnPredicate[] partition : partitions) {
+                    loadPartition(
+                        partition,
+                        new ArrayList<RolapStar.Measure>(measuresList),
+                        Math.max(1, cellRequestCount / partitions.size()),
+                        groupingSetsCollector,
+                        segmentFutures);
+                }
+            }
+
+            if (BATCH_LOGGER.isDebugEnabled()) {
+                final long t2 = System.currentTimeMillis();
+                BATCH_LOGGER.debug(
+                    "Batch.load (millis) " + (t2 - t1));
+            }
+        }
+
+        /**
+         * Splits the predicates of this batch into partitions, one per
+         * statement, as advised by the star's {@link AdaptiveBatchSizer}.
+         * The column with the most values is split into contiguous ranges of
+         * its sorted values; the other columns are the same in each
+         * partition. Each partition becomes a segment of its own.
+         *
+         * @param predicates Predicates, one per column
+         * @return List of partitions; the predicates themselves if the batch
+         *   is not to be split
+         */
+        private List<StarColumnPredicate[]> partition(
+            StarColumnPredicate[] predicates)
+        {
+            long rowCount = 1;
+            for (int j = 0; j < columns.length; j++) {
+                final int valueCount = valueSets[j].size();
+                rowCount =
+                    rowCount > Long.MAX_VALUE / Math.max(1, valueCount)
+                        ? Long.MAX_VALUE
+                        : rowCount * Math.max(1, valueCount);
+            }
+            final int splitColumn = ListColumnPredicate.findLongest(predicates);
+            if (splitColumn < 0) {
+                return Collections.singletonList(predicates);
+            }
+            final int partitionCount =
+                Math.min(
+                    getStar().getBatchSizer().getPartitionCount(rowCount),
+                    ((ListColumnPredicate) predicates[splitColumn])
+                        .getPredicates().size());
+            if (partitionCount <= 1) {
+                return Collections.singletonList(predicates);
+            }
+            final List<StarColumnPredicate[]> partitions =
+                ListColumnPredicate.partition(
+                    predicates, splitColumn, partitionCount);
+            if (BATCH_LOGGER.isDebugEnabled()) {
+                BATCH_LOGGER.debug(
+                    "Splitting batch into " + partitionCount
+                    + " statements on column " + columns[splitColumn]
+                    + "; estimated rows " + rowCount);
+            }
+            return partitions;
+        }
+
+        /**
+         * Loads the segments of a partition of this batch.
+         *
+         * @param predicates Predicates of the partition, one per column
+         * @param measures Measures to load; consumed by this method
+         * @param cellCount Number of cell requests the partition satisfies
+         * @param groupingSetsCollector Grouping sets collector
+         * @param segmentFutures List of futures to which to add the
+         *   statements' futures
+         */
+        private void loadPartition(
+            StarColumnPredicate[] predicates,
+            List<RolapStar.Measure> measures,
+            int cellCount,
+            GroupingSetsCollector groupingSetsCollector,
+            List<Future<Map<Segment, SegmentWithData>>> segmentFutures)
+        {
             // TODO: optimize key sets; drop a constraint if more than x% of
             // the members are requested; whether we should get just the cells
             // requested or expand to a n-cube
 
             // If the database cannot execute "count(distinct ...)", split the
             // distinct aggregations out.
-            int distinctMeasureCount = getDistinctMeasureCount(measuresList);
+            int distinctMeasureCount = getDistinctMeasureCount(measures);
             boolean tooManyDistinctMeasures =
                 distinctMeasureCount > 0
                 && !dialect.allowsCountDistinct()
@@ -1272,6 +1389,8 @@ class BatchLoader {
             if (tooManyDistinctMeasures) {
                 doSpecialHandlingOfDistinctCountMeasures(
                     predicates,
+                    measures,
+                    cellCount,
                     groupingSetsCollector,
                     segmentFutures);
             }
@@ -1289,50 +1408,46 @@ class BatchLoader {
                 //  mondrian.rolap.FastBatchingCellReaderTest
 
                 List<RolapStar.Measure> distinctSqlMeasureList =
-                    getDistinctSqlMeasures(measuresList);
+                    getDistinctSqlMeasures(measures);
                 for (RolapStar.Measure measure : distinctSqlMeasureList) {
                     AggregationManager.loadAggregation(
                         cacheMgr,
-                        cellRequestCount,
+                        cellCount,
                         Collections.singletonList(measure),
                         columns,
                         batchKey,
                         predicates,
                         groupingSetsCollector,
                         segmentFutures);
-                    measuresList.remove(measure);
+                    measures.remove(measure);
                 }
             }
 
-            final int measureCount = measuresList.size();
+            final int measureCount = measures.size();
             if (measureCount > 0) {
                 AggregationManager.loadAggregation(
                     cacheMgr,
-                    cellRequestCount,
-                    measuresList,
+                    cellCount,
+                    measures,
                     columns,
                     batchKey,
                     predicates,
                     groupingSetsCollector,
                     segmentFutures);
             }
-
-            if (BATCH_LOGGER.isDebugEnabled()) {
-                final long t2 = System.currentTimeMillis();
-                BATCH_LOGGER.debug(
-                    "Batch.load (millis) " + (t2 - t1));
-            }
         }
 
         private void doSpecialHandlingOfDistinctCountMeasures(
             StarColumnPredicate[] predicates,
+            List<RolapStar.Measure> measures,
+            int cellCount,
             GroupingSetsCollector groupingSetsCollector,
             List<Future<Map<Segment, SegmentWithData>>> segmentFutures)
         {
             while (true) {
                 // Scan for a measure based upon a distinct aggregation.
                 final RolapStar.Measure distinctMeasure =
-                    getFirstDistinctMeasure(measuresList);
+                    getFirstDistinctMeasure(measures);
                 if (distinctMeasure == null) {
                     break;
                 }
@@ -1340,13 +1455,13 @@ class BatchLoader {
                     distinctMeasure.getExpression().getGenericExpression();
                 final List<RolapStar.Measure> distinctMeasuresList =
                     new ArrayList<RolapStar.Measure>();
-                for (int i = 0; i < measuresList.size();) {
-                    final RolapStar.Measure measure = measuresList.get(i);
+                for (int i = 0; i < measures.size();) {
+                    final RolapStar.Measure measure = measures.get(i);
                     if (measure.getAggregator().isDistinct()
                         && measure.getExpression().getGenericExpression()
                         .equals(expr))
                     {
-                        measuresList.remove(i);
+                        measures.remove(i);
                         distinctMeasuresList.add(distinctMeasure);
                     } else {
                         i++;
@@ -1357,7 +1472,7 @@ class BatchLoader {
                 // together
                 AggregationManager.loadAggregation(
                     cacheMgr,
-                    cellRequestCount,
+                    cellCount,
                     distinctMeasuresList,
                     columns,
                     batchKey,
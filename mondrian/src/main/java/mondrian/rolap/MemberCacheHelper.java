@@ -19,17 +19,36 @@ import mondrian.olap.Util;
 import mondrian.rolap.cache.*;
 import mondrian.rolap.sql.MemberChildrenConstraint;
 import mondrian.rolap.sql.TupleConstraint;
+import mondrian.server.Locus;
 import mondrian.spi.DataSourceChangeListener;
 import mondrian.util.*;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.apache.commons.collections.CollectionUtils.filter;
 
 /**
  * Encapsulation of member caching.
  *
+ * <p>Synchronization. Reads do not lock: the caches are
+ * {@link ConcurrentSoftSmartCache}s, and a list is never modified once it
+ * is in a cache; writers replace it. Members are created while holding the
+ * lock on this object (it is the member cache lock of the member source),
+ * and {@link #flushCache()} and {@link #removeMember(Object)} hold it too.
+ *
+ * <p>Loads. A reader that misses the cache reads members from the database
+ * without holding any lock. To prevent several threads from reading the
+ * same members at the same time, a reader first calls
+ * {@link #beginLoad(Object)}. If another thread is already loading those
+ * members, the reader waits for it to finish, then looks in the cache
+ * again.
+ *
  * @author Will Gorman
  */
 public class MemberCacheHelper implements MemberCache {
@@ -59,6 +78,12 @@ public class MemberCacheHelper implements MemberCache {
 
     final MondrianProperties props;
 
+    /** loads in progress, keyed by {@link #levelLoadKey} and
+     * {@link #childrenLoadKey}
+     */
+    private final ConcurrentMap<Object, Load> loads =
+        new ConcurrentHashMap<>();
+
     /**
      * Creates a MemberCacheHelper.
      *
@@ -67,7 +92,7 @@ public class MemberCacheHelper implements MemberCache {
     public MemberCacheHelper(RolapHierarchy rolapHierarchy) {
         this.rolapHierarchy = rolapHierarchy;
         this.mapLevelToMembers = new SmartMemberListCache<>();
-        this.mapKeyToMember = new SoftSmartCache<>();
+        this.mapKeyToMember = new ConcurrentSoftSmartCache<>();
         this.mapMemberToChildren = new SmartMemberListCache<>();
         this.mapParentToNamedChildren = new SmartIncrementalCache<>();
 
@@ -106,9 +131,133 @@ public class MemberCacheHelper implements MemberCache {
         return getMember(key, true);
     }
 
-    public synchronized void checkCacheStatus() {
-        if (changeListener != null && changeListener.isHierarchyChanged(rolapHierarchy)) {
-            flushCache();
+    public void checkCacheStatus() {
+        // Without a listener, there is nothing to check, and no need to lock.
+        final DataSourceChangeListener listener = changeListener;
+        if (listener == null) {
+            return;
+        }
+        synchronized (this) {
+            if (listener.isHierarchyChanged(rolapHierarchy)) {
+                flushCache();
+            }
+        }
+    }
+
+    /**
+     * Returns the key of a load of the members of a level, or null if the
+     * members will not be cached.
+     *
+     * @param level Level
+     * @param constraint Constraint, or null
+     * @return Load key, or null
+     */
+    Object levelLoadKey(RolapLevel level, TupleConstraint constraint) {
+        if (constraint == null) {
+            constraint = sqlConstraintFactory.getLevelMembersConstraint(null);
+        }
+        final Object cacheKey = constraint.getCacheKey();
+        return cacheKey == null
+            ? null
+            : new Pair<RolapLevel, Object>(level, cacheKey);
+    }
+
+    /**
+     * Returns the key of a load of the children of a member, or null if the
+     * children will not be cached.
+     *
+     * @param member Parent member
+     * @param constraint Constraint, or null
+     * @return Load key, or null
+     */
+    Object childrenLoadKey(
+        RolapMember member,
+        MemberChildrenConstraint constraint)
+    {
+        if (constraint == null) {
+            constraint =
+                sqlConstraintFactory.getMemberChildrenConstraint(null);
+        }
+        final Object cacheKey = constraint.getCacheKey();
+        return cacheKey == null
+            ? null
+            : new Pair<RolapMember, Object>(member, cacheKey);
+    }
+
+    /**
+     * Starts a load, unless another thread is already performing the same
+     * load.
+     *
+     * <p>If the returned load is {@link Load#isOwner() owned} by the calling
+     * thread, the caller must read the members, put them into the cache, and
+     * call {@link #endLoad(Object, Load)}. Otherwise the caller should call
+     * {@link Load#await()}, then look in the cache again.
+     *
+     * <p>If the calling thread is itself performing the same load, further
+     * up the stack, the returned load is owned by the calling thread but not
+     * registered, so that the thread does not wait for itself.
+     *
+     * @param key Load key
+     * @return Load
+     */
+    Load beginLoad(Object key) {
+        final Load load = new Load();
+        final Load pending = loads.putIfAbsent(key, load);
+        if (pending == null || pending.isOwner()) {
+            return load;
+        }
+        return pending;
+    }
+
+    /**
+     * Ends a load started by {@link #beginLoad(Object)}, whether or not it
+     * succeeded, and wakes up threads waiting for it.
+     *
+     * @param key Load key
+     * @param load Load owned by the calling thread
+     */
+    void endLoad(Object key, Load load) {
+        loads.remove(key, load);
+        load.latch.countDown();
+    }
+
+    /**
+     * Returns a list of members from the cache, or if it is not in the
+     * cache, loads it. If other threads load the same list at the same
+     * time, one of them loads it and the others wait.
+     *
+     * @param key Load key, or null if the list will not be cached
+     * @param cached Looks for the list in the cache; returns null if absent
+     * @param loader Reads the list and puts it into the cache
+     * @return List of members
+     */
+    List<RolapMember> getOrLoad(
+        Object key,
+        Supplier<List<RolapMember>> cached,
+        Supplier<List<RolapMember>> loader)
+    {
+        for (;;) {
+            List<RolapMember> members = cached.get();
+            if (members != null) {
+                return members;
+            }
+            if (key == null) {
+                return loader.get();
+            }
+            final Load load = beginLoad(key);
+            if (!load.isOwner()) {
+                // If the other thread failed, or its list has already been
+                // dropped from the cache, we will load it ourselves.
+                load.await();
+                continue;
+            }
+            try {
+                // Another thread may have completed the load since we looked.
+                members = cached.get();
+                return members != null ? members : loader.get();
+            } finally {
+                endLoad(key, load);
+            }
         }
     }
 
@@ -228,15 +377,21 @@ public class MemberCacheHelper implements MemberCache {
           return;
         }
 
-        Collection<RolapMember> cachedChildren =
-            mapParentToNamedChildren.get(parent);
-        if (cachedChildren == null) {
-            // initialize with a sorted set
-            mapParentToNamedChildren.put(
-                parent, new TreeSet<>(children));
-        } else {
-            mapParentToNamedChildren.addToEntry(parent, children);
-        }
+        // Readers do not lock, so rather than adding to the cached set,
+        // replace it with a larger one. Executing a task prevents other
+        // writers from replacing it at the same time.
+        mapParentToNamedChildren.getCache().execute(
+            iterator -> {
+                final Collection<RolapMember> cachedChildren =
+                    mapParentToNamedChildren.get(parent);
+                // initialize with a sorted set
+                final TreeSet<RolapMember> newChildren =
+                    new TreeSet<>(children);
+                if (cachedChildren != null) {
+                    newChildren.addAll(cachedChildren);
+                }
+                mapParentToNamedChildren.put(parent, newChildren);
+            });
     }
 
     public List<RolapMember> getLevelMembersFromCache(
@@ -300,7 +455,12 @@ public class MemberCacheHelper implements MemberCache {
                   if (member.equals(currentMember)) {
                       iterator.remove();
                   } else if (parent.equals(currentMember)) {
-                      entry.getValue().remove(member);
+                      // Replace rather than modify; readers do not lock.
+                      final Collection<RolapMember> siblings =
+                          new TreeSet<>(entry.getValue());
+                      if (siblings.remove(member)) {
+                          entry.setValue(siblings);
+                      }
                   }
               }
           } );
@@ -328,9 +488,13 @@ public class MemberCacheHelper implements MemberCache {
                       if (constraint
                           == DefaultMemberChildrenConstraint.instance())
                       {
-                          List<RolapMember> siblings = entry.getValue();
-                          boolean removedIt = siblings.remove( member );
-                          Util.discard(removedIt);
+                          // Replace rather than modify; readers do not
+                          // lock.
+                          List<RolapMember> siblings =
+                              new ArrayList<>(entry.getValue());
+                          if (siblings.remove(member)) {
+                              entry.setValue(siblings);
+                          }
                       } else {
                           iter.remove();
                       }
@@ -372,6 +536,39 @@ public class MemberCacheHelper implements MemberCache {
           } );
     }
 
+    /**
+     * A load of members from the database, performed by one thread, that
+     * other threads can wait for.
+     */
+    static class Load {
+        private final Thread thread = Thread.currentThread();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * Returns whether this load is performed by the calling thread.
+         */
+        boolean isOwner() {
+            return thread == Thread.currentThread();
+        }
+
+        /**
+         * Waits for this load to end. While waiting, checks periodically
+         * whether the current statement has been canceled or has timed out.
+         */
+        void await() {
+            try {
+                while (!latch.await(100, TimeUnit.MILLISECONDS)) {
+                    if (!Locus.isEmpty()) {
+                        Locus.peek().execution.checkCancelOrTimeout();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Util.newError(e, "Interrupted while loading members");
+            }
+        }
+    }
+
     public RolapMember removeMemberAndDescendants(Object key) {
         // Can use mapMemberToChildren recursively. No need to update inferior
         // lists of children. Do need to update inferior lists of level-peers.
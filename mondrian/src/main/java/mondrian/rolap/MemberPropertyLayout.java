@@ -0,0 +1,93 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap;
+
+import java.util.Arrays;
+
+/**
+ * Assigns each property of the members of a level a slot, so that a
+ * member can store its property values in an array rather than in a map.
+ *
+ * <p>There is one layout per {@link RolapLevel}, shared by all of its
+ * regular members. A level with millions of members has a handful of
+ * properties, so storing the property names once per level, and only the
+ * values per member, saves a map (and its entries) per member.
+ *
+ * <p>Slots are allocated the first time a member of the level sets a
+ * property of a given name, and are never freed. Lookups do not lock.
+ *
+ * @see RolapMemberBase#setProperty(String, Object)
+ */
+final class MemberPropertyLayout {
+    private volatile String[] names = new String[0];
+
+    /**
+     * Returns the slot of a property, or -1 if no member of this level has
+     * set a property of that name.
+     *
+     * @param name Property name
+     * @return Slot, or -1
+     */
+    int slotOf(String name) {
+        final String[] names = this.names;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a property, allocating one if necessary.
+     *
+     * @param name Property name
+     * @return Slot
+     */
+    int allocateSlot(String name) {
+        final int slot = slotOf(name);
+        if (slot >= 0) {
+            return slot;
+        }
+        synchronized (this) {
+            final int slot2 = slotOf(name);
+            if (slot2 >= 0) {
+                return slot2;
+            }
+            final String[] newNames = Arrays.copyOf(names, names.length + 1);
+            newNames[names.length] = name;
+            names = newNames;
+            return names.length - 1;
+        }
+    }
+
+    /**
+     * Returns the name of the property in a given slot.
+     *
+     * @param slot Slot
+     * @return Property name
+     */
+    String nameOf(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the number of slots allocated.
+     */
+    int size() {
+        return names.length;
+    }
+}
+
+// End MemberPropertyLayout.java
@@ -55,7 +55,7 @@ public abstract class RolapAggregationManager {
     public static CellRequest makeRequest(final Member[] members) {
         return makeCellRequest(
             members, false, false, null, null, null,
-            Collections.<OlapElement>emptyList());
+            Collections.<OlapElement>emptyList(), null);
     }
 
     /**
@@ -92,7 +92,7 @@ public abstract class RolapAggregationManager {
 
         return (DrillThroughCellRequest) makeCellRequest(
             members, true, extendedContext, cube, null, applicableMembers,
-            nonApplicableMembers);
+            nonApplicableMembers, null);
     }
 
     /**
@@ -179,6 +179,25 @@ public abstract class RolapAggregationManager {
      */
     public static CellRequest makeRequest(
         RolapEvaluator evaluator)
+    {
+        return makeRequest(evaluator, null);
+    }
+
+    /**
+     * Creates a request to evaluate the cell identified by the context
+     * specified in <code>evaluator</code>, reusing a previous request if
+     * one is given.
+     *
+     * <p>The caller must not have handed the previous request to anything
+     * that keeps it; see {@link CellRequest#reset}.
+     *
+     * @param evaluator the cell specified by the evaluator context
+     * @param reuse Request to reset and return, or null to create one
+     * @return Cell request, or null if the requst is unsatisfiable
+     */
+    public static CellRequest makeRequest(
+        RolapEvaluator evaluator,
+        CellRequest reuse)
     {
         final CellRequest request =
             makeCellRequest(
@@ -187,7 +206,8 @@ public abstract class RolapAggregationManager {
                 false,
                 null,
                 evaluator, null,
-                Collections.<OlapElement>emptyList());
+                Collections.<OlapElement>emptyList(),
+                reuse);
         if (request == null) {
             // Current request cannot be processed. Per API, return null.
             return null;
@@ -267,7 +287,8 @@ public abstract class RolapAggregationManager {
         final boolean extendedContext,
         RolapCube cube,
         Evaluator evaluator, List<OlapElement> fieldsList,
-        List<OlapElement> nonApplicableFields)
+        List<OlapElement> nonApplicableFields,
+        CellRequest reuse)
     {
         // Need cube for drill-through requests
         assert drillThrough == (cube != null);
@@ -307,6 +328,9 @@ public abstract class RolapAggregationManager {
             request =
                 new DrillThroughCellRequest(
                     starMeasure, extendedContext, nonApplicableFields);
+        } else if (reuse != null) {
+            reuse.reset(starMeasure);
+            request = reuse;
         } else {
             request =
                 new CellRequest(starMeasure, extendedContext, drillThrough);
@@ -33,6 +33,10 @@ public abstract class RolapAggregator extends EnumeratedValues.BasicValue implem
   private static int index = 0;
 
   public static final RolapAggregator Sum = new RolapAggregator( "sum", index++, false ) {
+    public boolean isDistributive() {
+      return true;
+    }
+
     public Object aggregate( Evaluator evaluator, TupleList members, Calc exp ) {
       return FunUtil.sum( evaluator, members, exp );
     }
@@ -82,6 +86,10 @@ public abstract class RolapAggregator extends EnumeratedValues.BasicValue implem
   };
 
   public static final RolapAggregator Count = new RolapAggregator( "count", index++, false ) {
+    public boolean isDistributive() {
+      return true;
+    }
+
     public Aggregator getRollup() {
       return Sum;
     }
@@ -92,6 +100,10 @@ public abstract class RolapAggregator extends EnumeratedValues.BasicValue implem
   };
 
   public static final RolapAggregator Min = new RolapAggregator( "min", index++, false ) {
+    public boolean isDistributive() {
+      return true;
+    }
+
     public Object aggregate( Evaluator evaluator, TupleList members, Calc exp ) {
       return FunUtil.min( evaluator, members, exp );
     }
@@ -132,6 +144,10 @@ public abstract class RolapAggregator extends EnumeratedValues.BasicValue implem
   };
 
   public static final RolapAggregator Max = new RolapAggregator( "max", index++, false ) {
+    public boolean isDistributive() {
+      return true;
+    }
+
     public Object aggregate( Evaluator evaluator, TupleList members, Calc exp ) {
       return FunUtil.max( evaluator, members, exp );
     }
@@ -373,6 +389,15 @@ public abstract class RolapAggregator extends EnumeratedValues.BasicValue implem
     return distinct;
   }
 
+  /**
+   * Returns whether this aggregator is distributive; that is, whether its value over a union of disjoint sets of rows
+   * can be computed by rolling up its values over each set. Sum, count, min and max are distributive; average and
+   * distinct-count are not.
+   */
+  public boolean isDistributive() {
+    return false;
+  }
+
   /**
    * Returns the expression to apply this aggregator to an operand. For example, <code>getExpression("emp.sal")</code>
    * returns <code>"sum(emp.sal)"</code>.
@@ -540,6 +540,9 @@ public class RolapCell implements Cell {
                     try {
                         result.populateEvaluator(evaluator, pos);
                         ci.formatString = evaluator.getFormatString();
+                        // ci may be a copy; store the format string in the
+                        // result so that it is not evaluated again.
+                        result.setFormatString(pos, ci.formatString);
                     } finally {
                         evaluator.restore(savepoint);
                     }
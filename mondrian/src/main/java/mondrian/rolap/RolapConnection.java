@@ -39,6 +39,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
@@ -608,6 +609,26 @@ public class RolapConnection extends ConnectionBase {
           } );
   }
 
+  /**
+   * Executes a statement without blocking the calling thread.
+   *
+   * @param execution Execution context (includes statement, query)
+   * @return Future result; completes exceptionally with the exceptions
+   *   that {@link #execute(Execution)} would throw
+   * @see RolapResultShepherd#shepherdExecutionAsync
+   */
+  public CompletableFuture<Result> executeAsync( final Execution execution ) {
+    return
+      server.getResultShepherd()
+        .shepherdExecutionAsync(
+          execution,
+          new Callable<Result>() {
+            public Result call() throws Exception {
+              return executeInternal( execution );
+            }
+          } );
+  }
+
   private Result executeInternal( final Execution execution ) {
     execution.setContextMap();
     final Statement statement = execution.getMondrianStatement();
@@ -633,6 +654,7 @@ public class RolapConnection extends ConnectionBase {
     };
     MemoryMonitor mm = MemoryMonitorFactory.getMemoryMonitor();
     final long currId = execution.getId();
+    final long startMillis = System.currentTimeMillis();
     try {
       mm.addListener( listener );
       // Check to see if we must punt
@@ -661,8 +683,10 @@ public class RolapConnection extends ConnectionBase {
           ++i;
         }
       } finally {
-        Locus.pop( locus );
+        // The local cache belongs to the execution, which is found via the
+        // locus; clear it before the locus is popped.
         ( (RolapCube) query.getCube() ).clearCachedAggregations( true );
+        Locus.pop( locus );
       }
       statement.end( execution );
       return result;
@@ -692,11 +716,14 @@ public class RolapConnection extends ConnectionBase {
         "Error while executing query [" + queryString + "]" );
     } finally {
       mm.removeListener( listener );
+      WorkloadLog.capture(
+        this, query, startMillis, System.currentTimeMillis() - startMillis );
       if ( RolapUtil.MDX_LOGGER.isDebugEnabled() ) {
         final long elapsed = execution.getElapsedMillis();
         RolapUtil.MDX_LOGGER.debug(
           currId + ": exec: " + elapsed + " ms" );
       }
+      MDCUtil.clearContextMap();
     }
   }
 
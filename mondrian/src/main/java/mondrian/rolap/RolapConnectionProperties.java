@@ -227,7 +227,17 @@ public enum RolapConnectionProperties {
    * scan every catalog the database connection has access to when
    * looking for aggregate tables.
    */
-  AggregateScanCatalog;
+  AggregateScanCatalog,
+
+  /**
+   * The "QueryPriority" property is the default priority of statements
+   * created on the connection. When all query threads are busy, a waiting
+   * statement of higher priority starts before one of lower priority.
+   * See {@link mondrian.server.Statement#setPriority(int)}.
+   *
+   * <p>Defaults to 0.
+   */
+  QueryPriority;
 
   /**
    * Any property beginning with this value will be added to the
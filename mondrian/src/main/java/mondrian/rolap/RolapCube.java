@@ -708,18 +708,14 @@ public class RolapCube extends CubeBase {
   private RolapCubeDimension getOrCreateDimension( MondrianDef.CubeDimension xmlCubeDimension, RolapSchema schema,
                                                    MondrianDef.Schema xmlSchema, int dimensionOrdinal,
                                                    List<RolapHierarchy> cubeHierarchyList ) {
-    RolapDimension dimension = null;
+    final RolapDimension dimension;
 
     if ( xmlCubeDimension instanceof MondrianDef.DimensionUsage ) {
+      // Cubes may be created in parallel, so the schema looks up and creates the shared dimension in one step.
       MondrianDef.DimensionUsage usage = (MondrianDef.DimensionUsage) xmlCubeDimension;
-      final RolapHierarchy sharedHierarchy = schema.getSharedHierarchy( usage.source );
-
-      if ( sharedHierarchy != null ) {
-        dimension = (RolapDimension) sharedHierarchy.getDimension();
-      }
-    }
-
-    if ( dimension == null ) {
+      dimension = schema.getOrCreateSharedDimension( usage.source,
+        () -> new RolapDimension( schema, this, xmlCubeDimension.getDimension( xmlSchema ), xmlCubeDimension ) );
+    } else {
       MondrianDef.Dimension xmlDimension = xmlCubeDimension.getDimension( xmlSchema );
       dimension = new RolapDimension( schema, this, xmlDimension, xmlCubeDimension );
     }
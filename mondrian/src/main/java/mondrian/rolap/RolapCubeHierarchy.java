@@ -463,8 +463,9 @@ public class RolapCubeHierarchy extends RolapHierarchy {
   /**
    * member reader wrapper - uses existing member reader, but wraps and caches all intermediate members.
    *
-   * <p>Synchronization. Most synchronization takes place within SmartMemberReader. All synchronization is done on
-   * the cacheHelper object.
+   * <p>Synchronization. As in SmartMemberReader, reads from the caches do not lock, and no lock is held while reading
+   * from the database. Cube members are created, by {@link #lookupCubeMember}, while holding the lock on the
+   * cacheHelper object.
    */
   public class CacheRolapCubeHierarchyMemberReader extends SmartMemberReader implements RolapCubeHierarchyMemberReader {
     /**
@@ -581,16 +582,15 @@ public class RolapCubeHierarchy extends RolapHierarchy {
         cacheList.add( child );
       }
 
-      synchronized ( cacheHelper ) {
-        for ( Map.Entry<RolapMember, List<RolapMember>> entry : tempMap.entrySet() ) {
-          final RolapMember member = entry.getKey();
+      // No lock: if another thread has cached the same children meanwhile, its list holds the same members.
+      for ( Map.Entry<RolapMember, List<RolapMember>> entry : tempMap.entrySet() ) {
+        final RolapMember member = entry.getKey();
 
-          if ( rolapCubeCacheHelper.getChildrenFromCache( member, constraint ) == null ) {
-            final List<RolapMember> cacheList = entry.getValue();
+        if ( rolapCubeCacheHelper.getChildrenFromCache( member, constraint ) == null ) {
+          final List<RolapMember> cacheList = entry.getValue();
 
-            if ( enableCache ) {
-              rolapCubeCacheHelper.putChildren( member, constraint, cacheList );
-            }
+          if ( enableCache ) {
+            rolapCubeCacheHelper.putChildren( member, constraint, cacheList );
           }
         }
       }
@@ -599,25 +599,28 @@ public class RolapCubeHierarchy extends RolapHierarchy {
     @Override
     public Map<? extends Member, Access> getMemberChildren( List<RolapMember> parentMembers, List<RolapMember> children,
                                                             MemberChildrenConstraint constraint ) {
-      synchronized ( cacheHelper ) {
-        checkCacheStatus();
+      checkCacheStatus();
 
-        List<RolapMember> missed = new ArrayList<>();
+      List<RolapMember> missed = new ArrayList<>();
 
-        for ( RolapMember parentMember : parentMembers ) {
-          List<RolapMember> list = rolapCubeCacheHelper.getChildrenFromCache( parentMember, constraint );
+      for ( RolapMember parentMember : parentMembers ) {
+        List<RolapMember> list = rolapCubeCacheHelper.getChildrenFromCache( parentMember, constraint );
 
-          if ( list == null ) {
-            // the null member has no children
-            if ( !parentMember.isNull() ) {
-              missed.add( parentMember );
-            }
-          } else {
-            children.addAll( list );
+        if ( list == null ) {
+          // the null member has no children
+          if ( !parentMember.isNull() ) {
+            missed.add( parentMember );
           }
+        } else {
+          children.addAll( list );
         }
+      }
 
-        if ( !missed.isEmpty() ) {
+      if ( !missed.isEmpty() ) {
+        if ( enableCache ) {
+          loadMemberChildren( rolapCubeCacheHelper, missed, children, constraint );
+        } else {
+          // Children are not cached, so a thread waiting for another's load would have to read them again anyway.
           readMemberChildren( missed, children, constraint );
         }
       }
@@ -627,42 +630,45 @@ public class RolapCubeHierarchy extends RolapHierarchy {
 
 
     @Override
-    public List<RolapMember> getMembersInLevel( RolapLevel level, TupleConstraint constraint ) {
-      synchronized ( cacheHelper ) {
-        checkCacheStatus();
+    public List<RolapMember> getMembersInLevel( final RolapLevel level, final TupleConstraint constraint ) {
+      checkCacheStatus();
 
-        List<RolapMember> members = rolapCubeCacheHelper.getLevelMembersFromCache( level, constraint );
-
-        if ( members != null ) {
-          return members;
-        }
+      return rolapCubeCacheHelper.getOrLoad(
+        rolapCubeCacheHelper.levelLoadKey( level, constraint ),
+        () -> rolapCubeCacheHelper.getLevelMembersFromCache( level, constraint ),
+        () -> readMembersInLevel( level, constraint ) );
+    }
 
-        // if a join is required, we need to pass in the RolapCubeLevel vs. the regular level
-        boolean joinReq = ( constraint instanceof SqlContextConstraint );
-        List<RolapMember> list;
-        final RolapCubeLevel cubeLevel = (RolapCubeLevel) level;
+    /**
+     * Reads the members of a level, and puts them into the cache. Called without holding any lock; cube members are
+     * created under the lock, by lookupCubeMember, so concurrent readers get the same objects.
+     */
+    private List<RolapMember> readMembersInLevel( RolapLevel level, TupleConstraint constraint ) {
+      // if a join is required, we need to pass in the RolapCubeLevel vs. the regular level
+      boolean joinReq = ( constraint instanceof SqlContextConstraint );
+      List<RolapMember> list;
+      final RolapCubeLevel cubeLevel = (RolapCubeLevel) level;
 
-        if ( !joinReq ) {
-          list = rolapHierarchy.getMemberReader().getMembersInLevel( cubeLevel.getRolapLevel(), constraint );
-        } else {
-          list = super.getMembersInLevel( level, constraint );
-        }
+      if ( !joinReq ) {
+        list = rolapHierarchy.getMemberReader().getMembersInLevel( cubeLevel.getRolapLevel(), constraint );
+      } else {
+        list = super.getMembersInLevel( level, constraint );
+      }
 
-        List<RolapMember> newlist = new ArrayList<>();
+      List<RolapMember> newlist = new ArrayList<>();
 
-        for ( RolapMember member : list ) {
-          // note that there is a special case for the all member
+      for ( RolapMember member : list ) {
+        // note that there is a special case for the all member
 
-          // REVIEW: disabled, to see what happens. if this code is for performance, we should check level.isAll at
-          // the top of the method; if it is for correctness, leave the code in
-          RolapCubeMember cubeMember = lookupCubeMemberWithParent( member, cubeLevel );
-          newlist.add( cubeMember );
-        }
+        // REVIEW: disabled, to see what happens. if this code is for performance, we should check level.isAll at
+        // the top of the method; if it is for correctness, leave the code in
+        RolapCubeMember cubeMember = lookupCubeMemberWithParent( member, cubeLevel );
+        newlist.add( cubeMember );
+      }
 
-        rolapCubeCacheHelper.putChildren( level, constraint, newlist );
+      rolapCubeCacheHelper.putChildren( level, constraint, newlist );
 
-        return newlist;
-      }
+      return newlist;
     }
 
     private RolapCubeMember lookupCubeMemberWithParent( RolapMember member, RolapCubeLevel cubeLevel ) {
@@ -683,10 +689,9 @@ public class RolapCubeHierarchy extends RolapHierarchy {
 
     @Override
     public RolapMember getMemberByKey( RolapLevel level, List<Comparable> keyValues ) {
-      synchronized ( cacheHelper ) {
-        final RolapMember member = super.getMemberByKey( level, keyValues );
-        return createAncestorMembers( this, (RolapCubeLevel) level, member );
-      }
+      // Not synchronized: reads from the database; cube members are created under the lock, by lookupCubeMember.
+      final RolapMember member = super.getMemberByKey( level, keyValues );
+      return createAncestorMembers( this, (RolapCubeLevel) level, member );
     }
 
     public RolapCubeMember lookupCubeMember( RolapCubeMember parent, RolapMember member, RolapCubeLevel level ) {
@@ -732,6 +737,11 @@ public class RolapCubeHierarchy extends RolapHierarchy {
 
     @Override
     protected void checkCacheStatus() {
+      // Without a listener, there is nothing to check, and no need to lock.
+      if ( cacheHelper.getChangeListener() == null ) {
+        return;
+      }
+
       synchronized ( cacheHelper ) {
         // if necessary, flush all caches:
         //   - shared SmartMemberReader RolapMember cache
@@ -381,7 +381,7 @@ public class RolapCubeLevel extends RolapLevel {
             if (isMemberCalculated && !member.isParentChildLeaf()) {
                 predicate = null;
             } else {
-                predicate = new ValueColumnPredicate(column, memberKey);
+                predicate = request.getValuePredicate(column, memberKey);
             }
 
             // use the member as constraint; this will give us some
@@ -393,8 +393,10 @@ public class RolapHierarchy extends HierarchyBase {
 
   /**
    * Initializes a hierarchy within the context of a cube.
+   *
+   * <p>A shared hierarchy is initialized by every cube that uses it, and cubes may be created in parallel.
    */
-  void init( MondrianDef.CubeDimension xmlDimension ) {
+  synchronized void init( MondrianDef.CubeDimension xmlDimension ) {
     // first create memberReader
     if ( this.memberReader == null ) {
       this.memberReader = getRolapSchema().createMemberReader( sharedHierarchyName, this, memberReaderClass );
@@ -90,6 +90,10 @@ public class RolapLevel extends LevelBase {
     private final Map<String, Annotation> annotationMap;
     private final SqlStatement.Type internalType; // may be null
 
+    /** Slots of the properties of this level's members. */
+    private final MemberPropertyLayout memberPropertyLayout =
+        new MemberPropertyLayout();
+
     /**
      * Creates a level.
      *
@@ -479,6 +483,14 @@ public class RolapLevel extends LevelBase {
         return inheritedProperties;
     }
 
+    /**
+     * Returns the layout in which regular members of this level store their
+     * property values.
+     */
+    MemberPropertyLayout getMemberPropertyLayout() {
+        return memberPropertyLayout;
+    }
+
     public int getApproxRowCount() {
         return approxRowCount;
     }
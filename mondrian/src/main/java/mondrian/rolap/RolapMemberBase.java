@@ -85,9 +85,20 @@ public class RolapMemberBase
      * <p> We expect there to be a lot of members, but few of them will
      * have properties. So to reduce memory usage, when empty, this is set to
      * an immutable empty set.
+     *
+     * <p>Regular members do not use this map, unless
+     * {@link MondrianProperties#PropertyValueMapFactoryClass} is set; they
+     * store their property values in {@link #propertyValues}.
      */
     private Map<String, Object> mapPropertyNameToValue;
 
+    /**
+     * Property values of a regular member, indexed by the slots of its
+     * level's {@link MemberPropertyLayout}; null if the member has no
+     * properties, or stores them in {@link #mapPropertyNameToValue}.
+     */
+    private Object[] propertyValues;
+
     private Boolean containsAggregateFunction = null;
 
     private Object captionValue;
@@ -275,11 +286,41 @@ public class RolapMemberBase
                     this.uniqueName = Util.makeFqName(hierarchy, name);
                 }
             }
+        } else if (key == getNameValue()) {
+            // The unique name of a member below the first level is long,
+            // and many members never need it; derive it when it is first
+            // asked for. See getUniqueName.
+            this.uniqueName = null;
         } else {
             this.uniqueName = Util.makeFqName(parentMember, name);
         }
     }
 
+    /**
+     * Returns the unique name of this member, deriving it from the parent's
+     * unique name and this member's name if {@link #setUniqueName} deferred
+     * it.
+     */
+    public String getUniqueName() {
+        String uniqueName = this.uniqueName;
+        if (uniqueName == null && parentMember != null) {
+            // Benign race: two threads compute the same string.
+            uniqueName =
+                Util.makeFqName(parentMember, keyToString(getNameValue()));
+            this.uniqueName = uniqueName;
+        }
+        return uniqueName;
+    }
+
+    /**
+     * Returns the value from which this member's name is derived: the
+     * value of its name property if it has one, otherwise its key.
+     */
+    private Object getNameValue() {
+        final Object name = getPropertyFromMap(Property.NAME.name, true);
+        return name != null ? name : key;
+    }
+
     public boolean isCalculatedInQuery() {
         return false;
     }
@@ -308,17 +349,9 @@ public class RolapMemberBase
             return;
         }
 
-        if (mapPropertyNameToValue.isEmpty()) {
-            // the empty map is shared and immutable; create our own
-            PropertyValueMapFactory factory =
-                PropertyValueMapFactoryFactory.getPropertyValueMapFactory();
-            mapPropertyNameToValue = factory.create(this);
-        }
-        if (name.equals(Property.NAME.name)) {
-            if (value == null) {
-                value = RolapUtil.mdxNullLiteral();
-            }
-            setUniqueName(value);
+        final boolean isName = name.equals(Property.NAME.name);
+        if (isName && value == null) {
+            value = RolapUtil.mdxNullLiteral();
         }
 
         if (name.equals(Property.MEMBER_ORDINAL.name)) {
@@ -330,7 +363,54 @@ public class RolapMemberBase
             setOrdinal((int) d);
         }
 
-        mapPropertyNameToValue.put(name, value);
+        final MemberPropertyLayout layout = getPropertyLayout();
+        if (layout != null) {
+            final int slot = layout.allocateSlot(name);
+            if (propertyValues == null) {
+                propertyValues = new Object[layout.size()];
+            } else if (slot >= propertyValues.length) {
+                propertyValues =
+                    Arrays.copyOf(propertyValues, layout.size());
+            }
+            propertyValues[slot] = value;
+        } else {
+            if (mapPropertyNameToValue.isEmpty()) {
+                // the empty map is shared and immutable; create our own
+                PropertyValueMapFactory factory =
+                    PropertyValueMapFactoryFactory
+                        .getPropertyValueMapFactory();
+                mapPropertyNameToValue = factory.create(this);
+            }
+            mapPropertyNameToValue.put(name, value);
+        }
+
+        // After storing the value, so that setUniqueName can tell that it
+        // is this member's name.
+        if (isName) {
+            setUniqueName(value);
+        }
+    }
+
+    /**
+     * Returns the layout in which this member stores its property values,
+     * or null if it stores them in a map.
+     *
+     * <p>Only regular members use a layout; measures, calculated members
+     * and the 'all' and null members have few instances, and often have
+     * properties that their level does not declare. If
+     * {@link MondrianProperties#PropertyValueMapFactoryClass} is set, all
+     * members use the maps it creates.
+     */
+    private MemberPropertyLayout getPropertyLayout() {
+        if (level == null
+            || getMemberType() != MemberType.REGULAR
+            || isCalculated()
+            || MondrianProperties.instance().PropertyValueMapFactoryClass
+                .get() != null)
+        {
+            return null;
+        }
+        return getLevel().getMemberPropertyLayout();
     }
 
     public Object getPropertyValue(String propertyName) {
@@ -478,6 +558,13 @@ public class RolapMemberBase
         boolean matchCase)
     {
         synchronized (this) {
+            if (propertyValues != null) {
+                final Object value =
+                    getPropertyFromSlots(propertyName, matchCase);
+                if (value != null) {
+                    return value;
+                }
+            }
             if (matchCase) {
                 return mapPropertyNameToValue.get(propertyName);
             } else {
@@ -491,6 +578,36 @@ public class RolapMemberBase
         }
     }
 
+    /**
+     * Returns the value of a property by looking it up in the slots of
+     * this member's level. Caller must hold the lock on this member.
+     *
+     * @param propertyName Name of property
+     * @param matchCase Whether to match name case-sensitive
+     * @return Property value, or null
+     */
+    private Object getPropertyFromSlots(
+        String propertyName,
+        boolean matchCase)
+    {
+        final MemberPropertyLayout layout =
+            getLevel().getMemberPropertyLayout();
+        if (matchCase) {
+            final int slot = layout.slotOf(propertyName);
+            return slot >= 0 && slot < propertyValues.length
+                ? propertyValues[slot]
+                : null;
+        }
+        for (int i = 0; i < propertyValues.length; i++) {
+            if (propertyValues[i] != null
+                && layout.nameOf(i).equalsIgnoreCase(propertyName))
+            {
+                return propertyValues[i];
+            }
+        }
+        return null;
+    }
+
     protected boolean childLevelHasApproxRowCount() {
         return getLevel().getChildLevel().getApproxRowCount()
             > Integer.MIN_VALUE;
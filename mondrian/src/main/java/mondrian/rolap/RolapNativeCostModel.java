@@ -0,0 +1,326 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.rolap.agg.SegmentCacheManager;
+import mondrian.rolap.agg.SegmentRequestLog;
+import mondrian.rolap.cache.SegmentCacheIndex;
+import mondrian.rolap.sql.CrossJoinArg;
+import mondrian.server.Locus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Locale;
+
+/**
+ * Chooses between evaluating a set function natively, in SQL, and in memory,
+ * by estimating the cost of each plan.
+ *
+ * <p>{@link RolapNativeCrossJoin}, {@link RolapNativeFilter} and
+ * {@link RolapNativeTopCount} call {@link #preferNative} once they have
+ * established that native evaluation is possible. If
+ * {@link MondrianProperties#NativeCostModel} is not set, native evaluation
+ * is always preferred, as before.
+ *
+ * <p>The estimates are based on:<ul>
+ * <li>the number of tuples, from the cardinality of each argument's level
+ *     (see {@link RolapStatisticsCache}) or the size of its member list;</li>
+ * <li>the fraction of the tuples' cells that are in the segment cache (see
+ *     {@link SegmentCacheIndex#getCoverage});</li>
+ * <li>the latency of a SQL statement and the cost of reading a row, fitted
+ *     to the star's recent segment loads (see {@link SegmentRequestLog}).</li>
+ * </ul>
+ *
+ * <p>The in-memory plan evaluates a cell per tuple, and loads the cells
+ * that are not cached in one statement. The native plan executes one
+ * statement that returns a row per non-empty tuple, at most. Each decision
+ * is recorded in the query's {@link QueryTiming}, and is remembered for the
+ * rest of the query.
+ */
+class RolapNativeCostModel {
+    private static final Logger LOGGER =
+        LogManager.getLogger(RolapNativeCostModel.class);
+
+    /** Time to evaluate a cached cell in memory, in nanoseconds. */
+    static final long CELL_NANOS = 2000L;
+
+    /** Latency of a SQL statement, in nanoseconds, assumed when a star has
+     * no recent history. */
+    static final long DEFAULT_STATEMENT_NANOS = 20000000L;
+
+    /** Time to read a row, in nanoseconds, assumed when a star has no recent
+     * history. */
+    static final long DEFAULT_ROW_NANOS = 10000L;
+
+    /** How far back to look in a star's history, in milliseconds. */
+    static final long HISTORY_MILLIS = 3600000L;
+
+    private RolapNativeCostModel() {
+    }
+
+    /**
+     * Returns whether a set function should be evaluated natively.
+     *
+     * @param name Name of the caller, for the record of the decision
+     * @param evaluator Evaluator; its context must contain the measure that
+     *   native evaluation would use, if any
+     * @param args Arguments of the set function
+     * @param maxRows Maximum number of rows the native statement returns, or
+     *   0 if unlimited
+     * @return Whether to evaluate natively
+     */
+    static boolean preferNative(
+        String name,
+        RolapEvaluator evaluator,
+        CrossJoinArg[] args,
+        int maxRows)
+    {
+        if (!MondrianProperties.instance().NativeCostModel.get()) {
+            return true;
+        }
+        final RolapStoredMeasure measure = findMeasure(evaluator);
+        if (measure == null) {
+            return true;
+        }
+        final StringBuilder buf =
+            new StringBuilder("NativeCostModel-").append(name);
+        for (CrossJoinArg arg : args) {
+            buf.append('-')
+                .append(
+                    arg.getLevel() == null
+                        ? "null"
+                        : arg.getLevel().getUniqueName());
+            if (arg.getMembers() != null) {
+                buf.append('[').append(arg.getMembers().size()).append(']');
+            }
+        }
+        buf.append('-').append(measure.getUniqueName()).append('-')
+            .append(maxRows);
+        final String key = buf.toString();
+        final Query query = evaluator.getQuery();
+        Estimate estimate = (Estimate) query.getEvalCache(key);
+        if (estimate == null) {
+            estimate = estimate(evaluator, args, measure, maxRows);
+            query.putEvalCache(key, estimate);
+            evaluator.getTiming().markDecision(name, estimate.toString());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(name + ": " + estimate);
+            }
+        }
+        return estimate.isNative();
+    }
+
+    /**
+     * Returns the stored measure whose cells decide the cost: the measure in
+     * the evaluator's context, or else the first stored measure of the query.
+     */
+    private static RolapStoredMeasure findMeasure(RolapEvaluator evaluator) {
+        final Member member = evaluator.getMembers()[0];
+        if (member instanceof RolapStoredMeasure) {
+            return (RolapStoredMeasure) member;
+        }
+        for (Member measure : evaluator.getQuery().getMeasuresMembers()) {
+            if (measure instanceof RolapStoredMeasure) {
+                return (RolapStoredMeasure) measure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Estimates the cost of both plans.
+     */
+    static Estimate estimate(
+        RolapEvaluator evaluator,
+        CrossJoinArg[] args,
+        RolapStoredMeasure measure,
+        int maxRows)
+    {
+        final RolapStar.Measure starMeasure =
+            (RolapStar.Measure) measure.getStarMeasure();
+        final RolapStar star = starMeasure.getStar();
+
+        long tupleCount = 1;
+        final BitKey bitKey = BitKey.Factory.makeBitKey(star.getColumnCount());
+        for (CrossJoinArg arg : args) {
+            final long cardinality = getCardinality(evaluator, star, arg);
+            tupleCount =
+                tupleCount > Long.MAX_VALUE / Math.max(1, cardinality)
+                    ? Long.MAX_VALUE
+                    : tupleCount * Math.max(1, cardinality);
+            for (RolapLevel level = arg.getLevel();
+                level != null && !level.isAll();
+                level = (RolapLevel) level.getParentLevel())
+            {
+                final RolapStar.Column column = getColumn(star, level);
+                if (column != null) {
+                    bitKey.set(column.getBitPosition());
+                }
+            }
+        }
+
+        final double coverage = getCoverage(star, starMeasure, bitKey);
+
+        long statementNanos = DEFAULT_STATEMENT_NANOS;
+        long rowNanos = DEFAULT_ROW_NANOS;
+        final SegmentRequestLog.Latency latency =
+            star.getSegmentRequestLog().fitLatency(
+                System.currentTimeMillis() - HISTORY_MILLIS);
+        if (latency != null) {
+            statementNanos = latency.statementNanos;
+            rowNanos = latency.rowNanos;
+        }
+
+        // Neither plan reads more rows than the fact table has.
+        long rowCount = tupleCount;
+        final long factRowCount =
+            star.getStatisticsCache().getRelationCardinality(
+                star.getFactTable().getRelation(),
+                star.getFactTable().getAlias(),
+                -1);
+        if (factRowCount > 0) {
+            rowCount = Math.min(rowCount, factRowCount);
+        }
+        final long nativeRowCount =
+            maxRows > 0 ? Math.min(rowCount, maxRows) : rowCount;
+        final double nativeNanos =
+            statementNanos + (double) nativeRowCount * rowNanos;
+        final double memoryNanos =
+            (double) tupleCount * CELL_NANOS
+            + (coverage >= 1d
+                ? 0d
+                : statementNanos + (1d - coverage) * rowCount * rowNanos);
+        return new Estimate(
+            tupleCount, coverage, statementNanos, rowNanos, nativeNanos,
+            memoryNanos);
+    }
+
+    private static long getCardinality(
+        RolapEvaluator evaluator,
+        RolapStar star,
+        CrossJoinArg arg)
+    {
+        if (arg.getMembers() != null) {
+            return arg.getMembers().size();
+        }
+        final RolapLevel level = arg.getLevel();
+        if (level == null) {
+            return 1;
+        }
+        final RolapStar.Column column = getColumn(star, level);
+        if (column != null && level.isUnique()) {
+            final long cardinality = column.getCardinality();
+            if (cardinality > 0) {
+                return cardinality;
+            }
+        }
+        return evaluator.getSchemaReader().getLevelCardinality(
+            level, true, true);
+    }
+
+    private static RolapStar.Column getColumn(
+        RolapStar star,
+        RolapLevel level)
+    {
+        if (!(level instanceof RolapCubeLevel)) {
+            return null;
+        }
+        final RolapStar.Column column =
+            ((RolapCubeLevel) level).getStarKeyColumn();
+        return column == null || column.getStar() != star ? null : column;
+    }
+
+    private static double getCoverage(
+        final RolapStar star,
+        final RolapStar.Measure measure,
+        final BitKey bitKey)
+    {
+        final RolapSchema schema = star.getSchema();
+        final SegmentCacheManager cacheMgr =
+            MondrianServer.forConnection(schema.getInternalConnection())
+                .getAggregationManager().getCacheMgr();
+        final Locus locus = Locus.peek();
+        return cacheMgr.execute(
+            new SegmentCacheManager.Command<Double>() {
+                public Double call() {
+                    return cacheMgr.getIndexRegistry().getIndex(star)
+                        .getCoverage(
+                            schema.getName(),
+                            schema.getChecksum(),
+                            measure.getCubeName(),
+                            measure.getName(),
+                            star.getFactTable().getAlias(),
+                            bitKey);
+                }
+
+                public Locus getLocus() {
+                    return locus;
+                }
+            });
+    }
+
+    /**
+     * Estimated cost of evaluating a set function natively and in memory.
+     */
+    static class Estimate {
+        final long tupleCount;
+        final double coverage;
+        final long statementNanos;
+        final long rowNanos;
+        final double nativeNanos;
+        final double memoryNanos;
+
+        Estimate(
+            long tupleCount,
+            double coverage,
+            long statementNanos,
+            long rowNanos,
+            double nativeNanos,
+            double memoryNanos)
+        {
+            this.tupleCount = tupleCount;
+            this.coverage = coverage;
+            this.statementNanos = statementNanos;
+            this.rowNanos = rowNanos;
+            this.nativeNanos = nativeNanos;
+            this.memoryNanos = memoryNanos;
+        }
+
+        /**
+         * Returns whether the native plan is estimated to be no more
+         * expensive than the in-memory plan.
+         */
+        boolean isNative() {
+            return nativeNanos <= memoryNanos;
+        }
+
+        public String toString() {
+            return String.format(
+                Locale.ROOT,
+                "%s (tuples=%d, cached=%.0f%%, native=%.3fms,"
+                + " in-memory=%.3fms, statement=%.3fms, row=%dns)",
+                isNative() ? "native" : "in-memory",
+                tupleCount,
+                coverage * 100d,
+                nativeNanos / 1000000d,
+                memoryNanos / 1000000d,
+                statementNanos / 1000000d,
+                rowNanos);
+        }
+    }
+}
+
+// End RolapNativeCostModel.java
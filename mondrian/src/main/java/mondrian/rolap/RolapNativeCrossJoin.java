@@ -218,6 +218,13 @@ public class RolapNativeCrossJoin extends RolapNativeSet {
             return null;
         }
 
+        if (!RolapNativeCostModel.preferNative(
+                "RolapNativeCrossJoin", evaluator, cjArgs, 0))
+        {
+            // Cheaper to evaluate in memory; no need to alert
+            return null;
+        }
+
         LOGGER.debug("using native crossjoin");
 
         // Create a new evaluation context, eliminating any outer context for
@@ -237,6 +237,10 @@ public class RolapNativeFilter extends RolapNativeSet {
         return null;
       }
 
+      if ( !RolapNativeCostModel.preferNative( "RolapNativeFilter", evaluator, cjArgs, 0 ) ) {
+        return null;
+      }
+
       LOGGER.debug( "using native filter" );
       return new SetEvaluator( cjArgs, schemaReader, constraint );
     } finally {
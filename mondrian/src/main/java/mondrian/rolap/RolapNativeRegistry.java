@@ -16,6 +16,7 @@ package mondrian.rolap;
 import mondrian.olap.Exp;
 import mondrian.olap.FunDef;
 import mondrian.olap.NativeEvaluator;
+import mondrian.server.monitor.MondrianMetrics;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -69,6 +70,8 @@ public class RolapNativeRegistry extends RolapNative {
         }
 
         NativeEvaluator ne = rn.createEvaluator(evaluator, fun, args);
+        MondrianMetrics.NATIVE_EVALUATIONS
+            .get(ne == null ? "fallback" : "native").increment();
 
         if (ne != null) {
             if (listener != null) {
@@ -259,6 +259,11 @@ public class RolapNativeTopCount extends RolapNativeSet {
                     "Constraint constructed cannot be used for native eval.");
                 return null;
             }
+            if (!RolapNativeCostModel.preferNative(
+                    "RolapNativeTopCount", evaluator, cjArgs, count))
+            {
+                return null;
+            }
             LOGGER.debug("using native topcount");
             SetEvaluator sev =
                 new SetEvaluator(cjArgs, schemaReader, constraint);
@@ -14,6 +14,7 @@
 package mondrian.rolap;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,6 +24,7 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -83,6 +85,7 @@ import mondrian.spi.CellFormatter;
 import mondrian.util.CancellationChecker;
 import mondrian.util.Format;
 import mondrian.util.ObjectPool;
+import mondrian.util.Pair;
 
 /**
  * A <code>RolapResult</code> is the result of running a query.
@@ -138,7 +141,13 @@ public class RolapResult extends ResultBase {
     RolapCube cube = (RolapCube) query.getCube();
     this.batchingReader = new FastBatchingCellReader( execution, cube, aggMgr );
 
-    this.cellInfos = ( query.axes.length > 4 ) ? new CellInfoMap( point ) : new CellInfoPool( query.axes.length );
+    if ( query.axes.length > 4 ) {
+      this.cellInfos = new CellInfoMap( point );
+    } else if ( MondrianProperties.instance().ColumnarCells.get() ) {
+      this.cellInfos = new CellInfoColumns( query.axes.length );
+    } else {
+      this.cellInfos = new CellInfoPool( query.axes.length );
+    }
 
     if ( !execute ) {
       return;
@@ -1079,7 +1088,8 @@ public class RolapResult extends ResultBase {
           revaluator.restore( savepoint );
         }
 
-        CellInfo ci = null;
+        String cachedFormatString = null;
+        ValueFormatter valueFormatter = ValueFormatter.EMPTY;
 
         // Get the Cell's format string and value formatting
         // Object.
@@ -1089,12 +1099,6 @@ public class RolapResult extends ResultBase {
           // <code>getCellNoDefaultFormatString</code> method and
           // the old RolapCell <code>getFormattedValue</code> method.
 
-          // Create a CellInfo object for the given position
-          // integer array.
-          ci = cellInfos.create( point.getOrdinals() );
-
-          String cachedFormatString = null;
-
           // Determine if there is a CellFormatter registered for
           // the current Cube's Measure's Dimension. If so,
           // then find or create a CellFormatterValueFormatter
@@ -1103,19 +1107,19 @@ public class RolapResult extends ResultBase {
           final RolapCube cube = getCube();
           Hierarchy measuresHierarchy = cube.getMeasuresHierarchy();
           RolapMeasure m = (RolapMeasure) revaluator.getContext( measuresHierarchy );
-          ValueFormatter valueFormatter = m.getFormatter();
+          valueFormatter = m.getFormatter();
           if ( valueFormatter == null ) {
             cachedFormatString = revaluator.getFormatString();
             Locale locale = statement.getMondrianConnection().getLocale();
             valueFormatter = formatValueFormatters.get( locale );
             if ( valueFormatter == null ) {
               valueFormatter = new FormatValueFormatter( locale );
-              formatValueFormatters.put( locale, valueFormatter );
+              final ValueFormatter previous = formatValueFormatters.putIfAbsent( locale, valueFormatter );
+              if ( previous != null ) {
+                valueFormatter = previous;
+              }
             }
           }
-
-          ci.formatString = cachedFormatString;
-          ci.valueFormatter = valueFormatter;
         } catch ( ResultLimitExceededException e ) {
           // Do NOT ignore a ResultLimitExceededException!!!
           throw e;
@@ -1133,9 +1137,10 @@ public class RolapResult extends ResultBase {
           Util.discard( e );
         }
 
-        if ( o != RolapUtil.valueNotReadyException ) {
-          ci.value = o;
-        }
+        // Store the cell's value, format string and formatter at the
+        // given position integer array.
+        cellInfos.store( point.getOrdinals(), o == RolapUtil.valueNotReadyException ? null : o, cachedFormatString,
+            valueFormatter );
       }
     } else {
       RolapAxis axis = (RolapAxis) axes[axisOrdinal];
@@ -1396,6 +1401,18 @@ public class RolapResult extends ResultBase {
     return cellEvaluator;
   }
 
+  /**
+   * Stores the format string of a cell, once it has been evaluated on demand, so that it is not evaluated again.
+   *
+   * @param pos
+   *          Coordinates of cell
+   * @param formatString
+   *          Format string
+   */
+  void setFormatString( int[] pos, String formatString ) {
+    cellInfos.setFormatString( pos, formatString );
+  }
+
   void populateEvaluator( Evaluator evaluator, int[] pos ) {
     for ( int i = -1; i < axes.length; i++ ) {
       Axis axis;
@@ -1791,11 +1808,11 @@ public class RolapResult extends ResultBase {
   }
 
   /**
-   * Synchronized Map from Locale to ValueFormatter. It is expected that there will be only a small number of Locale's.
-   * Should these be a WeakHashMap?
+   * Concurrent Map from Locale to ValueFormatter, read once per cell without locking. It is expected that there will be
+   * only a small number of Locale's. Should these be a WeakHashMap?
    */
   protected static final Map<Locale, ValueFormatter> formatValueFormatters =
-      Collections.synchronizedMap( new HashMap<Locale, ValueFormatter>() );
+      new ConcurrentHashMap<Locale, ValueFormatter>();
 
   /**
    * A CellInfo contains all of the information that a Cell requires. It is placed in the cellInfos map during
@@ -1869,8 +1886,8 @@ public class RolapResult extends ResultBase {
   }
 
   /**
-   * API for the creation and lookup of {@link CellInfo} objects. There are two implementations, one that uses a Map for
-   * storage and the other uses an ObjectPool.
+   * API for the creation and lookup of {@link CellInfo} objects. There are three implementations: one that uses a Map
+   * for storage, one that uses an ObjectPool, and one that stores cells in columns of primitive arrays.
    */
   interface CellInfoContainer {
     /**
@@ -1900,6 +1917,21 @@ public class RolapResult extends ResultBase {
      */
     CellInfo create( int[] pos );
 
+    /**
+     * Stores the value, format string and formatter of the cell at location <code>pos</code>, creating it if
+     * necessary.
+     *
+     * @param pos
+     *          where to store the cell.
+     * @param value
+     *          Value of cell, or null to leave the value of the cell unchanged
+     * @param formatString
+     *          Format string of cell, or null
+     * @param valueFormatter
+     *          Formatter for cell
+     */
+    void store( int[] pos, Object value, String formatString, ValueFormatter valueFormatter );
+
     /**
      * Gets the CellInfo object at the location <code>pos</code>.
      *
@@ -1908,6 +1940,17 @@ public class RolapResult extends ResultBase {
      * @return the CellInfo found or null.
      */
     CellInfo lookup( int[] pos );
+
+    /**
+     * Sets the format string of the cell at location <code>pos</code>, keeping its value and formatter, and creating
+     * the cell if necessary.
+     *
+     * @param pos
+     *          where to find the cell.
+     * @param formatString
+     *          Format string of cell
+     */
+    void setFormatString( int[] pos, String formatString );
   }
 
   /**
@@ -1954,10 +1997,29 @@ public class RolapResult extends ResultBase {
       return ci;
     }
 
+    public void store( int[] pos, Object value, String formatString, ValueFormatter valueFormatter ) {
+      CellInfo ci = create( pos );
+      ci.formatString = formatString;
+      ci.valueFormatter = valueFormatter;
+      if ( value != null ) {
+        ci.value = value;
+      }
+    }
+
     public CellInfo lookup( int[] pos ) {
       CellKey key = CellKey.Generator.newCellKey( pos );
       return this.cellInfoMap.get( key );
     }
+
+    public void setFormatString( int[] pos, String formatString ) {
+      final CellKey key = CellKey.Generator.newCellKey( pos );
+      CellInfo ci = this.cellInfoMap.get( key );
+      if ( ci == null ) {
+        ci = new CellInfo( 0 );
+        this.cellInfoMap.put( key, ci );
+      }
+      ci.formatString = formatString;
+    }
   }
 
   /**
@@ -2091,7 +2153,7 @@ public class RolapResult extends ResultBase {
       this.cellKeyMaker = createCellKeyMaker( axisLength );
     }
 
-    private static CellKeyMaker createCellKeyMaker( int axisLength ) {
+    static CellKeyMaker createCellKeyMaker( int axisLength ) {
       switch ( axisLength ) {
         case 0:
           return new Zero();
@@ -2125,10 +2187,261 @@ public class RolapResult extends ResultBase {
       return this.cellInfoPool.add( new CellInfo( key ) );
     }
 
+    public void store( int[] pos, Object value, String formatString, ValueFormatter valueFormatter ) {
+      CellInfo ci = create( pos );
+      ci.formatString = formatString;
+      ci.valueFormatter = valueFormatter;
+      if ( value != null ) {
+        ci.value = value;
+      }
+    }
+
     public CellInfo lookup( int[] pos ) {
       long key = this.cellKeyMaker.generate( pos );
       return this.cellInfoPool.add( new CellInfo( key ) );
     }
+
+    public void setFormatString( int[] pos, String formatString ) {
+      lookup( pos ).formatString = formatString;
+    }
+  }
+
+  /**
+   * Implementation of {@link CellInfoContainer} which stores cells in columns rather than as one {@link CellInfo}
+   * object per cell.
+   *
+   * <p>
+   * Cell positions are converted to a <code>long</code> key by the same {@link CellInfoPool.CellKeyMaker}s as
+   * {@link CellInfoPool}, and an open-addressing hash table maps each key to a slot. Each slot's value is held in one
+   * of:
+   * <ul>
+   * <li>a <code>double[]</code>, for values of type {@link Double}, which are by far the most common;
+   * <li>a bitmap, for null cells;
+   * <li>an <code>Object[]</code>, allocated only when the first value of any other type is stored.
+   * </ul>
+   * Format strings and {@link ValueFormatter}s are few, so each distinct pair is stored once in a dictionary and
+   * referenced from each slot by an <code>int</code> id.
+   *
+   * <p>
+   * {@link #create} and {@link #lookup} return a new CellInfo holding a copy of the cell, so changes to it are not
+   * stored; use {@link #store} or {@link #setFormatString} to modify a cell.
+   */
+  static class CellInfoColumns implements CellInfoContainer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CellInfoPool.CellKeyMaker cellKeyMaker;
+
+    /**
+     * Hash table from key to slot. A bucket is empty if its entry in {@link #bucketSlots} is -1.
+     */
+    private long[] bucketKeys;
+    private int[] bucketSlots;
+
+    /**
+     * Number of slots in use.
+     */
+    private int size;
+
+    private double[] doubles;
+    private long[] doubleBits;
+    private long[] nullBits;
+    private Object[] objects;
+    private int[] formatIds;
+
+    /**
+     * Dictionary of distinct (format string, formatter) pairs; a slot's entry in {@link #formatIds} is an index into
+     * this list.
+     */
+    private final List<Pair<String, ValueFormatter>> formats = new ArrayList<Pair<String, ValueFormatter>>();
+    private final Map<Pair<String, ValueFormatter>, Integer> formatIdMap =
+        new HashMap<Pair<String, ValueFormatter>, Integer>();
+    private int lastFormatId;
+
+    CellInfoColumns( int axisLength ) {
+      this.cellKeyMaker = CellInfoPool.createCellKeyMaker( axisLength );
+      this.bucketKeys = new long[INITIAL_CAPACITY * 2];
+      this.bucketSlots = new int[INITIAL_CAPACITY * 2];
+      Arrays.fill( bucketSlots, -1 );
+      allocate( INITIAL_CAPACITY );
+      final Pair<String, ValueFormatter> empty = new Pair<String, ValueFormatter>( null, ValueFormatter.EMPTY );
+      formats.add( empty );
+      formatIdMap.put( empty, 0 );
+    }
+
+    private void allocate( int capacity ) {
+      doubles = doubles == null ? new double[capacity] : Arrays.copyOf( doubles, capacity );
+      formatIds = formatIds == null ? new int[capacity] : Arrays.copyOf( formatIds, capacity );
+      if ( objects != null ) {
+        objects = Arrays.copyOf( objects, capacity );
+      }
+      final int words = ( capacity + 63 ) >>> 6;
+      doubleBits = doubleBits == null ? new long[words] : Arrays.copyOf( doubleBits, words );
+      nullBits = nullBits == null ? new long[words] : Arrays.copyOf( nullBits, words );
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public void trimToSize() {
+      if ( size < doubles.length ) {
+        allocate( Math.max( size, 1 ) );
+      }
+    }
+
+    public void clear() {
+      Arrays.fill( bucketSlots, -1 );
+      Arrays.fill( doubleBits, 0L );
+      Arrays.fill( nullBits, 0L );
+      if ( objects != null ) {
+        Arrays.fill( objects, null );
+      }
+      size = 0;
+    }
+
+    public CellInfo create( int[] pos ) {
+      final long key = cellKeyMaker.generate( pos );
+      return toCellInfo( key, slot( key, true ) );
+    }
+
+    public void store( int[] pos, Object value, String formatString, ValueFormatter valueFormatter ) {
+      final int slot = slot( cellKeyMaker.generate( pos ), true );
+      formatIds[slot] = formatId( formatString, valueFormatter );
+      if ( value != null ) {
+        setValue( slot, value );
+      }
+    }
+
+    public CellInfo lookup( int[] pos ) {
+      final long key = cellKeyMaker.generate( pos );
+      return toCellInfo( key, slot( key, false ) );
+    }
+
+    public void setFormatString( int[] pos, String formatString ) {
+      final int slot = slot( cellKeyMaker.generate( pos ), true );
+      formatIds[slot] = formatId( formatString, formats.get( formatIds[slot] ).right );
+    }
+
+    private CellInfo toCellInfo( long key, int slot ) {
+      if ( slot < 0 ) {
+        return new CellInfo( key );
+      }
+      final Pair<String, ValueFormatter> format = formats.get( formatIds[slot] );
+      return new CellInfo( key, getValue( slot ), format.left, format.right );
+    }
+
+    private Object getValue( int slot ) {
+      if ( isSet( doubleBits, slot ) ) {
+        return doubles[slot];
+      } else if ( isSet( nullBits, slot ) ) {
+        return Util.nullValue;
+      } else if ( objects != null ) {
+        return objects[slot];
+      } else {
+        return null;
+      }
+    }
+
+    private void setValue( int slot, Object value ) {
+      clearBit( doubleBits, slot );
+      clearBit( nullBits, slot );
+      if ( objects != null ) {
+        objects[slot] = null;
+      }
+      if ( value instanceof Double ) {
+        doubles[slot] = (Double) value;
+        setBit( doubleBits, slot );
+      } else if ( value == Util.nullValue ) {
+        setBit( nullBits, slot );
+      } else {
+        if ( objects == null ) {
+          objects = new Object[doubles.length];
+        }
+        objects[slot] = value;
+      }
+    }
+
+    private int formatId( String formatString, ValueFormatter valueFormatter ) {
+      // Neighboring cells usually have the same format.
+      final Pair<String, ValueFormatter> last = formats.get( lastFormatId );
+      if ( last.left == formatString && last.right == valueFormatter ) {
+        return lastFormatId;
+      }
+      final Pair<String, ValueFormatter> format = new Pair<String, ValueFormatter>( formatString, valueFormatter );
+      Integer id = formatIdMap.get( format );
+      if ( id == null ) {
+        id = formats.size();
+        formats.add( format );
+        formatIdMap.put( format, id );
+      }
+      lastFormatId = id;
+      return id;
+    }
+
+    /**
+     * Returns the slot of a key, or -1 if the key is not present and <code>create</code> is false.
+     */
+    private int slot( long key, boolean create ) {
+      int mask = bucketSlots.length - 1;
+      int bucket = hash( key ) & mask;
+      while ( bucketSlots[bucket] >= 0 ) {
+        if ( bucketKeys[bucket] == key ) {
+          return bucketSlots[bucket];
+        }
+        bucket = ( bucket + 1 ) & mask;
+      }
+      if ( !create ) {
+        return -1;
+      }
+      final int slot = size++;
+      if ( slot == doubles.length ) {
+        allocate( doubles.length * 2 );
+      }
+      formatIds[slot] = 0;
+      bucketKeys[bucket] = key;
+      bucketSlots[bucket] = slot;
+      if ( size * 2 > bucketSlots.length ) {
+        rehash( bucketSlots.length * 2 );
+      }
+      return slot;
+    }
+
+    private void rehash( int bucketCount ) {
+      final long[] oldKeys = bucketKeys;
+      final int[] oldSlots = bucketSlots;
+      bucketKeys = new long[bucketCount];
+      bucketSlots = new int[bucketCount];
+      Arrays.fill( bucketSlots, -1 );
+      final int mask = bucketCount - 1;
+      for ( int i = 0; i < oldSlots.length; i++ ) {
+        if ( oldSlots[i] >= 0 ) {
+          int bucket = hash( oldKeys[i] ) & mask;
+          while ( bucketSlots[bucket] >= 0 ) {
+            bucket = ( bucket + 1 ) & mask;
+          }
+          bucketKeys[bucket] = oldKeys[i];
+          bucketSlots[bucket] = oldSlots[i];
+        }
+      }
+    }
+
+    private static int hash( long key ) {
+      // Same mixing as CellInfo.hashCode, spread further so that
+      // consecutive keys do not fill consecutive buckets.
+      return (int) ( key ^ ( key >>> 11 ) ^ ( key >>> 24 ) ) * 0x9E3779B9;
+    }
+
+    private static boolean isSet( long[] bits, int i ) {
+      return ( bits[i >>> 6] & ( 1L << i ) ) != 0;
+    }
+
+    private static void setBit( long[] bits, int i ) {
+      bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clearBit( long[] bits, int i ) {
+      bits[i >>> 6] &= ~( 1L << i );
+    }
   }
 
   static TupleList mergeAxes( TupleList axis1, TupleIterable axis2, boolean ordered ) {
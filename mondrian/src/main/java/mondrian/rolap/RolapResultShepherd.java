@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A utility class for {@link RolapConnection}. It specializes in
@@ -37,6 +38,14 @@ import java.util.concurrent.*;
  * <li>Gracefully cancel all SQL statements and cleanup in the background.</li>
  * </ul>
  *
+ * <p>When all threads are busy, executions wait in a bounded queue, and
+ * start in order of their statement's
+ * {@link mondrian.server.Statement#getPriority() priority}, then in order
+ * of arrival. An execution is rejected only if the queue is full.</p>
+ *
+ * <p>Requests that run several executions, such as XML/A requests, can
+ * wait in the same queue via {@link #execute(Runnable, int)}.</p>
+ *
  * @author LBoudreau
  */
 public class RolapResultShepherd {
@@ -56,29 +65,53 @@ public class RolapResultShepherd {
     private final Timer timer =
         Util.newTimer("mondrian.rolap.RolapResultShepherd#timer", true);
 
+    /**
+     * Tasks waiting for a thread.
+     */
+    private final WaitQueue waitQueue;
+
+    /**
+     * Sequence number of the next task; orders tasks of equal priority.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Whether the current thread is running a request submitted via
+     * {@link #execute(Runnable, int)}.
+     */
+    private static final ThreadLocal<Boolean> REQUEST_THREAD =
+        new ThreadLocal<Boolean>();
+
     public RolapResultShepherd() {
-        final IntegerProperty property =
-            MondrianProperties.instance().RolapConnectionShepherdNbThreads;
-        final int maximumPoolSize = property.get();
+        final int maximumPoolSize =
+            MondrianProperties.instance().RolapConnectionShepherdNbThreads
+                .get();
+        final IntegerProperty queueProperty =
+            MondrianProperties.instance().RolapConnectionShepherdQueueSize;
+        final int queueSize = Math.max(0, queueProperty.get());
+        waitQueue = new WaitQueue(queueSize);
         executor =
             Util.getExecutorService(
                  // We use the same value for coreSize and maxSize
                 // because that's the behavior we want. All extra
-                // tasks will be put on an unbounded queue.
+                // tasks will be put on the wait queue.
                 maximumPoolSize,
                 maximumPoolSize,
                 1,
-                "mondrian.rolap.RolapResultShepherd$executor",
+                Util.newThreadFactory(
+                    "mondrian.rolap.RolapResultShepherd$executor",
+                    MondrianProperties.instance().VirtualThreads.get()),
                 new RejectedExecutionHandler() {
                     public void rejectedExecution(
                         Runnable r,
                         ThreadPoolExecutor executor)
                     {
                         throw MondrianResource.instance().QueryLimitReached.ex(
-                            maximumPoolSize,
-                            property.getPath());
+                            maximumPoolSize + queueSize,
+                            queueProperty.getPath());
                     }
-                });
+                },
+                waitQueue);
         final Pair<Long, TimeUnit> interval =
             Util.parseInterval(
                 String.valueOf(
@@ -140,71 +173,161 @@ public class RolapResultShepherd {
     {
         // We must wrap this execution into a task that so that we are able
         // to monitor, cancel and detach from it.
-        FutureTask<Result> task = new FutureTask<Result>(callable);
-
-        // Register this task with the shepherd thread
-        final Pair<FutureTask<Result>, Execution> pair =
-            new Pair<FutureTask<Result>, Execution>(
-                task,
-                execution);
-        tasks.add(pair);
-
+        final ShepherdTask task = new ShepherdTask(execution, callable, null);
         try {
-            // Now run it.
-            executor.execute(task);
+            if (REQUEST_THREAD.get() != null) {
+                // This thread is a query thread already, held by a request.
+                // If we waited for another, requests could hold every
+                // thread and wait forever; so run the execution here.
+                tasks.add(
+                    new Pair<FutureTask<Result>, Execution>(
+                        task, task.execution));
+                task.run();
+            } else {
+                // Now run it.
+                submit(task);
+            }
             return task.get();
         } catch (Throwable e) {
-            // Make sure to clean up pending SQL queries.
-            execution.cancelSqlStatements();
-
             // Make sure to propagate the interruption flag.
             if (e instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
             }
-
-            // Unwrap any java.concurrent wrappers.
-            Throwable node = e;
-            if (e instanceof ExecutionException) {
-                ExecutionException executionException = (ExecutionException) e;
-                node = executionException.getCause();
+            final Throwable t = translate(execution, e);
+            if (t instanceof Error) {
+                throw (Error) t;
             }
+            throw (RuntimeException) t;
+        }
+    }
 
-            // Let the Execution throw whatever it wants to, this way the
-            // API contract is respected. The program should in most cases
-            // stop here as most exceptions will originate from the Execution
-            // instance.
+    /**
+     * Executes and shepherds an Execution instance without blocking the
+     * calling thread.
+     *
+     * <p>The execution is monitored in the same way as by
+     * {@link #shepherdExecution(Execution, Callable)}. The returned future
+     * completes with the result, or exceptionally with the exception that
+     * {@code shepherdExecution} would have thrown; in particular, it
+     * completes with {@link QueryCanceledException} or
+     * {@link QueryTimeoutException} if the execution is canceled or times
+     * out, and with {@link MondrianException} if the wait queue is full.
+     *
+     * <p>Cancelling the future removes the execution from the wait queue
+     * or, if it has started, cancels it.</p>
+     *
+     * @param execution An Execution instance.
+     * @param callable A callable to monitor returning a Result instance.
+     * @return Future result
+     */
+    public CompletableFuture<Result> shepherdExecutionAsync(
+        Execution execution,
+        Callable<Result> callable)
+    {
+        final ShepherdFuture future = new ShepherdFuture();
+        final ShepherdTask task =
+            new ShepherdTask(execution, callable, future);
+        future.task = task;
+        try {
+            submit(task);
+        } catch (Throwable e) {
+            future.completeExceptionally(translate(execution, e));
+        }
+        return future;
+    }
+
+    /**
+     * Runs a request on a query thread.
+     *
+     * <p>If all threads are busy, the request waits in the same queue as
+     * executions, and starts in order of the given priority, then in order
+     * of arrival. Executions that the request shepherds run on the
+     * request's thread, so a request uses one query thread however many
+     * executions it runs.</p>
+     *
+     * @param request Request
+     * @param priority Priority; see
+     *   {@link mondrian.server.Statement#getPriority()}
+     * @throws MondrianException if the wait queue is full
+     */
+    public void execute(Runnable request, int priority) {
+        executor.execute(new RequestTask(request, priority));
+    }
+
+    /**
+     * Registers a task with the shepherd thread and hands it to the
+     * executor.
+     */
+    private void submit(ShepherdTask task) {
+        final Pair<FutureTask<Result>, Execution> pair =
+            new Pair<FutureTask<Result>, Execution>(task, task.execution);
+        tasks.add(pair);
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            // Rejected. The task will never run, so the shepherd thread
+            // must not wait for it.
+            tasks.remove(pair);
+            throw e;
+        }
+    }
+
+    /**
+     * Converts an exception thrown while executing, or waiting for, an
+     * Execution into the exception that the user should see.
+     *
+     * @param execution Execution
+     * @param e Exception
+     * @return A RuntimeException or an Error
+     */
+    private static Throwable translate(Execution execution, Throwable e) {
+        // Make sure to clean up pending SQL queries.
+        execution.cancelSqlStatements();
+
+        // Unwrap any java.concurrent wrappers.
+        Throwable node = e;
+        if (e instanceof ExecutionException) {
+            ExecutionException executionException = (ExecutionException) e;
+            node = executionException.getCause();
+        }
+
+        // Let the Execution throw whatever it wants to, this way the
+        // API contract is respected. The program should in most cases
+        // stop here as most exceptions will originate from the Execution
+        // instance.
+        try {
             execution.checkCancelOrTimeout();
+        } catch (RuntimeException x) {
+            return x;
+        }
 
-            // We must also check for ResourceLimitExceededExceptions,
-            // which might be wrapped by an ExecutionException. In order to
-            // respect the API contract, we must throw the cause, not the
-            // wrapper.
-            final ResourceLimitExceededException t =
-                Util.getMatchingCause(
-                    node, ResourceLimitExceededException.class);
-            if (t != null) {
-                throw t;
-            }
+        // We must also check for ResourceLimitExceededExceptions,
+        // which might be wrapped by an ExecutionException. In order to
+        // respect the API contract, we must throw the cause, not the
+        // wrapper.
+        final ResourceLimitExceededException t =
+            Util.getMatchingCause(
+                node, ResourceLimitExceededException.class);
+        if (t != null) {
+            return t;
+        }
 
-            // Check for Mondrian exceptions in the exception chain.
-            // we can throw these back as-is.
-            final MondrianException m =
-                Util.getMatchingCause(
-                    node, MondrianException.class);
-            if (m != null) {
-                // Throw that.
-                throw m;
-            }
+        // Check for Mondrian exceptions in the exception chain.
+        // we can throw these back as-is.
+        final MondrianException m =
+            Util.getMatchingCause(
+                node, MondrianException.class);
+        if (m != null) {
+            // Throw that.
+            return m;
+        }
 
-            // Since we got here, this means that the exception was
-            // something else. Just wrap/throw.
-            if (node instanceof RuntimeException) {
-                throw (RuntimeException) node;
-            } else if (node instanceof Error) {
-                throw (Error) node;
-            } else {
-                throw new MondrianException(node);
-            }
+        // Since we got here, this means that the exception was
+        // something else. Just wrap/throw.
+        if (node instanceof RuntimeException || node instanceof Error) {
+            return node;
+        } else {
+            return new MondrianException(node);
         }
     }
 
@@ -213,7 +336,128 @@ public class RolapResultShepherd {
         this.executor.shutdown();
         this.tasks.clear();
     }
+
+    /**
+     * Task run by the executor. Tasks waiting for a thread are ordered by
+     * descending priority, then by ascending sequence number.
+     */
+    private abstract class PriorityTask<V>
+        extends FutureTask<V>
+        implements Comparable<PriorityTask<?>>
+    {
+        private final int priority;
+        private final long seq;
+
+        PriorityTask(Callable<V> callable, int priority) {
+            super(callable);
+            this.priority = priority;
+            this.seq = sequence.getAndIncrement();
+        }
+
+        public int compareTo(PriorityTask<?> o) {
+            if (priority != o.priority) {
+                return priority > o.priority ? -1 : 1;
+            }
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * Task that runs a request submitted via {@link #execute}.
+     */
+    private class RequestTask extends PriorityTask<Void> {
+        RequestTask(Runnable request, int priority) {
+            super(Executors.callable(request, (Void) null), priority);
+        }
+
+        public void run() {
+            REQUEST_THREAD.set(Boolean.TRUE);
+            try {
+                super.run();
+            } finally {
+                REQUEST_THREAD.remove();
+            }
+        }
+    }
+
+    /**
+     * Task that runs an execution.
+     */
+    private class ShepherdTask extends PriorityTask<Result> {
+        private final Execution execution;
+        private final CompletableFuture<Result> future;
+        private volatile boolean started;
+
+        ShepherdTask(
+            Execution execution,
+            Callable<Result> callable,
+            CompletableFuture<Result> future)
+        {
+            super(callable, execution.getMondrianStatement().getPriority());
+            this.execution = execution;
+            this.future = future;
+        }
+
+        public void run() {
+            started = true;
+            super.run();
+        }
+
+        protected void done() {
+            if (future == null) {
+                return;
+            }
+            try {
+                future.complete(get());
+            } catch (Throwable e) {
+                future.completeExceptionally(translate(execution, e));
+            }
+        }
+    }
+
+    /**
+     * Future returned by
+     * {@link RolapResultShepherd#shepherdExecutionAsync}. Cancelling it
+     * cancels the task and, if the task has started, its execution.
+     */
+    private class ShepherdFuture extends CompletableFuture<Result> {
+        private ShepherdTask task;
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean canceled = super.cancel(mayInterruptIfRunning);
+            task.cancel(false);
+            if (!task.started) {
+                // Free its place in the queue.
+                waitQueue.remove(task);
+            } else {
+                // The execution checks for cancellation before it starts,
+                // and periodically while it runs.
+                task.execution.cancel();
+            }
+            return canceled;
+        }
+    }
+
+    /**
+     * Queue of tasks waiting for a thread. Holds at most a given number of
+     * tasks; when full, {@link #offer} returns false, and the executor
+     * rejects the task.
+     */
+    private static class WaitQueue extends PriorityBlockingQueue<Runnable> {
+        private final int capacity;
+
+        WaitQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public synchronized boolean offer(Runnable runnable) {
+            return size() < capacity && super.offer(runnable);
+        }
+
+        public int remainingCapacity() {
+            return Math.max(0, capacity - size());
+        }
+    }
 }
 
 // End RolapResultShepherd.java
-
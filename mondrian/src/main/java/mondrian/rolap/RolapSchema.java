@@ -13,6 +13,7 @@
 
 package mondrian.rolap;
 
+import mondrian.calc.impl.MethodHandleExpCompiler;
 import mondrian.olap.Access;
 import mondrian.olap.Annotation;
 import mondrian.olap.CacheControl;
@@ -48,7 +49,11 @@ import mondrian.olap.type.NumericType;
 import mondrian.olap.type.StringType;
 import mondrian.olap.type.Type;
 import mondrian.resource.MondrianResource;
+import mondrian.rolap.agg.MemoryAggregateRegistry;
+import mondrian.rolap.agg.SegmentCacheWarmer;
 import mondrian.rolap.aggmatcher.AggTableManager;
+import mondrian.server.Locus;
+import mondrian.server.monitor.SchemaLoadEvent;
 import mondrian.spi.DataSourceChangeListener;
 import mondrian.spi.Dialect;
 import mondrian.spi.DialectManager;
@@ -79,10 +84,16 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 /**
  * A <code>RolapSchema</code> is a collection of {@link RolapCube}s and shared {@link RolapDimension}s. It is shared
@@ -116,19 +127,24 @@ public class RolapSchema implements Schema {
   /**
    * Holds cubes in this schema.
    */
-  private final Map<String, RolapCube> mapNameToCube = new HashMap<>();
+  private final Map<String, RolapCube> mapNameToCube = new ConcurrentHashMap<>();
 
   /**
    * Maps {@link String shared hierarchy name} to {@link MemberReader}. Shared between all statements which use this
    * connection.
    */
-  private final Map<String, MemberReader> mapSharedHierarchyToReader = new HashMap<>();
+  private final Map<String, MemberReader> mapSharedHierarchyToReader = new ConcurrentHashMap<>();
 
   /**
    * Maps {@link String names of shared hierarchies} to {@link RolapHierarchy the canonical instance of those
    * hierarchies}.
    */
-  private final Map<String, RolapHierarchy> mapSharedHierarchyNameToHierarchy = new HashMap<>();
+  private final Map<String, RolapHierarchy> mapSharedHierarchyNameToHierarchy = new ConcurrentHashMap<>();
+
+  /**
+   * Maps names of shared dimensions to the {@link RolapDimension} created on their first use. Guarded by this schema.
+   */
+  private final Map<String, RolapDimension> mapSharedDimensionNameToDimension = new HashMap<>();
 
   /**
    * The default role for connections to this schema.
@@ -142,6 +158,11 @@ public class RolapSchema implements Schema {
    */
   private AggTableManager aggTableManager;
 
+  /**
+   * Warm-up of this schema's segment cache, or null if none was started.
+   */
+  private SegmentCacheWarmer cacheWarmer;
+
   /**
    * This is basically a unique identifier for this RolapSchema instance used it its equals and hashCode methods.
    */
@@ -174,9 +195,15 @@ public class RolapSchema implements Schema {
    * List of warnings. Populated when a schema is created by a connection that has
    * {@link mondrian.rolap.RolapConnectionProperties#Ignore Ignore}=true.
    */
-  private final List<Exception> warningList = new ArrayList<>();
+  private final List<Exception> warningList = Collections.synchronizedList( new ArrayList<>() );
   private Map<String, Annotation> annotationMap;
 
+  /**
+   * Elapsed time of each phase of loading this schema, in nanoseconds. Cubes may be created in parallel, so this map
+   * is synchronized.
+   */
+  private final Map<String, Long> loadPhaseNanos = Collections.synchronizedMap( new LinkedHashMap<>() );
+
   /**
    * Unique schema instance id that will be used to inform clients when the schema has changed.
    *
@@ -240,6 +267,21 @@ public class RolapSchema implements Schema {
     this.internalConnection = internalConnection;
   }
 
+  /**
+   * Declares the in-memory aggregates of each cube that has a {@link MemoryAggregateRegistry#ANNOTATION} annotation, and
+   * starts loading them in the background.
+   */
+  private void declareMemoryAggregates() {
+    if ( !MondrianProperties.instance().MemoryAggregates.get() ) {
+      return;
+    }
+    for ( RolapCube cube : getCubeList() ) {
+      if ( !cube.isVirtual() ) {
+        cube.getStar().getMemoryAggregates().declare( cube );
+      }
+    }
+  }
+
   protected void flushSegments() {
     final RolapConnection localInternalConnection = getInternalConnection();
 
@@ -268,6 +310,22 @@ public class RolapSchema implements Schema {
    * data must be refreshed.
    */
   protected void finalCleanUp() {
+    // Record the workload before its segments are discarded, and stop warming.
+    try {
+      SegmentCacheWarmer.save( this );
+    } catch ( RuntimeException e ) {
+      getLogger().warn( "Failed to save workload profile of schema " + name, e );
+    }
+    if ( cacheWarmer != null ) {
+      cacheWarmer.cancel();
+      cacheWarmer = null;
+    }
+
+    // Discard in-memory aggregates first, so that flushing does not reload them.
+    for ( RolapStar star : getStars() ) {
+      star.getMemoryAggregates().close();
+    }
+
     // Cleanup the segment data.
     flushSegments();
 
@@ -320,6 +378,7 @@ public class RolapSchema implements Schema {
    * @param connectInfo Mondrian connection properties
    */
   protected void load( String catalogUrl, String catalogStr, PropertyList connectInfo ) {
+    long start = System.nanoTime();
     try {
       final Parser xmlParser = XOMUtil.createDefaultParser();
 
@@ -371,13 +430,58 @@ public class RolapSchema implements Schema {
         getLogger().debug( sw.toString() );
       }
 
+      start = recordLoadPhase( "parse", start );
       load( xmlSchema );
+      start = System.nanoTime();
     } catch ( XOMException | IOException e ) {
       throw Util.newError( e, "while parsing catalog " + catalogUrl );
     }
 
     aggTableManager.initialize( connectInfo );
+    declareMemoryAggregates();
+    recordLoadPhase( "aggregates", start );
     setSchemaLoadDate();
+
+    final MondrianServer server = internalConnection.getServer();
+    server.getMonitor().sendEvent(
+      new SchemaLoadEvent( System.currentTimeMillis(), server.getId(), id, name, getLoadPhaseNanos() ) );
+
+    cacheWarmer = SegmentCacheWarmer.start( this );
+  }
+
+  /**
+   * Returns the warm-up of this schema's segment cache, or null if no warm-up was started when the schema was loaded.
+   *
+   * @return Warm-up, or null
+   */
+  public SegmentCacheWarmer getCacheWarmer() {
+    return cacheWarmer;
+  }
+
+  /**
+   * Records the elapsed time of a phase of loading this schema.
+   *
+   * @param phase      Name of phase
+   * @param startNanos Start time of phase, per {@link System#nanoTime()}
+   * @return Current time, which is the start time of the next phase
+   */
+  private long recordLoadPhase( String phase, long startNanos ) {
+    final long now = System.nanoTime();
+    loadPhaseNanos.put( phase, now - startNanos );
+    LOGGER.debug( "Schema {}: {} took {} ms", name, phase, ( now - startNanos ) / 1000000 );
+    return now;
+  }
+
+  /**
+   * Returns the elapsed time of each phase of loading this schema, in nanoseconds: parsing, functions, parameters,
+   * cubes (and, within that, each cube), named sets, roles and aggregate tables.
+   *
+   * @return Map from phase name to elapsed nanoseconds, in the order the phases ended
+   */
+  public Map<String, Long> getLoadPhaseNanos() {
+    synchronized ( loadPhaseNanos ) {
+      return new LinkedHashMap<>( loadPhaseNanos );
+    }
   }
 
   private void checkSchemaVersion( final DOMWrapper schemaDom ) {
@@ -484,6 +588,7 @@ public class RolapSchema implements Schema {
   }
 
   private void load( MondrianDef.Schema xmlSchema ) {
+    long start = System.nanoTime();
     this.name = xmlSchema.name;
 
     if ( name == null || name.isEmpty() ) {
@@ -503,6 +608,7 @@ public class RolapSchema implements Schema {
     final RolapSchemaFunctionTable localFunTable = new RolapSchemaFunctionTable( mapNameToUdf.values() );
     localFunTable.init();
     this.funTable = localFunTable;
+    start = recordLoadPhase( "functions", start );
 
     // Validate public dimensions.
     for ( MondrianDef.Dimension xmlDimension : xmlSchema.dimensions ) {
@@ -539,26 +645,17 @@ public class RolapSchema implements Schema {
       XOMUtil.discard( param );
     }
 
-    // Create cubes.
-    for ( MondrianDef.Cube xmlCube : xmlSchema.cubes ) {
-      if ( xmlCube.isEnabled() ) {
-        RolapCube cube = new RolapCube( this, xmlSchema, xmlCube, true );
-        XOMUtil.discard( cube );
-      }
-    }
+    start = recordLoadPhase( "parameters", start );
 
-    // Create virtual cubes.
-    for ( MondrianDef.VirtualCube xmlVirtualCube : xmlSchema.virtualCubes ) {
-      if ( xmlVirtualCube.isEnabled() ) {
-        RolapCube cube = new RolapCube( this, xmlSchema, xmlVirtualCube, true );
-        XOMUtil.discard( cube );
-      }
-    }
+    // Create cubes and virtual cubes.
+    loadCubes( xmlSchema );
+    start = recordLoadPhase( "cubes", start );
 
     // Create named sets.
     for ( MondrianDef.NamedSet xmlNamedSet : xmlSchema.namedSets ) {
       mapNameToSet.put( xmlNamedSet.name, createNamedSet( xmlNamedSet ) );
     }
+    start = recordLoadPhase( "namedSets", start );
 
     // Create roles.
     for ( MondrianDef.Role xmlRole : xmlSchema.roles ) {
@@ -577,6 +674,165 @@ public class RolapSchema implements Schema {
         defaultRole = role;
       }
     }
+    recordLoadPhase( "roles", start );
+  }
+
+  /**
+   * Creates the cubes and virtual cubes of a schema.
+   *
+   * <p>If {@link MondrianProperties#SchemaLoadThreads} is greater than 1, cubes on different fact tables are created in
+   * parallel, and each virtual cube is created as soon as the base cubes it uses have been created. If several cubes
+   * fail, the error of the first in schema order is thrown, as it would be if the cubes were created sequentially.
+   *
+   * @param xmlSchema Schema definition
+   */
+  private void loadCubes( final MondrianDef.Schema xmlSchema ) {
+    final int threadCount = MondrianProperties.instance().SchemaLoadThreads.get();
+
+    if ( threadCount <= 1 || xmlSchema.cubes.length + xmlSchema.virtualCubes.length <= 1 ) {
+      for ( MondrianDef.Cube xmlCube : xmlSchema.cubes ) {
+        if ( xmlCube.isEnabled() ) {
+          createCube( xmlSchema, xmlCube );
+        }
+      }
+
+      for ( MondrianDef.VirtualCube xmlVirtualCube : xmlSchema.virtualCubes ) {
+        if ( xmlVirtualCube.isEnabled() ) {
+          createCube( xmlSchema, xmlVirtualCube );
+        }
+      }
+      return;
+    }
+
+    // Worker threads need the same locus as this thread, so that they can run SQL and parse formulas.
+    final Locus locus = Locus.isEmpty() ? null : Locus.peek();
+    final ExecutorService executor =
+      Util.getExecutorService( threadCount, threadCount, 1, "mondrian.rolap.RolapSchema$cubeLoader", null );
+
+    try {
+      final Map<String, CompletableFuture<Void>> cubeFutures = new HashMap<>();
+      final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+      // Cubes on the same fact table share a star, whose columns get their bit positions in the order the cubes
+      // create them. Create such cubes one after another, in schema order, so that the positions do not depend on
+      // thread scheduling.
+      final Map<Object, CompletableFuture<Void>> starFutures = new HashMap<>();
+
+      for ( final MondrianDef.Cube xmlCube : xmlSchema.cubes ) {
+        if ( xmlCube.isEnabled() ) {
+          final Object starKey = xmlCube.fact == null ? xmlCube.name : RolapUtil.makeRolapStarKey( xmlCube.fact );
+          final CompletableFuture<Void> previous = starFutures.get( starKey );
+          final Runnable task = () -> runInLocus( locus, () -> createCube( xmlSchema, xmlCube ) );
+          final CompletableFuture<Void> future =
+            previous == null ? CompletableFuture.runAsync( task, executor ) : previous.thenRunAsync( task, executor );
+          starFutures.put( starKey, future );
+          cubeFutures.put( Util.normalizeName( xmlCube.name ), future );
+          futures.add( future );
+        }
+      }
+
+      for ( final MondrianDef.VirtualCube xmlVirtualCube : xmlSchema.virtualCubes ) {
+        if ( xmlVirtualCube.isEnabled() ) {
+          final List<CompletableFuture<Void>> dependencies = getBaseCubeFutures( xmlVirtualCube, cubeFutures );
+          futures.add(
+            CompletableFuture.allOf( dependencies.toArray( new CompletableFuture[ 0 ] ) )
+              .thenRunAsync( () -> runInLocus( locus, () -> createCube( xmlSchema, xmlVirtualCube ) ), executor ) );
+        }
+      }
+
+      // Wait for every cube, even after a failure, so that no thread is still modifying this schema when we return.
+      Throwable firstError = null;
+
+      for ( CompletableFuture<Void> future : futures ) {
+        try {
+          future.join();
+        } catch ( CompletionException e ) {
+          if ( firstError == null ) {
+            firstError = e.getCause();
+          }
+        }
+      }
+
+      if ( firstError instanceof RuntimeException ) {
+        throw (RuntimeException) firstError;
+      } else if ( firstError instanceof Error ) {
+        throw (Error) firstError;
+      } else if ( firstError != null ) {
+        throw Util.newError( firstError, "while loading cubes of schema " + name );
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Returns the futures of the base cubes that a virtual cube uses. If a base cube is not known, the virtual cube
+   * depends on every base cube; creating it will then report the missing cube in the usual way.
+   */
+  private static List<CompletableFuture<Void>> getBaseCubeFutures( MondrianDef.VirtualCube xmlVirtualCube,
+                                                                   Map<String, CompletableFuture<Void>> cubeFutures ) {
+    final Set<String> cubeNames = new HashSet<>();
+
+    if ( xmlVirtualCube.cubeUsage != null ) {
+      for ( MondrianDef.CubeUsage cubeUsage : xmlVirtualCube.cubeUsage.cubeUsages ) {
+        cubeNames.add( cubeUsage.cubeName );
+      }
+    }
+
+    for ( MondrianDef.VirtualCubeDimension xmlDimension : xmlVirtualCube.dimensions ) {
+      if ( xmlDimension.cubeName != null ) {
+        cubeNames.add( xmlDimension.cubeName );
+      }
+    }
+
+    for ( MondrianDef.VirtualCubeMeasure xmlMeasure : xmlVirtualCube.measures ) {
+      if ( xmlMeasure.cubeName != null ) {
+        cubeNames.add( xmlMeasure.cubeName );
+      }
+    }
+
+    final List<CompletableFuture<Void>> list = new ArrayList<>();
+
+    for ( String cubeName : cubeNames ) {
+      final CompletableFuture<Void> future = cubeFutures.get( Util.normalizeName( cubeName ) );
+
+      if ( future == null ) {
+        return new ArrayList<>( cubeFutures.values() );
+      }
+
+      list.add( future );
+    }
+
+    return list;
+  }
+
+  private void createCube( MondrianDef.Schema xmlSchema, MondrianDef.Cube xmlCube ) {
+    final long start = System.nanoTime();
+    RolapCube cube = new RolapCube( this, xmlSchema, xmlCube, true );
+    XOMUtil.discard( cube );
+    recordLoadPhase( "cube " + xmlCube.name, start );
+  }
+
+  private void createCube( MondrianDef.Schema xmlSchema, MondrianDef.VirtualCube xmlVirtualCube ) {
+    final long start = System.nanoTime();
+    RolapCube cube = new RolapCube( this, xmlSchema, xmlVirtualCube, true );
+    XOMUtil.discard( cube );
+    recordLoadPhase( "cube " + xmlVirtualCube.name, start );
+  }
+
+  private static void runInLocus( Locus locus, Runnable runnable ) {
+    if ( locus == null ) {
+      runnable.run();
+      return;
+    }
+
+    Locus.push( locus );
+
+    try {
+      runnable.run();
+    } finally {
+      Locus.pop( locus );
+    }
   }
 
   static Scripts.ScriptDefinition toScriptDef( MondrianDef.Script script ) {
@@ -948,6 +1204,27 @@ public class RolapSchema implements Schema {
     return mapSharedHierarchyNameToHierarchy.get( name );
   }
 
+  /**
+   * Returns the shared dimension with a given name, creating it if this is its first use.
+   *
+   * <p>Synchronization: thread safe. Cubes created in parallel that use the same shared dimension get the same
+   * dimension, hierarchies and member readers.
+   *
+   * @param name    Name of the shared dimension; the <code>source</code> of a &lt;DimensionUsage&gt;
+   * @param factory Creates the dimension if it does not exist yet
+   * @return Shared dimension
+   */
+  synchronized RolapDimension getOrCreateSharedDimension( final String name,
+                                                          final Supplier<RolapDimension> factory ) {
+    final RolapHierarchy sharedHierarchy = getSharedHierarchy( name );
+
+    if ( sharedHierarchy != null ) {
+      return (RolapDimension) sharedHierarchy.getDimension();
+    }
+
+    return mapSharedDimensionNameToDimension.computeIfAbsent( name, k -> factory.get() );
+  }
+
   public NamedSet getNamedSet( String name ) {
     return mapNameToSet.get( name );
   }
@@ -1287,6 +1564,17 @@ public class RolapSchema implements Schema {
     return nativeRegistry;
   }
 
+  /**
+   * Method handles composed by {@link MethodHandleExpCompiler}, keyed by the shape of the expression. Holds at most
+   * {@link MethodHandleExpCompiler#CACHE_SIZE} shapes. Discarded with the schema.
+   */
+  private final Map<String, MethodHandleExpCompiler.Shape> compiledExpressionCache =
+    MethodHandleExpCompiler.createCache();
+
+  public Map<String, MethodHandleExpCompiler.Shape> getCompiledExpressionCache() {
+    return compiledExpressionCache;
+  }
+
   /**
    * @return Returns the dataSourceChangeListener.
    */
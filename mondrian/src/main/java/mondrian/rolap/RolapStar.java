@@ -18,6 +18,7 @@ import mondrian.resource.MondrianResource;
 import mondrian.rolap.agg.*;
 import mondrian.rolap.aggmatcher.AggStar;
 import mondrian.rolap.sql.SqlQuery;
+import mondrian.server.Execution;
 import mondrian.server.Locus;
 import mondrian.spi.*;
 import mondrian.util.Bug;
@@ -29,7 +30,6 @@ import org.apache.logging.log4j.LogManager;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.ref.SoftReference;
 import java.sql.Connection;
 import java.sql.*;
 import java.util.*;
@@ -92,6 +92,18 @@ public class RolapStar {
 
     private final RolapStatisticsCache statisticsCache;
 
+    private final SegmentRequestLog segmentRequestLog =
+        new SegmentRequestLog();
+
+    private final MemoryAggregateRegistry memoryAggregates =
+        new MemoryAggregateRegistry(this);
+
+    private final ExistenceIndexRegistry existenceIndexes =
+        new ExistenceIndexRegistry(this);
+
+    private final AdaptiveBatchSizer batchSizer =
+        new AdaptiveBatchSizer(segmentRequestLog);
+
     /**
      * Creates a RolapStar. Please use
      * {@link RolapSchema.RolapStarRegistry#getOrCreateStar} to create a
@@ -118,7 +130,7 @@ public class RolapStar {
 
     /**
      * Retrieves the value of the cell identified by a cell request, if it
-     * can be found in the local cache of the current statement (thread).
+     * can be found in the local cache of the current execution.
      *
      * <p>If it is not in the local cache, returns null. The client's next
      * step will presumably be to request a segment that contains the cell
@@ -142,32 +154,9 @@ public class RolapStar {
         CellRequest request,
         RolapAggregationManager.PinSet pinSet)
     {
-        // REVIEW: Is it possible to optimize this so not every cell lookup
-        // causes an AggregationKey to be created?
-        AggregationKey aggregationKey = new AggregationKey(request);
-
-        final Bar bar = localBars.get();
-        for (SegmentWithData segment : Util.GcIterator.over(bar.segmentRefs)) {
-            if (!segment.getConstrainedColumnsBitKey().equals(
-                    request.getConstrainedColumnsBitKey()))
-            {
-                continue;
-            }
-
-            if (!segment.matches(aggregationKey, request.getMeasure())) {
-                continue;
-            }
-
-            Object o = segment.getCellValue(request.getSingleValues());
-            if (o != null) {
-                if (pinSet != null) {
-                    ((AggregationManager.PinSetImpl) pinSet).add(segment);
-                }
-                return o;
-            }
-        }
-        // No segment contains the requested cell.
-        return null;
+        // Does not create an AggregationKey or a CellKey; the directory
+        // finds candidate segments by BitKey and measure.
+        return getBar().segmentDirectory.getCellValue(request, pinSet);
     }
 
     public Object getCellFromAllCaches(final CellRequest request) {
@@ -191,8 +180,7 @@ public class RolapStar {
     }
 
     public void register(SegmentWithData segment) {
-        localBars.get().segmentRefs.add(
-            new SoftReference<SegmentWithData>(segment));
+        getBar().segmentDirectory.register(segment);
     }
 
     public RolapStatisticsCache getStatisticsCache() {
@@ -200,9 +188,40 @@ public class RolapStar {
     }
 
     /**
-     * Temporary. Contains the local cache for a particular thread. Because
-     * it is accessed via a thread-local, the data structures can be accessed
-     * without acquiring locks.
+     * Returns the log of segments this star has loaded from SQL, which is
+     * the workload mined by
+     * {@link mondrian.rolap.aggmatcher.AggAdvisor}.
+     */
+    public SegmentRequestLog getSegmentRequestLog() {
+        return segmentRequestLog;
+    }
+
+    /**
+     * Returns the aggregates of this star that are held in memory.
+     */
+    public MemoryAggregateRegistry getMemoryAggregates() {
+        return memoryAggregates;
+    }
+
+    /**
+     * Returns the indexes of which combinations of keys occur in this star's
+     * fact table.
+     */
+    public ExistenceIndexRegistry getExistenceIndexes() {
+        return existenceIndexes;
+    }
+
+    /**
+     * Returns the object that sizes and splits this star's cell batches.
+     */
+    public AdaptiveBatchSizer getBatchSizer() {
+        return batchSizer;
+    }
+
+    /**
+     * Temporary. Contains the local cache for a particular execution. An
+     * execution evaluates cells on one thread at a time, so the data
+     * structures can be accessed without acquiring locks.
      *
      * @see Util#deprecated(Object)
      */
@@ -211,10 +230,14 @@ public class RolapStar {
         private final Map<AggregationKey, Aggregation> aggregations =
             new ReferenceMap(ReferenceMap.WEAK, ReferenceMap.WEAK);
 
-        private final List<SoftReference<SegmentWithData>> segmentRefs =
-            new ArrayList<SoftReference<SegmentWithData>>();
+        /** Segments in the local cache, hashed by columns and measure. */
+        private final SegmentDirectory segmentDirectory =
+            new SegmentDirectory();
     }
 
+    /**
+     * Local caches of threads that are not running an execution.
+     */
     private final ThreadLocal<Bar> localBars =
         new ThreadLocal<Bar>() {
             protected Bar initialValue() {
@@ -222,6 +245,26 @@ public class RolapStar {
             }
         };
 
+    /**
+     * Returns the local cache of the current execution.
+     *
+     * <p>The cache belongs to the execution, not to the thread, so it is
+     * released when the execution is, and is the same whichever thread the
+     * execution runs on. If there is no current execution, returns a cache
+     * private to the current thread.
+     *
+     * @return Local cache
+     */
+    private Bar getBar() {
+        if (!Locus.isEmpty()) {
+            final Execution execution = Locus.peek().execution;
+            if (execution != Execution.NONE) {
+                return execution.getBar(this);
+            }
+        }
+        return localBars.get();
+    }
+
     private static class StarNetworkNode {
         private StarNetworkNode parent;
         private MondrianDef.Relation origRel;
@@ -406,7 +449,7 @@ public class RolapStar {
      * This is used by the {@link Column} constructor to get a unique id (per
      * its parent {@link RolapStar}).
      */
-    private int nextColumnCount() {
+    private synchronized int nextColumnCount() {
         return columnCount++;
     }
 
@@ -414,7 +457,7 @@ public class RolapStar {
      * Decrements the column counter; used if a newly
      * created column is found to already exist.
      */
-    private int decrementColumnCount() {
+    private synchronized int decrementColumnCount() {
         return columnCount--;
     }
 
@@ -550,9 +593,10 @@ public class RolapStar {
                 LOGGER.debug(buf.toString());
             }
 
-            // Clear aggregation cache for the current thread context.
-            localBars.get().aggregations.clear();
-            localBars.get().segmentRefs.clear();
+            // Clear aggregation cache for the current execution context.
+            final Bar bar = getBar();
+            bar.aggregations.clear();
+            bar.segmentDirectory.clear();
         }
     }
 
@@ -576,7 +620,7 @@ public class RolapStar {
             new Aggregation(
                 aggregationKey);
 
-        localBars.get().aggregations.put(
+        getBar().aggregations.put(
             aggregationKey, aggregation);
 
         // Let the change listener get the opportunity to register the
@@ -600,7 +644,7 @@ public class RolapStar {
      * @see Util#deprecated(Object)  currently always returns null -- remove
      */
     public Aggregation lookupSegment(AggregationKey aggregationKey) {
-        return localBars.get().aggregations.get(aggregationKey);
+        return getBar().aggregations.get(aggregationKey);
     }
 
     /** For testing purposes only.  */
@@ -726,7 +770,7 @@ public class RolapStar {
      *
      * @param c the column to add
      */
-    private void addColumn(Column c) {
+    private synchronized void addColumn(Column c) {
         columnList.add(c.getBitPosition(), c);
     }
 
@@ -1445,24 +1489,29 @@ public class RolapStar {
             }
         }
 
-        synchronized void makeMeasure(RolapBaseCubeMeasure measure) {
-            // Remove assertion to allow cube to be recreated
-            // assert lookupMeasureByName(
-            //    measure.getCube().getName(), measure.getName()) == null;
-            RolapStar.Measure starMeasure = new RolapStar.Measure(
-                measure.getName(),
-                measure.getCube().getName(),
-                measure.getAggregator(),
-                this,
-                measure.getMondrianDefExpression(),
-                measure.getDatatype());
-
-            measure.setStarMeasure(starMeasure); // reverse mapping
-
-            if (containsColumn(starMeasure)) {
-                star.decrementColumnCount();
-            } else {
-                addColumn(starMeasure);
+        void makeMeasure(RolapBaseCubeMeasure measure) {
+            // Column bit positions are allocated per star, and cubes
+            // that share a fact table share the star, so lock the
+            // star rather than this table.
+            synchronized (star) {
+                // Remove assertion to allow cube to be recreated
+                // assert lookupMeasureByName(
+                //    measure.getCube().getName(), measure.getName()) == null;
+                RolapStar.Measure starMeasure = new RolapStar.Measure(
+                    measure.getName(),
+                    measure.getCube().getName(),
+                    measure.getAggregator(),
+                    this,
+                    measure.getMondrianDefExpression(),
+                    measure.getDatatype());
+
+                measure.setStarMeasure(starMeasure); // reverse mapping
+
+                if (containsColumn(starMeasure)) {
+                    star.decrementColumnCount();
+                } else {
+                    addColumn(starMeasure);
+                }
             }
         }
 
@@ -1476,51 +1525,54 @@ public class RolapStar {
          * @param level Level
          * @param parentColumn Parent column
          */
-        synchronized Column makeColumns(
+        Column makeColumns(
             RolapCube cube,
             RolapCubeLevel level,
             Column parentColumn,
             String usagePrefix)
         {
-            Column nameColumn = null;
-            if (level.getNameExp() != null) {
-                // make a column for the name expression
-                nameColumn = makeColumnForLevelExpr(
+            // Lock the star, not this table; see makeMeasure.
+            synchronized (star) {
+                Column nameColumn = null;
+                if (level.getNameExp() != null) {
+                    // make a column for the name expression
+                    nameColumn = makeColumnForLevelExpr(
+                        cube,
+                        level,
+                        level.getName(),
+                        level.getNameExp(),
+                        Dialect.Datatype.String,
+                        null,
+                        null,
+                        null,
+                        null);
+                }
+
+                // select the column's name depending upon whether or not a
+                // "named" column, above, has been created.
+                String name = (level.getNameExp() == null)
+                    ? level.getName()
+                    : level.getName() + " (Key)";
+
+                // If the nameColumn is not null, then it is associated with
+                // this column.
+                Column column = makeColumnForLevelExpr(
                     cube,
                     level,
-                    level.getName(),
-                    level.getNameExp(),
-                    Dialect.Datatype.String,
-                    null,
-                    null,
-                    null,
-                    null);
-            }
+                    name,
+                    level.getKeyExp(),
+                    level.getDatatype(),
+                    level.getInternalType(),
+                    nameColumn,
+                    parentColumn,
+                    usagePrefix);
 
-            // select the column's name depending upon whether or not a
-            // "named" column, above, has been created.
-            String name = (level.getNameExp() == null)
-                ? level.getName()
-                : level.getName() + " (Key)";
-
-            // If the nameColumn is not null, then it is associated with this
-            // column.
-            Column column = makeColumnForLevelExpr(
-                cube,
-                level,
-                name,
-                level.getKeyExp(),
-                level.getDatatype(),
-                level.getInternalType(),
-                nameColumn,
-                parentColumn,
-                usagePrefix);
-
-            if (column != null) {
-                level.setStarKeyColumn(column);
-            }
+                if (column != null) {
+                    level.setStarKeyColumn(column);
+                }
 
-            return column;
+                return column;
+            }
         }
 
         private Column makeColumnForLevelExpr(
@@ -29,7 +29,7 @@ public class SmartIncrementalCache<K, V extends Collection> {
     SmartCache<K, V> cache;
 
     public SmartIncrementalCache() {
-        cache = new SoftSmartCache<K, V>();
+        cache = new ConcurrentSoftSmartCache<K, V>();
     }
 
     public V put(final K  key, final V value) {
@@ -14,8 +14,8 @@
 
 package mondrian.rolap;
 
+import mondrian.rolap.cache.ConcurrentSoftSmartCache;
 import mondrian.rolap.cache.SmartCache;
-import mondrian.rolap.cache.SoftSmartCache;
 import mondrian.rolap.sql.SqlConstraint;
 import mondrian.util.Pair;
 
@@ -55,7 +55,7 @@ public class SmartMemberListCache <K, V> {
     SmartCache<Pair<K, Object>, V> cache;
 
     public SmartMemberListCache() {
-        cache = new SoftSmartCache<Pair<K, Object>, V>();
+        cache = new ConcurrentSoftSmartCache<Pair<K, Object>, V>();
     }
 
     public Object put(K key, SqlConstraint constraint, V value) {
@@ -30,9 +30,15 @@ import java.util.*;
  * cache of members and their children. If a member is 'in cache', there is a
  * list of its children. It also caches the members of levels.
  *
- * <p>Synchronization: the MemberReader <code>source</code> must be called
- * from synchronized(this) context - it does not synchronize itself (probably
- * it should).</p>
+ * <p>Synchronization: reads from the cache do not lock (see
+ * {@link MemberCacheHelper}), and the MemberReader <code>source</code> is
+ * called without holding any lock, so that a thread waiting for SQL does
+ * not hold up other queries on the same hierarchy (nor, if it is a virtual
+ * thread, pin its carrier). The source creates members under the member
+ * cache lock of its {@link MemberBuilder#getMemberCacheLock() member
+ * builder}, so that there is only one object for each member. If several
+ * threads miss the same list at the same time, one of them reads it and
+ * the others wait for it; see {@link MemberCacheHelper#beginLoad}.</p>
  *
  * <p>Constraints: Member.Children and Level.Members may be constrained by a
  * SqlConstraint object. In this case a subset of all members is returned.
@@ -49,7 +55,8 @@ public class SmartMemberReader implements MemberReader {
     private final SqlConstraintFactory sqlConstraintFactory =
         SqlConstraintFactory.instance();
 
-    /** access to <code>source</code> must be synchronized(this) */
+    /** must not be called while holding the lock on <code>cacheHelper</code>
+     * or any other lock */
     protected final MemberReader source;
 
     protected final MemberCacheHelper cacheHelper;
@@ -139,23 +146,18 @@ public class SmartMemberReader implements MemberReader {
     }
 
     public List<RolapMember> getMembersInLevel(
-        RolapLevel level, TupleConstraint constraint)
+        final RolapLevel level, final TupleConstraint constraint)
     {
-        synchronized (cacheHelper) {
-            checkCacheStatus();
-
-            List<RolapMember> members =
-                cacheHelper.getLevelMembersFromCache(level, constraint);
-            if (members != null) {
+        checkCacheStatus();
+        return cacheHelper.getOrLoad(
+            cacheHelper.levelLoadKey(level, constraint),
+            () -> cacheHelper.getLevelMembersFromCache(level, constraint),
+            () -> {
+                final List<RolapMember> members =
+                    source.getMembersInLevel(level, constraint);
+                cacheHelper.putChildren(level, constraint, members);
                 return members;
-            }
-
-            members =
-                source.getMembersInLevel(
-                    level, constraint);
-            cacheHelper.putChildren(level, constraint, members);
-            return members;
-        }
+            });
     }
 
     public int getLevelMemberCount(RolapLevel level) {
@@ -197,27 +199,103 @@ public class SmartMemberReader implements MemberReader {
         List<RolapMember> children,
         MemberChildrenConstraint constraint)
     {
-        synchronized (cacheHelper) {
-            checkCacheStatus();
+        checkCacheStatus();
+        List<RolapMember> missed = new ArrayList<RolapMember>();
+        for (RolapMember parentMember : parentMembers) {
+            List<RolapMember> list =
+                cacheHelper.getChildrenFromCache(parentMember, constraint);
+            if (list == null) {
+                // the null member has no children
+                if (!parentMember.isNull()) {
+                    missed.add(parentMember);
+                }
+            } else {
+                children.addAll(list);
+            }
+        }
+        if (missed.size() > 0) {
+            loadMemberChildren(cacheHelper, missed, children, constraint);
+        }
+        return Util.toNullValuesMap(children);
+    }
 
-            List<RolapMember> missed = new ArrayList<RolapMember>();
-            for (RolapMember parentMember : parentMembers) {
-                List<RolapMember> list =
-                    cacheHelper.getChildrenFromCache(parentMember, constraint);
-                if (list == null) {
-                    // the null member has no children
-                    if (!parentMember.isNull()) {
-                        missed.add(parentMember);
+    /**
+     * Reads the children of members that were not in cache. Children that
+     * another thread is already reading are not read again; this thread
+     * waits for the other thread, then takes them from the cache.
+     *
+     * @param helper Cache into which {@link #readMemberChildren} puts
+     *   children
+     * @param members Members whose children to read
+     * @param children Children are written here
+     * @param constraint restricts the returned members if possible (optional
+     *             optimization)
+     */
+    protected void loadMemberChildren(
+        MemberCacheHelper helper,
+        List<RolapMember> members,
+        List<RolapMember> children,
+        MemberChildrenConstraint constraint)
+    {
+        while (!members.isEmpty()) {
+            final List<RolapMember> ownedMembers = new ArrayList<RolapMember>();
+            final Map<Object, MemberCacheHelper.Load> ownedLoads =
+                new HashMap<Object, MemberCacheHelper.Load>();
+            final Map<RolapMember, MemberCacheHelper.Load> pendingLoads =
+                new LinkedHashMap<RolapMember, MemberCacheHelper.Load>();
+            try {
+                for (RolapMember member : members) {
+                    final Object key =
+                        helper.childrenLoadKey(member, constraint);
+                    if (key == null) {
+                        ownedMembers.add(member);
+                        continue;
+                    }
+                    final MemberCacheHelper.Load load = helper.beginLoad(key);
+                    if (!load.isOwner()) {
+                        pendingLoads.put(member, load);
+                        continue;
+                    }
+                    ownedLoads.put(key, load);
+                    // Another thread may have completed the load since we
+                    // looked.
+                    final List<RolapMember> list =
+                        helper.getChildrenFromCache(member, constraint);
+                    if (list == null) {
+                        ownedMembers.add(member);
+                    } else {
+                        children.addAll(list);
                     }
+                }
+                if (!ownedMembers.isEmpty()) {
+                    readMemberChildren(ownedMembers, children, constraint);
+                }
+            } finally {
+                for (Map.Entry<Object, MemberCacheHelper.Load> entry
+                    : ownedLoads.entrySet())
+                {
+                    helper.endLoad(entry.getKey(), entry.getValue());
+                }
+            }
+
+            // Wait for the other threads' loads only after ending ours, so
+            // that two threads never wait for each other. If a load failed,
+            // or its list has already been dropped from the cache, go round
+            // again and load it ourselves.
+            members = new ArrayList<RolapMember>();
+            for (Map.Entry<RolapMember, MemberCacheHelper.Load> entry
+                : pendingLoads.entrySet())
+            {
+                entry.getValue().await();
+                final List<RolapMember> list =
+                    helper.getChildrenFromCache(entry.getKey(), constraint);
+                if (list == null) {
+                    members.add(entry.getKey());
                 } else {
                     children.addAll(list);
                 }
             }
-            if (missed.size() > 0) {
-                readMemberChildren(missed, children, constraint);
-            }
         }
-        return Util.toNullValuesMap(children);
     }
 
     public RolapMember lookupMember(
@@ -284,17 +362,15 @@ public class SmartMemberReader implements MemberReader {
             ((List)list).add(child);
             ((List)result).add(child);
         }
-        synchronized (cacheHelper) {
-            for (Map.Entry<RolapMember, List<RolapMember>> entry
-                : tempMap.entrySet())
-            {
-                final RolapMember member = entry.getKey();
-                if (cacheHelper.getChildrenFromCache(member, constraint)
-                    == null)
-                {
-                    final List<RolapMember> list = entry.getValue();
-                    cacheHelper.putChildren(member, constraint, list);
-                }
+        // No lock: if another thread has cached the same children
+        // meanwhile, its list holds the same members.
+        for (Map.Entry<RolapMember, List<RolapMember>> entry
+            : tempMap.entrySet())
+        {
+            final RolapMember member = entry.getKey();
+            if (cacheHelper.getChildrenFromCache(member, constraint) == null) {
+                final List<RolapMember> list = entry.getValue();
+                cacheHelper.putChildren(member, constraint, list);
             }
         }
     }
@@ -324,34 +400,34 @@ public class SmartMemberReader implements MemberReader {
     }
 
     public RolapMember getLeadMember(RolapMember member, int n) {
-        // uncertain if this method needs to be synchronized
-        synchronized (cacheHelper) {
-            if (n == 0 || member.isNull()) {
-                return member;
-            } else {
-                SiblingIterator iter = new SiblingIterator(this, member);
-                if (n > 0) {
-                    RolapMember sibling = null;
-                    while (n-- > 0) {
-                        if (!iter.hasNext()) {
-                            return (RolapMember)
-                                member.getHierarchy().getNullMember();
-                        }
-                        sibling = iter.nextMember();
+        // Not synchronized: the sibling iterator reads children via this
+        // reader, which locks the cache as it needs to, and may read them
+        // from the database.
+        if (n == 0 || member.isNull()) {
+            return member;
+        } else {
+            SiblingIterator iter = new SiblingIterator(this, member);
+            if (n > 0) {
+                RolapMember sibling = null;
+                while (n-- > 0) {
+                    if (!iter.hasNext()) {
+                        return (RolapMember)
+                            member.getHierarchy().getNullMember();
                     }
-                    return sibling;
-                } else {
-                    n = -n;
-                    RolapMember sibling = null;
-                    while (n-- > 0) {
-                        if (!iter.hasPrevious()) {
-                            return (RolapMember)
-                                member.getHierarchy().getNullMember();
-                        }
-                        sibling = iter.previousMember();
+                    sibling = iter.nextMember();
+                }
+                return sibling;
+            } else {
+                n = -n;
+                RolapMember sibling = null;
+                while (n-- > 0) {
+                    if (!iter.hasPrevious()) {
+                        return (RolapMember)
+                            member.getHierarchy().getNullMember();
                     }
-                    return sibling;
+                    sibling = iter.previousMember();
                 }
+                return sibling;
             }
         }
     }
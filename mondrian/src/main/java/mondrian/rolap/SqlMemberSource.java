@@ -46,15 +46,19 @@ import org.apache.logging.log4j.Logger;
 import org.eigenbase.util.property.StringProperty;
 
 import javax.sql.DataSource;
+import java.lang.ref.WeakReference;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * A <code>SqlMemberSource</code> reads members from a SQL database.
@@ -1013,6 +1017,7 @@ RME is this right
       ResultSet resultSet = stmt.getResultSet();
       RolapMember parentMember2 = RolapUtil.strip( parentMember );
       Execution execution = Locus.peek().execution;
+      final Object cacheLock = getMemberCacheLock();
 
       while ( resultSet.next() ) {
         // Check if the MDX query was canceled.
@@ -1040,14 +1045,21 @@ RME is this right
           captionValue = null;
         }
 
-        Object key = cache.makeKey( parentMember2, value );
-        RolapMember member = cache.getMember( key, checkCacheStatus );
-        checkCacheStatus = false; /* Only check the first time */
+        // Callers do not hold the member cache lock while SQL runs, so take it for each row, as TargetBase does,
+        // to ensure that concurrent readers of the same children create only one member object for each.
+        RolapMember member;
+
+        synchronized ( cacheLock ) {
+          Object key = cache.makeKey( parentMember2, value );
+          member = cache.getMember( key, checkCacheStatus );
 
-        if ( member == null ) {
-          member = makeMember( parentMember2, childLevel, value, captionValue, parentChild, stmt, key, columnOffset );
+          if ( member == null ) {
+            member = makeMember( parentMember2, childLevel, value, captionValue, parentChild, stmt, key, columnOffset );
+          }
         }
 
+        checkCacheStatus = false; /* Only check the first time */
+
         if ( value == RolapUtil.sqlNullValue ) {
           children.toArray();
           addAsOldestSibling( children, member );
@@ -1084,6 +1096,12 @@ RME is this right
       rolapChildLevel = childLevel;
     }
 
+    // The keys of a level whose members are unique are all different, so pooling them would cost memory rather
+    // than save it.
+    if ( !rolapChildLevel.isUnique() ) {
+      value = getPooledValue( value );
+    }
+
     RolapMemberBase member = new RolapMemberBase( parentMember, rolapChildLevel, value );
 
     if ( !childLevel.getOrdinalExp().equals( childLevel.getKeyExp() ) ) {
@@ -1093,7 +1111,7 @@ RME is this right
     if ( captionValue != null ) {
       // passing caption column raw value
       // to be properly formatted later
-      member.setCaptionValue( captionValue );
+      member.setCaptionValue( getPooledValue( captionValue ) );
     }
 
     if ( parentChild ) {
@@ -1153,7 +1171,7 @@ RME is this right
    * or caching is disabled.
    */
   private Object getPooledValue( Object incoming ) {
-    if ( valuePool == null ) {
+    if ( valuePool == null || incoming == null ) {
       return incoming;
     } else {
       Object ret = this.valuePool.get( incoming );
@@ -1450,6 +1468,19 @@ RME is this right
    * implementation, used if
    * {@link mondrian.olap.MondrianProperties#SqlMemberSourceValuePoolFactoryClass}
    * is not set.
+   *
+   * <p>The pool holds its values weakly, so a value stays in the pool only
+   * while a member (or a property of a member) refers to it.</p>
+   */
+  public static final class WeakValuePoolFactory implements ValuePoolFactory {
+    public Map<Object, Object> create( SqlMemberSource source ) {
+      return new WeakValuePool();
+    }
+  }
+
+  /**
+   * {@link mondrian.rolap.SqlMemberSource.ValuePoolFactory} implementation
+   * that does not pool values.
    */
   public static final class NullValuePoolFactory implements ValuePoolFactory {
     /**
@@ -1472,7 +1503,7 @@ RME is this right
    * <p>The name of the ValuePoolFactory is drawn from
    * {@link mondrian.olap.MondrianProperties#SqlMemberSourceValuePoolFactoryClass}
    * in mondrian.properties.  If unset, it defaults to
-   * {@link mondrian.rolap.SqlMemberSource.NullValuePoolFactory}. </p>
+   * {@link mondrian.rolap.SqlMemberSource.WeakValuePoolFactory}. </p>
    */
   public static final class ValuePoolFactoryFactory extends ObjectFactory.Singleton<ValuePoolFactory> {
     /**
@@ -1507,7 +1538,46 @@ RME is this right
     }
 
     protected ValuePoolFactory getDefault( Class[] parameterTypes, Object[] parameterValues ) throws CreationException {
-      return new NullValuePoolFactory();
+      return new WeakValuePoolFactory();
+    }
+  }
+
+  /**
+   * Value pool whose keys and values are weak references. Values are equal to their keys, so a {@link WeakHashMap}
+   * whose values were strong references would never release its entries.
+   *
+   * <p>Thread-safe. Only {@link #get} and {@link #put} are efficient.</p>
+   */
+  private static class WeakValuePool extends AbstractMap<Object, Object> {
+    private final Map<Object, WeakReference<Object>> map = new WeakHashMap<>();
+
+    public synchronized Object get( Object key ) {
+      final WeakReference<Object> ref = map.get( key );
+      return ref == null ? null : ref.get();
+    }
+
+    public synchronized Object put( Object key, Object value ) {
+      final WeakReference<Object> ref = map.put( key, new WeakReference<>( value ) );
+      return ref == null ? null : ref.get();
+    }
+
+    public synchronized int size() {
+      return map.size();
+    }
+
+    public synchronized void clear() {
+      map.clear();
+    }
+
+    public synchronized Set<Entry<Object, Object>> entrySet() {
+      final Map<Object, Object> copy = new HashMap<>();
+      for ( Entry<Object, WeakReference<Object>> entry : map.entrySet() ) {
+        final Object value = entry.getValue().get();
+        if ( value != null ) {
+          copy.put( entry.getKey(), value );
+        }
+      }
+      return copy.entrySet();
     }
   }
 }
@@ -19,6 +19,7 @@ import mondrian.olap.Util.Functor1;
 import mondrian.resource.MondrianResource;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.server.monitor.SqlStatementEndEvent;
 import mondrian.server.monitor.SqlStatementEvent;
 import mondrian.server.monitor.SqlStatementEvent.Purpose;
@@ -132,6 +133,7 @@ public class SqlStatement {
     state = State.ACTIVE;
     Counters.SQL_STATEMENT_EXECUTE_COUNT.incrementAndGet();
     Counters.SQL_STATEMENT_EXECUTING_IDS.add( id );
+    locus.execution.incrementSqlStatementCount();
     String status = "failed";
     Statement statement = null;
 
@@ -168,6 +170,10 @@ public class SqlStatement {
       // Check execution state
       locus.execution.checkCancelOrTimeout();
 
+      if ( !Locus.isEmpty() && Locus.peek() instanceof QueuedLocus ) {
+        ( (QueuedLocus) Locus.peek() ).recordQueueWait( getPurpose() );
+      }
+
       startTimeNanos = System.nanoTime();
       startTimeMillis = System.currentTimeMillis();
 
@@ -586,4 +592,24 @@ public class SqlStatement {
       this.cellRequestCount = cellRequestCount;
     }
   }
+
+  /**
+   * Locus of a task that waited in an executor's queue before it started. The first statement that the task executes
+   * records the wait in {@link MondrianMetrics#SQL_QUEUE_WAIT}, under the statement's purpose.
+   */
+  public static class QueuedLocus extends Locus {
+    private long queueNanos;
+
+    public QueuedLocus( Locus locus, long queueNanos ) {
+      super( locus.execution, locus.component, locus.message );
+      this.queueNanos = queueNanos;
+    }
+
+    private void recordQueueWait( SqlStatementEvent.Purpose purpose ) {
+      if ( queueNanos >= 0 ) {
+        MondrianMetrics.SQL_QUEUE_WAIT.get( purpose.name() ).record( queueNanos );
+        queueNanos = -1;
+      }
+    }
+  }
 }
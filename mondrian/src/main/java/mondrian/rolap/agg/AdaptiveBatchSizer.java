@@ -0,0 +1,162 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.RolapStar;
+
+/**
+ * Sizes and splits the cell batches of a star, based on the latency of the
+ * segment loads recorded in its {@link SegmentRequestLog}.
+ *
+ * <p>A statement costs a fixed latency plus a cost per row. The budget of a
+ * statement is the larger of {@link MondrianProperties#CellBatchTargetMillis}
+ * and four times the fixed latency, so that round trips do not dominate on a
+ * database that is slow to answer. The sizer then answers two questions:
+ *
+ * <ul>
+ * <li>How many cell requests to collect before they are sent to the cache
+ *     manager ({@link #getCellRequestLimit()}): as many as can be read
+ *     within the budget, assuming a row per cell.</li>
+ * <li>How many statements to split a batch into
+ *     ({@link #getPartitionCount(long)}): enough that each reads its share
+ *     of the rows within the budget, up to
+ *     {@link MondrianProperties#CellBatchMaxPartitions}. The statements run
+ *     in parallel.</li>
+ * </ul>
+ *
+ * <p>If {@link MondrianProperties#CellBatchAdaptive} is not set, or the star
+ * has not yet loaded a segment from SQL, batches are sized by
+ * {@link MondrianProperties#CellBatchSize} and are not split, as before.
+ *
+ * @see RolapStar#getBatchSizer()
+ */
+public class AdaptiveBatchSizer {
+    /** Cell request limit if {@link MondrianProperties#CellBatchSize} is
+     * not set. */
+    public static final int DEFAULT_CELL_REQUEST_LIMIT = 100000;
+
+    /** Smallest cell request limit the sizer chooses. */
+    static final int MIN_CELL_REQUEST_LIMIT = 1000;
+
+    /** How far back to look in the star's history, in milliseconds. */
+    static final long HISTORY_MILLIS = 3600000L;
+
+    /** How long a fitted latency is reused, in milliseconds. */
+    private static final long REFIT_MILLIS = 1000L;
+
+    private final SegmentRequestLog log;
+    private SegmentRequestLog.Latency latency;
+    private long fitMillis;
+
+    /**
+     * Creates an AdaptiveBatchSizer.
+     *
+     * @param log Log of the star's segment loads
+     */
+    public AdaptiveBatchSizer(SegmentRequestLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns the maximum number of cell requests to collect before they are
+     * loaded. Never more than {@link MondrianProperties#CellBatchSize}, if
+     * that is set.
+     *
+     * @return Cell request limit
+     */
+    public int getCellRequestLimit() {
+        final int limit = getFixedCellRequestLimit();
+        if (!MondrianProperties.instance().CellBatchAdaptive.get()) {
+            return limit;
+        }
+        final SegmentRequestLog.Latency latency = getLatency();
+        if (latency == null || latency.rowNanos <= 0) {
+            return limit;
+        }
+        final long cells = getBudgetNanos(latency) / latency.rowNanos;
+        return (int) Math.max(
+            Math.min(MIN_CELL_REQUEST_LIMIT, limit),
+            Math.min(cells, limit));
+    }
+
+    /**
+     * Returns the number of statements to split a batch into.
+     *
+     * @param rowCount Estimated number of rows the batch reads
+     * @return Number of statements, at least 1
+     */
+    public int getPartitionCount(long rowCount) {
+        final MondrianProperties properties = MondrianProperties.instance();
+        final int maxPartitions = properties.CellBatchMaxPartitions.get();
+        if (!properties.CellBatchAdaptive.get() || maxPartitions <= 1) {
+            return 1;
+        }
+        final SegmentRequestLog.Latency latency = getLatency();
+        if (latency == null) {
+            return 1;
+        }
+        final double partitions =
+            Math.ceil(
+                (double) rowCount * latency.rowNanos
+                / getBudgetNanos(latency));
+        return (int) Math.max(1d, Math.min(partitions, maxPartitions));
+    }
+
+    /**
+     * Discards the fitted latency, so that the next batch is sized using the
+     * latest observations.
+     */
+    public synchronized void invalidate() {
+        latency = null;
+        fitMillis = 0;
+    }
+
+    /**
+     * Returns the cell request limit given by
+     * {@link MondrianProperties#CellBatchSize}.
+     *
+     * @return Fixed cell request limit
+     */
+    public static int getFixedCellRequestLimit() {
+        final int cellBatchSize =
+            MondrianProperties.instance().CellBatchSize.get();
+        return cellBatchSize <= 0 ? DEFAULT_CELL_REQUEST_LIMIT : cellBatchSize;
+    }
+
+    private static long getBudgetNanos(SegmentRequestLog.Latency latency) {
+        return Math.max(
+            1L,
+            Math.max(
+                MondrianProperties.instance().CellBatchTargetMillis.get()
+                * 1000000L,
+                4L * latency.statementNanos));
+    }
+
+    /**
+     * Returns the latency fitted to the star's recent segment loads, or null
+     * if there are none. The fit is reused for a short while, because
+     * fitting scans the whole log.
+     */
+    private synchronized SegmentRequestLog.Latency getLatency() {
+        final long now = System.currentTimeMillis();
+        if (now - fitMillis > REFIT_MILLIS) {
+            latency = log.fitLatency(now - HISTORY_MILLIS);
+            fitMillis = now;
+        }
+        return latency;
+    }
+}
+
+// End AdaptiveBatchSizer.java
@@ -135,9 +135,27 @@ public class AggregationManager extends RolapAggregationManager {
                             cacheMgr,
                             region,
                             this));
+                executeTasks(result.tasks);
+                discardStarCaches(region);
+            }
+
+            protected void refreshNonUnion(final CellRegion region) {
+                final SegmentCacheManager.RefreshResult result =
+                    cacheMgr.execute(
+                        new SegmentCacheManager.RefreshCommand(
+                            Locus.peek(),
+                            cacheMgr,
+                            region,
+                            this));
+                executeTasks(result.tasks);
+                cacheMgr.refreshSegments(result.segments);
+                discardStarCaches(region);
+            }
+
+            private void executeTasks(List<Callable<Boolean>> tasks) {
                 final List<Future<Boolean>> futures =
                     new ArrayList<Future<Boolean>>();
-                for (Callable<Boolean> task : result.tasks) {
+                for (Callable<Boolean> task : tasks) {
                     futures.add(cacheMgr.cacheExecutor.submit(task));
                 }
                 for (Future<Boolean> future : futures) {
@@ -145,6 +163,15 @@ public class AggregationManager extends RolapAggregationManager {
                 }
             }
 
+            private void discardStarCaches(CellRegion region) {
+                // In-memory aggregates and existence indexes are not
+                // region-aware; discard them.
+                for (RolapStar star : getStarList(region)) {
+                    star.getMemoryAggregates().refresh();
+                    star.getExistenceIndexes().clear();
+                }
+            }
+
             public void flush(final CellRegion region) {
                 if (pw != null) {
                     pw.println("Cache state before flush:");
@@ -159,6 +186,20 @@ public class AggregationManager extends RolapAggregationManager {
                 }
             }
 
+            public void refresh(final CellRegion region) {
+                if (pw != null) {
+                    pw.println("Cache state before refresh:");
+                    printCacheState(pw, region);
+                    pw.println();
+                }
+                super.refresh(region);
+                if (pw != null) {
+                    pw.println("Cache state after refresh:");
+                    printCacheState(pw, region);
+                    pw.println();
+                }
+            }
+
             public void trace(final String message) {
                 if (pw != null) {
                     pw.println(message);
@@ -25,7 +25,7 @@ import java.util.*;
  * @since 21 March, 2002
  */
 public class CellRequest {
-    private final RolapStar.Measure measure;
+    private RolapStar.Measure measure;
     public final boolean extendedContext;
     public final boolean drillThrough;
 
@@ -71,6 +71,13 @@ public class CellRequest {
     // Not used to represent the compound members along one or more dimensions.
     private Object[] singleValues;
 
+    /**
+     * Whether {@link #singleValues} must be recomputed. The array itself is
+     * kept when the request is {@link #reset reset}, and reused if the next
+     * cell has as many columns.
+     */
+    private boolean singleValuesDirty = true;
+
     /**
      * After all of the columns are loaded, the columnsCache is created
      * the first time the getColumns method (or any method that itself
@@ -95,7 +102,7 @@ public class CellRequest {
      * required to be present in an aggregate table for the table be used to
      * fulfill the query.
      */
-    private final BitKey constrainedColumnsBitKey;
+    private BitKey constrainedColumnsBitKey;
 
     /**
      * Map from BitKey (representing a group of columns that forms a
@@ -162,6 +169,71 @@ public class CellRequest {
             new StarColumnPredicate[measure.getStar().getColumnCount()];
     }
 
+    /**
+     * Clears this request so that it can be reused for another cell.
+     *
+     * <p>Making a request for every cell that is read is one of the top
+     * hotspots in Mondrian, and most cells are in cache. A caller that has
+     * finished with a request, and has not handed it to anything that keeps
+     * it (such as a batch), may reset it rather than create another. The
+     * arrays of the request are reused, and so are its value predicates; see
+     * {@link #getValuePredicate}.
+     *
+     * @param measure Measure the request is for
+     */
+    public void reset(RolapStar.Measure measure) {
+        assert !drillThrough;
+        final int columnCount = measure.getStar().getColumnCount();
+        if (columnCount != sparseColumnPredicateList.length) {
+            // The star has gained columns since this request was created.
+            this.constrainedColumnsBitKey =
+                BitKey.Factory.makeBitKey(columnCount);
+            this.sparseColumnPredicateList =
+                new StarColumnPredicate[columnCount];
+        } else {
+            // Predicates at positions whose bit is clear are ignored, but
+            // kept so that getValuePredicate can reuse them.
+            this.constrainedColumnsBitKey.clear();
+        }
+        this.measure = measure;
+        this.star = null;
+        this.numColumns = 0;
+        this.compoundPredicateMap = null;
+        this.compoundPredicateStrings = null;
+        this.unsatisfiable = false;
+        this.isDirty = true;
+        this.singleValuesDirty = true;
+    }
+
+    /**
+     * Returns a predicate that constrains a column to a value.
+     *
+     * <p>If this request constrained the column to an equal value before it
+     * was last {@link #reset reset}, returns that predicate rather than
+     * creating one.
+     *
+     * @param column Column
+     * @param value Value
+     * @return Predicate
+     */
+    public ValueColumnPredicate getValuePredicate(
+        RolapStar.Column column,
+        Object value)
+    {
+        final int bitPosition = column.getBitPosition();
+        if (bitPosition < sparseColumnPredicateList.length) {
+            final StarColumnPredicate previous =
+                sparseColumnPredicateList[bitPosition];
+            if (previous instanceof ValueColumnPredicate
+                && previous.getConstrainedColumn() == column
+                && value.equals(((ValueColumnPredicate) previous).getValue()))
+            {
+                return (ValueColumnPredicate) previous;
+            }
+        }
+        return new ValueColumnPredicate(column, value);
+    }
+
     /**
      * Adds a constraint to this request.
      *
@@ -173,7 +245,7 @@ public class CellRequest {
         RolapStar.Column column,
         StarColumnPredicate predicate)
     {
-        assert columnsCache == null;
+        assert isDirty;
 
         // Sanity check; we should never be adding column constraints
         // from more than one star
@@ -250,10 +322,8 @@ public class CellRequest {
     }
 
     public RolapStar.Column[] getConstrainedColumns() {
-        if (this.columnsCache == null) {
-            // This is called more than once so caching the value makes sense.
-            check();
-        }
+        // This is called more than once so caching the value makes sense.
+        check();
         return this.columnsCache;
     }
 
@@ -304,8 +374,10 @@ public class CellRequest {
      */
     private void check() {
         if (isDirty) {
-            columnsCache = new RolapStar.Column[numColumns];
-            columnBitPositions = new int[numColumns];
+            if (columnsCache == null || columnsCache.length != numColumns) {
+                columnsCache = new RolapStar.Column[numColumns];
+                columnBitPositions = new int[numColumns];
+            }
             int i = 0;
             for (int bitPos = constrainedColumnsBitKey.nextSetBit(0);
                 bitPos >= 0;
@@ -359,15 +431,18 @@ public class CellRequest {
      */
     public Object[] getSingleValues() {
         assert !unsatisfiable;
-        if (singleValues == null) {
+        if (singleValuesDirty) {
             check();
-            singleValues = new Object[numColumns];
+            if (singleValues == null || singleValues.length != numColumns) {
+                singleValues = new Object[numColumns];
+            }
             int i = 0;
             for (int bitPos : columnBitPositions) {
                 ValueColumnPredicate predicate =
                     (ValueColumnPredicate) sparseColumnPredicateList[bitPos];
                 singleValues[i++] = predicate.getValue();
             }
+            singleValuesDirty = false;
         }
         return singleValues;
     }
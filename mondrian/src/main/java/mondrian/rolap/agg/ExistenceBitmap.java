@@ -0,0 +1,147 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of non-negative <code>long</code> values.
+ *
+ * <p>The layout follows roaring bitmaps. Values are partitioned by their
+ * high 48 bits; each partition holds the low 16 bits of its values in a
+ * container. A container with up to {@link #ARRAY_MAX} values is a sorted
+ * <code>char</code> array; a fuller container is a bitmap of 65536 bits. A
+ * sparse set therefore costs about two bytes per value, and a dense one
+ * about one bit per possible value.
+ */
+final class ExistenceBitmap {
+    /** Maximum number of values in an array container. Beyond this, a
+     * bitmap container (8 KB) is smaller. */
+    static final int ARRAY_MAX = 4096;
+
+    /** High 48 bits of each container's values, sorted. */
+    private final long[] highs;
+    /** For each high, a <code>char[]</code> or a <code>long[1024]</code>. */
+    private final Object[] containers;
+    private final long cardinality;
+
+    private ExistenceBitmap(
+        long[] highs,
+        Object[] containers,
+        long cardinality)
+    {
+        this.highs = highs;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Creates a bitmap from an array of values. The first <code>count</code>
+     * elements of the array are sorted as a side effect. Duplicates are
+     * allowed.
+     *
+     * @param values Values; none may be negative
+     * @param count Number of values
+     * @return Bitmap
+     */
+    static ExistenceBitmap of(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        long[] highs = new long[16];
+        Object[] containers = new Object[highs.length];
+        int containerCount = 0;
+        long cardinality = 0;
+        final char[] lows = new char[65536];
+        for (int i = 0; i < count;) {
+            assert values[i] >= 0;
+            final long high = values[i] >>> 16;
+            int n = 0;
+            for (; i < count && values[i] >>> 16 == high; i++) {
+                final char low = (char) values[i];
+                if (n == 0 || lows[n - 1] != low) {
+                    lows[n++] = low;
+                }
+            }
+            if (containerCount == highs.length) {
+                highs = Arrays.copyOf(highs, containerCount * 2);
+                containers = Arrays.copyOf(containers, containerCount * 2);
+            }
+            highs[containerCount] = high;
+            containers[containerCount++] = toContainer(lows, n);
+            cardinality += n;
+        }
+        return new ExistenceBitmap(
+            Arrays.copyOf(highs, containerCount),
+            Arrays.copyOf(containers, containerCount),
+            cardinality);
+    }
+
+    /**
+     * Creates a container from the first <code>n</code> elements of a sorted
+     * array of distinct low values.
+     */
+    private static Object toContainer(char[] lows, int n) {
+        if (n <= ARRAY_MAX) {
+            return Arrays.copyOf(lows, n);
+        }
+        final long[] bits = new long[1024];
+        for (int j = 0; j < n; j++) {
+            bits[lows[j] >>> 6] |= 1L << lows[j];
+        }
+        return bits;
+    }
+
+    /**
+     * Returns whether this bitmap contains a value.
+     *
+     * @param value Value
+     * @return Whether value is in this bitmap
+     */
+    boolean contains(long value) {
+        if (value < 0) {
+            return false;
+        }
+        final int k = Arrays.binarySearch(highs, value >>> 16);
+        if (k < 0) {
+            return false;
+        }
+        final char low = (char) value;
+        final Object container = containers[k];
+        if (container instanceof char[]) {
+            return Arrays.binarySearch((char[]) container, low) >= 0;
+        }
+        return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * Returns the number of values in this bitmap.
+     */
+    long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of containers that are bitmaps rather than arrays.
+     */
+    int getBitmapContainerCount() {
+        int n = 0;
+        for (Object container : containers) {
+            if (container instanceof long[]) {
+                ++n;
+            }
+        }
+        return n;
+    }
+}
+
+// End ExistenceBitmap.java
@@ -0,0 +1,295 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
+import mondrian.rolap.*;
+import mondrian.server.Locus;
+import mondrian.util.Pair;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Set of the combinations of values of some columns of a star that occur
+ * in its fact table.
+ *
+ * <p>Each column is dictionary-encoded, and each combination of codes is
+ * packed into a <code>long</code>, the codes being digits in a mixed-radix
+ * number. The set of combinations is held in an {@link ExistenceBitmap}.
+ *
+ * <p>An index is built either from a loaded {@link MemoryAggregate} that
+ * has all of its columns, or by a SQL statement that groups the fact table
+ * by its columns.
+ *
+ * @see ExistenceIndexRegistry
+ */
+class ExistenceIndex {
+    private static final Logger LOGGER =
+        LogManager.getLogger(ExistenceIndex.class);
+
+    private final RolapStar.Column[] columns;
+    private final List<Map<Object, Integer>> dictionaries;
+    /** For each column, the class of its values, or null if it has only
+     * null values, or {@link Object} if its values are of various classes. */
+    private final Class[] valueClasses;
+    private final long[] multipliers;
+    private final ExistenceBitmap bitmap;
+
+    private ExistenceIndex(
+        RolapStar.Column[] columns,
+        List<Map<Object, Integer>> dictionaries,
+        Class[] valueClasses,
+        long[] multipliers,
+        ExistenceBitmap bitmap)
+    {
+        this.columns = columns;
+        this.dictionaries = dictionaries;
+        this.valueClasses = valueClasses;
+        this.multipliers = multipliers;
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * Builds an index. Uses a loaded in-memory aggregate if there is one
+     * that has all of the columns; otherwise reads from SQL.
+     *
+     * <p>Returns null if there are more than
+     * {@link MondrianProperties#ExistenceIndexMaxRows} combinations.
+     *
+     * @param star Star
+     * @param columns Columns, in bit position order
+     * @return Index, or null
+     */
+    static ExistenceIndex build(RolapStar star, RolapStar.Column[] columns) {
+        for (MemoryAggregate aggregate
+            : star.getMemoryAggregates().getAggregates())
+        {
+            final Builder builder = new Builder(columns);
+            if (aggregate.scan(columns, builder)) {
+                return builder.build();
+            }
+        }
+        return read(star, columns);
+    }
+
+    /**
+     * Builds an index from SQL.
+     */
+    private static ExistenceIndex read(
+        RolapStar star,
+        RolapStar.Column[] columns)
+    {
+        final Pair<String, List<SqlStatement.Type>> pair =
+            new MemoryAggregateQuerySpec(
+                star, columns, new RolapStar.Measure[0])
+                .generateSqlQuery();
+        final Locus locus =
+            new Locus(
+                Locus.peek().execution,
+                "ExistenceIndex.read",
+                "Error while building existence index");
+        final int maxRows =
+            MondrianProperties.instance().ExistenceIndexMaxRows.get();
+        final SqlStatement stmt =
+            RolapUtil.executeQuery(
+                star.getDataSource(),
+                pair.left,
+                pair.right,
+                0,
+                0,
+                locus,
+                -1,
+                -1,
+                RolapUtil.getDefaultCallback(locus));
+        try {
+            final List<SqlStatement.Type> types = stmt.guessTypes();
+            final Builder builder = new Builder(columns);
+            final Object[] values = new Object[columns.length];
+            final ResultSet resultSet = stmt.getResultSet();
+            while (resultSet.next()) {
+                if (++stmt.rowCount > maxRows) {
+                    LOGGER.debug(
+                        "Existence index of " + Arrays.toString(columns)
+                        + " has more than " + maxRows + " rows; abandoning");
+                    return null;
+                }
+                for (int j = 0; j < columns.length; j++) {
+                    values[j] =
+                        MemoryAggregate.readKey(resultSet, j + 1, types.get(j));
+                }
+                builder.add(values);
+            }
+            return builder.build();
+        } catch (SQLException e) {
+            throw stmt.handle(e);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Returns the columns of this index.
+     */
+    RolapStar.Column[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of combinations in this index.
+     */
+    long getCombinationCount() {
+        return bitmap.cardinality();
+    }
+
+    /**
+     * Returns whether a combination of values may occur in the fact table.
+     *
+     * <p>Returns false only if the combination certainly does not occur.
+     * If a value is not in a column's dictionary but is of a different class
+     * than the column's values, it may have been read differently from the
+     * same database value, so this method conservatively returns true.
+     *
+     * @param values Value of each column; null is represented by
+     *   {@link RolapUtil#sqlNullValue}
+     * @return Whether combination may occur
+     */
+    boolean mayExist(Object[] values) {
+        long key = 0;
+        for (int j = 0; j < columns.length; j++) {
+            final Object value = normalize(values[j]);
+            final Integer code = dictionaries.get(j).get(value);
+            if (code == null) {
+                return value != RolapUtil.sqlNullValue
+                    && value.getClass() != valueClasses[j];
+            }
+            key += code * multipliers[j];
+        }
+        return bitmap.contains(key);
+    }
+
+    /**
+     * Converts a value to a canonical form, so that values of different
+     * numeric types compare equal. Integral numbers become {@link Long}
+     * and other numbers become {@link Double}.
+     */
+    static Object normalize(Object value) {
+        if (value instanceof Number) {
+            final Number number = (Number) value;
+            final double d = number.doubleValue();
+            if (d == Math.rint(d)
+                && Math.abs(d) < (double) Long.MAX_VALUE)
+            {
+                return number.longValue();
+            }
+            return d;
+        }
+        return value;
+    }
+
+    public String toString() {
+        return "ExistenceIndex" + Arrays.toString(columns);
+    }
+
+    /**
+     * Accumulates the combinations of an index.
+     */
+    static class Builder {
+        private final RolapStar.Column[] columns;
+        private final List<Map<Object, Integer>> dictionaries =
+            new ArrayList<Map<Object, Integer>>();
+        private final Class[] valueClasses;
+        private final int[][] codes;
+        private int rowCount;
+
+        Builder(RolapStar.Column[] columns) {
+            this.columns = columns;
+            this.valueClasses = new Class[columns.length];
+            this.codes = new int[columns.length][];
+            for (int j = 0; j < columns.length; j++) {
+                dictionaries.add(new HashMap<Object, Integer>());
+                codes[j] = new int[100];
+            }
+        }
+
+        /**
+         * Adds a combination of values.
+         *
+         * @param values Value of each column
+         */
+        void add(Object[] values) {
+            final int row = rowCount++;
+            if (row == codes[0].length) {
+                for (int j = 0; j < codes.length; j++) {
+                    codes[j] = Util.copyOf(codes[j], row * 2);
+                }
+            }
+            for (int j = 0; j < codes.length; j++) {
+                final Object value = normalize(values[j]);
+                final Map<Object, Integer> dictionary = dictionaries.get(j);
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                    if (value != RolapUtil.sqlNullValue) {
+                        if (valueClasses[j] == null) {
+                            valueClasses[j] = value.getClass();
+                        } else if (valueClasses[j] != value.getClass()) {
+                            valueClasses[j] = Object.class;
+                        }
+                    }
+                }
+                codes[j][row] = code;
+            }
+        }
+
+        /**
+         * Creates the index. Returns null if the combinations cannot be
+         * packed into a <code>long</code>.
+         */
+        ExistenceIndex build() {
+            final long[] multipliers = new long[columns.length];
+            long multiplier = 1;
+            try {
+                for (int j = 0; j < columns.length; j++) {
+                    multipliers[j] = multiplier;
+                    multiplier =
+                        Math.multiplyExact(
+                            multiplier,
+                            Math.max(1, dictionaries.get(j).size()));
+                }
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            final long[] keys = new long[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                long key = 0;
+                for (int j = 0; j < columns.length; j++) {
+                    key += codes[j][row] * multipliers[j];
+                }
+                keys[row] = key;
+            }
+            return new ExistenceIndex(
+                columns, dictionaries, valueClasses, multipliers,
+                ExistenceBitmap.of(keys, rowCount));
+        }
+    }
+}
+
+// End ExistenceIndex.java
@@ -0,0 +1,247 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.*;
+import mondrian.rolap.*;
+
+import java.util.*;
+
+/**
+ * The {@link ExistenceIndex}es of a star, one for each set of columns that
+ * non-empty evaluation has asked about.
+ *
+ * <p>Non-empty crossjoins that are evaluated in memory call
+ * {@link #createFilter} to obtain a {@link Filter}. The filter discards the
+ * tuples whose combination of keys does not occur in the fact table, without
+ * evaluating any cells; the tuples that remain are checked by evaluating
+ * cells, as before. Indexes are built the first time they are needed, and
+ * are discarded when the cache is flushed for a region of the star.
+ *
+ * @see RolapStar#getExistenceIndexes()
+ */
+public class ExistenceIndexRegistry {
+    private final RolapStar star;
+    private final Map<BitKey, ExistenceIndex> indexes =
+        new HashMap<BitKey, ExistenceIndex>();
+    /** Column sets whose index has too many combinations. */
+    private final Set<BitKey> unavailable = new HashSet<BitKey>();
+    private int generation;
+
+    /**
+     * Creates an ExistenceIndexRegistry.
+     *
+     * @param star Star
+     */
+    public ExistenceIndexRegistry(RolapStar star) {
+        this.star = star;
+    }
+
+    /**
+     * Returns the index of a set of columns, building it if necessary.
+     * Returns null if the set has too many combinations.
+     *
+     * @param bitKey Columns
+     * @return Index, or null
+     */
+    ExistenceIndex getIndex(BitKey bitKey) {
+        final int generation;
+        synchronized (this) {
+            final ExistenceIndex index = indexes.get(bitKey);
+            if (index != null || unavailable.contains(bitKey)) {
+                return index;
+            }
+            generation = this.generation;
+        }
+        final List<RolapStar.Column> columnList =
+            new ArrayList<RolapStar.Column>();
+        for (int bit : bitKey) {
+            columnList.add(star.getColumn(bit));
+        }
+        final ExistenceIndex index =
+            ExistenceIndex.build(
+                star,
+                columnList.toArray(new RolapStar.Column[columnList.size()]));
+        synchronized (this) {
+            if (generation == this.generation) {
+                if (index == null) {
+                    unavailable.add(bitKey.copy());
+                } else {
+                    indexes.put(bitKey.copy(), index);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of indexes that have been built.
+     */
+    public synchronized int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Discards every index. Called when the cache is flushed for a region of
+     * this star.
+     */
+    public synchronized void clear() {
+        ++generation;
+        indexes.clear();
+        unavailable.clear();
+    }
+
+    /**
+     * Creates a filter for the tuples of a non-empty crossjoin, or returns
+     * null if the tuples cannot be filtered by existence.
+     *
+     * <p>Filtering requires that {@link MondrianProperties#ExistenceIndex}
+     * is set, that the cube is not virtual, and that the measures whose
+     * emptiness decides are stored measures of the cube. Since every such
+     * measure is null where there are no fact rows, a tuple whose keys do not
+     * occur together in the fact table is empty.
+     *
+     * @param evaluator Evaluator
+     * @param measureSet Stored measures whose values decide emptiness
+     * @param memberSet Members referenced by calculated measures; their
+     *   hierarchies are ignored, because the measures override them
+     * @return Filter, or null
+     */
+    public static Filter createFilter(
+        Evaluator evaluator,
+        Set<Member> measureSet,
+        Set<Member> memberSet)
+    {
+        if (!MondrianProperties.instance().ExistenceIndex.get()
+            || !(evaluator.getCube() instanceof RolapCube)
+            || measureSet.isEmpty())
+        {
+            return null;
+        }
+        final RolapCube cube = (RolapCube) evaluator.getCube();
+        if (cube.isVirtual()) {
+            return null;
+        }
+        final RolapStar star = cube.getStar();
+        for (Member measure : measureSet) {
+            if (measure.isCalculated()
+                || !(measure instanceof RolapStoredMeasure)
+                || ((RolapStoredMeasure) measure).getCube().getStar() != star)
+            {
+                return null;
+            }
+        }
+        final Set<Hierarchy> ignoredHierarchies = new HashSet<Hierarchy>();
+        for (Member member : memberSet) {
+            ignoredHierarchies.add(member.getHierarchy());
+        }
+        return new Filter(star, ignoredHierarchies);
+    }
+
+    /**
+     * Decides whether the tuples of a crossjoin may be non-empty, using the
+     * existence indexes of a star.
+     */
+    public static class Filter {
+        private final RolapStar star;
+        private final Set<Hierarchy> ignoredHierarchies;
+        private final Map<BitKey, ExistenceIndex> indexes =
+            new HashMap<BitKey, ExistenceIndex>();
+        private final Object[] valuesByBit;
+        private int discardCount;
+
+        Filter(RolapStar star, Set<Hierarchy> ignoredHierarchies) {
+            this.star = star;
+            this.ignoredHierarchies = ignoredHierarchies;
+            this.valuesByBit = new Object[star.getColumnCount()];
+        }
+
+        /**
+         * Returns whether a tuple may be non-empty. Returns false only if the
+         * keys of its members, and of their ancestors, do not occur together
+         * in the fact table.
+         *
+         * <p>Returns true, so that the tuple is evaluated, if the tuple has a
+         * member that is calculated, parent-child, or not based on a column
+         * of the star, or if the index of its columns has too many
+         * combinations.
+         *
+         * @param tuple Tuple
+         * @return Whether tuple may be non-empty
+         */
+        public boolean mayExist(List<Member> tuple) {
+            final BitKey bitKey =
+                BitKey.Factory.makeBitKey(star.getColumnCount());
+            for (Member member : tuple) {
+                if (ignoredHierarchies.contains(member.getHierarchy())) {
+                    continue;
+                }
+                for (Member m = member; m != null && !m.isAll();
+                    m = m.getParentMember())
+                {
+                    if (m.isCalculated() || !(m instanceof RolapCubeMember)) {
+                        return true;
+                    }
+                    final RolapCubeLevel level =
+                        ((RolapCubeMember) m).getLevel();
+                    final RolapStar.Column column = level.getStarKeyColumn();
+                    if (level.isParentChild()
+                        || column == null
+                        || column.getStar() != star
+                        || column.getTable().isFunky())
+                    {
+                        return true;
+                    }
+                    final int bit = column.getBitPosition();
+                    if (!bitKey.get(bit)) {
+                        bitKey.set(bit);
+                        valuesByBit[bit] = ((RolapCubeMember) m).getKey();
+                    }
+                }
+            }
+            if (bitKey.isEmpty()) {
+                return true;
+            }
+            final ExistenceIndex index;
+            if (indexes.containsKey(bitKey)) {
+                index = indexes.get(bitKey);
+            } else {
+                index = star.getExistenceIndexes().getIndex(bitKey);
+                indexes.put(bitKey, index);
+            }
+            if (index == null) {
+                return true;
+            }
+            final Object[] values = new Object[bitKey.cardinality()];
+            int j = 0;
+            for (int bit : bitKey) {
+                values[j++] = valuesByBit[bit];
+            }
+            if (index.mayExist(values)) {
+                return true;
+            }
+            ++discardCount;
+            return false;
+        }
+
+        /**
+         * Returns the number of tuples this filter has discarded.
+         */
+        public int getDiscardCount() {
+            return discardCount;
+        }
+    }
+}
+
+// End ExistenceIndexRegistry.java
@@ -311,6 +311,66 @@ public class ListColumnPredicate extends AbstractColumnPredicate {
             cloneListWithColumn(column, children));
     }
 
+    /**
+     * Returns the position of the list predicate that has the most values,
+     * or -1 if none of the predicates is a list.
+     *
+     * @param predicates Predicates, one per column
+     * @return Position of longest list predicate, or -1
+     */
+    public static int findLongest(StarColumnPredicate[] predicates) {
+        int longest = -1;
+        for (int j = 0; j < predicates.length; j++) {
+            if (predicates[j] instanceof ListColumnPredicate
+                && (longest < 0
+                    || ((ListColumnPredicate) predicates[j]).children.size()
+                    > ((ListColumnPredicate) predicates[longest])
+                        .children.size()))
+            {
+                longest = j;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Splits predicates, one per column, into partitions, so that a load can
+     * be read by several statements. The list predicate of one column is
+     * split into contiguous ranges of its values; the other columns are the
+     * same in each partition.
+     *
+     * @param predicates Predicates, one per column
+     * @param splitColumn Position of the column to split; its predicate must
+     *   be a list
+     * @param partitionCount Number of partitions; at most the number of values
+     *   in the list
+     * @return Predicates of each partition
+     */
+    public static List<StarColumnPredicate[]> partition(
+        StarColumnPredicate[] predicates,
+        int splitColumn,
+        int partitionCount)
+    {
+        final ListColumnPredicate split =
+            (ListColumnPredicate) predicates[splitColumn];
+        final List<StarColumnPredicate> values = split.children;
+        assert partitionCount >= 1 && partitionCount <= values.size();
+        final List<StarColumnPredicate[]> partitions =
+            new ArrayList<StarColumnPredicate[]>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            final StarColumnPredicate[] partition = predicates.clone();
+            partition[splitColumn] =
+                new ListColumnPredicate(
+                    split.getConstrainedColumn(),
+                    new ArrayList<StarColumnPredicate>(
+                        values.subList(
+                            i * values.size() / partitionCount,
+                            (i + 1) * values.size() / partitionCount)));
+            partitions.add(partition);
+        }
+        return partitions;
+    }
+
     public void toSql(SqlQuery sqlQuery, StringBuilder buf) {
         List<StarColumnPredicate> predicates = getPredicates();
         if (predicates.size() == 1) {
@@ -0,0 +1,694 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
+import mondrian.rolap.*;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.util.Pair;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Aggregate of a star's fact table, grouped by a set of columns, that is
+ * held in memory.
+ *
+ * <p>The data is stored by column. Each column is dictionary-encoded: its
+ * distinct values are held once, and each row holds an <code>int</code>
+ * code. Each measure is an array of <code>double</code> values and a set of
+ * null indicators.
+ *
+ * <p>An aggregate can answer a {@link GroupingSetsList} if its columns
+ * include the grouping set's columns and its measures include the grouping
+ * set's measures. It answers by scanning its rows, discarding those that
+ * do not satisfy the column predicates, and rolling up the rest; the result
+ * has the same layout as the rows that {@link SegmentLoader} reads from SQL.
+ * Only measures whose aggregator is sum, count, min or max can be rolled up
+ * this way.
+ *
+ * <p>An aggregate is loaded by a single SQL statement that groups the fact
+ * table by the aggregate's columns. The statement's rows are read as they
+ * are fetched, so memory is needed only for the encoded aggregate. Until it
+ * is loaded, or after it has been invalidated, {@link #answer} returns null.
+ *
+ * @see MemoryAggregateRegistry
+ */
+public class MemoryAggregate {
+    private static final Logger LOGGER =
+        LogManager.getLogger(MemoryAggregate.class);
+
+    private final RolapStar star;
+    private final RolapStar.Column[] columns;
+    private final RolapStar.Measure[] measures;
+    private final BitKey columnsBitKey;
+    private final BitKey measureBitKey;
+
+    /** Loaded data, or null if not loaded. */
+    private volatile Data data;
+
+    /** Incremented each time the aggregate is invalidated. Guarded by this.
+     * A load whose generation is out of date discards its data. */
+    private int generation;
+
+    /** Whether the aggregate has been closed. Guarded by this. */
+    private boolean closed;
+
+    /**
+     * Creates a MemoryAggregate.
+     *
+     * @param star Star
+     * @param columns Columns to group by
+     * @param measures Measures; each must be numeric, and its aggregator
+     *   sum, count, min or max
+     */
+    MemoryAggregate(
+        RolapStar star,
+        List<RolapStar.Column> columns,
+        List<RolapStar.Measure> measures)
+    {
+        this.star = star;
+        this.columns = columns.toArray(new RolapStar.Column[columns.size()]);
+        this.measures =
+            measures.toArray(new RolapStar.Measure[measures.size()]);
+        this.columnsBitKey =
+            BitKey.Factory.makeBitKey(star.getColumnCount());
+        this.measureBitKey = columnsBitKey.emptyCopy();
+        for (RolapStar.Column column : columns) {
+            columnsBitKey.set(column.getBitPosition());
+        }
+        for (RolapStar.Measure measure : measures) {
+            measureBitKey.set(measure.getBitPosition());
+        }
+    }
+
+    /**
+     * Returns whether a measure can be held in a memory aggregate.
+     *
+     * @param measure Measure
+     * @return Whether measure's values can be rolled up in memory
+     */
+    static boolean isSupported(RolapStar.Measure measure) {
+        final RolapAggregator aggregator = measure.getAggregator();
+        return measure.getDatatype().isNumeric()
+            && (aggregator == RolapAggregator.Sum
+                || aggregator == RolapAggregator.Count
+                || aggregator == RolapAggregator.Min
+                || aggregator == RolapAggregator.Max);
+    }
+
+    /**
+     * Returns the columns this aggregate is grouped by.
+     */
+    public BitKey getColumnsBitKey() {
+        return columnsBitKey;
+    }
+
+    /**
+     * Returns the measures this aggregate holds.
+     */
+    public BitKey getMeasureBitKey() {
+        return measureBitKey;
+    }
+
+    /**
+     * Returns whether the aggregate is loaded.
+     */
+    public boolean isLoaded() {
+        return data != null;
+    }
+
+    /**
+     * Returns the number of rows in the aggregate, or -1 if it is not loaded.
+     */
+    public int getRowCount() {
+        final Data data = this.data;
+        return data == null ? -1 : data.rowCount;
+    }
+
+    /**
+     * Returns whether this aggregate has the columns and measures needed to
+     * answer a list of grouping sets. Does not check whether it is loaded.
+     *
+     * @param groupingSetsList Grouping sets
+     * @return Whether this aggregate covers the grouping sets
+     */
+    boolean covers(GroupingSetsList groupingSetsList) {
+        for (GroupingSet groupingSet : groupingSetsList.getGroupingSets()) {
+            if (!columnsBitKey.isSuperSetOf(groupingSet.getLevelBitKey())
+                || !measureBitKey.isSuperSetOf(
+                    groupingSet.getMeasureBitKey()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards the loaded data, and returns a generation number with which to
+     * load it again.
+     *
+     * @return Generation to pass to {@link #load(int)}
+     */
+    synchronized int invalidate() {
+        data = null;
+        return ++generation;
+    }
+
+    /**
+     * Discards the loaded data, and prevents it from being loaded again.
+     */
+    synchronized void close() {
+        closed = true;
+        data = null;
+        ++generation;
+    }
+
+    /**
+     * Loads the aggregate. If the aggregate has been invalidated or closed
+     * since <code>generation</code> was issued, does nothing, or discards
+     * what it has read.
+     *
+     * @param generation Generation, as returned by {@link #invalidate()}
+     */
+    void load(int generation) {
+        synchronized (this) {
+            if (closed || generation != this.generation) {
+                return;
+            }
+        }
+        final long startMillis = System.currentTimeMillis();
+        final Data newData;
+        try {
+            newData = read();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to load in-memory aggregate " + this, e);
+            return;
+        }
+        if (newData == null) {
+            return;
+        }
+        synchronized (this) {
+            if (closed || generation != this.generation) {
+                return;
+            }
+            data = newData;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "Loaded in-memory aggregate " + this + ": "
+                + newData.rowCount + " rows in "
+                + (System.currentTimeMillis() - startMillis) + " ms");
+        }
+    }
+
+    /**
+     * Reads the aggregate's data from SQL. Returns null if the aggregate
+     * has more rows than {@link MondrianProperties#MemoryAggregateMaxRows}.
+     */
+    private Data read() {
+        final Pair<String, List<SqlStatement.Type>> pair =
+            new MemoryAggregateQuerySpec(star, columns, measures)
+                .generateSqlQuery();
+        final Execution execution =
+            new Execution(
+                star.getSchema().getInternalConnection()
+                    .getInternalStatement(),
+                0);
+        final Locus locus =
+            new Locus(
+                execution,
+                "MemoryAggregate.read",
+                "Error while loading in-memory aggregate");
+        final int maxRows =
+            MondrianProperties.instance().MemoryAggregateMaxRows.get();
+        final SqlStatement stmt =
+            RolapUtil.executeQuery(
+                star.getDataSource(),
+                pair.left,
+                pair.right,
+                0,
+                0,
+                locus,
+                -1,
+                -1,
+                RolapUtil.getDefaultCallback(locus));
+        try {
+            final List<SqlStatement.Type> types = stmt.guessTypes();
+            final DataBuilder builder =
+                new DataBuilder(types.subList(columns.length, types.size()));
+            final ResultSet resultSet = stmt.getResultSet();
+            while (resultSet.next()) {
+                if (++stmt.rowCount > maxRows) {
+                    LOGGER.warn(
+                        "In-memory aggregate " + this + " has more than "
+                        + maxRows + " rows; abandoning");
+                    return null;
+                }
+                builder.add(resultSet, types);
+            }
+            return builder.build();
+        } catch (SQLException e) {
+            throw stmt.handle(e);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Computes the rows of a list of grouping sets from this aggregate.
+     *
+     * <p>The rows have the same layout as those {@link SegmentLoader} reads
+     * from SQL: a column for each of the grouping sets' columns, followed by
+     * a column for each measure. As a side effect, populates the distinct
+     * values and null indicators of each axis.
+     *
+     * <p>Returns null if the aggregate is not loaded, or if the grouping set
+     * has too many combinations of values to be grouped.
+     *
+     * @param groupingSetsList Grouping sets; must not use grouping sets
+     *   (rollup) and must be {@link #covers covered} by this aggregate
+     * @param axisContainsNull Set to true for each axis with a null value
+     * @param axisValueSets Populated with distinct values of each axis
+     * @return Rows, or null
+     */
+    SegmentLoader.RowList answer(
+        GroupingSetsList groupingSetsList,
+        boolean[] axisContainsNull,
+        SortedSet<Comparable>[] axisValueSets)
+    {
+        assert !groupingSetsList.useGroupingSets();
+        final Data data = this.data;
+        if (data == null) {
+            return null;
+        }
+        final RolapStar.Column[] requestColumns =
+            groupingSetsList.getDefaultColumns();
+        final StarColumnPredicate[] predicates =
+            groupingSetsList.getDefaultPredicates();
+        final List<Segment> segments = groupingSetsList.getDefaultSegments();
+        final int arity = requestColumns.length;
+
+        // For each requested column, the column of this aggregate, which
+        // codes satisfy the predicate, and the radix of the group key.
+        final int[][] codes = new int[arity][];
+        final boolean[][] accepted = new boolean[arity][];
+        final long[] radix = new long[arity];
+        long keyCount = 1;
+        for (int j = 0; j < arity; j++) {
+            final int ordinal = ordinalOf(requestColumns[j]);
+            final Comparable[] dictionary = data.dictionaries[ordinal];
+            codes[j] = data.codes[ordinal];
+            accepted[j] = new boolean[dictionary.length];
+            for (int code = 0; code < dictionary.length; code++) {
+                accepted[j][code] = predicates[j].evaluate(dictionary[code]);
+            }
+            radix[j] = keyCount;
+            if (keyCount > Long.MAX_VALUE / Math.max(dictionary.length, 1)) {
+                return null;
+            }
+            keyCount *= Math.max(dictionary.length, 1);
+        }
+
+        final int measureCount = segments.size();
+        final int[] measureOrdinals = new int[measureCount];
+        final RolapAggregator[] aggregators = new RolapAggregator[measureCount];
+        for (int i = 0; i < measureCount; i++) {
+            final RolapStar.Measure measure = segments.get(i).measure;
+            measureOrdinals[i] = ordinalOf(measure);
+            aggregators[i] = measure.getAggregator();
+        }
+
+        // Group the rows that satisfy the predicates.
+        final Map<Long, Integer> groups = new HashMap<Long, Integer>();
+        long[] groupKeys = new long[16];
+        double[][] values = new double[measureCount][16];
+        final BitSet[] seen = new BitSet[measureCount];
+        for (int i = 0; i < measureCount; i++) {
+            seen[i] = new BitSet();
+        }
+        rows:
+        for (int row = 0; row < data.rowCount; row++) {
+            long key = 0;
+            for (int j = 0; j < arity; j++) {
+                final int code = codes[j][row];
+                if (!accepted[j][code]) {
+                    continue rows;
+                }
+                key += code * radix[j];
+            }
+            Integer group = groups.get(key);
+            if (group == null) {
+                group = groups.size();
+                groups.put(key, group);
+                if (group == groupKeys.length) {
+                    groupKeys = Util.copyOf(groupKeys, group * 2);
+                    for (int i = 0; i < measureCount; i++) {
+                        values[i] = Util.copyOf(values[i], group * 2);
+                    }
+                }
+                groupKeys[group] = key;
+            }
+            for (int i = 0; i < measureCount; i++) {
+                final int m = measureOrdinals[i];
+                if (data.nulls[m].get(row)) {
+                    continue;
+                }
+                final double value = data.values[m][row];
+                if (!seen[i].get(group)) {
+                    seen[i].set(group);
+                    values[i][group] = value;
+                } else if (aggregators[i] == RolapAggregator.Min) {
+                    values[i][group] = Math.min(values[i][group], value);
+                } else if (aggregators[i] == RolapAggregator.Max) {
+                    values[i][group] = Math.max(values[i][group], value);
+                } else {
+                    // Sum, and count, whose partial counts are summed.
+                    values[i][group] += value;
+                }
+            }
+        }
+
+        // Build rows in the layout that SegmentLoader reads from SQL.
+        final List<SqlStatement.Type> types =
+            new ArrayList<SqlStatement.Type>();
+        for (int j = 0; j < arity; j++) {
+            types.add(SqlStatement.Type.OBJECT);
+        }
+        for (int i = 0; i < measureCount; i++) {
+            types.add(data.types[measureOrdinals[i]]);
+        }
+        final int groupCount = groups.size();
+        final SegmentLoader.RowList rows =
+            new SegmentLoader.RowList(types, Math.max(groupCount, 1));
+        for (int group = 0; group < groupCount; group++) {
+            rows.createRow();
+            final long key = groupKeys[group];
+            for (int j = 0; j < arity; j++) {
+                final int ordinal = ordinalOf(requestColumns[j]);
+                final Comparable[] dictionary = data.dictionaries[ordinal];
+                final int code =
+                    (int) (key / radix[j] % Math.max(dictionary.length, 1));
+                final Comparable value = dictionary[code];
+                if (value == RolapUtil.sqlNullValue) {
+                    axisContainsNull[j] = true;
+                } else {
+                    axisValueSets[j].add(value);
+                }
+                rows.setObject(j, value);
+            }
+            for (int i = 0; i < measureCount; i++) {
+                final int column = arity + i;
+                final boolean isNull = !seen[i].get(group);
+                final double value = values[i][group];
+                switch (types.get(column)) {
+                case INT:
+                    rows.setInt(column, isNull ? 0 : (int) value);
+                    break;
+                case LONG:
+                    rows.setLong(column, isNull ? 0 : (long) value);
+                    break;
+                case DOUBLE:
+                case DECIMAL:
+                    rows.setDouble(column, isNull ? 0 : value);
+                    break;
+                default:
+                    rows.setObject(
+                        column, isNull ? Util.nullValue : (Object) value);
+                    continue;
+                }
+                if (isNull) {
+                    rows.setNull(column, true);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Adds the combinations of values of some of this aggregate's columns to
+     * an existence index. Returns false, having added nothing, if the
+     * aggregate is not loaded or does not have all of the columns.
+     *
+     * @param columns Columns
+     * @param builder Builder of existence index
+     * @return Whether the aggregate was scanned
+     */
+    boolean scan(RolapStar.Column[] columns, ExistenceIndex.Builder builder) {
+        final Data data = this.data;
+        if (data == null) {
+            return false;
+        }
+        final int[] ordinals = new int[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            ordinals[j] = -1;
+            for (int i = 0; i < this.columns.length; i++) {
+                if (this.columns[i] == columns[j]) {
+                    ordinals[j] = i;
+                }
+            }
+            if (ordinals[j] < 0) {
+                return false;
+            }
+        }
+        final Object[] values = new Object[columns.length];
+        for (int row = 0; row < data.rowCount; row++) {
+            for (int j = 0; j < ordinals.length; j++) {
+                final int ordinal = ordinals[j];
+                values[j] =
+                    data.dictionaries[ordinal][data.codes[ordinal][row]];
+            }
+            builder.add(values);
+        }
+        return true;
+    }
+
+    /**
+     * Reads a key value from a result set, converting it as
+     * {@link SegmentLoader#processData} converts it. Null is returned as
+     * {@link RolapUtil#sqlNullValue}.
+     */
+    static Comparable readKey(
+        ResultSet resultSet,
+        int columnIndex,
+        SqlStatement.Type type)
+        throws SQLException
+    {
+        final Object o;
+        switch (type) {
+        case INT:
+            o = resultSet.getInt(columnIndex);
+            break;
+        case LONG:
+            o = resultSet.getLong(columnIndex);
+            break;
+        case DOUBLE:
+            o = resultSet.getDouble(columnIndex);
+            break;
+        case DECIMAL:
+            final BigDecimal decimal = resultSet.getBigDecimal(columnIndex);
+            o = decimal == null ? null : decimal.doubleValue();
+            break;
+        default:
+            final Object object = resultSet.getObject(columnIndex);
+            o = object instanceof byte[]
+                ? new String((byte[]) object)
+                : object;
+            break;
+        }
+        if (o == null || resultSet.wasNull()) {
+            return RolapUtil.sqlNullValue;
+        }
+        return (Comparable) o;
+    }
+
+    private int ordinalOf(RolapStar.Column column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == column) {
+                return i;
+            }
+        }
+        throw Util.newInternal("column not in aggregate: " + column);
+    }
+
+    private int ordinalOf(RolapStar.Measure measure) {
+        for (int i = 0; i < measures.length; i++) {
+            if (measures[i] == measure) {
+                return i;
+            }
+        }
+        throw Util.newInternal("measure not in aggregate: " + measure);
+    }
+
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(star.getFactTable().getAlias()).append('{');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(columns[i].getName());
+        }
+        return buf.append('}').toString();
+    }
+
+    /**
+     * Loaded contents of an aggregate. Immutable once built.
+     */
+    private static class Data {
+        /** For each column, its distinct values, indexed by code. Null is
+         * represented by {@link RolapUtil#sqlNullValue}. */
+        final Comparable[][] dictionaries;
+        /** For each column, the code of each row. */
+        final int[][] codes;
+        /** For each measure, the value of each row. */
+        final double[][] values;
+        /** For each measure, which rows have a null value. */
+        final BitSet[] nulls;
+        /** For each measure, the type in which SQL returned it. */
+        final SqlStatement.Type[] types;
+        final int rowCount;
+
+        Data(
+            Comparable[][] dictionaries,
+            int[][] codes,
+            double[][] values,
+            BitSet[] nulls,
+            SqlStatement.Type[] types,
+            int rowCount)
+        {
+            this.dictionaries = dictionaries;
+            this.codes = codes;
+            this.values = values;
+            this.nulls = nulls;
+            this.types = types;
+            this.rowCount = rowCount;
+        }
+    }
+
+    /**
+     * Accumulates the rows of an aggregate as they are read from SQL.
+     */
+    private class DataBuilder {
+        private final List<Map<Comparable, Integer>> dictionaries =
+            new ArrayList<Map<Comparable, Integer>>();
+        private final int[][] codes = new int[columns.length][];
+        private final double[][] values = new double[measures.length][];
+        private final BitSet[] nulls = new BitSet[measures.length];
+        private final SqlStatement.Type[] measureTypes;
+        private int rowCount;
+        private int capacity = 100;
+
+        DataBuilder(List<SqlStatement.Type> measureTypes) {
+            this.measureTypes =
+                measureTypes.toArray(
+                    new SqlStatement.Type[measureTypes.size()]);
+            for (int j = 0; j < columns.length; j++) {
+                dictionaries.add(new HashMap<Comparable, Integer>());
+                codes[j] = new int[capacity];
+            }
+            for (int i = 0; i < measures.length; i++) {
+                values[i] = new double[capacity];
+                nulls[i] = new BitSet();
+            }
+        }
+
+        /**
+         * Adds the current row of a result set. Values are converted as
+         * {@link SegmentLoader#processData} converts them.
+         */
+        void add(ResultSet resultSet, List<SqlStatement.Type> types)
+            throws SQLException
+        {
+            final int row = rowCount++;
+            if (row == capacity) {
+                capacity *= 2;
+                for (int j = 0; j < codes.length; j++) {
+                    codes[j] = Util.copyOf(codes[j], capacity);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Util.copyOf(values[i], capacity);
+                }
+            }
+            int columnIndex = 1;
+            for (int j = 0; j < codes.length; j++, columnIndex++) {
+                final Comparable value =
+                    readKey(resultSet, columnIndex, types.get(j));
+                final Map<Comparable, Integer> dictionary =
+                    dictionaries.get(j);
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                }
+                codes[j][row] = code;
+            }
+            for (int i = 0; i < values.length; i++, columnIndex++) {
+                final Number value = readValue(resultSet, columnIndex);
+                if (value == null) {
+                    nulls[i].set(row);
+                } else {
+                    values[i][row] = value.doubleValue();
+                }
+            }
+        }
+
+        Data build() {
+            final Comparable[][] dictionaryArrays =
+                new Comparable[codes.length][];
+            for (int j = 0; j < codes.length; j++) {
+                final Map<Comparable, Integer> dictionary =
+                    dictionaries.get(j);
+                dictionaryArrays[j] = new Comparable[dictionary.size()];
+                for (Map.Entry<Comparable, Integer> entry
+                    : dictionary.entrySet())
+                {
+                    dictionaryArrays[j][entry.getValue()] = entry.getKey();
+                }
+                codes[j] = Util.copyOf(codes[j], rowCount);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Util.copyOf(values[i], rowCount);
+            }
+            return new Data(
+                dictionaryArrays, codes, values, nulls, measureTypes,
+                rowCount);
+        }
+
+        private Number readValue(ResultSet resultSet, int columnIndex)
+            throws SQLException
+        {
+            final Object o = resultSet.getObject(columnIndex);
+            if (o == null) {
+                return null;
+            } else if (o instanceof Number) {
+                return (Number) o;
+            } else if (o instanceof byte[]) {
+                return Double.parseDouble(new String((byte[]) o));
+            } else {
+                return Double.parseDouble(o.toString());
+            }
+        }
+    }
+}
+
+// End MemoryAggregate.java
@@ -0,0 +1,88 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.StarColumnPredicate;
+import mondrian.rolap.sql.SqlQuery;
+
+import java.util.Map;
+
+/**
+ * Provides the information necessary to generate the SQL statement that
+ * loads a {@link MemoryAggregate}: every row of the fact table, grouped by
+ * the aggregate's columns, without constraints.
+ */
+class MemoryAggregateQuerySpec extends AbstractQuerySpec {
+    private final RolapStar.Column[] columns;
+    private final RolapStar.Measure[] measures;
+
+    /**
+     * Creates a MemoryAggregateQuerySpec.
+     *
+     * @param star Star
+     * @param columns Columns to group by
+     * @param measures Measures; none may be distinct-count
+     */
+    MemoryAggregateQuerySpec(
+        RolapStar star,
+        RolapStar.Column[] columns,
+        RolapStar.Measure[] measures)
+    {
+        super(star, false);
+        this.columns = columns;
+        this.measures = measures;
+    }
+
+    public int getMeasureCount() {
+        return measures.length;
+    }
+
+    public RolapStar.Measure getMeasure(int i) {
+        return measures[i];
+    }
+
+    public String getMeasureAlias(int i) {
+        return "m" + Integer.toString(i);
+    }
+
+    public RolapStar.Column[] getColumns() {
+        return columns;
+    }
+
+    public String getColumnAlias(int i) {
+        return "c" + Integer.toString(i);
+    }
+
+    public StarColumnPredicate getColumnPredicate(int i) {
+        return LiteralStarPredicate.TRUE;
+    }
+
+    protected void addGroupingFunction(SqlQuery sqlQuery) {
+        // no grouping sets
+    }
+
+    protected void addGroupingSets(
+        SqlQuery sqlQuery,
+        Map<String, String> groupingSetsAliases)
+    {
+        // no grouping sets
+    }
+
+    protected boolean isAggregate() {
+        return true;
+    }
+}
+
+// End MemoryAggregateQuerySpec.java
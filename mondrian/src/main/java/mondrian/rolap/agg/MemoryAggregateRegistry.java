@@ -0,0 +1,288 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.*;
+import mondrian.rolap.*;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The {@link MemoryAggregate}s of a star.
+ *
+ * <p>Aggregates are declared by a cube's <code>MemoryAggregates</code>
+ * annotation, if {@link MondrianProperties#MemoryAggregates} is set, and are
+ * loaded on a background thread. When {@link SegmentLoader} is about to load
+ * segments from SQL, it first asks the registry for a loaded aggregate that
+ * can answer them; see {@link #find}.
+ *
+ * <p>Flushing the cache for a region of a star {@link #refresh() refreshes}
+ * all of its aggregates: each is discarded at once, so that segments are
+ * loaded from SQL until the aggregate has been read again.
+ *
+ * @see RolapStar#getMemoryAggregates()
+ */
+public class MemoryAggregateRegistry {
+    private static final Logger LOGGER =
+        LogManager.getLogger(MemoryAggregateRegistry.class);
+
+    /** Name of the cube annotation that declares in-memory aggregates. */
+    public static final String ANNOTATION = "MemoryAggregates";
+
+    /**
+     * Executor that loads aggregates. Loads are serialized, so that reading
+     * aggregates does not monopolize the database.
+     */
+    private static final ExecutorService LOAD_EXECUTOR =
+        Util.getExecutorService(
+            1,
+            1,
+            1,
+            Util.newThreadFactory(
+                "mondrian.rolap.agg.MemoryAggregateRegistry$loadExecutor",
+                MondrianProperties.instance().VirtualThreads.get()),
+            null,
+            new LinkedBlockingQueue<Runnable>());
+
+    private final RolapStar star;
+    private final List<MemoryAggregate> aggregates =
+        new CopyOnWriteArrayList<MemoryAggregate>();
+
+    /**
+     * Creates a MemoryAggregateRegistry.
+     *
+     * @param star Star
+     */
+    public MemoryAggregateRegistry(RolapStar star) {
+        this.star = star;
+    }
+
+    /**
+     * Declares the aggregates listed in a cube's
+     * {@link #ANNOTATION MemoryAggregates} annotation, and starts loading
+     * them. Does nothing if the cube has no such annotation, or if
+     * {@link MondrianProperties#MemoryAggregates} is not set.
+     *
+     * <p>Each aggregate holds the cube's measures that can be rolled up in
+     * memory. An aggregate that names a level also groups by the level's
+     * ancestors, because a request for a member constrains its ancestors'
+     * columns too. Combinations that name an unknown level are logged and
+     * ignored.
+     *
+     * @param cube Cube; must be based on this registry's star
+     */
+    public void declare(RolapCube cube) {
+        final Annotation annotation = cube.getAnnotationMap().get(ANNOTATION);
+        if (annotation == null
+            || !MondrianProperties.instance().MemoryAggregates.get())
+        {
+            return;
+        }
+        assert cube.getStar() == star;
+        final List<RolapStar.Measure> measures =
+            new ArrayList<RolapStar.Measure>();
+        for (RolapStar.Column column : star.getFactTable().getColumns()) {
+            if (column instanceof RolapStar.Measure) {
+                final RolapStar.Measure measure = (RolapStar.Measure) column;
+                if (cube.getName().equals(measure.getCubeName())
+                    && MemoryAggregate.isSupported(measure))
+                {
+                    measures.add(measure);
+                }
+            }
+        }
+        if (measures.isEmpty()) {
+            return;
+        }
+        for (String group : String.valueOf(annotation.getValue()).split(";"))
+        {
+            if (group.trim().length() == 0) {
+                continue;
+            }
+            final List<RolapStar.Column> columns = lookupColumns(cube, group);
+            if (columns != null) {
+                declare(columns, measures);
+            }
+        }
+    }
+
+    /**
+     * Declares an aggregate and starts loading it.
+     *
+     * @param columns Columns to group by
+     * @param measures Measures
+     * @return Aggregate
+     */
+    public MemoryAggregate declare(
+        List<RolapStar.Column> columns,
+        List<RolapStar.Measure> measures)
+    {
+        final MemoryAggregate aggregate =
+            new MemoryAggregate(star, columns, measures);
+        aggregates.add(aggregate);
+        scheduleLoad(aggregate);
+        return aggregate;
+    }
+
+    /**
+     * Returns the aggregates declared on this star.
+     */
+    public List<MemoryAggregate> getAggregates() {
+        return Collections.unmodifiableList(aggregates);
+    }
+
+    /**
+     * Finds the smallest loaded aggregate that can answer a list of grouping
+     * sets, or returns null.
+     *
+     * <p>Grouping sets that roll up, and requests with compound predicates,
+     * are always loaded from SQL.
+     *
+     * @param groupingSetsList Grouping sets
+     * @param compoundPredicateList Compound predicates
+     * @return Aggregate, or null
+     */
+    MemoryAggregate find(
+        GroupingSetsList groupingSetsList,
+        List<StarPredicate> compoundPredicateList)
+    {
+        if (aggregates.isEmpty()
+            || groupingSetsList.useGroupingSets()
+            || compoundPredicateList != null
+            && !compoundPredicateList.isEmpty())
+        {
+            return null;
+        }
+        MemoryAggregate best = null;
+        for (MemoryAggregate aggregate : aggregates) {
+            final int rowCount = aggregate.getRowCount();
+            if (rowCount >= 0
+                && aggregate.covers(groupingSetsList)
+                && (best == null || rowCount < best.getRowCount()))
+            {
+                best = aggregate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Discards the data of every aggregate, and starts loading it again.
+     * Called when the cache is flushed for a region of this star.
+     */
+    public void refresh() {
+        for (MemoryAggregate aggregate : aggregates) {
+            scheduleLoad(aggregate);
+        }
+    }
+
+    /**
+     * Discards every aggregate. Called when the schema is closed.
+     */
+    public void close() {
+        for (MemoryAggregate aggregate : aggregates) {
+            aggregate.close();
+        }
+        aggregates.clear();
+    }
+
+    private void scheduleLoad(final MemoryAggregate aggregate) {
+        final int generation = aggregate.invalidate();
+        LOAD_EXECUTOR.submit(
+            new Runnable() {
+                public void run() {
+                    aggregate.load(generation);
+                }
+            });
+    }
+
+    /**
+     * Resolves a comma-separated list of level unique names to the columns
+     * of the levels and their ancestors. Returns null, having logged a
+     * warning, if a level is not found.
+     */
+    private List<RolapStar.Column> lookupColumns(RolapCube cube, String group) {
+        final List<RolapStar.Column> columns =
+            new ArrayList<RolapStar.Column>();
+        for (String levelName : splitLevelNames(group)) {
+            RolapCubeLevel level = lookupLevel(cube, levelName);
+            if (level == null) {
+                LOGGER.warn(
+                    "In-memory aggregate of cube '" + cube.getName()
+                    + "' references unknown level " + levelName
+                    + "; ignoring aggregate");
+                return null;
+            }
+            for (; level != null && !level.isAll();
+                level = level.getParentLevel())
+            {
+                final RolapStar.Column column = level.getStarKeyColumn();
+                if (column != null && !columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static RolapCubeLevel lookupLevel(
+        RolapCube cube,
+        String levelName)
+    {
+        for (Hierarchy hierarchy : cube.getHierarchies()) {
+            for (Level level : hierarchy.getLevels()) {
+                if (level.getUniqueName().equals(levelName)) {
+                    return (RolapCubeLevel) level;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits a list of level names on the commas that are not inside
+     * brackets.
+     */
+    static List<String> splitLevelNames(String group) {
+        final List<String> names = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < group.length(); i++) {
+            switch (group.charAt(i)) {
+            case '[':
+                ++depth;
+                break;
+            case ']':
+                --depth;
+                break;
+            case ',':
+                if (depth == 0) {
+                    names.add(group.substring(start, i).trim());
+                    start = i + 1;
+                }
+                break;
+            }
+        }
+        names.add(group.substring(start).trim());
+        return names;
+    }
+}
+
+// End MemoryAggregateRegistry.java
@@ -283,6 +283,36 @@ public class Segment {
         aggregationKey );
   }
 
+  /**
+   * Returns whether this segment holds cells of a cell request's measure, over the same columns and compound
+   * predicates. Equivalent to {@link #matches(AggregationKey, RolapStar.Measure)} but does not require an
+   * {@link AggregationKey}, so it can be called for every cell without allocating.
+   *
+   * @param request Cell request
+   * @return Whether this segment matches the request
+   */
+  public boolean matches( CellRequest request ) {
+    return this.measure == request.getMeasure() && constrainedColumnsBitKey.equals( request
+        .getConstrainedColumnsBitKey() ) && matchesCompoundPredicates( request.getCompoundPredicateMap() );
+  }
+
+  private boolean matchesCompoundPredicates( SortedMap<BitKey, StarPredicate> compoundPredicateMap ) {
+    if ( compoundPredicateMap == null ) {
+      return compoundPredicateList == null || compoundPredicateList.isEmpty();
+    }
+    if ( compoundPredicateList == null || compoundPredicateList.size() != compoundPredicateMap.size() ) {
+      return false;
+    }
+    // Same order as AggregationKey, which builds its list from the map's values.
+    int i = 0;
+    for ( StarPredicate predicate : compoundPredicateMap.values() ) {
+      if ( !compoundPredicateList.get( i++ ).equalConstraint( predicate ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private boolean matchesInternal( AggregationKey aggKey ) {
     return constrainedColumnsBitKey.equals( aggKey.getConstrainedColumnsBitKey() ) && star.equals( aggKey.getStar() )
         && AggregationKey.equal( compoundPredicateList, aggKey.compoundPredicateList );
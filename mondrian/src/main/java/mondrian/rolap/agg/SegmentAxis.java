@@ -41,20 +41,17 @@ public class SegmentAxis {
     private final Set<Object> predicateValues;
 
     /**
-     * Map holding the position of each key value.
-     *
-     * <p>TODO: Hold keys in a sorted array, then deduce ordinal by doing
-     * binary search.
+     * Index holding the position of each key value. Its implementation
+     * depends on the type and range of the keys; see
+     * {@link SegmentAxisIndex#create}.
      */
-    private final Map<Comparable, Integer> mapKeyToOffset;
+    private final SegmentAxisIndex index;
 
     /**
      * Actual key values retrieved.
      */
     private final Comparable[] keys;
 
-    private static final Integer ZERO = Integer.valueOf(0);
-    private static final Integer ONE = Integer.valueOf(1);
     private static final Comparable[] NO_COMPARABLES = new Comparable[0];
 
     /**
@@ -75,15 +72,10 @@ public class SegmentAxis {
             // it records that mondrian has looked in the database and found
             // nothing.
             this.keys = NO_COMPARABLES;
-            this.mapKeyToOffset = Collections.emptyMap();
         } else {
             this.keys = keys;
-            mapKeyToOffset =
-                new HashMap<Comparable, Integer>(keys.length * 3 / 2);
-            for (int i = 0; i < keys.length; i++) {
-                mapKeyToOffset.put(keys[i], i);
-            }
         }
+        this.index = SegmentAxisIndex.create(this.keys);
         assert predicate != null;
         assert safe || Util.isSorted(Arrays.asList(keys));
     }
@@ -171,14 +163,7 @@ public class SegmentAxis {
     }
 
     final int getOffset(Comparable key) {
-        if (keys.length == 1) {
-            return keys[0].equals(key) ? 0 : -1;
-        }
-        Integer ordinal = mapKeyToOffset.get(key);
-        if (ordinal == null) {
-            return -1;
-        }
-        return ordinal;
+        return index.getOffset(key);
     }
 
     /**
@@ -0,0 +1,319 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.rolap.RolapUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the keys of a {@link SegmentAxis} to their offsets.
+ *
+ * <p>Every coordinate of every cell read from a segment is resolved by an
+ * index, so the implementation is chosen by {@link #create} according to
+ * the keys of the axis:<ul>
+ *
+ * <li>{@link DenseIndex} if the keys are all <code>Integer</code> or all
+ * <code>Long</code> and their range is compact: an array indexed by the key
+ * less the smallest key;</li>
+ *
+ * <li>{@link LongIndex} for other <code>Integer</code> or <code>Long</code>
+ * keys: an open-addressing hash table of primitive <code>long</code> keys and
+ * <code>int</code> offsets;</li>
+ *
+ * <li>{@link StringIndex} if the keys are all strings: an open-addressing
+ * hash table that stores each key's hash code alongside it, so that most
+ * mismatches are rejected without calling {@link String#equals};</li>
+ *
+ * <li>{@link GenericIndex}, a {@link HashMap}, otherwise.</li>
+ * </ul>
+ *
+ * <p>A key is found if and only if it {@link Object#equals equals} a key of
+ * the axis, as it was when every axis used a <code>HashMap</code>. Thus an
+ * index of <code>Integer</code> keys does not find a <code>Long</code>, and
+ * {@link RolapUtil#sqlNullValue}, which may be the last key of any axis, is
+ * matched by identity.
+ *
+ * <p>Indexes are immutable, and do not allocate when looking up a key.
+ */
+abstract class SegmentAxisIndex {
+    /** Densest range of numeric keys, relative to the number of keys, for
+     * which {@link DenseIndex} is used. */
+    private static final int MAX_DENSE_RANGE_RATIO = 2;
+
+    /** Offset of {@link RolapUtil#sqlNullValue}, or -1. */
+    final int nullOffset;
+
+    SegmentAxisIndex(int nullOffset) {
+        this.nullOffset = nullOffset;
+    }
+
+    /**
+     * Returns the offset of a key, or -1 if the axis does not contain it.
+     *
+     * @param key Key
+     * @return Offset, or -1
+     */
+    abstract int getOffset(Object key);
+
+    /**
+     * Creates an index of the keys of an axis.
+     *
+     * @param keys Distinct keys; if the last is {@link RolapUtil#sqlNullValue}
+     *   it is indexed separately
+     * @return Index
+     */
+    static SegmentAxisIndex create(Comparable[] keys) {
+        int n = keys.length;
+        int nullOffset = -1;
+        if (n > 0 && keys[n - 1] == RolapUtil.sqlNullValue) {
+            nullOffset = --n;
+        }
+        if (n == 0) {
+            return new EmptyIndex(nullOffset);
+        }
+        final Class<?> keyClass = keyClass(keys, n);
+        if (keyClass == Integer.class || keyClass == Long.class) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                final long key = ((Number) keys[i]).longValue();
+                min = Math.min(min, key);
+                max = Math.max(max, key);
+            }
+            // Compare with care: max - min overflows for extreme longs.
+            if (max - min >= 0
+                && max - min < (long) n * MAX_DENSE_RANGE_RATIO)
+            {
+                return new DenseIndex(keyClass, keys, n, nullOffset, min, max);
+            }
+            return new LongIndex(keyClass, keys, n, nullOffset);
+        }
+        if (keyClass == String.class) {
+            return new StringIndex(keys, n, nullOffset);
+        }
+        return new GenericIndex(keys, n, nullOffset);
+    }
+
+    /**
+     * Returns the class of the first <code>n</code> keys, or null if they
+     * are not all of the same class.
+     */
+    private static Class<?> keyClass(Comparable[] keys, int n) {
+        final Class<?> keyClass = keys[0].getClass();
+        for (int i = 1; i < n; i++) {
+            if (keys[i].getClass() != keyClass) {
+                return null;
+            }
+        }
+        return keyClass;
+    }
+
+    /**
+     * Returns a table capacity, a power of two, that is at least twice
+     * the number of keys.
+     */
+    static int capacity(int n) {
+        return Integer.highestOneBit(Math.max(n, 2) * 4 - 1);
+    }
+
+    /**
+     * Spreads the bits of a hash code, because tables are indexed by their
+     * low bits.
+     */
+    static int mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Index of an axis whose only key, if any, is the null value.
+     */
+    static class EmptyIndex extends SegmentAxisIndex {
+        EmptyIndex(int nullOffset) {
+            super(nullOffset);
+        }
+
+        int getOffset(Object key) {
+            return key == RolapUtil.sqlNullValue ? nullOffset : -1;
+        }
+    }
+
+    /**
+     * Index of integer keys whose range is compact; looks up a key in an
+     * array.
+     */
+    static class DenseIndex extends SegmentAxisIndex {
+        private final Class<?> keyClass;
+        private final long min;
+        private final long max;
+        private final int[] offsets;
+
+        DenseIndex(
+            Class<?> keyClass,
+            Comparable[] keys,
+            int n,
+            int nullOffset,
+            long min,
+            long max)
+        {
+            super(nullOffset);
+            this.keyClass = keyClass;
+            this.min = min;
+            this.max = max;
+            this.offsets = new int[(int) (max - min + 1)];
+            Arrays.fill(offsets, -1);
+            for (int i = 0; i < n; i++) {
+                offsets[(int) (((Number) keys[i]).longValue() - min)] = i;
+            }
+        }
+
+        int getOffset(Object key) {
+            if (key == null || key.getClass() != keyClass) {
+                return key == RolapUtil.sqlNullValue ? nullOffset : -1;
+            }
+            final long value = ((Number) key).longValue();
+            if (value < min || value > max) {
+                return -1;
+            }
+            return offsets[(int) (value - min)];
+        }
+    }
+
+    /**
+     * Index of integer keys; an open-addressing hash table with linear
+     * probing.
+     */
+    static class LongIndex extends SegmentAxisIndex {
+        private final Class<?> keyClass;
+        private final long[] tableKeys;
+        /** Offset of the key in each slot, or -1 if the slot is empty. */
+        private final int[] tableOffsets;
+        private final int mask;
+
+        LongIndex(Class<?> keyClass, Comparable[] keys, int n, int nullOffset) {
+            super(nullOffset);
+            this.keyClass = keyClass;
+            final int capacity = capacity(n);
+            this.mask = capacity - 1;
+            this.tableKeys = new long[capacity];
+            this.tableOffsets = new int[capacity];
+            Arrays.fill(tableOffsets, -1);
+            for (int i = 0; i < n; i++) {
+                final long key = ((Number) keys[i]).longValue();
+                int slot = mix(key) & mask;
+                while (tableOffsets[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = key;
+                tableOffsets[slot] = i;
+            }
+        }
+
+        int getOffset(Object key) {
+            if (key == null || key.getClass() != keyClass) {
+                return key == RolapUtil.sqlNullValue ? nullOffset : -1;
+            }
+            final long value = ((Number) key).longValue();
+            int slot = mix(value) & mask;
+            for (;;) {
+                final int offset = tableOffsets[slot];
+                if (offset < 0 || tableKeys[slot] == value) {
+                    return offset;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Index of string keys; an open-addressing hash table with linear
+     * probing, which stores the hash code of each key.
+     */
+    static class StringIndex extends SegmentAxisIndex {
+        private final String[] tableKeys;
+        private final int[] tableHashes;
+        /** Offset of the key in each slot, or -1 if the slot is empty. */
+        private final int[] tableOffsets;
+        private final int mask;
+
+        StringIndex(Comparable[] keys, int n, int nullOffset) {
+            super(nullOffset);
+            final int capacity = capacity(n);
+            this.mask = capacity - 1;
+            this.tableKeys = new String[capacity];
+            this.tableHashes = new int[capacity];
+            this.tableOffsets = new int[capacity];
+            Arrays.fill(tableOffsets, -1);
+            for (int i = 0; i < n; i++) {
+                final String key = (String) keys[i];
+                final int hash = key.hashCode();
+                int slot = mix(hash) & mask;
+                while (tableOffsets[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = key;
+                tableHashes[slot] = hash;
+                tableOffsets[slot] = i;
+            }
+        }
+
+        int getOffset(Object key) {
+            if (!(key instanceof String)) {
+                return key == RolapUtil.sqlNullValue ? nullOffset : -1;
+            }
+            final int hash = key.hashCode();
+            int slot = mix(hash) & mask;
+            for (;;) {
+                final int offset = tableOffsets[slot];
+                if (offset < 0
+                    || tableHashes[slot] == hash
+                    && tableKeys[slot].equals(key))
+                {
+                    return offset;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * Index of keys of any other type, or of mixed types.
+     */
+    static class GenericIndex extends SegmentAxisIndex {
+        private final Map<Object, Integer> map;
+
+        GenericIndex(Comparable[] keys, int n, int nullOffset) {
+            super(nullOffset);
+            this.map = new HashMap<Object, Integer>(n * 3 / 2);
+            for (int i = 0; i < n; i++) {
+                map.put(keys[i], i);
+            }
+            if (nullOffset >= 0) {
+                map.put(RolapUtil.sqlNullValue, nullOffset);
+            }
+        }
+
+        int getOffset(Object key) {
+            final Integer offset = map.get(key);
+            return offset == null ? -1 : offset;
+        }
+    }
+}
+
+// End SegmentAxisIndex.java
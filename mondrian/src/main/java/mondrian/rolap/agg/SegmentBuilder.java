@@ -129,34 +129,10 @@ public class SegmentBuilder {
             new ArrayList<StarColumnPredicate>();
         for (int i = 0; i < constrainedColumns.length; i++) {
             RolapStar.Column constrainedColumn = constrainedColumns[i];
-            final SortedSet<Comparable> values =
-                header.getConstrainedColumns().get(i).values;
-            StarColumnPredicate predicate;
-            if (values == null) {
-                predicate =
-                    new LiteralStarPredicate(
-                        constrainedColumn,
-                        true);
-            } else if (values.size() == 1) {
-                predicate =
-                    new ValueColumnPredicate(
-                        constrainedColumn,
-                        values.first());
-            } else {
-                final List<StarColumnPredicate> valuePredicateList =
-                    new ArrayList<StarColumnPredicate>();
-                for (Object value : values) {
-                    valuePredicateList.add(
-                        new ValueColumnPredicate(
-                            constrainedColumn,
-                            value));
-                }
-                predicate =
-                    new ListColumnPredicate(
-                        constrainedColumn,
-                        valuePredicateList);
-            }
-            predicateList.add(predicate);
+            predicateList.add(
+                toPredicate(
+                    constrainedColumn,
+                    header.getConstrainedColumns().get(i).values));
         }
 
         return new Segment(
@@ -170,6 +146,32 @@ public class SegmentBuilder {
             compoundPredicates);
     }
 
+    /**
+     * Creates a predicate that constrains a column to a set of values.
+     *
+     * @param column Column
+     * @param values Values, or null if the column is not constrained
+     * @return Predicate
+     */
+    public static StarColumnPredicate toPredicate(
+        RolapStar.Column column,
+        SortedSet<Comparable> values)
+    {
+        if (values == null) {
+            return new LiteralStarPredicate(column, true);
+        } else if (values.size() == 1) {
+            return new ValueColumnPredicate(column, values.first());
+        } else {
+            final List<StarColumnPredicate> valuePredicateList =
+                new ArrayList<StarColumnPredicate>();
+            for (Object value : values) {
+                valuePredicateList.add(
+                    new ValueColumnPredicate(column, value));
+            }
+            return new ListColumnPredicate(column, valuePredicateList);
+        }
+    }
+
     /**
      * Given a collection of segments, all of the same dimensionality, rolls up
      * to create a segment with reduced dimensionality.
@@ -390,12 +392,183 @@ public class SegmentBuilder {
         // Build the axis list.
         final List<Pair<SortedSet<Comparable>, Boolean>> axisList =
             new ArrayList<Pair<SortedSet<Comparable>, Boolean>>();
-        BigInteger bigValueCount = BigInteger.ONE;
         for (AxisInfo axis : axes) {
             axisList.add(Pair.of(axis.valueSet, axis.hasNull));
-            int size = axis.values.length;
+        }
+        final SegmentBody body =
+            createBody(axisList, cellValues, rollupAggregator, datatype);
+
+        // Create header.
+        final List<SegmentColumn> constrainedColumns =
+            new ArrayList<SegmentColumn>();
+        for (int i = 0; i < axes.size(); i++) {
+            AxisInfo axisInfo = axes.get(i);
+
+            constrainedColumns.add(
+                new SegmentColumn(
+                    axisInfo.column.getColumnExpression(),
+                    axisInfo.column.getValueCount(),
+                    axisInfo.lostPredicate
+                        ? axisList.get(i).left
+                        : axisInfo.column.values));
+        }
+        final SegmentHeader header =
+            new SegmentHeader(
+                firstHeader.schemaName,
+                firstHeader.schemaChecksum,
+                firstHeader.cubeName,
+                firstHeader.measureName,
+                constrainedColumns,
+                firstHeader.compoundPredicates,
+                firstHeader.rolapStarFactTableName,
+                targetBitkey,
+                Collections.<SegmentColumn>emptyList());
+        if (LOGGER.isDebugEnabled()) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("SegmentBuilder.rollup: done rolling up segments with parameters: \n");
+            builder.append("keepColumns=" + keepColumns + "\n");
+            builder.append("aggregator=" + rollupAggregator + "\n");
+            builder.append("datatype=" + datatype + "\n");
+            for (Map.Entry<SegmentHeader, SegmentBody > segment : segments) {
+                builder.append(segment.getKey() + "\n");
+            }
+            if (LOGGER.isTraceEnabled()) {
+              builder.append("AxisInfos constructed:");
+              for (AxisInfo axis : axes) {
+                  SortedSet<Comparable> colVals = axis.column.getValues();
+                  builder.append(
+                      String.format(
+                          "column.columnExpression=%s\n"
+                          + "column.valueCount=%s\n"
+                          + "column.values=%s\n"
+                          + "requestedValues=%s\n"
+                          + "valueSet=%s\n"
+                          + "values=%s\n"
+                          + "hasNull=%b\n"
+                          + "src=%d\n"
+                          + "lostPredicate=%b\n",
+                          axis.column.columnExpression,
+                          axis.column.getValueCount(),
+                          Arrays.toString(
+                              colVals == null ? null
+                              : colVals.toArray()),
+                          axis.requestedValues,
+                          axis.valueSet,
+                          Arrays.asList(axis.values),
+                          axis.hasNull,
+                          axis.src,
+                          axis.lostPredicate));
+              }
+            }
+            builder.append("Resulted in Segment:  \n");
+            builder.append(header);
+            if (LOGGER.isTraceEnabled()) {
+              builder.append(body.toString());
+            }
+            builder.append(", " + (System.currentTimeMillis() - startTime) + " ms \n");
+            LOGGER.debug(builder.toString());
+        }
+        return Pair.of(header, body);
+    }
+
+    /**
+     * Merges the cells of a delta into a segment body, for an incremental
+     * refresh. The delta has the dimensionality and predicates of the
+     * segment, and holds the aggregates of rows that the segment does not
+     * yet include. Each cell of the result is the rollup of the cell of the
+     * segment and the cell of the delta. Axis values that occur only in the
+     * delta, such as a day that had no rows before, are added to the axes.
+     *
+     * @param body Segment body
+     * @param delta Aggregates of the new rows
+     * @param rollupAggregator The aggregator to use to rollup; must be
+     * distributive
+     * @param datatype The data type to use
+     * @return Merged segment body
+     */
+    public static SegmentBody merge(
+        SegmentBody body,
+        SegmentBody delta,
+        Aggregator rollupAggregator,
+        Datatype datatype)
+    {
+        final SortedSet<Comparable>[] bodyValueSets = body.getAxisValueSets();
+        final SortedSet<Comparable>[] deltaValueSets =
+            delta.getAxisValueSets();
+        assert bodyValueSets.length == deltaValueSets.length;
+        final int arity = bodyValueSets.length;
+        final List<Pair<SortedSet<Comparable>, Boolean>> axisList =
+            new ArrayList<Pair<SortedSet<Comparable>, Boolean>>(arity);
+        final Comparable[][] values = new Comparable[arity][];
+        for (int i = 0; i < arity; i++) {
+            final SortedSet<Comparable> valueSet =
+                new TreeSet<Comparable>(bodyValueSets[i]);
+            valueSet.addAll(deltaValueSets[i]);
+            axisList.add(
+                Pair.of(
+                    valueSet,
+                    body.getNullAxisFlags()[i]
+                    || delta.getNullAxisFlags()[i]));
+            values[i] = valueSet.toArray(new Comparable[valueSet.size()]);
+        }
+
+        // Map the cells of both bodies to the merged axes.
+        final Map<CellKey, List<Object>> cellValues =
+            new HashMap<CellKey, List<Object>>();
+        for (SegmentBody source : Arrays.asList(body, delta)) {
+            final Comparable[][] sourceValues = new Comparable[arity][];
+            for (int i = 0; i < arity; i++) {
+                final SortedSet<Comparable> set = source.getAxisValueSets()[i];
+                sourceValues[i] = set.toArray(new Comparable[set.size()]);
+            }
+            for (Map.Entry<CellKey, Object> entry
+                : source.getValueMap().entrySet())
+            {
+                final int[] ordinals = entry.getKey().getOrdinals();
+                final int[] pos = new int[arity];
+                for (int i = 0; i < arity; i++) {
+                    // The null value, if present, follows the other values.
+                    pos[i] =
+                        ordinals[i] == sourceValues[i].length
+                            ? values[i].length
+                            : Util.binarySearch(
+                                values[i], 0, values[i].length,
+                                sourceValues[i][ordinals[i]]);
+                }
+                final CellKey key = CellKey.Generator.newCellKey(pos);
+                List<Object> list = cellValues.get(key);
+                if (list == null) {
+                    list = new ArrayList<Object>(2);
+                    cellValues.put(key, list);
+                }
+                list.add(entry.getValue());
+            }
+        }
+        return createBody(axisList, cellValues, rollupAggregator, datatype);
+    }
+
+    /**
+     * Creates a segment body, aggregating the values of each cell. Stores the
+     * values in a dense or a sparse body, depending on how many cells have
+     * values.
+     *
+     * @param axisList Values of each axis, and whether it has a null value
+     * @param cellValues Values to aggregate into each cell
+     * @param rollupAggregator The aggregator to use to rollup
+     * @param datatype The data type to use
+     * @return Segment body
+     */
+    private static SegmentBody createBody(
+        List<Pair<SortedSet<Comparable>, Boolean>> axisList,
+        Map<CellKey, List<Object>> cellValues,
+        Aggregator rollupAggregator,
+        Datatype datatype)
+    {
+        BigInteger bigValueCount = BigInteger.ONE;
+        for (Pair<SortedSet<Comparable>, Boolean> axis : axisList) {
+            final int size = axis.left.size();
             bigValueCount = bigValueCount.multiply(
-                BigInteger.valueOf(axis.hasNull ? size + 1 : size));
+                BigInteger.valueOf(axis.right ? size + 1 : size));
         }
 
         // The logic used here for the sparse check follows
@@ -509,78 +682,7 @@ public class SegmentBuilder {
                         axisList);
             }
         }
-
-        // Create header.
-        final List<SegmentColumn> constrainedColumns =
-            new ArrayList<SegmentColumn>();
-        for (int i = 0; i < axes.size(); i++) {
-            AxisInfo axisInfo = axes.get(i);
-
-            constrainedColumns.add(
-                new SegmentColumn(
-                    axisInfo.column.getColumnExpression(),
-                    axisInfo.column.getValueCount(),
-                    axisInfo.lostPredicate
-                        ? axisList.get(i).left
-                        : axisInfo.column.values));
-        }
-        final SegmentHeader header =
-            new SegmentHeader(
-                firstHeader.schemaName,
-                firstHeader.schemaChecksum,
-                firstHeader.cubeName,
-                firstHeader.measureName,
-                constrainedColumns,
-                firstHeader.compoundPredicates,
-                firstHeader.rolapStarFactTableName,
-                targetBitkey,
-                Collections.<SegmentColumn>emptyList());
-        if (LOGGER.isDebugEnabled()) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("SegmentBuilder.rollup: done rolling up segments with parameters: \n");
-            builder.append("keepColumns=" + keepColumns + "\n");
-            builder.append("aggregator=" + rollupAggregator + "\n");
-            builder.append("datatype=" + datatype + "\n");
-            for (Map.Entry<SegmentHeader, SegmentBody > segment : segments) {
-                builder.append(segment.getKey() + "\n");
-            }
-            if (LOGGER.isTraceEnabled()) {
-              builder.append("AxisInfos constructed:");
-              for (AxisInfo axis : axes) {
-                  SortedSet<Comparable> colVals = axis.column.getValues();
-                  builder.append(
-                      String.format(
-                          "column.columnExpression=%s\n"
-                          + "column.valueCount=%s\n"
-                          + "column.values=%s\n"
-                          + "requestedValues=%s\n"
-                          + "valueSet=%s\n"
-                          + "values=%s\n"
-                          + "hasNull=%b\n"
-                          + "src=%d\n"
-                          + "lostPredicate=%b\n",
-                          axis.column.columnExpression,
-                          axis.column.getValueCount(),
-                          Arrays.toString(
-                              colVals == null ? null
-                              : colVals.toArray()),
-                          axis.requestedValues,
-                          axis.valueSet,
-                          Arrays.asList(axis.values),
-                          axis.hasNull,
-                          axis.src,
-                          axis.lostPredicate));
-              }
-            }
-            builder.append("Resulted in Segment:  \n");
-            builder.append(header);
-            if (LOGGER.isTraceEnabled()) {
-              builder.append(body.toString());
-            }
-            builder.append(", " + (System.currentTimeMillis() - startTime) + " ms \n");
-            LOGGER.debug(builder.toString());
-        }
-        return Pair.of(header, body);
+        return body;
     }
 
     private static boolean allHeadersHaveSameDimensionality(
@@ -23,6 +23,7 @@ import mondrian.rolap.CacheControlImpl;
 import mondrian.rolap.RolapSchema;
 import mondrian.rolap.RolapStar;
 import mondrian.rolap.RolapStoredMeasure;
+import mondrian.rolap.StarPredicate;
 import mondrian.rolap.RolapUtil;
 import mondrian.rolap.SchemaKey;
 import mondrian.rolap.cache.MemorySegmentCache;
@@ -33,6 +34,7 @@ import mondrian.server.Locus;
 import mondrian.server.monitor.CellCacheEvent;
 import mondrian.server.monitor.CellCacheSegmentCreateEvent;
 import mondrian.server.monitor.CellCacheSegmentDeleteEvent;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.server.monitor.Monitor;
 import mondrian.spi.SegmentBody;
 import mondrian.spi.SegmentCache;
@@ -48,19 +50,24 @@ import org.apache.logging.log4j.LogManager;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @SuppressWarnings( { "JavaDoc", "squid:S1192", "squid:S4274" } )
@@ -173,7 +180,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p>7. RolapStar.localAggregations and .sharedAggregations. Obsolete
  * sharedAggregations.</p>
  *
- * <p>8. Longer term. Move {@link mondrian.rolap.RolapStar.Bar}.segmentRefs to
+ * <p>8. Longer term. Move {@link mondrian.rolap.RolapStar.Bar}.segmentDirectory to
  * {@link mondrian.server.Execution}. Would it still be thread-local?</p>
  *
  * <p>10. Call
@@ -270,7 +277,8 @@ public class SegmentCacheManager {
       } );
 
   /**
-   * Executor with which to execute SQL requests.
+   * Executor with which to execute SQL requests. Its threads are virtual
+   * threads if {@link MondrianProperties#VirtualThreads} is set.
    *
    * <p>TODO: create using factory and/or configuration parameters. Executor
    * should be shared within MondrianServer or target JDBC database.
@@ -285,11 +293,14 @@ public class SegmentCacheManager {
       MondrianProperties.instance()
         .SegmentCacheManagerNumberSqlThreads.get(),
       1,
-      "mondrian.rolap.agg.SegmentCacheManager$sqlExecutor",
+      Util.newThreadFactory(
+        "mondrian.rolap.agg.SegmentCacheManager$sqlExecutor",
+        MondrianProperties.instance().VirtualThreads.get() ),
       ( r, executor ) -> {
         throw MondrianResource.instance()
           .SqlQueryLimitReached.ex();
-      } );
+      },
+      new LinkedBlockingQueue<>() );
 
   // NOTE: This list is only mutable for testing purposes. Would rather it
   // were immutable.
@@ -550,6 +561,71 @@ public class SegmentCacheManager {
         header.compoundPredicates );
   }
 
+  /**
+   * Merges the rows appended within a region into the segments returned by a {@link RefreshCommand}.
+   *
+   * <p>Segments that differ only in their measure are loaded by one statement. Each segment's body is read from the
+   * cache, merged with the aggregates of the new rows (see {@link SegmentBuilder#merge}), and put back into the cache
+   * and the index. A segment whose body is no longer in the cache, or that was flushed while it was being refreshed, is
+   * removed.</p>
+   *
+   * <p>Executes SQL, so must not be called from the actor.</p>
+   *
+   * @param segments Segments to refresh
+   * @return Number of segments merged
+   */
+  public int refreshSegments( List<RefreshSegment> segments ) {
+    final Map<List<Object>, List<RefreshSegment>> groups = new LinkedHashMap<>();
+    for ( RefreshSegment segment : segments ) {
+      final SegmentHeader header = segment.header;
+      final List<Object> key =
+        Arrays.<Object>asList(
+          segment.measure.getStar(),
+          header.getConstrainedColumnsBitKey(),
+          header.getConstrainedColumns(),
+          header.compoundPredicates );
+      groups.computeIfAbsent( key, k -> new ArrayList<>() ).add( segment );
+    }
+    final SegmentLoader loader = new SegmentLoader( this );
+    final Map<RefreshSegment, SegmentBody> mergedMap = new LinkedHashMap<>();
+    final List<RefreshSegment> staleList = new ArrayList<>();
+    for ( List<RefreshSegment> group : groups.values() ) {
+      final List<RefreshSegment> cachedList = new ArrayList<>();
+      final List<SegmentBody> bodies = new ArrayList<>();
+      final List<Segment> segmentList = new ArrayList<>();
+      for ( RefreshSegment segment : group ) {
+        final SegmentBody body = compositeCache.get( segment.header );
+        if ( body == null ) {
+          staleList.add( segment );
+          continue;
+        }
+        cachedList.add( segment );
+        bodies.add( body );
+        segmentList.add( segment.converter.convert( segment.header, body ) );
+      }
+      if ( segmentList.isEmpty() ) {
+        continue;
+      }
+      final List<StarPredicate> predicates = new ArrayList<>();
+      if ( segmentList.get( 0 ).getCompoundPredicateList() != null ) {
+        predicates.addAll( segmentList.get( 0 ).getCompoundPredicateList() );
+      }
+      predicates.addAll( cachedList.get( 0 ).regionPredicates );
+      final List<SegmentBody> deltas = loader.loadDelta( segmentList, predicates );
+      for ( int i = 0; i < cachedList.size(); i++ ) {
+        final RolapStar.Measure measure = cachedList.get( i ).measure;
+        mergedMap.put(
+          cachedList.get( i ),
+          SegmentBuilder.merge(
+            bodies.get( i ),
+            deltas.get( i ),
+            measure.getAggregator().getRollup(),
+            measure.getDatatype() ) );
+      }
+    }
+    return execute( new RefreshSegmentsCommand( Locus.peek(), mergedMap, staleList ) );
+  }
+
   /**
    * Makes a quick request to the aggregation manager to see whether the cell value required by a particular cell
    * request is in external cache.
@@ -624,6 +700,13 @@ public class SegmentCacheManager {
           event.header,
           event.body );
 
+      final int cellCount =
+        event.body == null
+          ? 0
+          : event.body.getValueMap().size();
+      if ( event.body != null ) {
+        MondrianMetrics.SEGMENT_BYTES.get().add( estimateBytes( event.body, cellCount ) );
+      }
       event.monitor.sendEvent(
         new CellCacheSegmentCreateEvent(
           event.timestamp,
@@ -632,12 +715,38 @@ public class SegmentCacheManager {
           event.statementId,
           event.executionId,
           event.header.getConstrainedColumns().size(),
-          event.body == null
-            ? 0
-            : event.body.getValueMap().size(),
+          cellCount,
           CellCacheEvent.Source.SQL ) );
     }
 
+    /**
+     * Estimates the heap used by a segment body, for metrics. Counts the
+     * value array (or, for sparse bodies, a map entry per cell), the null
+     * indicators, and the axis value sets.
+     */
+    private long estimateBytes( SegmentBody body, int cellCount ) {
+      long bytes;
+      if ( body instanceof SparseSegmentBody ) {
+        // A hash entry, key and boxed value per cell.
+        bytes = 96L * cellCount;
+      } else if ( body instanceof DenseDoubleSegmentBody ) {
+        bytes = 8L * ( (double[]) body.getValueArray() ).length + body.getNullValueIndicators().size() / 8;
+      } else if ( body instanceof DenseIntSegmentBody ) {
+        bytes = 4L * ( (int[]) body.getValueArray() ).length + body.getNullValueIndicators().size() / 8;
+      } else if ( body instanceof DenseObjectSegmentBody ) {
+        bytes = 24L * ( (Object[]) body.getValueArray() ).length;
+      } else {
+        bytes = 0;
+      }
+      final SortedSet<Comparable>[] axisValueSets = body.getAxisValueSets();
+      if ( axisValueSets != null ) {
+        for ( SortedSet<Comparable> axisValueSet : axisValueSets ) {
+          bytes += 48L * axisValueSet.size();
+        }
+      }
+      return bytes;
+    }
+
     public void visit( SegmentLoadFailedEvent event ) {
       indexRegistry.getIndex( event.star )
         .loadFailed(
@@ -792,7 +901,13 @@ public class SegmentCacheManager {
       final List<RolapStar> starList = CacheControlImpl.getStarList( region );
 
       final List<SegmentHeader> headers = getIntersectingHeaders( measures, flushRegion );
+      return flush( flushRegion, starList, headers );
+    }
 
+    /**
+     * Flushes the given headers, which intersect a region.
+     */
+    FlushResult flush( SegmentColumn[] flushRegion, List<RolapStar> starList, List<SegmentHeader> headers ) {
       // If flushRegion is empty, this means we must clear all
       // segments for the region's measures.
       if ( flushRegion.length == 0 ) {
@@ -800,7 +915,6 @@ public class SegmentCacheManager {
         return new FlushResult( Collections.emptyList() );
       }
       return getFlushResult( flushRegion, starList, headers );
-
     }
 
     private FlushResult getFlushResult( SegmentColumn[] flushRegion, List<RolapStar> starList,
@@ -900,7 +1014,7 @@ public class SegmentCacheManager {
      * For each measure and each star, ask the index
      * which headers intersect.
      */
-    private List<SegmentHeader> getIntersectingHeaders( List<Member> measures, SegmentColumn[] flushRegion ) {
+    List<SegmentHeader> getIntersectingHeaders( List<Member> measures, SegmentColumn[] flushRegion ) {
       final List<SegmentHeader> headers =
         new ArrayList<>();
       for ( Member member : measures ) {
@@ -930,6 +1044,179 @@ public class SegmentCacheManager {
     }
   }
 
+  /**
+   * Command to start an incremental refresh of the segments that intersect a region, after rows have been appended to
+   * the fact table within the region.
+   *
+   * <p>Returns the segments whose cells can be merged with the aggregates of the new rows, to be loaded and merged by
+   * {@link SegmentCacheManager#refreshSegments}. A segment can be merged if its measure's aggregator is distributive
+   * (sum, count, min or max) and can roll up raw values, the segment's header can be converted to a segment, and each
+   * column of the region is a single column of the star, constrained to a list of values. Other segments are flushed,
+   * as by {@link FlushCommand}.</p>
+   */
+  public static final class RefreshCommand extends Command<RefreshResult> {
+    private final CellRegion region;
+    private final Locus locus;
+    private final SegmentCacheManager cacheMgr;
+    private final FlushCommand flushCommand;
+
+    public RefreshCommand(
+      Locus locus,
+      SegmentCacheManager mgr,
+      CellRegion region,
+      CacheControlImpl cacheControlImpl ) {
+      this.locus = locus;
+      this.cacheMgr = mgr;
+      this.region = region;
+      this.flushCommand = new FlushCommand( locus, mgr, region, cacheControlImpl );
+    }
+
+    public Locus getLocus() {
+      return locus;
+    }
+
+    public RefreshResult call() {
+      final SegmentColumn[] refreshRegion = CacheControlImpl.findAxisValues( region );
+      final List<RolapStar> starList = CacheControlImpl.getStarList( region );
+      final List<SegmentHeader> flushHeaders = new ArrayList<>();
+      final List<RefreshSegment> segments = new ArrayList<>();
+      for ( Member member : CacheControlImpl.findMeasures( region ) ) {
+        if ( !( member instanceof RolapStoredMeasure ) ) {
+          continue;
+        }
+        final RolapStar.Measure measure =
+          (RolapStar.Measure) ( (RolapStoredMeasure) member ).getStarMeasure();
+        final List<SegmentHeader> headers =
+          flushCommand.getIntersectingHeaders( Collections.singletonList( member ), refreshRegion );
+        final List<StarPredicate> regionPredicates =
+          measure.getAggregator().isDistributive()
+            && measure.getAggregator().getRollup().supportsFastAggregates( measure.getDatatype() )
+            ? toPredicates( measure.getStar(), refreshRegion )
+            : null;
+        for ( SegmentHeader header : headers ) {
+          final SegmentBuilder.SegmentConverter converter =
+            regionPredicates == null ? null : cacheMgr.getConverter( measure.getStar(), header );
+          if ( converter == null ) {
+            flushHeaders.add( header );
+          } else {
+            segments.add( new RefreshSegment( header, measure, converter, regionPredicates ) );
+          }
+        }
+      }
+      MondrianMetrics.SEGMENT_REFRESHES.get( "invalidated" ).add( flushHeaders.size() );
+      final FlushResult flushResult = flushCommand.flush( refreshRegion, starList, flushHeaders );
+      return new RefreshResult( flushResult.tasks, segments );
+    }
+
+    /**
+     * Converts a region into predicates on the columns of a star. Returns null if the region is empty, or if one of
+     * its columns is not constrained to a list of values or does not match exactly one column of the star.
+     */
+    private static List<StarPredicate> toPredicates( RolapStar star, SegmentColumn[] region ) {
+      if ( region.length == 0 ) {
+        return null;
+      }
+      final List<StarPredicate> predicates = new ArrayList<>();
+      for ( SegmentColumn segmentColumn : region ) {
+        if ( segmentColumn.values == null ) {
+          return null;
+        }
+        RolapStar.Column column = null;
+        for ( int i = 0; i < star.getColumnCount(); i++ ) {
+          final RolapStar.Column starColumn = star.getColumn( i );
+          if ( starColumn instanceof RolapStar.Measure
+            || starColumn.getExpression() == null
+            || !segmentColumn.columnExpression.equals( starColumn.getExpression().getGenericExpression() ) ) {
+            continue;
+          }
+          if ( column != null ) {
+            // The dimension is used more than once by the cube; we cannot
+            // tell which usage has new rows.
+            return null;
+          }
+          column = starColumn;
+        }
+        if ( column == null ) {
+          return null;
+        }
+        predicates.add( SegmentBuilder.toPredicate( column, segmentColumn.values ) );
+      }
+      return predicates;
+    }
+  }
+
+  /**
+   * Command to put the bodies of incrementally refreshed segments into the cache and the index.
+   */
+  private class RefreshSegmentsCommand extends Command<Integer> {
+    private final Locus locus;
+    private final Map<RefreshSegment, SegmentBody> mergedMap;
+    private final List<RefreshSegment> staleList;
+
+    RefreshSegmentsCommand(
+      Locus locus,
+      Map<RefreshSegment, SegmentBody> mergedMap,
+      List<RefreshSegment> staleList ) {
+      this.locus = locus;
+      this.mergedMap = mergedMap;
+      this.staleList = staleList;
+    }
+
+    public Integer call() {
+      int mergedCount = 0;
+      final List<SegmentHeader> removeList = new ArrayList<>();
+      for ( Map.Entry<RefreshSegment, SegmentBody> entry : mergedMap.entrySet() ) {
+        final SegmentHeader header = entry.getKey().header;
+        final SegmentBody body = entry.getValue();
+        final SegmentCacheIndex index = indexRegistry.getIndex( entry.getKey().measure.getStar() );
+        if ( !index.refreshSucceeded( header, body ) ) {
+          // The segment was flushed or is being loaded again.
+          removeList.add( header );
+          index.remove( header );
+          continue;
+        }
+        final MDCUtil mdc = new MDCUtil();
+        Util.safeGet(
+          cacheExecutor.submit(
+            () -> {
+              mdc.setContextMap();
+              try {
+                compositeCache.put( header, body );
+              } catch ( Exception e ) {
+                LOGGER.warn( "put segment failed: " + header, e );
+              }
+            } ),
+          "SegmentCacheManager.refresh" );
+        ++mergedCount;
+      }
+      for ( RefreshSegment segment : staleList ) {
+        removeList.add( segment.header );
+        indexRegistry.getIndex( segment.measure.getStar() ).remove( segment.header );
+      }
+      for ( final SegmentHeader header : removeList ) {
+        final MDCUtil mdc = new MDCUtil();
+        Util.safeGet(
+          cacheExecutor.submit(
+            () -> {
+              mdc.setContextMap();
+              try {
+                compositeCache.remove( header );
+              } catch ( Exception e ) {
+                LOGGER.warn( "remove header failed: " + header, e );
+              }
+            } ),
+          "SegmentCacheManager.refresh" );
+      }
+      MondrianMetrics.SEGMENT_REFRESHES.get( "merged" ).add( mergedCount );
+      MondrianMetrics.SEGMENT_REFRESHES.get( "invalidated" ).add( removeList.size() );
+      return mergedCount;
+    }
+
+    public Locus getLocus() {
+      return locus;
+    }
+  }
+
   private class PrintCacheStateCommand
     extends SegmentCacheManager.Command<Void> {
     private final PrintWriter pw;
@@ -973,6 +1260,42 @@ public class SegmentCacheManager {
     }
   }
 
+  /**
+   * Result of a {@link RefreshCommand}. Contains a list of tasks that must be executed by the caller (or by an executor)
+   * to flush the segments that cannot be refreshed from the external cache(s), and the segments to be refreshed by
+   * {@link SegmentCacheManager#refreshSegments}.
+   */
+  public static class RefreshResult {
+    public final List<Callable<Boolean>> tasks;
+    public final List<RefreshSegment> segments;
+
+    public RefreshResult( List<Callable<Boolean>> tasks, List<RefreshSegment> segments ) {
+      this.tasks = tasks;
+      this.segments = segments;
+    }
+  }
+
+  /**
+   * Segment to be refreshed incrementally, with what is needed to load the aggregates of its new rows.
+   */
+  public static class RefreshSegment {
+    public final SegmentHeader header;
+    final RolapStar.Measure measure;
+    final SegmentBuilder.SegmentConverter converter;
+    final List<StarPredicate> regionPredicates;
+
+    RefreshSegment(
+      SegmentHeader header,
+      RolapStar.Measure measure,
+      SegmentBuilder.SegmentConverter converter,
+      List<StarPredicate> regionPredicates ) {
+      this.header = header;
+      this.measure = measure;
+      this.converter = converter;
+      this.regionPredicates = regionPredicates;
+    }
+  }
+
   /**
    * Special exception, thrown only by {@link ShutdownCommand}, telling the actor to shut down.
    */
@@ -0,0 +1,518 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.MondrianServer;
+import mondrian.olap.Util;
+import mondrian.rolap.*;
+import mondrian.rolap.cache.SegmentCacheIndex;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.server.monitor.CacheWarmupEvent;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.util.ByteString;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Warms the segment cache of a schema from a workload profile.
+ *
+ * <p>A workload profile is the list of headers of the segments a schema has
+ * used most in the last {@link MondrianProperties#CacheWarmupWindow} hours,
+ * most used first, as reported by
+ * {@link SegmentCacheIndex#getMostUsed(long, int)}. {@link #save} writes it
+ * to a file in {@link MondrianProperties#CacheWarmupDirectory}; this
+ * happens when the schema is flushed, and when the JVM shuts down. Only
+ * headers are written, never data.
+ *
+ * <p>When the schema is next loaded, {@link #start} reads the profile and
+ * replays the loads through {@link SegmentLoader}, one segment at a time,
+ * pausing {@link MondrianProperties#CacheWarmupPause} milliseconds between
+ * segments, on a background thread. Segments that are already in the cache,
+ * or that no longer match the schema, are skipped. Progress is reported to
+ * the monitor as {@link CacheWarmupEvent}s.
+ *
+ * <p>A warm-up can be cancelled by calling {@link #cancel()}; it is cancelled
+ * automatically if its schema is flushed.
+ */
+public class SegmentCacheWarmer {
+    private static final Logger LOGGER =
+        LogManager.getLogger(SegmentCacheWarmer.class);
+
+    /**
+     * Executor that warms caches. Warm-ups are serialized, so that several
+     * schemas loading at once do not flood the database.
+     */
+    private static final ExecutorService WARMUP_EXECUTOR =
+        Util.getExecutorService(
+            1,
+            1,
+            1,
+            Util.newThreadFactory(
+                "mondrian.rolap.agg.SegmentCacheWarmer$warmupExecutor",
+                MondrianProperties.instance().VirtualThreads.get()),
+            null,
+            new LinkedBlockingQueue<Runnable>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(
+            new Thread("mondrian.rolap.agg.SegmentCacheWarmer$saver") {
+                public void run() {
+                    for (RolapSchema schema : RolapSchema.getRolapSchemas()) {
+                        try {
+                            save(schema);
+                        } catch (RuntimeException e) {
+                            LOGGER.debug(
+                                "Failed to save workload profile of schema "
+                                + schema.getName(), e);
+                        }
+                    }
+                }
+            });
+    }
+
+    private final RolapSchema schema;
+    private final SegmentCacheManager cacheMgr;
+    private final List<SegmentHeader> headers;
+    private final Execution execution;
+    private final Locus locus;
+    private final long startNanos = System.nanoTime();
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile int loadCount;
+    private volatile int skipCount;
+    private volatile int failureCount;
+
+    private SegmentCacheWarmer(
+        RolapSchema schema,
+        List<SegmentHeader> headers)
+    {
+        this.schema = schema;
+        this.cacheMgr = getCacheMgr(schema);
+        this.headers = headers;
+        this.execution =
+            new Execution(
+                schema.getInternalConnection().getInternalStatement(), 0);
+        this.locus =
+            new Locus(
+                execution,
+                "SegmentCacheWarmer",
+                "Error while warming segment cache");
+    }
+
+    /**
+     * Returns the file that holds the workload profile of a schema, or null
+     * if {@link MondrianProperties#CacheWarmupDirectory} is not set. The file
+     * is specific to the schema's name, content and database.
+     *
+     * @param schema Schema
+     * @return Profile file, or null
+     */
+    public static File getProfileFile(RolapSchema schema) {
+        final String directory =
+            MondrianProperties.instance().CacheWarmupDirectory.get();
+        if (directory == null || directory.length() == 0) {
+            return null;
+        }
+        // Catalogs may share a schema name, and one catalog may be used
+        // against several databases, so the name includes a digest of the
+        // schema's content and of its database.
+        final Util.PropertyList connectInfo =
+            schema.getInternalConnection().getConnectInfo();
+        final String key =
+            schema.getChecksum() + "\n"
+            + connectInfo.get(RolapConnectionProperties.Jdbc.name()) + "\n"
+            + connectInfo.get(RolapConnectionProperties.JdbcUser.name()) + "\n"
+            + connectInfo.get(RolapConnectionProperties.DataSource.name());
+        return new File(
+            directory,
+            schema.getName().replaceAll("[^A-Za-z0-9_.-]", "_") + "-"
+            + new ByteString(Util.digestSha256(key)).toString().substring(0, 16)
+            + ".segments");
+    }
+
+    /**
+     * Writes the workload profile of a schema. Does nothing if
+     * {@link MondrianProperties#CacheWarmupDirectory} is not set.
+     *
+     * @param schema Schema
+     * @return Number of segment headers written
+     */
+    public static int save(final RolapSchema schema) {
+        final File file = getProfileFile(schema);
+        if (file == null) {
+            return 0;
+        }
+        final MondrianProperties props = MondrianProperties.instance();
+        final long sinceMillis =
+            System.currentTimeMillis()
+            - props.CacheWarmupWindow.get() * 3600000L;
+        final int limit = props.CacheWarmupMaxSegments.get();
+        final SegmentCacheManager cacheMgr = getCacheMgr(schema);
+        final Locus locus =
+            new Locus(
+                new Execution(
+                    schema.getInternalConnection().getInternalStatement(), 0),
+                "SegmentCacheWarmer.save",
+                "Error while saving workload profile");
+        final List<List<SegmentHeader>> lists =
+            cacheMgr.execute(
+                new SegmentCacheManager.Command<List<List<SegmentHeader>>>() {
+                    public List<List<SegmentHeader>> call() {
+                        final List<List<SegmentHeader>> lists =
+                            new ArrayList<List<SegmentHeader>>();
+                        for (RolapStar star : schema.getStars()) {
+                            lists.add(
+                                cacheMgr.getIndexRegistry().getIndex(star)
+                                    .getMostUsed(sinceMillis, limit));
+                        }
+                        return lists;
+                    }
+
+                    public Locus getLocus() {
+                        return locus;
+                    }
+                });
+
+        // Each star's headers are in order of use; take from each star in
+        // turn. Headers with compound predicates cannot be replayed.
+        final ArrayList<SegmentHeader> headers = new ArrayList<SegmentHeader>();
+        for (int i = 0; headers.size() < limit; i++) {
+            boolean found = false;
+            for (List<SegmentHeader> list : lists) {
+                if (i < list.size() && headers.size() < limit) {
+                    found = true;
+                    if (list.get(i).compoundPredicates.isEmpty()) {
+                        headers.add(list.get(i));
+                    }
+                }
+            }
+            if (!found) {
+                break;
+            }
+        }
+
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Util.discard(file.getAbsoluteFile().getParentFile().mkdirs());
+            final ObjectOutputStream out =
+                new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeObject(headers);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                Util.discard(file.delete());
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("cannot rename " + tempFile);
+                }
+            }
+        } catch (IOException e) {
+            throw Util.newError(
+                e, "while writing workload profile " + file);
+        }
+        return headers.size();
+    }
+
+    /**
+     * Reads a workload profile.
+     *
+     * @param file File
+     * @return Segment headers, most used first
+     * @throws IOException if the file cannot be read
+     */
+    static List<SegmentHeader> read(File file) throws IOException {
+        final ObjectInputStream in =
+            new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            final Object o = in.readObject();
+            final List<SegmentHeader> headers = new ArrayList<SegmentHeader>();
+            for (Object header : (List<?>) o) {
+                headers.add((SegmentHeader) header);
+            }
+            return headers;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } catch (ClassCastException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Starts warming the segment cache of a schema, if it has a workload
+     * profile.
+     *
+     * @param schema Schema
+     * @return Warm-up, or null if there is nothing to warm
+     */
+    public static SegmentCacheWarmer start(RolapSchema schema) {
+        final File file = getProfileFile(schema);
+        if (file == null || !file.exists()
+            || MondrianProperties.instance().DisableCaching.get())
+        {
+            return null;
+        }
+        final List<SegmentHeader> headers;
+        try {
+            headers = read(file);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read workload profile " + file, e);
+            return null;
+        }
+        // Headers of a different version of the schema cannot be replayed.
+        for (Iterator<SegmentHeader> iterator = headers.iterator();
+            iterator.hasNext();)
+        {
+            final SegmentHeader header = iterator.next();
+            if (!header.schemaChecksum.equals(schema.getChecksum())
+                || !header.compoundPredicates.isEmpty())
+            {
+                iterator.remove();
+            }
+        }
+        if (headers.isEmpty()) {
+            return null;
+        }
+        final SegmentCacheWarmer warmer =
+            new SegmentCacheWarmer(schema, headers);
+        WARMUP_EXECUTOR.submit(
+            new Runnable() {
+                public void run() {
+                    warmer.run();
+                }
+            });
+        return warmer;
+    }
+
+    /**
+     * Cancels this warm-up. The segment being loaded, if any, is abandoned,
+     * and no further segments are loaded.
+     */
+    public void cancel() {
+        cancelled = true;
+        execution.cancelSqlStatements();
+    }
+
+    /**
+     * Returns whether this warm-up has finished or been cancelled.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the number of segments in the workload profile.
+     */
+    public int getSegmentCount() {
+        return headers.size();
+    }
+
+    /**
+     * Returns the number of segments loaded so far.
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Returns the number of segments skipped so far.
+     */
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * Returns the number of segments whose load failed so far.
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    private void run() {
+        sendEvent(CacheWarmupEvent.State.RUNNING);
+        final int pause = MondrianProperties.instance().CacheWarmupPause.get();
+        try {
+            for (SegmentHeader header : headers) {
+                if (cancelled) {
+                    break;
+                }
+                try {
+                    if (warm(header)) {
+                        ++loadCount;
+                    } else {
+                        ++skipCount;
+                    }
+                } catch (RuntimeException e) {
+                    ++failureCount;
+                    LOGGER.debug("Failed to warm segment " + header, e);
+                }
+                sendEvent(CacheWarmupEvent.State.RUNNING);
+                if (pause > 0 && !cancelled) {
+                    Thread.sleep(pause);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+        } finally {
+            execution.unregisterSegmentRequests();
+            done = true;
+            sendEvent(
+                cancelled
+                    ? CacheWarmupEvent.State.CANCELLED
+                    : CacheWarmupEvent.State.FINISHED);
+        }
+    }
+
+    /**
+     * Loads the segment described by a header, unless it is already in the
+     * cache or no longer matches the schema.
+     *
+     * @param header Segment header
+     * @return Whether segment was loaded
+     */
+    private boolean warm(SegmentHeader header) {
+        final RolapStar star = schema.getStar(header.rolapStarFactTableName);
+        if (star == null) {
+            return false;
+        }
+        RolapStar.Measure measure = null;
+        for (RolapStar.Column column : star.getFactTable().getColumns()) {
+            if (column instanceof RolapStar.Measure
+                && column.getName().equals(header.measureName)
+                && ((RolapStar.Measure) column).getCubeName().equals(
+                    header.cubeName))
+            {
+                measure = (RolapStar.Measure) column;
+            }
+        }
+        if (measure == null) {
+            return false;
+        }
+        // Bit positions depend on the order in which the star's columns were
+        // created, which may differ from the run that saved the profile, so
+        // check that each position still holds the same column.
+        final BitKey levelBitKey = header.getConstrainedColumnsBitKey();
+        final List<SegmentColumn> segmentColumns =
+            header.getConstrainedColumns();
+        final List<RolapStar.Column> columnList =
+            new ArrayList<RolapStar.Column>();
+        for (int bit : levelBitKey) {
+            if (bit >= star.getColumnCount()
+                || columnList.size() >= segmentColumns.size())
+            {
+                return false;
+            }
+            final RolapStar.Column column = star.getColumn(bit);
+            if (column.getExpression() == null
+                || !column.getExpression().getGenericExpression().equals(
+                    segmentColumns.get(columnList.size()).columnExpression))
+            {
+                return false;
+            }
+            columnList.add(column);
+        }
+        if (columnList.size() != segmentColumns.size()) {
+            return false;
+        }
+        final RolapStar.Column[] columns =
+            columnList.toArray(new RolapStar.Column[columnList.size()]);
+        final Segment segment =
+            SegmentBuilder.toSegment(
+                header, star, levelBitKey, columns, measure,
+                Collections.<StarPredicate>emptyList());
+        final BitKey measureBitKey =
+            BitKey.Factory.makeBitKey(star.getColumnCount());
+        measureBitKey.set(measure.getBitPosition());
+        final GroupingSet groupingSet =
+            new GroupingSet(
+                Collections.singletonList(segment),
+                levelBitKey,
+                measureBitKey,
+                segment.predicates,
+                columns);
+
+        final List<Future<Map<Segment, SegmentWithData>>> futures =
+            cacheMgr.execute(
+                new SegmentCacheManager.Command<
+                    List<Future<Map<Segment, SegmentWithData>>>>()
+                {
+                    public List<Future<Map<Segment, SegmentWithData>>> call()
+                    {
+                        final SegmentCacheIndex index =
+                            cacheMgr.getIndexRegistry().getIndex(star);
+                        if (index.contains(segment.getHeader())) {
+                            return null;
+                        }
+                        final List<Future<Map<Segment, SegmentWithData>>>
+                            futures =
+                            new ArrayList<
+                                Future<Map<Segment, SegmentWithData>>>();
+                        new SegmentLoader(cacheMgr).load(
+                            0,
+                            new ArrayList<GroupingSet>(
+                                Collections.singletonList(groupingSet)),
+                            Collections.<StarPredicate>emptyList(),
+                            futures);
+                        return futures;
+                    }
+
+                    public Locus getLocus() {
+                        return locus;
+                    }
+                });
+        if (futures == null) {
+            return false;
+        }
+        for (Future<Map<Segment, SegmentWithData>> future : futures) {
+            Util.discard(Util.safeGet(future, "SegmentCacheWarmer.warm"));
+        }
+        return true;
+    }
+
+    private void sendEvent(CacheWarmupEvent.State state) {
+        final MondrianServer server =
+            MondrianServer.forConnection(schema.getInternalConnection());
+        server.getMonitor().sendEvent(
+            new CacheWarmupEvent(
+                System.currentTimeMillis(),
+                server.getId(),
+                schema.getId(),
+                schema.getName(),
+                state,
+                headers.size(),
+                loadCount,
+                skipCount,
+                failureCount,
+                System.nanoTime() - startNanos));
+    }
+
+    private static SegmentCacheManager getCacheMgr(RolapSchema schema) {
+        return MondrianServer.forConnection(schema.getInternalConnection())
+            .getAggregationManager().getCacheMgr();
+    }
+}
+
+// End SegmentCacheWarmer.java
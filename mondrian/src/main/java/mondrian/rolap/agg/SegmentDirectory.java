@@ -0,0 +1,270 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.rolap.*;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * Directory of the segments in the local cache of an execution, hashed by
+ * constrained columns and measure, from which a cell can be read without
+ * allocating.
+ *
+ * <p>Reading a cached cell is the most frequent operation of a query whose
+ * segments are all in cache. It used to scan every segment of the star,
+ * create an {@link AggregationKey} to match each against, and create a
+ * {@link CellKey} to look up the cell. {@link #getCellValue} goes directly to
+ * the segments that have the request's {@link BitKey} and measure, compares
+ * compound predicates without an {@link AggregationKey}, and probes each
+ * segment using a cell key that is reused for every request of the same
+ * arity.
+ *
+ * <p>A segment of doubles or ints boxes the value of a cell each time it is
+ * read. The directory remembers recently read cells, so that reading a cell
+ * again returns the same object without boxing, or probing the segment's
+ * axes, again.
+ *
+ * <p>Segments are held by soft references, as before; entries whose segment
+ * has been garbage-collected are removed when their bucket is next read.
+ *
+ * <p>Like {@link RolapStar.Bar}, which owns it, a directory belongs to one
+ * execution (or one thread, if there is no execution), is used by one thread
+ * at a time, and is not thread-safe.
+ *
+ * @see RolapStar#getCellFromCache
+ */
+public class SegmentDirectory {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Number of recently read cells remembered; a power of 2. */
+    private static final int RECENT_CELL_COUNT = 256;
+
+    private Bucket[] table = new Bucket[INITIAL_CAPACITY];
+    private int bucketCount;
+
+    /** Reusable cell keys, indexed by arity. */
+    private CellKey[] cellKeys = new CellKey[0];
+
+    /*
+     * Recently read cells: segment, values of the constrained columns, and
+     * cell value. A cell goes into the slot given by hashing its segment and
+     * values, replacing any cell already there.
+     */
+    private final SegmentWithData[] recentSegments =
+        new SegmentWithData[RECENT_CELL_COUNT];
+    private final Object[][] recentKeys = new Object[RECENT_CELL_COUNT][];
+    private final Object[] recentValues = new Object[RECENT_CELL_COUNT];
+
+    /**
+     * Adds a segment to this directory.
+     *
+     * @param segment Segment
+     */
+    public void register(SegmentWithData segment) {
+        final BitKey bitKey = segment.getConstrainedColumnsBitKey();
+        final RolapStar.Measure measure = segment.measure;
+        Bucket bucket = lookup(bitKey, measure);
+        if (bucket == null) {
+            if (bucketCount >= table.length * 3 / 4) {
+                rehash();
+            }
+            final int hash = hash(bitKey, measure);
+            final int index = hash & (table.length - 1);
+            bucket = new Bucket(bitKey, measure, hash, table[index]);
+            table[index] = bucket;
+            ++bucketCount;
+        }
+        bucket.add(segment);
+    }
+
+    /**
+     * Removes all segments from this directory.
+     */
+    public void clear() {
+        Arrays.fill(table, null);
+        bucketCount = 0;
+        Arrays.fill(recentSegments, null);
+        Arrays.fill(recentValues, null);
+    }
+
+    /**
+     * Retrieves the value of the cell identified by a cell request, if a
+     * segment in this directory contains it.
+     *
+     * <p>Does not allocate memory, provided that the request's values have
+     * already been computed (see {@link CellRequest#getSingleValues()}), that
+     * the segment has been pinned before, and that the segment holds objects
+     * or the cell has been read recently.
+     *
+     * @param request Cell request
+     * @param pinSet Set into which to pin the segment that holds the cell;
+     *   or null
+     * @return Cell value, or {@link mondrian.olap.Util#nullValue} if the cell
+     *   value is null, or null if no segment contains the cell
+     */
+    public Object getCellValue(
+        CellRequest request,
+        RolapAggregationManager.PinSet pinSet)
+    {
+        final Bucket bucket =
+            lookup(request.getConstrainedColumnsBitKey(), request.getMeasure());
+        if (bucket == null) {
+            return null;
+        }
+        final Object[] keys = request.getSingleValues();
+        final CellKey cellKey = cellKey(keys.length);
+        // Performance critical: cannot use foreach
+        for (int i = 0; i < bucket.count;) {
+            final SegmentWithData segment = bucket.refs[i].get();
+            if (segment == null) {
+                bucket.remove(i);
+                continue;
+            }
+            ++i;
+            if (!segment.matches(request)) {
+                // Different compound predicates.
+                continue;
+            }
+            final Object o = getCellValue(segment, keys, cellKey);
+            if (o != null) {
+                if (pinSet != null) {
+                    ((AggregationManager.PinSetImpl) pinSet).add(segment);
+                }
+                return o;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a cell from a segment, or from the recently read cells.
+     */
+    private Object getCellValue(
+        SegmentWithData segment,
+        Object[] keys,
+        CellKey cellKey)
+    {
+        int h = System.identityHashCode(segment) * 31 + Arrays.hashCode(keys);
+        h ^= h >>> 16;
+        final int slot = h & (RECENT_CELL_COUNT - 1);
+        if (recentSegments[slot] == segment
+            && Arrays.equals(recentKeys[slot], keys))
+        {
+            return recentValues[slot];
+        }
+        final Object o = segment.getCellValue(keys, cellKey);
+        if (o != null) {
+            Object[] recentKey = recentKeys[slot];
+            if (recentKey == null || recentKey.length != keys.length) {
+                recentKey = new Object[keys.length];
+                recentKeys[slot] = recentKey;
+            }
+            System.arraycopy(keys, 0, recentKey, 0, keys.length);
+            recentSegments[slot] = segment;
+            recentValues[slot] = o;
+        }
+        return o;
+    }
+
+    private Bucket lookup(BitKey bitKey, RolapStar.Measure measure) {
+        final int hash = hash(bitKey, measure);
+        for (Bucket bucket = table[hash & (table.length - 1)];
+            bucket != null;
+            bucket = bucket.next)
+        {
+            if (bucket.hash == hash
+                && bucket.measure == measure
+                && bucket.bitKey.equals(bitKey))
+            {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private static int hash(BitKey bitKey, RolapStar.Measure measure) {
+        final int h = bitKey.hashCode() * 31
+            + System.identityHashCode(measure);
+        // Spread the high bits, as the table is indexed by the low bits.
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+        final Bucket[] oldTable = table;
+        table = new Bucket[oldTable.length * 2];
+        for (Bucket bucket : oldTable) {
+            while (bucket != null) {
+                final Bucket next = bucket.next;
+                final int index = bucket.hash & (table.length - 1);
+                bucket.next = table[index];
+                table[index] = bucket;
+                bucket = next;
+            }
+        }
+    }
+
+    private CellKey cellKey(int arity) {
+        if (arity >= cellKeys.length) {
+            cellKeys = Arrays.copyOf(cellKeys, arity + 1);
+        }
+        CellKey cellKey = cellKeys[arity];
+        if (cellKey == null) {
+            cellKey = CellKey.Generator.newCellKey(arity);
+            cellKeys[arity] = cellKey;
+        }
+        return cellKey;
+    }
+
+    /**
+     * Segments that have a given BitKey and measure.
+     */
+    private static class Bucket {
+        final BitKey bitKey;
+        final RolapStar.Measure measure;
+        final int hash;
+        Bucket next;
+
+        @SuppressWarnings("unchecked")
+        SoftReference<SegmentWithData>[] refs = new SoftReference[2];
+        int count;
+
+        Bucket(
+            BitKey bitKey,
+            RolapStar.Measure measure,
+            int hash,
+            Bucket next)
+        {
+            this.bitKey = bitKey;
+            this.measure = measure;
+            this.hash = hash;
+            this.next = next;
+        }
+
+        void add(SegmentWithData segment) {
+            if (count == refs.length) {
+                refs = Arrays.copyOf(refs, count * 2);
+            }
+            refs[count++] = new SoftReference<SegmentWithData>(segment);
+        }
+
+        void remove(int i) {
+            System.arraycopy(refs, i + 1, refs, i, count - i - 1);
+            refs[--count] = null;
+        }
+    }
+}
+
+// End SegmentDirectory.java
@@ -22,10 +22,14 @@ import mondrian.rolap.agg.SegmentCacheManager.AbortException;
 import mondrian.rolap.cache.SegmentCacheIndex;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
+import mondrian.server.monitor.MondrianMetrics;
 import mondrian.server.monitor.SqlStatementEvent;
 import mondrian.spi.*;
 import mondrian.util.*;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.sql.ResultSet;
@@ -54,6 +58,7 @@ import java.util.concurrent.*;
  * @since 24 May 2007
  */
 public class SegmentLoader {
+  private static final Logger LOGGER = LogManager.getLogger( SegmentLoader.class );
 
   private final SegmentCacheManager cacheMgr;
 
@@ -129,6 +134,7 @@ public class SegmentLoader {
     private final List<GroupingSet> groupingSets;
     private final List<StarPredicate> compoundPredicateList;
     private final MDCUtil mdc = new MDCUtil();
+    private final long createNanos = System.nanoTime();
 
     public SegmentLoadCommand( Locus locus, SegmentLoader segmentLoader, int cellRequestCount,
         List<GroupingSet> groupingSets, List<StarPredicate> compoundPredicateList ) {
@@ -141,15 +147,72 @@ public class SegmentLoader {
 
     public Map<Segment, SegmentWithData> call() throws Exception {
       mdc.setContextMap();
-      Locus.push( locus );
+      final Locus queuedLocus = new SqlStatement.QueuedLocus( locus, System.nanoTime() - createNanos );
+      Locus.push( queuedLocus );
       try {
         return segmentLoader.loadImpl( cellRequestCount, groupingSets, compoundPredicateList );
       } finally {
-        Locus.pop( locus );
+        Locus.pop( queuedLocus );
+        MDCUtil.clearContextMap();
       }
     }
   }
 
+  /**
+   * Loads one partition of a segment, on a SQL thread or on the thread that loads the segment.
+   */
+  private static class PartitionLoadCommand implements Callable<PartitionData> {
+    private final Locus locus;
+    private final SegmentLoader segmentLoader;
+    private final int cellRequestCount;
+    private final GroupingSetsList groupingSetsList;
+    private final GroupingSetsList partition;
+    private final List<StarPredicate> compoundPredicateList;
+    private final MDCUtil mdc = new MDCUtil();
+    private final Thread createThread = Thread.currentThread();
+    private final long createNanos = System.nanoTime();
+
+    PartitionLoadCommand( Locus locus, SegmentLoader segmentLoader, int cellRequestCount,
+        GroupingSetsList groupingSetsList, GroupingSetsList partition, List<StarPredicate> compoundPredicateList ) {
+      this.locus = locus;
+      this.segmentLoader = segmentLoader;
+      this.cellRequestCount = cellRequestCount;
+      this.groupingSetsList = groupingSetsList;
+      this.partition = partition;
+      this.compoundPredicateList = compoundPredicateList;
+    }
+
+    public PartitionData call() {
+      mdc.setContextMap();
+      // A partition that the loading thread runs itself did not wait for a SQL thread.
+      final Locus partitionLocus =
+          Thread.currentThread() == createThread ? locus : new SqlStatement.QueuedLocus( locus, System.nanoTime()
+              - createNanos );
+      Locus.push( partitionLocus );
+      try {
+        return segmentLoader.loadPartition( cellRequestCount, groupingSetsList, partition, compoundPredicateList );
+      } finally {
+        Locus.pop( partitionLocus );
+        MDCUtil.clearContextMap();
+      }
+    }
+  }
+
+  /**
+   * Rows read by one partition of a segment load, and the distinct values of each axis.
+   */
+  private static class PartitionData {
+    final RowList rows;
+    final boolean[] axisContainsNull;
+    final SortedSet<Comparable>[] axisValueSets;
+
+    PartitionData( RowList rows, boolean[] axisContainsNull, SortedSet<Comparable>[] axisValueSets ) {
+      this.rows = rows;
+      this.axisContainsNull = axisContainsNull;
+      this.axisValueSets = axisValueSets;
+    }
+  }
+
   private Map<Segment, SegmentWithData> loadImpl( int cellRequestCount, List<GroupingSet> groupingSets,
       List<StarPredicate> compoundPredicateList ) {
     SqlStatement stmt = null;
@@ -162,16 +225,36 @@ public class SegmentLoader {
       int arity = defaultColumns.length;
       SortedSet<Comparable>[] axisValueSets = getDistinctValueWorkspace( arity );
 
-      stmt = createExecuteSql( cellRequestCount, groupingSetsList, compoundPredicateList );
+      boolean[] axisContainsNull = new boolean[arity];
 
-      if ( stmt == null ) {
-        // Nothing to do. We're done here.
-        return segmentMap;
-      }
+      // If an in-memory aggregate can answer, there is no need for SQL.
+      final MemoryAggregate memoryAggregate =
+          groupingSetsList.getStar().getMemoryAggregates().find( groupingSetsList, compoundPredicateList );
+      RowList rows =
+          memoryAggregate == null ? null : memoryAggregate.answer( groupingSetsList, axisContainsNull, axisValueSets );
+
+      // A large segment may be read by several statements in parallel.
+      final List<GroupingSetsList> partitions = rows == null ? partition( groupingSetsList ) : null;
+      if ( partitions != null ) {
+        rows =
+            loadPartitions( cellRequestCount, groupingSetsList, partitions, compoundPredicateList, axisContainsNull,
+                axisValueSets );
+        if ( rows == null ) {
+          // Nothing to do. We're done here.
+          return segmentMap;
+        }
+      } else if ( rows == null ) {
+        final long startNanos = System.nanoTime();
+        stmt = createExecuteSql( cellRequestCount, groupingSetsList, compoundPredicateList );
 
-      boolean[] axisContainsNull = new boolean[arity];
+        if ( stmt == null ) {
+          // Nothing to do. We're done here.
+          return segmentMap;
+        }
 
-      RowList rows = processData( stmt, axisContainsNull, axisValueSets, groupingSetsList );
+        rows = processData( stmt, axisContainsNull, axisValueSets, groupingSetsList );
+        recordRequests( groupingSetsList, rows.size(), System.nanoTime() - startNanos );
+      }
 
       boolean sparse = setAxisDataAndDecideSparseUse( axisValueSets, axisContainsNull, groupingSetsList, rows );
 
@@ -198,6 +281,261 @@ public class SegmentLoader {
     }
   }
 
+  /**
+   * Splits the load of a segment into partitions, if it is large enough to be worth reading with several statements in
+   * parallel. Returns null if the segment is to be read by one statement.
+   *
+   * <p>
+   * A load is partitioned if {@link MondrianProperties#SegmentLoadPartitionRows} is positive, the load is not a
+   * grouping-sets statement, and the estimated number of rows (the product of the number of values of each column) is at
+   * least that threshold. The column constrained to the most values is split into
+   * {@link MondrianProperties#SegmentLoadPartitions} contiguous ranges of those values. Each partition has copies of the
+   * segments, with the narrower predicate, from which its SQL is generated; the copies are not registered anywhere.
+   *
+   * @param groupingSetsList
+   *          Grouping sets to load
+   * @return List of partitions, or null
+   */
+  List<GroupingSetsList> partition( GroupingSetsList groupingSetsList ) {
+    final MondrianProperties properties = MondrianProperties.instance();
+    final int threshold = properties.SegmentLoadPartitionRows.get();
+    final int maxPartitions = properties.SegmentLoadPartitions.get();
+    if ( threshold <= 0 || maxPartitions <= 1 || groupingSetsList.useGroupingSets() ) {
+      return null;
+    }
+    final GroupingSet groupingSet = groupingSetsList.getGroupingSets().get( 0 );
+    final StarColumnPredicate[] predicates = groupingSet.getPredicates();
+    final RolapStar.Column[] columns = groupingSet.getColumns();
+    long rowCount = 1;
+    for ( int j = 0; j < predicates.length; j++ ) {
+      final long valueCount;
+      if ( predicates[j] instanceof ListColumnPredicate ) {
+        valueCount = ( (ListColumnPredicate) predicates[j] ).getPredicates().size();
+      } else if ( predicates[j] instanceof ValueColumnPredicate ) {
+        valueCount = 1;
+      } else {
+        valueCount = Math.max( 1L, columns[j].getCardinality() );
+      }
+      rowCount = rowCount > Long.MAX_VALUE / Math.max( 1L, valueCount ) ? Long.MAX_VALUE : rowCount * Math.max( 1L,
+          valueCount );
+    }
+    final int splitColumn = ListColumnPredicate.findLongest( predicates );
+    final int partitionCount =
+        splitColumn < 0 ? 0 : Math.min( maxPartitions, ( (ListColumnPredicate) predicates[splitColumn] ).getPredicates()
+            .size() );
+    if ( rowCount < threshold || partitionCount <= 1 ) {
+      return null;
+    }
+    final List<GroupingSetsList> partitions = new ArrayList<GroupingSetsList>( partitionCount );
+    for ( StarColumnPredicate[] partitionPredicates : ListColumnPredicate.partition( predicates, splitColumn,
+        partitionCount ) ) {
+      final List<Segment> segments = new ArrayList<Segment>();
+      for ( Segment segment : groupingSet.getSegments() ) {
+        segments.add( new Segment( segment.star, segment.getConstrainedColumnsBitKey(), segment.getColumns(),
+            segment.measure, partitionPredicates, segment.getExcludedRegions(), segment.getCompoundPredicateList() ) );
+      }
+      partitions.add( new GroupingSetsList( Collections.singletonList( new GroupingSet( segments, groupingSet
+          .getLevelBitKey(), groupingSet.getMeasureBitKey(), partitionPredicates, columns ) ) ) );
+    }
+    if ( LOGGER.isDebugEnabled() ) {
+      LOGGER.debug( "Loading segment in " + partitionCount + " partitions on column " + columns[splitColumn]
+          + "; estimated rows " + rowCount );
+    }
+    return partitions;
+  }
+
+  /**
+   * Reads the partitions of a segment load, in parallel, and merges their rows.
+   *
+   * <p>
+   * The partitions other than the first are submitted to the SQL executor, so that each runs on its own thread and
+   * connection. This thread reads the first partition, then runs any partition that no SQL thread has started yet
+   * (so that it never waits for work queued behind it), then waits for the rest.
+   *
+   * @param cellRequestCount
+   *          Number of missed cells that led to this request
+   * @param groupingSetsList
+   *          Grouping sets being loaded
+   * @param partitions
+   *          Partitions, as returned by {@link #partition(GroupingSetsList)}
+   * @param compoundPredicateList
+   *          Compound predicates
+   * @param axisContainsNull
+   *          Whether each axis contains null; populated by this method
+   * @param axisValueSets
+   *          Distinct values of each axis; populated by this method
+   * @return Rows of all partitions, or null if the segments are no longer wanted
+   */
+  private RowList loadPartitions( int cellRequestCount, GroupingSetsList groupingSetsList,
+      List<GroupingSetsList> partitions, List<StarPredicate> compoundPredicateList, boolean[] axisContainsNull,
+      SortedSet<Comparable>[] axisValueSets ) {
+    final Locus locus = Locus.peek();
+    final List<FutureTask<PartitionData>> tasks = new ArrayList<FutureTask<PartitionData>>();
+    for ( GroupingSetsList partition : partitions ) {
+      tasks.add( new FutureTask<PartitionData>( new PartitionLoadCommand( locus, this, cellRequestCount,
+          groupingSetsList, partition, compoundPredicateList ) ) );
+    }
+    for ( FutureTask<PartitionData> task : tasks.subList( 1, tasks.size() ) ) {
+      try {
+        cacheMgr.sqlExecutor.execute( task );
+      } catch ( RejectedExecutionException e ) {
+        // This thread will run the task.
+      }
+    }
+    RowList rows = null;
+    try {
+      for ( FutureTask<PartitionData> task : tasks ) {
+        // Does nothing if a SQL thread has already started the task.
+        task.run();
+        final PartitionData data = Util.safeGet( task, "Loading segment partition via SQL" );
+        if ( data == null ) {
+          return null;
+        }
+        for ( int i = 0; i < axisValueSets.length; i++ ) {
+          axisValueSets[i].addAll( data.axisValueSets[i] );
+          axisContainsNull[i] |= data.axisContainsNull[i];
+        }
+        if ( rows == null ) {
+          rows = data.rows;
+        } else {
+          rows.addAll( data.rows );
+          checkResultLimit( rows.size() );
+        }
+      }
+      MondrianMetrics.SEGMENT_LOAD_PARTITIONS.get().add( tasks.size() );
+      return rows;
+    } finally {
+      // If a partition failed, or the segments are no longer wanted, do not
+      // leave the other statements running.
+      for ( FutureTask<PartitionData> task : tasks ) {
+        task.cancel( true );
+      }
+    }
+  }
+
+  /**
+   * Reads the rows of one partition of a segment load.
+   *
+   * @param cellRequestCount
+   *          Number of missed cells that led to this request
+   * @param groupingSetsList
+   *          Grouping sets being loaded; the statement is linked to their segments, so that it is canceled if they are
+   * @param partition
+   *          Partition, from which the SQL is generated
+   * @param compoundPredicateList
+   *          Compound predicates
+   * @return Rows and axis values of the partition, or null if the segments are no longer wanted
+   */
+  private PartitionData loadPartition( int cellRequestCount, GroupingSetsList groupingSetsList,
+      GroupingSetsList partition, List<StarPredicate> compoundPredicateList ) {
+    SqlStatement stmt = null;
+    try {
+      final long startNanos = System.nanoTime();
+      stmt = createExecuteSql( cellRequestCount, groupingSetsList, partition, compoundPredicateList );
+      if ( stmt == null ) {
+        return null;
+      }
+      final int arity = partition.getDefaultColumns().length;
+      final boolean[] axisContainsNull = new boolean[arity];
+      final SortedSet<Comparable>[] axisValueSets = getDistinctValueWorkspace( arity );
+      final RowList rows = processData( stmt, axisContainsNull, axisValueSets, partition );
+      recordRequests( partition, rows.size(), System.nanoTime() - startNanos );
+      return new PartitionData( rows, axisContainsNull, axisValueSets );
+    } catch ( Throwable e ) {
+      if ( stmt == null ) {
+        throw new MondrianException( e );
+      }
+      throw stmt.handle( e );
+    } finally {
+      if ( stmt != null ) {
+        stmt.close();
+      }
+    }
+  }
+
+  /**
+   * Loads the cells of some cached segments that lie within a region, for an incremental refresh. The segments differ
+   * only in their measures, and are read by one statement whose WHERE clause has the segments' predicates and the
+   * region's. The segments are not registered in the index, and the statement is registered with the current
+   * execution, so that it is canceled if the execution is.
+   *
+   * @param segments
+   *          Segments; they must have the same star, columns and predicates
+   * @param compoundPredicateList
+   *          Compound predicates of the segments, plus the predicates of the region
+   * @return Body of each segment's cells within the region, in the same order as the segments
+   */
+  List<SegmentBody> loadDelta( List<Segment> segments, List<StarPredicate> compoundPredicateList ) {
+    final Segment segment0 = segments.get( 0 );
+    final BitKey measureBitKey = segment0.getConstrainedColumnsBitKey().emptyCopy();
+    for ( Segment segment : segments ) {
+      measureBitKey.set( segment.measure.getBitPosition() );
+    }
+    final GroupingSetsList groupingSetsList =
+        new GroupingSetsList( Collections.singletonList( new GroupingSet( segments, segment0
+            .getConstrainedColumnsBitKey(), measureBitKey, segment0.predicates, segment0.getColumns() ) ) );
+    SqlStatement stmt = null;
+    try {
+      final Pair<String, List<SqlStatement.Type>> pair =
+          AggregationManager.generateSql( groupingSetsList, compoundPredicateList );
+      final Locus locus =
+          new SqlStatement.StatementLocus( Locus.peek().execution, "Segment.refresh",
+              "Error while refreshing segment", SqlStatementEvent.Purpose.CELL_SEGMENT, 0 );
+      stmt =
+          RolapUtil.executeQuery( segment0.star.getDataSource(), pair.left, pair.right, 0, 0, locus, -1, -1,
+              new Util.Functor1<Void, Statement>() {
+                public Void apply( Statement stmt ) {
+                  locus.execution.registerStatement( locus, stmt );
+                  return null;
+                }
+              } );
+      final int arity = segment0.getColumns().length;
+      final boolean[] axisContainsNull = new boolean[arity];
+      final SortedSet<Comparable>[] axisValueSets = getDistinctValueWorkspace( arity );
+      final RowList rows = processData( stmt, axisContainsNull, axisValueSets, groupingSetsList );
+      final boolean sparse = setAxisDataAndDecideSparseUse( axisValueSets, axisContainsNull, groupingSetsList, rows );
+      final Map<BitKey, GroupingSetsList.Cohort> datasetsMap =
+          createDataSetsForGroupingSets( groupingSetsList, sparse, rows.getTypes().subList( arity, rows.getTypes()
+              .size() ) );
+      loadDataToDataSets( groupingSetsList, rows, datasetsMap );
+      final GroupingSetsList.Cohort cohort = datasetsMap.get( BitKey.EMPTY );
+      final List<SegmentBody> bodies = new ArrayList<SegmentBody>( segments.size() );
+      for ( SegmentDataset dataset : cohort.segmentDatasetList ) {
+        bodies.add( createSegmentBody( dataset, cohort.axes ) );
+      }
+      return bodies;
+    } catch ( Throwable e ) {
+      if ( stmt == null ) {
+        throw new MondrianException( e );
+      }
+      throw stmt.handle( e );
+    } finally {
+      if ( stmt != null ) {
+        stmt.close();
+      }
+    }
+  }
+
+  /**
+   * Records the grouping sets just read from SQL in the star's {@link SegmentRequestLog}. If the statement read several
+   * grouping sets, its rows and time are divided between them equally.
+   *
+   * @param groupingSetsList
+   *          Grouping sets
+   * @param rowCount
+   *          Number of rows read
+   * @param sqlNanos
+   *          Time spent executing the statement and reading its rows
+   */
+  private void recordRequests( GroupingSetsList groupingSetsList, int rowCount, long sqlNanos ) {
+    final List<GroupingSet> groupingSets = groupingSetsList.getGroupingSets();
+    final SegmentRequestLog log = groupingSetsList.getStar().getSegmentRequestLog();
+    final int n = groupingSets.size();
+    for ( GroupingSet groupingSet : groupingSets ) {
+      log.record( groupingSet.getLevelBitKey(), groupingSet.getMeasureBitKey(), rowCount / n, sqlNanos / n );
+    }
+  }
+
   /**
    * Called when a segment has been loaded from SQL, to put into the segment index and the external cache.
    *
@@ -342,16 +680,7 @@ public class SegmentLoader {
         segmentSlotMap.put( segment, segmentWithData );
 
         final SegmentHeader header = segmentWithData.getHeader();
-        final SegmentBody body =
-            segmentWithData.getData().createSegmentBody( new AbstractList<Pair<SortedSet<Comparable>, Boolean>>() {
-              public Pair<SortedSet<Comparable>, Boolean> get( int index ) {
-                return segmentWithData.axes[index].getValuesAndIndicator();
-              }
-
-              public int size() {
-                return segmentWithData.axes.length;
-              }
-            } );
+        final SegmentBody body = createSegmentBody( segmentWithData.getData(), segmentWithData.axes );
 
         // Send a message to the agg manager. It will place the segment
         // in the index.
@@ -360,6 +689,18 @@ public class SegmentLoader {
     }
   }
 
+  private static SegmentBody createSegmentBody( SegmentDataset dataset, final SegmentAxis[] axes ) {
+    return dataset.createSegmentBody( new AbstractList<Pair<SortedSet<Comparable>, Boolean>>() {
+      public Pair<SortedSet<Comparable>, Boolean> get( int index ) {
+        return axes[index].getValuesAndIndicator();
+      }
+
+      public int size() {
+        return axes.length;
+      }
+    } );
+  }
+
   private Map<BitKey, GroupingSetsList.Cohort> createDataSetsForGroupingSets( GroupingSetsList groupingSetsList,
       boolean sparse, List<SqlStatement.Type> types ) {
     if ( !groupingSetsList.useGroupingSets() ) {
@@ -431,9 +772,28 @@ public class SegmentLoader {
    */
   SqlStatement createExecuteSql( int cellRequestCount, final GroupingSetsList groupingSetsList,
       List<StarPredicate> compoundPredicateList ) {
+    return createExecuteSql( cellRequestCount, groupingSetsList, groupingSetsList, compoundPredicateList );
+  }
+
+  /**
+   * Creates and executes a SQL statement to retrieve the cells of one partition of a GroupingSetsList.
+   *
+   * @param cellRequestCount
+   *          Number of missed cells that led to this request
+   * @param groupingSetsList
+   *          Grouping sets being loaded; the statement is linked to their segments
+   * @param sqlGroupingSetsList
+   *          Grouping sets from which the SQL is generated; the same as <code>groupingSetsList</code> unless the load is
+   *          partitioned
+   * @param compoundPredicateList
+   *          Compound predicate list
+   * @return An executed SQL statement, or null
+   */
+  SqlStatement createExecuteSql( int cellRequestCount, final GroupingSetsList groupingSetsList,
+      GroupingSetsList sqlGroupingSetsList, List<StarPredicate> compoundPredicateList ) {
     RolapStar star = groupingSetsList.getStar();
     Pair<String, List<SqlStatement.Type>> pair =
-        AggregationManager.generateSql( groupingSetsList, compoundPredicateList );
+        AggregationManager.generateSql( sqlGroupingSetsList, compoundPredicateList );
     final Locus locus =
         new SqlStatement.StatementLocus( Locus.peek().execution, "Segment.load", "Error while loading segment",
             SqlStatementEvent.Purpose.CELL_SEGMENT, cellRequestCount );
@@ -882,6 +1242,45 @@ public class SegmentLoader {
       }
     }
 
+    /**
+     * Appends the rows of another RowList, which must have the same column types.
+     *
+     * @param other
+     *          Rows to append
+     */
+    void addAll( RowList other ) {
+      for ( int j = 0; j < columns.length; j++ ) {
+        if ( columns[j].type != other.columns[j].type ) {
+          throw Util.newInternal( "Cannot merge rows: column " + j + " has type " + other.columns[j].type
+              + ", expected " + columns[j].type );
+        }
+      }
+      for ( int row = 0; row < other.rowCount; row++ ) {
+        createRow();
+        for ( int j = 0; j < columns.length; j++ ) {
+          final Column column = other.columns[j];
+          switch ( column.type ) {
+            case OBJECT:
+            case STRING:
+              setObject( j, column.getObject( row ) );
+              continue;
+            case INT:
+              setInt( j, column.getInt( row ) );
+              break;
+            case LONG:
+              setLong( j, ( (LongColumn) column ).getLong( row ) );
+              break;
+            default:
+              setDouble( j, column.getDouble( row ) );
+              break;
+          }
+          if ( column.isNull( row ) ) {
+            setNull( j, true );
+          }
+        }
+      }
+    }
+
     public List<SqlStatement.Type> getTypes() {
       return new AbstractList<SqlStatement.Type>() {
         public SqlStatement.Type get( int index ) {
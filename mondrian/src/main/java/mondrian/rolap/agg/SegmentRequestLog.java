@@ -0,0 +1,246 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapStar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log of the segments that a star has loaded from SQL.
+ *
+ * <p>Each time {@link SegmentLoader} reads a grouping set from the database,
+ * it records an {@link Observation}: the constrained columns and measures of
+ * the grouping set, the number of rows read and the time the statement took.
+ * These are the same row count and time that the monitor reports in
+ * {@link mondrian.server.monitor.SqlStatementEndEvent}, keyed by what was
+ * requested rather than by SQL text. The log is the workload that
+ * {@link mondrian.rolap.aggmatcher.AggAdvisor} mines to recommend aggregate
+ * tables.
+ *
+ * <p>The log is a ring buffer of at most
+ * {@link MondrianProperties#AggregateAdvisorSampleLimit} observations; when
+ * it is full, the oldest observation is overwritten. If the limit is 0,
+ * nothing is recorded.
+ *
+ * <p>The log is thread-safe.
+ *
+ * @see RolapStar#getSegmentRequestLog()
+ */
+public class SegmentRequestLog {
+    private final Observation[] observations;
+    private int next;
+    private int size;
+
+    /**
+     * Creates a log whose capacity is given by
+     * {@link MondrianProperties#AggregateAdvisorSampleLimit}.
+     */
+    public SegmentRequestLog() {
+        this(MondrianProperties.instance().AggregateAdvisorSampleLimit.get());
+    }
+
+    /**
+     * Creates a log with a given capacity.
+     *
+     * @param capacity Maximum number of observations retained
+     */
+    public SegmentRequestLog(int capacity) {
+        this.observations = new Observation[Math.max(capacity, 0)];
+    }
+
+    /**
+     * Records that a grouping set has been loaded.
+     *
+     * @param columnsBitKey Constrained columns
+     * @param measureBitKey Measures
+     * @param rowCount Number of rows read
+     * @param sqlNanos Time spent executing the statement and reading its
+     *   rows, in nanoseconds
+     */
+    public void record(
+        BitKey columnsBitKey,
+        BitKey measureBitKey,
+        int rowCount,
+        long sqlNanos)
+    {
+        if (observations.length == 0) {
+            return;
+        }
+        final Observation observation =
+            new Observation(
+                System.currentTimeMillis(),
+                columnsBitKey,
+                measureBitKey,
+                rowCount,
+                sqlNanos);
+        synchronized (this) {
+            observations[next] = observation;
+            next = (next + 1) % observations.length;
+            if (size < observations.length) {
+                ++size;
+            }
+        }
+    }
+
+    /**
+     * Returns the observations recorded at or after a given time, oldest
+     * first.
+     *
+     * @param sinceMillis Start of window, as returned by
+     *   {@link System#currentTimeMillis()}
+     * @return Observations in window
+     */
+    public synchronized List<Observation> getObservations(long sinceMillis) {
+        final List<Observation> list = new ArrayList<Observation>(size);
+        final int start = (next - size + observations.length)
+            % Math.max(observations.length, 1);
+        for (int i = 0; i < size; i++) {
+            final Observation observation =
+                observations[(start + i) % observations.length];
+            if (observation.timestamp >= sinceMillis) {
+                list.add(observation);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Fits the cost of loading a segment to the observations recorded at or
+     * after a given time, by least squares: the time of a statement is
+     * modeled as a fixed latency plus a cost per row. Returns null if there
+     * are no observations.
+     *
+     * @param sinceMillis Start of window, as returned by
+     *   {@link System#currentTimeMillis()}
+     * @return Fitted latency, or null
+     */
+    public Latency fitLatency(long sinceMillis) {
+        final List<Observation> list = getObservations(sinceMillis);
+        if (list.isEmpty()) {
+            return null;
+        }
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (Observation observation : list) {
+            sumX += observation.rowCount;
+            sumY += observation.sqlNanos;
+            sumXX += (double) observation.rowCount * observation.rowCount;
+            sumXY += (double) observation.rowCount * observation.sqlNanos;
+        }
+        final int n = list.size();
+        final double denominator = n * sumXX - sumX * sumX;
+        if (n > 1 && denominator > 0) {
+            final double slope = (n * sumXY - sumX * sumY) / denominator;
+            return new Latency(
+                n,
+                Math.max(0L, (long) ((sumY - slope * sumX) / n)),
+                Math.max(0L, (long) slope));
+        }
+        // All statements read the same number of rows; charge their time
+        // to the statement if they read none, otherwise to the rows.
+        return sumX > 0
+            ? new Latency(n, 0L, (long) (sumY / sumX))
+            : new Latency(n, (long) (sumY / n), 0L);
+    }
+
+    /**
+     * Removes all observations.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < observations.length; i++) {
+            observations[i] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Cost of loading a segment from SQL, fitted to a star's observations.
+     *
+     * @see #fitLatency(long)
+     */
+    public static class Latency {
+        /** Number of observations fitted. */
+        public final int observationCount;
+        /** Fixed latency of a statement, in nanoseconds. */
+        public final long statementNanos;
+        /** Time to read a row, in nanoseconds. */
+        public final long rowNanos;
+
+        Latency(int observationCount, long statementNanos, long rowNanos) {
+            this.observationCount = observationCount;
+            this.statementNanos = statementNanos;
+            this.rowNanos = rowNanos;
+        }
+
+        /**
+         * Returns the estimated time of a statement that reads a given
+         * number of rows, in nanoseconds.
+         *
+         * @param rowCount Number of rows
+         * @return Estimated time
+         */
+        public double estimateNanos(long rowCount) {
+            return statementNanos + (double) rowCount * rowNanos;
+        }
+
+        public String toString() {
+            return "Latency{statement=" + statementNanos
+                + "ns, row=" + rowNanos
+                + "ns, observations=" + observationCount + "}";
+        }
+    }
+
+    /**
+     * Load of a grouping set.
+     */
+    public static class Observation {
+        /** Time the load finished, in milliseconds since the epoch. */
+        public final long timestamp;
+        /** Constrained columns. */
+        public final BitKey columnsBitKey;
+        /** Measures. */
+        public final BitKey measureBitKey;
+        /** Number of rows read. */
+        public final int rowCount;
+        /** Time spent executing SQL and reading rows, in nanoseconds. */
+        public final long sqlNanos;
+
+        Observation(
+            long timestamp,
+            BitKey columnsBitKey,
+            BitKey measureBitKey,
+            int rowCount,
+            long sqlNanos)
+        {
+            this.timestamp = timestamp;
+            this.columnsBitKey = columnsBitKey;
+            this.measureBitKey = measureBitKey;
+            this.rowCount = rowCount;
+            this.sqlNanos = sqlNanos;
+        }
+
+        public String toString() {
+            return "Observation{columns=" + columnsBitKey
+                + ", measures=" + measureBitKey
+                + ", rows=" + rowCount
+                + ", nanos=" + sqlNanos + "}";
+        }
+    }
+}
+
+// End SegmentRequestLog.java
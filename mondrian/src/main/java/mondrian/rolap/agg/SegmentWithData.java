@@ -152,9 +152,27 @@ public class SegmentWithData extends Segment {
      * @see mondrian.olap.Util#deprecated(Object) make package-private?
      */
     public Object getCellValue(Object[] keys) {
+        return getCellValue(
+            keys, CellKey.Generator.newCellKey(axes.length));
+    }
+
+    /**
+     * Retrieves the value at the location identified by
+     * <code>keys</code>, using a caller-supplied cell key to hold the
+     * ordinals of the cell. Returns the same as {@link #getCellValue(Object[])}
+     * but does not allocate.
+     *
+     * <p>The cell key is overwritten, and must not be retained by the caller
+     * as the key of a particular cell; it is only a work area.
+     *
+     * @param keys Value of each constrained column
+     * @param cellKey Work area; must have as many axes as this segment
+     * @return Cell value, {@link mondrian.olap.Util#nullValue}, or null
+     */
+    Object getCellValue(Object[] keys, CellKey cellKey) {
         assert keys.length == axes.length;
+        assert cellKey.size() == axes.length;
         int missed = 0;
-        CellKey cellKey = CellKey.Generator.newCellKey(axes.length);
         for (int i = 0; i < keys.length; i++) {
             Comparable key = (Comparable) keys[i];
             int offset = axes[i].getOffset(key);
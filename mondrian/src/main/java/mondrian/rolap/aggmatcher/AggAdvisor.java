@@ -0,0 +1,522 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.rolap.aggmatcher;
+
+import mondrian.olap.MondrianDef;
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.agg.SegmentRequestLog;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.*;
+
+/**
+ * Recommends aggregate tables for a cube, based on the segments that its
+ * star has recently loaded from SQL.
+ *
+ * <p>The workload is the star's {@link SegmentRequestLog}: for each segment
+ * load in the window (by default
+ * {@link MondrianProperties#AggregateAdvisorWindow}), which columns were
+ * constrained, which measures were read, how many rows came back and how
+ * long the SQL took. Loads are grouped into queries by their set of
+ * columns.
+ *
+ * <p>Candidate aggregate tables are points of the lattice of column sets:
+ * each observed set, and the union of each pair of observed sets, each
+ * extended with the columns of the parent levels of its columns, because
+ * the tables are collapsed. The size of a candidate is estimated from table
+ * statistics, as the product of the cardinalities of its columns, capped by
+ * the number of rows in the fact table. A query is answered by the
+ * smallest table that contains its columns: the fact table, an aggregate
+ * table that is already declared, or a recommended table.
+ *
+ * <p>Candidates are chosen greedily, as in Harinarayan, Rajaraman and
+ * Ullman, "Implementing data cubes efficiently" (SIGMOD 1996). Reading a
+ * table is assumed to take time proportional to its size, so the benefit
+ * of a candidate to a query is the query's observed SQL time times the
+ * fraction of rows it would no longer read. At each step, the candidate
+ * with the greatest total benefit per row is chosen, and the queries it
+ * answers are costed against it from then on.
+ *
+ * <p>For each chosen candidate, {@link AggGen} generates the SQL to create
+ * and populate a collapsed aggregate table, and the <code>AggName</code>
+ * element that declares it in the schema. Nothing is executed.
+ *
+ * @see SegmentRequestLog
+ * @see AggGen
+ */
+public class AggAdvisor {
+    private static final Logger LOGGER = LogManager.getLogger(AggAdvisor.class);
+
+    /**
+     * Number of most expensive queries whose column sets are combined in
+     * pairs to make candidates. Limits the number of candidates, which is
+     * quadratic in this number.
+     */
+    private static final int MAX_UNION_QUERY_COUNT = 32;
+
+    private static final String TAG_PREFIX = "adv";
+
+    private final RolapCube cube;
+    private final RolapStar star;
+    private final long windowMillis;
+
+    /**
+     * Creates an advisor whose workload window is given by
+     * {@link MondrianProperties#AggregateAdvisorWindow}.
+     *
+     * @param cube Cube; must not be virtual
+     */
+    public AggAdvisor(RolapCube cube) {
+        this(
+            cube,
+            MondrianProperties.instance().AggregateAdvisorWindow.get()
+                * 1000L);
+    }
+
+    /**
+     * Creates an advisor.
+     *
+     * @param cube Cube; must not be virtual
+     * @param windowMillis Workload window, in milliseconds; loads that are
+     *   older are ignored
+     */
+    public AggAdvisor(RolapCube cube, long windowMillis) {
+        if (cube.isVirtual()) {
+            throw Util.newError(
+                "AggAdvisor: can not advise virtual cube \""
+                + cube.getName() + "\"");
+        }
+        this.cube = cube;
+        this.star = cube.getStar();
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Recommends aggregate tables, most beneficial first.
+     *
+     * @param maxCount Maximum number of tables to recommend
+     * @return Recommendations; empty if no table would help
+     */
+    public List<Recommendation> recommend(int maxCount) {
+        final List<Query> queries = getQueries();
+        final long factRowCount = getFactRowCount();
+        final List<Recommendation> recommendations =
+            new ArrayList<Recommendation>();
+        if (queries.isEmpty()) {
+            return recommendations;
+        }
+
+        // Cost of each query as things stand.
+        for (Query query : queries) {
+            query.cost = factRowCount;
+            for (AggStar aggStar : star.getAggStars()) {
+                if (aggStar.superSetMatch(
+                        query.columnsBitKey.or(query.measureBitKey)))
+                {
+                    query.cost = Math.min(query.cost, aggStar.getSize());
+                }
+            }
+        }
+
+        final Map<BitKey, Long> candidates = new LinkedHashMap<BitKey, Long>();
+        for (BitKey bitKey : getCandidates(queries)) {
+            final BitKey collapsedBitKey = collapse(bitKey);
+            if (!candidates.containsKey(collapsedBitKey)) {
+                candidates.put(
+                    collapsedBitKey,
+                    estimateSize(collapsedBitKey, queries, factRowCount));
+            }
+        }
+
+        while (recommendations.size() < maxCount && !candidates.isEmpty()) {
+            BitKey best = null;
+            double bestBenefit = 0;
+            double bestRatio = 0;
+            for (Map.Entry<BitKey, Long> entry : candidates.entrySet()) {
+                final double benefit =
+                    benefit(entry.getKey(), entry.getValue(), queries);
+                final double ratio = benefit / Math.max(entry.getValue(), 1);
+                if (ratio > bestRatio) {
+                    best = entry.getKey();
+                    bestBenefit = benefit;
+                    bestRatio = ratio;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            final long size = candidates.remove(best);
+            final Recommendation recommendation =
+                generate(
+                    best, size, bestBenefit, queries,
+                    TAG_PREFIX + (recommendations.size() + 1));
+            if (recommendation == null) {
+                continue;
+            }
+            recommendations.add(recommendation);
+            for (Query query : queries) {
+                if (best.isSuperSetOf(query.columnsBitKey)) {
+                    query.cost = Math.min(query.cost, size);
+                }
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Groups the loads in the window that read this cube's measures by
+     * their set of columns.
+     */
+    private List<Query> getQueries() {
+        final BitKey cubeMeasureBitKey =
+            BitKey.Factory.makeBitKey(star.getColumnCount());
+        for (RolapStar.Column column : star.getFactTable().getColumns()) {
+            if (column instanceof RolapStar.Measure
+                && ((RolapStar.Measure) column).getCubeName().equals(
+                    cube.getName()))
+            {
+                cubeMeasureBitKey.set(column.getBitPosition());
+            }
+        }
+        final Map<BitKey, Query> queryMap = new LinkedHashMap<BitKey, Query>();
+        final List<SegmentRequestLog.Observation> observations =
+            star.getSegmentRequestLog().getObservations(
+                System.currentTimeMillis() - windowMillis);
+        for (SegmentRequestLog.Observation observation : observations) {
+            if (observation.columnsBitKey.isEmpty()
+                || !observation.measureBitKey.intersects(cubeMeasureBitKey))
+            {
+                continue;
+            }
+            Query query = queryMap.get(observation.columnsBitKey);
+            if (query == null) {
+                query = new Query(observation.columnsBitKey);
+                queryMap.put(observation.columnsBitKey, query);
+            }
+            query.add(observation);
+        }
+        return new ArrayList<Query>(queryMap.values());
+    }
+
+    /**
+     * Returns the candidate column sets: those of the queries, and the
+     * unions of pairs of the most expensive queries.
+     */
+    private static Set<BitKey> getCandidates(List<Query> queries) {
+        final Set<BitKey> candidates = new LinkedHashSet<BitKey>();
+        final List<Query> sorted = new ArrayList<Query>(queries);
+        Collections.sort(
+            sorted,
+            new Comparator<Query>() {
+                public int compare(Query o1, Query o2) {
+                    return Long.compare(o2.sqlNanos, o1.sqlNanos);
+                }
+            });
+        for (Query query : sorted) {
+            candidates.add(query.columnsBitKey);
+        }
+        final int n = Math.min(sorted.size(), MAX_UNION_QUERY_COUNT);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                candidates.add(
+                    sorted.get(i).columnsBitKey.or(
+                        sorted.get(j).columnsBitKey));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the columns that a collapsed aggregate table containing a set
+     * of columns is grouped by, which include the columns of parent levels.
+     *
+     * @see AggGen#getCollapsedColumns(RolapStar.Column)
+     */
+    private BitKey collapse(BitKey bitKey) {
+        final BitKey collapsedBitKey = bitKey.copy();
+        for (int bitPos : bitKey) {
+            for (RolapStar.Column column
+                : AggGen.getCollapsedColumns(star.getColumn(bitPos)))
+            {
+                collapsedBitKey.set(column.getBitPosition());
+            }
+        }
+        return collapsedBitKey;
+    }
+
+    /**
+     * Returns the number of rows in the fact table, or
+     * {@link Long#MAX_VALUE} if it is not known.
+     */
+    private long getFactRowCount() {
+        final RolapStar.Table factTable = star.getFactTable();
+        final long rowCount =
+            star.getStatisticsCache().getRelationCardinality(
+                factTable.getRelation(), factTable.getAlias(), -1);
+        return rowCount < 0 ? Long.MAX_VALUE : rowCount;
+    }
+
+    /**
+     * Estimates the number of rows of an aggregate table grouped by a set of
+     * columns.
+     *
+     * <p>The estimate is the product of the columns' cardinalities, but no
+     * more than the number of rows in the fact table and no fewer than the
+     * most rows ever read for that set of columns.
+     */
+    private long estimateSize(
+        BitKey bitKey,
+        List<Query> queries,
+        long factRowCount)
+    {
+        double size = 1;
+        for (int bitPos : bitKey) {
+            final long cardinality = star.getColumn(bitPos).getCardinality();
+            if (cardinality < 0) {
+                size = factRowCount;
+                break;
+            }
+            size *= Math.max(cardinality, 1);
+        }
+        long estimate = (long) Math.min(size, factRowCount);
+        for (Query query : queries) {
+            if (query.columnsBitKey.equals(bitKey)) {
+                estimate = Math.max(estimate, query.maxRowCount);
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated SQL time, in nanoseconds, that a table of a
+     * given size and columns would save over the window.
+     */
+    private static double benefit(
+        BitKey bitKey,
+        long size,
+        List<Query> queries)
+    {
+        double benefit = 0;
+        for (Query query : queries) {
+            if (query.cost > size && bitKey.isSuperSetOf(query.columnsBitKey)) {
+                benefit +=
+                    (double) query.sqlNanos
+                    * (query.cost - size)
+                    / query.cost;
+            }
+        }
+        return benefit;
+    }
+
+    /**
+     * Generates the SQL and schema element for an aggregate table, or returns
+     * null if {@link AggGen} cannot.
+     */
+    private Recommendation generate(
+        BitKey bitKey,
+        long size,
+        double benefit,
+        List<Query> queries,
+        String tag)
+    {
+        final List<RolapStar.Column> columns =
+            new ArrayList<RolapStar.Column>();
+        for (int bitPos : bitKey) {
+            columns.add(star.getColumn(bitPos));
+        }
+        final AggGen aggGen =
+            new AggGen(
+                cube.getName(),
+                star,
+                columns.toArray(new RolapStar.Column[columns.size()]),
+                tag);
+        if (!aggGen.isReady()) {
+            LOGGER.warn(
+                "AggAdvisor: could not generate aggregate table for columns "
+                + columns);
+            return null;
+        }
+        int queryCount = 0;
+        for (Query query : queries) {
+            if (query.cost > size && bitKey.isSuperSetOf(query.columnsBitKey)) {
+                queryCount += query.count;
+            }
+        }
+        return new Recommendation(
+            bitKey,
+            Collections.unmodifiableList(columns),
+            size,
+            queryCount,
+            benefit,
+            aggGen.getCollapsedAggregateTableName(),
+            aggGen.createCollapsed(),
+            aggGen.insertIntoCollapsed(),
+            aggGen.makeCollapsedAggName());
+    }
+
+    /**
+     * Loads of segments with the same columns.
+     */
+    private static class Query {
+        final BitKey columnsBitKey;
+        BitKey measureBitKey;
+        int count;
+        long sqlNanos;
+        int maxRowCount;
+        /** Rows read by the smallest table that can answer the query. */
+        long cost;
+
+        Query(BitKey columnsBitKey) {
+            this.columnsBitKey = columnsBitKey;
+        }
+
+        void add(SegmentRequestLog.Observation observation) {
+            measureBitKey = measureBitKey == null
+                ? observation.measureBitKey
+                : measureBitKey.or(observation.measureBitKey);
+            ++count;
+            sqlNanos += observation.sqlNanos;
+            maxRowCount = Math.max(maxRowCount, observation.rowCount);
+        }
+    }
+
+    /**
+     * Recommended aggregate table.
+     */
+    public static class Recommendation {
+        private final BitKey columnsBitKey;
+        private final List<RolapStar.Column> columns;
+        private final long estimatedRowCount;
+        private final int queryCount;
+        private final double benefitNanos;
+        private final String tableName;
+        private final String createSql;
+        private final String insertSql;
+        private final MondrianDef.AggName aggName;
+
+        Recommendation(
+            BitKey columnsBitKey,
+            List<RolapStar.Column> columns,
+            long estimatedRowCount,
+            int queryCount,
+            double benefitNanos,
+            String tableName,
+            String createSql,
+            String insertSql,
+            MondrianDef.AggName aggName)
+        {
+            this.columnsBitKey = columnsBitKey;
+            this.columns = columns;
+            this.estimatedRowCount = estimatedRowCount;
+            this.queryCount = queryCount;
+            this.benefitNanos = benefitNanos;
+            this.tableName = tableName;
+            this.createSql = createSql;
+            this.insertSql = insertSql;
+            this.aggName = aggName;
+        }
+
+        /** Returns the columns the table is grouped by. */
+        public BitKey getColumnsBitKey() {
+            return columnsBitKey;
+        }
+
+        /** Returns the columns the table is grouped by. */
+        public List<RolapStar.Column> getColumns() {
+            return columns;
+        }
+
+        /** Returns the estimated number of rows in the table. */
+        public long getEstimatedRowCount() {
+            return estimatedRowCount;
+        }
+
+        /**
+         * Returns the number of segment loads in the window that the table
+         * would have made cheaper.
+         */
+        public int getQueryCount() {
+            return queryCount;
+        }
+
+        /**
+         * Returns the estimated SQL time, in nanoseconds, that the table
+         * would have saved over the window.
+         */
+        public double getBenefitNanos() {
+            return benefitNanos;
+        }
+
+        /** Returns the name of the table. */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /** Returns the statement that creates the table. */
+        public String getCreateSql() {
+            return createSql;
+        }
+
+        /** Returns the statement that populates the table. */
+        public String getInsertSql() {
+            return insertSql;
+        }
+
+        /**
+         * Returns the element that declares the table, to be added to the
+         * cube's fact table in the schema.
+         */
+        public MondrianDef.AggName getAggName() {
+            return aggName;
+        }
+
+        /**
+         * Prints the statements that create and populate the table,
+         * preceded by a comment containing the schema element.
+         *
+         * @param pw Writer
+         */
+        public void print(PrintWriter pw) {
+            pw.println(
+                "-- " + tableName + ": about " + estimatedRowCount
+                + " rows; would have saved about "
+                + (long) (benefitNanos / 1000000) + " ms over "
+                + queryCount + " segment loads");
+            pw.println("-- Schema:");
+            for (String line : aggName.toXML().split("\r?\n")) {
+                pw.println("--   " + line);
+            }
+            pw.println(createSql);
+            pw.println(insertSql);
+        }
+
+        public String toString() {
+            final StringWriter sw = new StringWriter();
+            final PrintWriter pw = new PrintWriter(sw);
+            print(pw);
+            pw.flush();
+            return sw.toString();
+        }
+    }
+}
+
+// End AggAdvisor.java
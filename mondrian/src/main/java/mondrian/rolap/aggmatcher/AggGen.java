@@ -13,9 +13,13 @@
 
 package mondrian.rolap.aggmatcher;
 
+import mondrian.olap.Hierarchy;
+import mondrian.olap.Level;
 import mondrian.olap.MondrianDef;
 import mondrian.olap.Util;
 import mondrian.rolap.RolapAggregator;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapCubeLevel;
 import mondrian.rolap.RolapStar;
 import mondrian.rolap.sql.SqlQuery;
 
@@ -38,9 +42,12 @@ import java.util.*;
 public class AggGen {
     private static final Logger LOGGER = LogManager.getLogger(AggGen.class);
 
+    private static final String DEFAULT_TAG = "XXX";
+
     private final String cubeName;
     private final RolapStar star;
     private final RolapStar.Column[] columns;
+    private final String tag;
 
     /** map RolapStar.Table to list of JdbcSchema Column Usages */
     private final Map<RolapStar.Table, List<JdbcSchema.Table.Column.Usage>>
@@ -55,16 +62,41 @@ public class AggGen {
     private final List<JdbcSchema.Table.Column.Usage> measures =
         new ArrayList<JdbcSchema.Table.Column.Usage>();
 
+    /** map collapsed JdbcSchema Column Usage to its RolapStar.Column */
+    private final Map<JdbcSchema.Table.Column.Usage, RolapStar.Column>
+        collapsedStarColumns =
+        new IdentityHashMap<JdbcSchema.Table.Column.Usage, RolapStar.Column>();
+
     private boolean isReady;
 
     public AggGen(
         String cubeName,
         RolapStar star,
         RolapStar.Column[] columns)
+    {
+        this(cubeName, star, columns, DEFAULT_TAG);
+    }
+
+    /**
+     * Creates an AggGen whose aggregate table names contain a given tag;
+     * for example, with tag "adv1" the collapsed table for fact table
+     * "sales_fact_1997" is "agg_c_adv1_sales_fact_1997".
+     *
+     * @param cubeName Name of cube whose measures to aggregate
+     * @param star Star
+     * @param columns Columns to group by
+     * @param tag Tag to distinguish the tables' names
+     */
+    public AggGen(
+        String cubeName,
+        RolapStar star,
+        RolapStar.Column[] columns,
+        String tag)
     {
         this.cubeName = cubeName;
         this.star = star;
         this.columns = columns;
+        this.tag = tag;
         init();
     }
 
@@ -403,7 +435,10 @@ public class AggGen {
         // NOTE: this creates a new usage for the fact table
         // I do not know if this is a problem is AggGen is run before
         // Mondrian uses aggregate tables.
-        list.add(c.newUsage(JdbcSchema.UsageType.FOREIGN_KEY));
+        JdbcSchema.Table.Column.Usage usage =
+            c.newUsage(JdbcSchema.UsageType.FOREIGN_KEY);
+        collapsedStarColumns.put(usage, rColumn);
+        list.add(usage);
 
         RolapStar.Column prColumn = rColumn;
         while (prColumn.getParentColumn() != null) {
@@ -430,7 +465,9 @@ public class AggGen {
             // NOTE: this creates a new usage for the fact table
             // I do not know if this is a problem is AggGen is run before
             // Mondrian uses aggregate tables.
-            list.add(c.newUsage(JdbcSchema.UsageType.FOREIGN_KEY));
+            usage = c.newUsage(JdbcSchema.UsageType.FOREIGN_KEY);
+            collapsedStarColumns.put(usage, prColumn);
+            list.add(usage);
         }
 
         return true;
@@ -482,11 +519,7 @@ public class AggGen {
         // we hit the current column
         List<JdbcSchema.Table.Column.Usage> list =
             new ArrayList<JdbcSchema.Table.Column.Usage>();
-        for (RolapStar.Column rc : rt.getColumns()) {
-            // do not include name columns
-            if (rc.isNameColumn()) {
-                continue;
-            }
+        for (RolapStar.Column rc : getCollapsedColumns(rColumn)) {
             String name = getRolapStarColumnName(rc);
             if (name == null) {
                 getLogger().warn(
@@ -510,12 +543,9 @@ public class AggGen {
             JdbcSchema.Table.Column.Usage usage =
                 c.newUsage(JdbcSchema.UsageType.FOREIGN_KEY);
             usage.usagePrefix = rc.getUsagePrefix();
+            collapsedStarColumns.put(usage, rc);
 
             list.add(usage);
-
-            if (rname.equals(name)) {
-                break;
-            }
         }
         // may already be there so only enter if new list is bigger
         List<JdbcSchema.Table.Column.Usage> l = collapsedColumnUsages.get(rt);
@@ -526,20 +556,59 @@ public class AggGen {
         return true;
     }
 
-    private static final String AGG_LOST_PREFIX = "agg_l_XXX_";
+    /**
+     * Returns the columns that a collapsed aggregate table containing a
+     * given column is grouped by: the column, preceded by the columns of its
+     * parent levels that are in the same table, top level first. Name
+     * columns are not included.
+     *
+     * <p>Other columns of the table, such as those of other hierarchies that
+     * share the table, are not included; including them would make the
+     * aggregate table as large as the dimension table.
+     *
+     * @param column Column
+     * @return Columns of the collapsed levels, ending with the column
+     */
+    static List<RolapStar.Column> getCollapsedColumns(
+        RolapStar.Column column)
+    {
+        final LinkedList<RolapStar.Column> list =
+            new LinkedList<RolapStar.Column>();
+        for (RolapStar.Column c = column;
+             c != null && c.getTable() == column.getTable();
+             c = c.getParentColumn())
+        {
+            if (!c.isNameColumn()) {
+                list.addFirst(c);
+            }
+        }
+        return list;
+    }
+
+    private static final String AGG_LOST_PREFIX = "agg_l_";
 
     String makeLostAggregateTableName(String factTableName) {
         return AGG_LOST_PREFIX
+               + tag
+               + "_"
                + factTableName;
     }
 
-    private static final String AGG_COLLAPSED_PREFIX = "agg_c_XXX_";
+    private static final String AGG_COLLAPSED_PREFIX = "agg_c_";
 
     String makeCollapsedAggregateTableName(String factTableName) {
         return AGG_COLLAPSED_PREFIX
+               + tag
+               + "_"
                + factTableName;
     }
 
+    /**
+     * Returns the name of the collapsed dimension table.
+     */
+    public String getCollapsedAggregateTableName() {
+        return makeCollapsedAggregateTableName(getFactTableName());
+    }
 
 
     /**
@@ -878,6 +947,92 @@ public class AggGen {
 
 
 
+    /**
+     * Returns the schema element that declares the collapsed dimension
+     * table to Mondrian, to be added to the cube's fact table.
+     *
+     * <p>Each of the table's columns that is the key of a level of the cube
+     * becomes an <code>AggLevel</code>; other columns, such as the keys of
+     * levels that are not in this cube, are not mentioned and are ignored.
+     *
+     * @return AggName element for the collapsed dimension table
+     */
+    public MondrianDef.AggName makeCollapsedAggName() {
+        final RolapCube cube =
+            (RolapCube) star.getSchema().lookupCube(cubeName, true);
+
+        final MondrianDef.AggName aggName = new MondrianDef.AggName();
+        aggName.name = getCollapsedAggregateTableName();
+        aggName.ignorecase = Boolean.TRUE;
+        aggName.factcount = new MondrianDef.AggFactCount();
+        aggName.factcount.column = getFactCount();
+        aggName.measuresfactcount = new MondrianDef.AggMeasureFactCount[0];
+        aggName.ignoreColumns = new MondrianDef.AggIgnoreColumn[0];
+        aggName.foreignKeys = new MondrianDef.AggForeignKey[0];
+
+        final List<MondrianDef.AggMeasure> aggMeasures =
+            new ArrayList<MondrianDef.AggMeasure>();
+        for (JdbcSchema.Table.Column.Usage usage : measures) {
+            final MondrianDef.AggMeasure aggMeasure =
+                new MondrianDef.AggMeasure();
+            aggMeasure.name =
+                "[Measures]."
+                + Util.quoteMdxIdentifier(usage.getSymbolicName());
+            aggMeasure.column = getUsageName(usage);
+            aggMeasures.add(aggMeasure);
+        }
+        aggName.measures =
+            aggMeasures.toArray(new MondrianDef.AggMeasure[aggMeasures.size()]);
+
+        final List<MondrianDef.AggLevel> aggLevels =
+            new ArrayList<MondrianDef.AggLevel>();
+        for (List<JdbcSchema.Table.Column.Usage> list
+            : collapsedColumnUsages.values())
+        {
+            for (JdbcSchema.Table.Column.Usage usage : list) {
+                final RolapCubeLevel level =
+                    findLevel(cube, collapsedStarColumns.get(usage));
+                if (level == null) {
+                    continue;
+                }
+                final MondrianDef.AggLevel aggLevel =
+                    new MondrianDef.AggLevel();
+                aggLevel.name = level.getUniqueName();
+                aggLevel.column = (usage.usagePrefix == null)
+                    ? getUsageName(usage)
+                    : usage.usagePrefix + getUsageName(usage);
+                aggLevel.collapsed = Boolean.TRUE;
+                aggLevel.properties = new MondrianDef.AggLevelProperty[0];
+                aggLevels.add(aggLevel);
+            }
+        }
+        aggName.levels =
+            aggLevels.toArray(new MondrianDef.AggLevel[aggLevels.size()]);
+        return aggName;
+    }
+
+    /**
+     * Returns the level of a cube whose key is a given column, or null.
+     */
+    private static RolapCubeLevel findLevel(
+        RolapCube cube,
+        RolapStar.Column column)
+    {
+        if (column == null) {
+            return null;
+        }
+        for (Hierarchy hierarchy : cube.getHierarchies()) {
+            for (Level level : hierarchy.getLevels()) {
+                if (level instanceof RolapCubeLevel
+                    && ((RolapCubeLevel) level).getStarKeyColumn() == column)
+                {
+                    return (RolapCubeLevel) level;
+                }
+            }
+        }
+        return null;
+    }
+
     private String getUsageName(final JdbcSchema.Table.Column.Usage usage) {
         JdbcSchema.Table.Column c = usage.getColumn();
         String name = c.getName();
@@ -34,7 +34,9 @@ import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Manages aggregate tables.
@@ -201,6 +203,12 @@ public class AggTableManager {
                 // loads tables, not their columns
                 db.load(connectInfo);
 
+                if (MondrianProperties.instance().AggregateMetadataBatch.get())
+                {
+                    // load the columns of all candidate tables at once
+                    db.loadColumns(getCandidateTables(db, rules));
+                }
+
                 loop:
                 for (RolapStar star : getStars()) {
                     // This removes any AggStars from any previous invocation of
@@ -309,6 +317,8 @@ public class AggTableManager {
                         // allowing it maybe to match another rule.
                     }
                 }
+
+                db.saveSnapshot();
             }
         } catch (RecorderException ex) {
             throw new MondrianException(ex);
@@ -323,6 +333,44 @@ public class AggTableManager {
         }
     }
 
+    /**
+     * Returns the tables whose columns {@link #loadRolapStarAggregates} will
+     * need: each star's fact table, and each table that matches an explicit
+     * aggregate definition or, if aggregates are read, a default rule.
+     */
+    private Collection<JdbcSchema.Table> getCandidateTables(
+        JdbcSchema db,
+        DefaultRules rules)
+    {
+        final Set<JdbcSchema.Table> candidates =
+            new LinkedHashSet<JdbcSchema.Table>();
+        final boolean readAggregates =
+            MondrianProperties.instance().ReadAggregates.get();
+        for (RolapStar star : getStars()) {
+            String factTableName = getFactTableName(star);
+            JdbcSchema.Table dbFactTable = db.getTable(factTableName);
+            if (dbFactTable == null) {
+                continue;
+            }
+            candidates.add(dbFactTable);
+
+            List<ExplicitRules.Group> aggGroups = getAggGroups(star);
+            for (JdbcSchema.Table dbTable : db.getTables()) {
+                String name = dbTable.getName();
+                if (ExplicitRules.excludeTable(name, aggGroups)) {
+                    continue;
+                }
+                if (ExplicitRules.getIncludeByTableDef(name, aggGroups) != null
+                    || readAggregates
+                    && rules.matchesTableName(factTableName, name))
+                {
+                    candidates.add(dbTable);
+                }
+            }
+        }
+        return candidates;
+    }
+
     private Collection<RolapStar> getStars() {
         return schema.getStars();
     }
@@ -23,6 +23,7 @@ import mondrian.rolap.RolapConnectionProperties;
 import mondrian.rolap.RolapLevel;
 import mondrian.rolap.RolapStar;
 import mondrian.spi.Dialect;
+import mondrian.util.ByteString;
 import mondrian.util.ClassResolver;
 
 import org.apache.logging.log4j.Logger;
@@ -30,9 +31,19 @@ import org.apache.logging.log4j.LogManager;
 
 import org.olap4j.impl.Olap4jUtil;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.*;
 import javax.sql.DataSource;
@@ -55,6 +66,12 @@ import javax.sql.DataSource;
  * Of course, as a result, there are a host of methods that can throw an
  * {@link SQLException}, rats.
  *
+ * <p>If the AggTableManager knows in advance which tables it will look at, it
+ * can load their columns together via {@link #loadColumns(Collection)}. Tables
+ * and loaded columns can be saved to a snapshot file (see
+ * {@link MondrianProperties#AggregateMetadataSnapshotDir}), which later loads
+ * read instead of scanning the database catalog.
+ *
  * @author Richard M. Emberson
  */
 public class JdbcSchema {
@@ -1072,33 +1089,13 @@ public class JdbcSchema {
 
                     ResultSet rs = null;
                     try {
-                        Map<String, Column> map = getColumnMap();
                         rs = dmd.getColumns(
                             catalog,
                             schema,
                             tableName,
                             columnNamePattern);
                         while (rs.next()) {
-                            String name = rs.getString(4);
-                            int type = rs.getInt(5);
-                            String typeName = rs.getString(6);
-                            int columnSize = getSafeInt(rs, 7);
-                            int decimalDigits = getSafeInt(rs, 9);
-                            int numPrecRadix = rs.getInt(10);
-                            int charOctetLength = rs.getInt(16);
-                            String isNullable = rs.getString(18);
-
-                            Column column = new Column(name);
-                            column.setType(type);
-                            column.setTypeName(typeName);
-                            column.setColumnSize(columnSize);
-                            column.setDecimalDigits(decimalDigits);
-                            column.setNumPrecRadix(numPrecRadix);
-                            column.setCharOctetLength(charOctetLength);
-                            column.setIsNullable(!"NO".equals(isNullable));
-
-                            map.put(name, column);
-                            totalColumnSize += column.getColumnSize();
+                            addColumn(rs);
                         }
                     } finally {
                         if (rs != null) {
@@ -1114,9 +1111,40 @@ public class JdbcSchema {
                 }
 
                 allColumnsLoaded = true;
+                snapshotDirty = true;
             }
         }
 
+        /**
+         * Creates a Column from a row of
+         * {@link DatabaseMetaData#getColumns} and adds it to this table.
+         */
+        private void addColumn(ResultSet rs) throws SQLException {
+            String name = rs.getString(4);
+            int type = rs.getInt(5);
+            String typeName = rs.getString(6);
+            int columnSize = getSafeInt(rs, 7);
+            int decimalDigits = getSafeInt(rs, 9);
+            int numPrecRadix = rs.getInt(10);
+            int charOctetLength = rs.getInt(16);
+            String isNullable = rs.getString(18);
+
+            Column column = new Column(name);
+            column.setType(type);
+            column.setTypeName(typeName);
+            column.setColumnSize(columnSize);
+            column.setDecimalDigits(decimalDigits);
+            column.setNumPrecRadix(numPrecRadix);
+            column.setCharOctetLength(charOctetLength);
+            column.setIsNullable(!"NO".equals(isNullable));
+            addColumn(column);
+        }
+
+        private void addColumn(Column column) {
+            getColumnMap().put(column.getName(), column);
+            totalColumnSize += column.getColumnSize();
+        }
+
         public Map<String, Column> getColumnMap() {
             if (columnMap == null) {
                 columnMap = new HashMap<String, Column>();
@@ -1130,6 +1158,31 @@ public class JdbcSchema {
     private String catalog;
     private boolean allTablesLoaded;
 
+    /**
+     * Catalog and schema that {@link #loadTables} scanned; used when loading
+     * the columns of several tables at once.
+     */
+    private String scanCatalog;
+    private String scanSchema;
+
+    /**
+     * File in which tables and columns are saved, or null if
+     * {@link MondrianProperties#AggregateMetadataSnapshotDir} is not set.
+     */
+    private File snapshotFile;
+
+    /**
+     * Whether tables or columns have been read from the database since the
+     * snapshot was last read or written.
+     */
+    private boolean snapshotDirty;
+
+    /**
+     * Version of the snapshot file format. Snapshots of other versions are
+     * ignored.
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+
     /**
      * Tables by name. We use a sorted map so {@link #getTables()}'s output
      * is in deterministic order.
@@ -1160,10 +1213,21 @@ public class JdbcSchema {
     }
 
     protected synchronized void clear() {
+        // The catalog may have changed since the snapshot was written (this
+        // is called when the schema is flushed), so the next load scans it.
+        if (snapshotFile != null && snapshotFile.exists()
+            && !snapshotFile.delete())
+        {
+            getLogger().warn("Could not delete snapshot " + snapshotFile);
+        }
         // keep the DataSource, clear/reset everything else
         allTablesLoaded = false;
         schema = null;
         catalog = null;
+        scanSchema = null;
+        scanCatalog = null;
+        snapshotFile = null;
+        snapshotDirty = false;
         tables.clear();
     }
 
@@ -1307,6 +1371,17 @@ public class JdbcSchema {
                     RolapConnectionProperties.AggregateScanCatalog.name(),
                     getCatalogName());
 
+            scanSchema = scanSchemaProp;
+            scanCatalog = scanCatalogProp;
+
+            snapshotFile =
+                getSnapshotFile(
+                    databaseMetaData, scanCatalogProp, scanSchemaProp);
+            if (snapshotFile != null && readSnapshot(snapshotFile)) {
+                allTablesLoaded = true;
+                return;
+            }
+
             String[] tableTypes = { "TABLE", "VIEW" };
             if (databaseMetaData.getDatabaseProductName().toUpperCase().indexOf(
                     "VERTICA") >= 0)
@@ -1326,6 +1401,7 @@ public class JdbcSchema {
                     scanCatalogProp);
             }
             allTablesLoaded = true;
+            snapshotDirty = true;
         } finally {
             if (conn != null) {
                 conn.close();
@@ -1333,6 +1409,241 @@ public class JdbcSchema {
         }
     }
 
+    /**
+     * Loads the columns of several tables with one JDBC metadata call for the
+     * whole schema, rather than one call per table. Tables whose columns are
+     * already loaded are skipped.
+     *
+     * @param tables Tables whose columns to load
+     * @throws SQLException
+     */
+    public synchronized void loadColumns(Collection<Table> tables)
+        throws SQLException
+    {
+        final Map<String, Table> tableMap = new HashMap<String, Table>();
+        for (Table table : tables) {
+            if (!table.allColumnsLoaded) {
+                tableMap.put(table.getName(), table);
+            }
+        }
+        if (tableMap.size() <= 1) {
+            for (Table table : tableMap.values()) {
+                table.load();
+            }
+            return;
+        }
+
+        Connection conn = getDataSource().getConnection();
+        try {
+            DatabaseMetaData dmd = conn.getMetaData();
+            String catalog =
+                scanCatalog == null ? getCatalogName() : scanCatalog;
+            String schema = scanSchema == null ? getSchemaName() : scanSchema;
+            getLogger().debug(
+                "Getting columns of " + tableMap.size()
+                + " tables from catalog " + catalog + " schema " + schema);
+
+            ResultSet rs = null;
+            try {
+                rs = dmd.getColumns(catalog, schema, "%", "%");
+                while (rs.next()) {
+                    Table table = tableMap.get(rs.getString(3));
+                    if (table != null) {
+                        table.addColumn(rs);
+                    }
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        for (Table table : tableMap.values()) {
+            table.allColumnsLoaded = true;
+        }
+        snapshotDirty = true;
+    }
+
+    /**
+     * Returns the file in which to save the tables and columns of a database,
+     * or null if {@link MondrianProperties#AggregateMetadataSnapshotDir} is
+     * not set. The file name is derived from the JDBC URL, the user and the
+     * catalog and schema that are scanned.
+     */
+    private static File getSnapshotFile(
+        DatabaseMetaData databaseMetaData,
+        String catalog,
+        String schema)
+        throws SQLException
+    {
+        final String dir =
+            MondrianProperties.instance().AggregateMetadataSnapshotDir.get();
+        if (dir == null) {
+            return null;
+        }
+        final String key =
+            databaseMetaData.getURL() + "\n"
+            + databaseMetaData.getUserName() + "\n"
+            + catalog + "\n"
+            + schema;
+        return new File(
+            dir,
+            "jdbcschema-" + new ByteString(Util.digestSha256(key))
+            + ".snapshot");
+    }
+
+    /**
+     * Reads tables and columns from a snapshot file.
+     *
+     * @param file Snapshot file
+     * @return Whether the snapshot was read; false if there is no snapshot, it
+     *   has expired, or it could not be read
+     */
+    private boolean readSnapshot(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        final int maxAge =
+            MondrianProperties.instance().AggregateMetadataSnapshotMaxAge
+                .get();
+        if (maxAge > 0
+            && System.currentTimeMillis() - file.lastModified()
+            > maxAge * 1000L)
+        {
+            getLogger().debug("Ignoring expired snapshot " + file);
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                getLogger().warn(
+                    "Ignoring snapshot of unknown version " + file);
+                return false;
+            }
+            final List<Table> tableList = new ArrayList<Table>();
+            final int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                final Table table = new Table(in.readUTF(), readString(in));
+                final int columnCount = in.readInt();
+                for (int j = 0; j < columnCount; j++) {
+                    final Table.Column column = table.new Column(in.readUTF());
+                    column.setType(in.readInt());
+                    column.setTypeName(readString(in));
+                    column.setColumnSize(in.readInt());
+                    column.setDecimalDigits(in.readInt());
+                    column.setNumPrecRadix(in.readInt());
+                    column.setCharOctetLength(in.readInt());
+                    column.setIsNullable(in.readBoolean());
+                    table.addColumn(column);
+                }
+                table.allColumnsLoaded = columnCount > 0;
+                tableList.add(table);
+            }
+            for (Table table : tableList) {
+                tables.put(table.getName(), table);
+            }
+            snapshotDirty = false;
+            getLogger().debug(
+                "Read " + tableCount + " tables from snapshot " + file);
+            return true;
+        } catch (IOException e) {
+            getLogger().warn("Could not read snapshot " + file, e);
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the tables, and the columns loaded so far, to the snapshot file,
+     * so that later loads can skip scanning the database catalog. Does nothing
+     * if {@link MondrianProperties#AggregateMetadataSnapshotDir} is not set or
+     * nothing has been read from the database since the snapshot was read.
+     */
+    public synchronized void saveSnapshot() {
+        if (snapshotFile == null || !snapshotDirty) {
+            return;
+        }
+        final File dir = snapshotFile.getParentFile();
+        final File tmpFile = new File(dir, snapshotFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            dir.mkdirs();
+            out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(tables.size());
+            for (Table table : tables.values()) {
+                out.writeUTF(table.getName());
+                writeString(out, table.getTableType());
+                if (!table.allColumnsLoaded) {
+                    out.writeInt(0);
+                    continue;
+                }
+                out.writeInt(table.getColumnMap().size());
+                for (Table.Column column : table.getColumns()) {
+                    out.writeUTF(column.getName());
+                    out.writeInt(column.getType());
+                    writeString(out, column.getTypeName());
+                    out.writeInt(column.getColumnSize());
+                    out.writeInt(column.getDecimalDigits());
+                    out.writeInt(column.getNumPrecRadix());
+                    out.writeInt(column.getCharOctetLength());
+                    out.writeBoolean(column.isNullable());
+                }
+            }
+            out.close();
+            out = null;
+            Files.move(
+                tmpFile.toPath(),
+                snapshotFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+            snapshotDirty = false;
+            getLogger().debug(
+                "Wrote " + tables.size() + " tables to snapshot "
+                + snapshotFile);
+        } catch (IOException e) {
+            getLogger().warn("Could not write snapshot " + snapshotFile, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            tmpFile.delete();
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException
+    {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
     /**
      * Loads definition of tables of a given set of table types ("TABLE", "VIEW"
      * etc.)
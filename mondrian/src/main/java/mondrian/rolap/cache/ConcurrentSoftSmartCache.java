@@ -0,0 +1,187 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.rolap.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An implementation of {@link SmartCache} whose reads do not lock.
+ *
+ * <p>Like {@link SoftSmartCache}, values are soft references, so that the
+ * garbage collector can reclaim them when memory is short. Keys are strong
+ * references, held in a {@link ConcurrentHashMap}; an entry whose value has
+ * been reclaimed is removed by the next write.
+ *
+ * <p>{@link #get} takes no lock, and writes do not exclude each other. Only
+ * {@link #execute} is exclusive: it waits for writes in progress, and
+ * blocks new writes until its task is complete. A task may write to the
+ * cache, and may set the value of an entry via
+ * {@link java.util.Map.Entry#setValue}. Readers may see the cache while a
+ * task is running, so a task should replace a value rather than modify
+ * it.
+ */
+public class ConcurrentSoftSmartCache<K, V> implements SmartCache<K, V> {
+    private final ConcurrentMap<K, ValueReference<K, V>> map =
+        new ConcurrentHashMap<K, ValueReference<K, V>>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public V put(K key, V value) {
+        lock.readLock().lock();
+        try {
+            purge();
+            // Null values are the same as a 'remove', as in SoftSmartCache.
+            final ValueReference<K, V> previous =
+                value == null
+                    ? map.remove(key)
+                    : map.put(key, new ValueReference<K, V>(key, value, queue));
+            return previous == null ? null : previous.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public V get(K key) {
+        final ValueReference<K, V> reference = map.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    public V remove(K key) {
+        lock.readLock().lock();
+        try {
+            purge();
+            final ValueReference<K, V> previous = map.remove(key);
+            return previous == null ? null : previous.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.readLock().lock();
+        try {
+            map.clear();
+            purge();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        purge();
+        return map.size();
+    }
+
+    public void execute(SmartCacheTask<K, V> task) {
+        lock.writeLock().lock();
+        try {
+            purge();
+            task.execute(new EntryIterator());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes entries whose values have been reclaimed by the garbage
+     * collector.
+     */
+    @SuppressWarnings("unchecked")
+    private void purge() {
+        ValueReference<K, V> reference;
+        while ((reference = (ValueReference<K, V>) queue.poll()) != null) {
+            // Only removes the entry if it has not been replaced.
+            map.remove(reference.key, reference);
+        }
+    }
+
+    /**
+     * Soft reference to a value, which remembers its key so that the entry
+     * can be removed when the value is reclaimed.
+     */
+    private static class ValueReference<K, V> extends SoftReference<V> {
+        private final K key;
+
+        ValueReference(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Iterator over the entries whose values have not been reclaimed.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Iterator<Map.Entry<K, ValueReference<K, V>>> iterator =
+            map.entrySet().iterator();
+        private Map.Entry<K, V> next;
+        private Map.Entry<K, V> last;
+
+        public boolean hasNext() {
+            while (next == null && iterator.hasNext()) {
+                final Map.Entry<K, ValueReference<K, V>> entry =
+                    iterator.next();
+                final V value = entry.getValue().get();
+                if (value != null) {
+                    next = new CacheEntry(entry.getKey(), value);
+                }
+            }
+            return next != null;
+        }
+
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            // Not iterator.remove(): hasNext may have moved past 'last'.
+            map.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    /**
+     * Entry returned by {@link EntryIterator}. Holds its value strongly
+     * while the task looks at it; setting the value writes through to the
+     * cache.
+     */
+    private class CacheEntry extends AbstractMap.SimpleEntry<K, V> {
+        CacheEntry(K key, V value) {
+            super(key, value);
+        }
+
+        public V setValue(V value) {
+            map.put(
+                getKey(), new ValueReference<K, V>(getKey(), value, queue));
+            return super.setValue(value);
+        }
+    }
+}
+
+// End ConcurrentSoftSmartCache.java
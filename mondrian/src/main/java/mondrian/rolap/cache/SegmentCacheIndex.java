@@ -144,6 +144,21 @@ public interface SegmentCacheIndex {
         SegmentHeader header,
         SegmentBody body);
 
+    /**
+     * Replaces the body of a loaded segment whose cells have been refreshed,
+     * so that {@link #getFuture} returns the new body.
+     *
+     * <p>Does nothing if the segment is no longer in the index or its load is
+     * pending; the caller should then discard the new body.</p>
+     *
+     * @param header Segment header
+     * @param body New segment body
+     * @return Whether the body was replaced
+     */
+    boolean refreshSucceeded(
+        SegmentHeader header,
+        SegmentBody body);
+
     /**
      * Notifies the segment index that a segment failed to load, and removes the
      * segment from the index.
@@ -209,10 +224,49 @@ public interface SegmentCacheIndex {
      */
     public boolean contains(SegmentHeader header);
 
+    /**
+     * Returns the headers that have been used at or after a given time, most
+     * used first. A header is used when it is added to the index, and each
+     * time {@link #locate} returns it.
+     *
+     * @param sinceMillis Start of window, as returned by
+     *   {@link System#currentTimeMillis()}
+     * @param limit Maximum number of headers to return
+     * @return Headers, most used first
+     */
+    List<SegmentHeader> getMostUsed(long sinceMillis, int limit);
+
+    /**
+     * Estimates the fraction of the cells of a given dimensionality that can
+     * be answered from segments in this index, directly or by rolling up.
+     *
+     * <p>A segment of the same dimensionality covers the product, over its
+     * columns, of the fraction of each column's values it holds. A segment
+     * with more columns covers cells only if its extra columns are
+     * wildcarded. Segments with compound predicates or exclusions are
+     * ignored. The result is the largest fraction covered by one segment.
+     *
+     * @param schemaName Schema name
+     * @param schemaChecksum Schema checksum
+     * @param cubeName Cube name
+     * @param measureName Measure name
+     * @param rolapStarFactTableName Fact table table
+     * @param constrainedColsBitKey Bit key
+     * @return Fraction between 0 and 1
+     */
+    double getCoverage(
+        String schemaName,
+        ByteString schemaChecksum,
+        String cubeName,
+        String measureName,
+        String rolapStarFactTableName,
+        BitKey constrainedColsBitKey);
+
     /**
      * Allows to link a {@link Statement} to a segment. This allows
      * the index to cleanup when {@link #cancel(Execution)} is
      * invoked and orphaned segments are left.
+     * A segment that is loaded in partitions has several statements.
      * @param header The segment.
      * @param stmt The SQL statement.
      */
@@ -157,6 +157,7 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                     list = new ArrayList<SegmentHeader>();
                 }
                 list.add(header);
+                headerMap.get(header).use();
             }
         }
         if (LOGGER.isTraceEnabled()) {
@@ -197,6 +198,7 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             }
             headerMap.put(header, headerInfo);
         }
+        headerInfo.use();
 
         final List bitkeyKey = makeBitkeyKey(header);
         List<SegmentHeader> headerList = bitkeyMap.get(bitkeyKey);
@@ -288,10 +290,26 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             remove(header);
         }
         // Cleanup the HeaderInfo
-        headerInfo.stmt = null;
+        headerInfo.stmts.clear();
         headerInfo.clients.clear();
     }
 
+    public boolean refreshSucceeded(SegmentHeader header, SegmentBody body) {
+        checkThread();
+
+        final HeaderInfo headerInfo = headerMap.get(header);
+        if (headerInfo == null
+            || headerInfo.slot != null && !headerInfo.slot.isDone())
+        {
+            return false;
+        }
+        if (headerInfo.slot != null) {
+            headerInfo.slot = new SlotFuture<SegmentBody>();
+            headerInfo.slot.put(body);
+        }
+        return true;
+    }
+
     public void loadFailed(SegmentHeader header, Throwable throwable) {
         checkThread();
 
@@ -305,7 +323,7 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
         headerInfo.slot.fail(throwable);
         remove(header);
         // Cleanup the HeaderInfo
-        headerInfo.stmt = null;
+        headerInfo.stmts.clear();
         headerInfo.clients.clear();
     }
 
@@ -539,13 +557,124 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
 
     public void linkSqlStatement(SegmentHeader header, Statement stmt) {
         checkThread();
-        headerMap.get(header).stmt = stmt;
+        headerMap.get(header).stmts.add(stmt);
     }
 
     public boolean contains(SegmentHeader header) {
         return headerMap.containsKey(header);
     }
 
+    public List<SegmentHeader> getMostUsed(long sinceMillis, int limit) {
+        checkThread();
+        final List<Map.Entry<SegmentHeader, HeaderInfo>> entries =
+            new ArrayList<Map.Entry<SegmentHeader, HeaderInfo>>();
+        for (Map.Entry<SegmentHeader, HeaderInfo> entry : headerMap.entrySet())
+        {
+            if (entry.getValue().lastUseMillis >= sinceMillis) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(
+            entries,
+            new Comparator<Map.Entry<SegmentHeader, HeaderInfo>>() {
+                public int compare(
+                    Map.Entry<SegmentHeader, HeaderInfo> o1,
+                    Map.Entry<SegmentHeader, HeaderInfo> o2)
+                {
+                    final int c =
+                        Integer.compare(
+                            o2.getValue().useCount, o1.getValue().useCount);
+                    if (c != 0) {
+                        return c;
+                    }
+                    return Long.compare(
+                        o2.getValue().lastUseMillis,
+                        o1.getValue().lastUseMillis);
+                }
+            });
+        final List<SegmentHeader> list = new ArrayList<SegmentHeader>();
+        for (Map.Entry<SegmentHeader, HeaderInfo> entry : entries) {
+            if (list.size() >= limit) {
+                break;
+            }
+            list.add(entry.getKey());
+        }
+        return list;
+    }
+
+    public double getCoverage(
+        String schemaName,
+        ByteString schemaChecksum,
+        String cubeName,
+        String measureName,
+        String rolapStarFactTableName,
+        BitKey constrainedColsBitKey)
+    {
+        checkThread();
+        final List<String> compoundPredicates = Collections.emptyList();
+        final FactInfo factInfo =
+            factMap.get(
+                makeFactKey(
+                    schemaName,
+                    schemaChecksum,
+                    cubeName,
+                    rolapStarFactTableName,
+                    measureName,
+                    compoundPredicates));
+        if (factInfo == null) {
+            return 0d;
+        }
+        final List<BitKey> bitKeys =
+            new ArrayList<BitKey>(
+                factInfo.bitkeyPoset.getAncestors(constrainedColsBitKey));
+        bitKeys.add(constrainedColsBitKey);
+        double coverage = 0d;
+        for (BitKey bitKey : bitKeys) {
+            final List<SegmentHeader> headers =
+                bitkeyMap.get(
+                    makeBitkeyKey(
+                        schemaName,
+                        schemaChecksum,
+                        cubeName,
+                        rolapStarFactTableName,
+                        bitKey,
+                        measureName,
+                        compoundPredicates));
+            if (headers == null) {
+                continue;
+            }
+            headerLoop:
+            for (SegmentHeader header : headers) {
+                if (!header.getExcludedRegions().isEmpty()) {
+                    continue;
+                }
+                double fraction = 1d;
+                int i = 0;
+                for (int bit : header.getConstrainedColumnsBitKey()) {
+                    final SegmentColumn column =
+                        header.getConstrainedColumns().get(i++);
+                    if (column.values == null) {
+                        continue;
+                    }
+                    if (!constrainedColsBitKey.get(bit)) {
+                        // Column would be rolled up, but not all of its
+                        // values are present.
+                        continue headerLoop;
+                    }
+                    fraction *=
+                        column.valueCount > 0
+                            ? Math.min(
+                                1d,
+                                (double) column.values.size()
+                                / column.valueCount)
+                            : 0.5d;
+                }
+                coverage = Math.max(coverage, fraction);
+            }
+        }
+        return coverage;
+    }
+
     public void cancel(Execution exec) {
         checkThread();
         List<SegmentHeader> toRemove = new ArrayList<SegmentHeader>();
@@ -561,7 +690,8 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
         }
         // Make sure to cleanup the orphaned segments.
         for (SegmentHeader header : toRemove) {
-            final Statement stmt = headerMap.get(header).stmt;
+            final List<Statement> stmts =
+                new ArrayList<Statement>(headerMap.get(header).stmts);
             loadFailed(
                 header,
                 new QueryCanceledException(
@@ -575,7 +705,9 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             // there. It is therefore important to close and release the
             // resources on the proper thread, namely, the thread which
             // runs the actual statement.
-            Util.cancelStatement(stmt);
+            for (Statement stmt : stmts) {
+                Util.cancelStatement(stmt);
+            }
         }
     }
 
@@ -1059,10 +1191,11 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
      */
     private static class HeaderInfo {
         /**
-         * The SQL statement populating this header.
-         * Will be null until the SQL thread calls us back to register it.
+         * The SQL statements populating this header; more than one if the
+         * segment is loaded in partitions.
+         * Will be empty until the SQL threads call us back to register them.
          */
-        private Statement stmt;
+        private final List<Statement> stmts = new ArrayList<Statement>(1);
         /**
          * The future object to pass on to clients.
          */
@@ -1078,6 +1211,19 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
          * when flushing.
          */
         private boolean removeAfterLoad;
+        /**
+         * Number of times this segment has been added or located.
+         */
+        private int useCount;
+        /**
+         * When this segment was last added or located.
+         */
+        private long lastUseMillis;
+
+        void use() {
+            ++useCount;
+            lastUseMillis = System.currentTimeMillis();
+        }
     }
 }
 
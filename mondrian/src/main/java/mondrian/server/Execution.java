@@ -16,6 +16,7 @@ package mondrian.server;
 import mondrian.olap.*;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.RolapConnection;
+import mondrian.rolap.RolapStar;
 import mondrian.rolap.agg.SegmentCacheManager;
 import mondrian.server.monitor.*;
 import mondrian.util.MDCUtil;
@@ -23,6 +24,7 @@ import mondrian.util.MDCUtil;
 import java.util.*;
 import java.util.Map.Entry;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -67,6 +69,9 @@ public class Execution {
   private String outOfMemoryMsg;
 
   private long startTimeMillis;
+  private long startTimeNanos;
+  private long phaseStartNanos;
+  private boolean metricsRecorded;
   private long timeoutTimeMillis;
   private long timeoutIntervalMillis;
   private final QueryTiming queryTiming = new QueryTiming();
@@ -76,6 +81,7 @@ public class Execution {
   private int cellCachePendingCount;
   private int expCacheHitCount;
   private int expCacheMissCount;
+  private final AtomicInteger sqlStatementCount = new AtomicInteger();
 
   /**
    * Execution id, global within this JVM instance.
@@ -88,6 +94,13 @@ public class Execution {
 
   private final Execution parent;
 
+  /**
+   * Local cell caches of this execution, per star. Held by the execution
+   * rather than by a thread, so that they do not depend on which thread
+   * runs the execution.
+   */
+  private final Map<RolapStar, RolapStar.Bar> bars = new HashMap<>();
+
   public Execution( Statement statement, long timeoutIntervalMillis ) {
     Execution parentExec = null;
     if ( !Locus.isEmpty() ) {
@@ -114,6 +127,9 @@ public class Execution {
   public void start() {
     assert this.state == State.FRESH;
     this.startTimeMillis = System.currentTimeMillis();
+    this.startTimeNanos = System.nanoTime();
+    this.phaseStartNanos = startTimeNanos;
+    this.metricsRecorded = false;
     this.timeoutTimeMillis = timeoutIntervalMillis > 0 ? this.startTimeMillis + timeoutIntervalMillis : 0L;
     this.state = State.RUNNING;
     this.queryTiming.init( this.statement.getProfileHandler() != null );
@@ -131,6 +147,9 @@ public class Execution {
     final int hitCountInc = hitCount - this.cellCacheHitCount;
     final int missCountInc = missCount - this.cellCacheMissCount;
     final int pendingCountInc = pendingCount - this.cellCachePendingCount;
+    final long now = System.nanoTime();
+    MondrianMetrics.MDX_PHASE.get().record( now - phaseStartNanos );
+    phaseStartNanos = now;
     server.getMonitor().sendEvent( new ExecutionPhaseEvent( System.currentTimeMillis(), server.getId(), connection
         .getId(), statement.getId(), id, phase, hitCountInc, missCountInc, pendingCountInc ) );
     ++phase;
@@ -350,6 +369,27 @@ public class Execution {
     return startTimeMillis;
   }
 
+  /**
+   * Returns this execution's local cell cache for a given star, creating
+   * it if necessary. A child execution shares the cache of its parent.
+   *
+   * @param star Star
+   * @return Local cache
+   */
+  public RolapStar.Bar getBar( RolapStar star ) {
+    if ( parent != null && parent != NONE ) {
+      return parent.getBar( star );
+    }
+    synchronized ( bars ) {
+      RolapStar.Bar bar = bars.get( star );
+      if ( bar == null ) {
+        bar = new RolapStar.Bar();
+        bars.put( star, bar );
+      }
+      return bar;
+    }
+  }
+
   public final mondrian.server.Statement getMondrianStatement() {
     return statement;
   }
@@ -387,6 +427,13 @@ public class Execution {
   }
 
   private void fireExecutionEndEvent() {
+    if ( !metricsRecorded && startTimeNanos != 0 ) {
+      // An execution that is canceled or times out fires its end event
+      // when it notices, and again when it ends. Record metrics once.
+      metricsRecorded = true;
+      MondrianMetrics.executionEnd( state.name(), System.nanoTime() - startTimeNanos, cellCacheHitCount,
+          cellCacheMissCount, cellCachePendingCount, expCacheHitCount, expCacheMissCount );
+    }
     final RolapConnection connection = statement.getMondrianConnection();
     final MondrianServer server = connection.getServer();
     server.getMonitor().sendEvent( new ExecutionEndEvent( this.startTimeMillis, server.getId(), connection.getId(),
@@ -429,6 +476,33 @@ public class Execution {
     FRESH, RUNNING, ERROR, CANCELED, TIMEOUT, DONE,
   }
 
+  public int getCellCacheHitCount() {
+    return cellCacheHitCount;
+  }
+
+  public int getCellCacheMissCount() {
+    return cellCacheMissCount;
+  }
+
+  public int getCellCachePendingCount() {
+    return cellCachePendingCount;
+  }
+
+  /**
+   * Called by {@link mondrian.rolap.SqlStatement} each time it executes a statement on behalf of this execution. SQL
+   * may run on other threads, so the count is atomic.
+   */
+  public void incrementSqlStatementCount() {
+    sqlStatementCount.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of SQL statements executed on behalf of this execution.
+   */
+  public int getSqlStatementCount() {
+    return sqlStatementCount.get();
+  }
+
   public int getExpCacheHitCount() {
     return expCacheHitCount;
   }
@@ -22,6 +22,7 @@ import mondrian.rolap.RolapSchema;
 import mondrian.rolap.agg.AggregationManager;
 import mondrian.server.monitor.ConnectionEndEvent;
 import mondrian.server.monitor.ConnectionStartEvent;
+import mondrian.server.monitor.MetricsRegistry;
 import mondrian.server.monitor.Monitor;
 import mondrian.server.monitor.StatementEndEvent;
 import mondrian.server.monitor.StatementStartEvent;
@@ -380,7 +381,8 @@ class MondrianServerImpl extends MondrianServer implements CatalogFinder, XmlaHa
   }
 
   /**
-   * Registers the MonitorImpl associated with this server as an MBean accessible via JMX.
+   * Registers the MonitorImpl associated with this server as an MBean accessible via JMX. The first server to start
+   * also registers the JVM-wide {@link MetricsRegistry}.
    */
   private void registerMBean() {
     MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
@@ -392,6 +394,18 @@ class MondrianServerImpl extends MondrianServer implements CatalogFinder, XmlaHa
               | MBeanRegistrationException e ) {
       LOGGER.warn( "Failed to register JMX MBean", e );
     }
+
+    try {
+      ObjectName metricsName = new ObjectName( "mondrian.server:type=Metrics" );
+      synchronized ( MetricsRegistry.class ) {
+        if ( !mbs.isRegistered( metricsName ) ) {
+          mbs.registerMBean( MetricsRegistry.instance(), metricsName );
+        }
+      }
+    } catch ( MalformedObjectNameException | NotCompliantMBeanException | InstanceAlreadyExistsException
+              | MBeanRegistrationException e ) {
+      LOGGER.warn( "Failed to register metrics JMX MBean", e );
+    }
   }
 
   public List<Statement> getStatements( String sessionId ) {
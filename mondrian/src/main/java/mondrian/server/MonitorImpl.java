@@ -24,8 +24,8 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Process that reads from the monitor stream and updates counters.
@@ -35,6 +35,12 @@ import java.util.concurrent.BlockingQueue;
  * "Active object" or "Actor" pattern means that the data structures that hold counters do not need to be locked.
  *
  * <p>
+ * The queue is a lock-free {@link MpscRingBuffer}. Sending an event never blocks: if the buffer is full, the event is
+ * dropped and counted. The handler already tolerates events whose parent it has never seen, so a dropped event costs
+ * some per-statement detail but nothing else. Server-wide totals do not go through the queue at all; the sending
+ * thread adds them to {@link ServerCounters}, whose striped adders are summed when {@link #getServer()} is called.
+ *
+ * <p>
  * Command requests are treated like events. They place their result on a result queue.
  * </p>
  *
@@ -49,7 +55,7 @@ import java.util.concurrent.BlockingQueue;
  * </p>
  *
  * <ul>
- * <li>{@link MutableServerInfo} &rarr; {@link ServerInfo}</li>
+ * <li>{@link ServerCounters} &rarr; {@link ServerInfo}</li>
  * <ul>
  * <li>{@link MutableConnectionInfo} &rarr; {@link ConnectionInfo}</li>
  * <ul>
@@ -68,6 +74,8 @@ class MonitorImpl implements Monitor, MonitorMXBean {
   private static final Logger LOGGER = LogManager.getLogger( MonitorImpl.class );
   private final Handler handler = new Handler();
 
+  private final ServerCounters counters = new ServerCounters( null );
+
   protected static final Util.MemoryInfo MEMORY_INFO = Util.getMemoryInfo();
 
   private static final Actor ACTOR = new Actor();
@@ -101,23 +109,17 @@ class MonitorImpl implements Monitor, MonitorMXBean {
   }
 
   public void sendEvent( Event event ) {
-    // The implementation does not need to take any locks.
-    try {
-      if ( Thread.interrupted() ) {
-        // Interrupt should not happen. Mondrian uses cancel without
-        // setting interrupt. But if interrupts are happening, it's
-        // best to know now, rather than failing next time we make a
-        // blocking system call.
-        throw new AssertionError();
-      }
-      ACTOR.eventQueue.put( Pair.<Handler, Message> of( handler, event ) );
-    } catch ( InterruptedException e ) {
-      throw Util.newError( e, "Exception while sending event " + event );
+    // The implementation does not need to take any locks, and never waits
+    // for the monitor thread.
+    event.accept( counters );
+    event.accept( MondrianMetrics.RECORDER );
+    if ( !ACTOR.eventQueue.offer( Pair.<Handler, Message> of( handler, event ) ) ) {
+      ACTOR.droppedEventCount.increment();
     }
   }
 
   public ServerInfo getServer() {
-    return (ServerInfo) execute( new ServerCommand() );
+    return counters.fix();
   }
 
   public List<ConnectionInfo> getConnections() {
@@ -135,6 +137,16 @@ class MonitorImpl implements Monitor, MonitorMXBean {
     return (List<SqlStatementInfo>) execute( new SqlStatementsCommand() );
   }
 
+  public List<SchemaLoadInfo> getSchemaLoads() {
+    // noinspection unchecked
+    return (List<SchemaLoadInfo>) execute( new SchemaLoadsCommand() );
+  }
+
+  public List<CacheWarmupInfo> getCacheWarmups() {
+    // noinspection unchecked
+    return (List<CacheWarmupInfo>) execute( new CacheWarmupsCommand() );
+  }
+
   private Object execute( Command command ) {
     return ACTOR.execute( handler, command );
   }
@@ -167,13 +179,19 @@ class MonitorImpl implements Monitor, MonitorMXBean {
     }
   }
 
-  static class ConnectionsCommand extends Command {
+  static class SchemaLoadsCommand extends Command {
+    public <T> T accept( Visitor<T> visitor ) {
+      return ( (CommandVisitor<T>) visitor ).visit( this );
+    }
+  }
+
+  static class CacheWarmupsCommand extends Command {
     public <T> T accept( Visitor<T> visitor ) {
       return ( (CommandVisitor<T>) visitor ).visit( this );
     }
   }
 
-  static class ServerCommand extends Command {
+  static class ConnectionsCommand extends Command {
     public <T> T accept( Visitor<T> visitor ) {
       return ( (CommandVisitor<T>) visitor ).visit( this );
     }
@@ -194,40 +212,161 @@ class MonitorImpl implements Monitor, MonitorMXBean {
   static interface CommandVisitor<T> extends Visitor<T> {
     T visit( ConnectionsCommand connectionsCommand );
 
-    T visit( ServerCommand serverCommand );
-
     T visit( SqlStatementsCommand command );
 
     T visit( StatementsCommand command );
 
+    T visit( SchemaLoadsCommand command );
+
+    T visit( CacheWarmupsCommand command );
+
     T visit( ShutdownCommand command );
   }
 
   /**
-   * Workspace to collect statistics about the execution of a Mondrian server.
+   * Server-wide totals. Unlike the other workspaces, these are updated on the thread that sends each event, not on the
+   * monitor thread, so they are exact even if the event is later dropped from a full queue. Each counter is a
+   * {@link LongAdder}, so concurrent senders update separate cells and the cost of a snapshot is paid by the reader.
    */
-  private static class MutableServerInfo {
-    private final MutableSqlStatementInfo aggSql = new MutableSqlStatementInfo( null, -1, null, null );
-    private final MutableExecutionInfo aggExec = new MutableExecutionInfo( null, -1, null );
-    private final MutableStatementInfo aggStmt = new MutableStatementInfo( null, -1, null );
-    private final MutableConnectionInfo aggConn = new MutableConnectionInfo( null );
+  private static class ServerCounters implements Visitor<Object> {
+    private final LongAdder connectionStartCount = new LongAdder();
+    private final LongAdder connectionEndCount = new LongAdder();
+    private final LongAdder statementStartCount = new LongAdder();
+    private final LongAdder statementEndCount = new LongAdder();
+    private final LongAdder sqlStatementStartCount = new LongAdder();
+    private final LongAdder sqlStatementExecuteCount = new LongAdder();
+    private final LongAdder sqlStatementEndCount = new LongAdder();
+    private final LongAdder sqlStatementRowFetchCount = new LongAdder();
+    private final LongAdder sqlStatementExecuteNanos = new LongAdder();
+    private final LongAdder sqlStatementCellRequestCount = new LongAdder();
+    private final LongAdder cellCacheHitCount = new LongAdder();
+    private final LongAdder cellCacheMissCount = new LongAdder();
+    private final LongAdder cellCachePendingCount = new LongAdder();
+    private final LongAdder executeStartCount = new LongAdder();
+    private final LongAdder executeEndCount = new LongAdder();
+    private final LongAdder segmentCreateCount = new LongAdder();
+    private final LongAdder segmentDeleteCount = new LongAdder();
+    private final LongAdder segmentCreateViaExternalCount = new LongAdder();
+    private final LongAdder segmentDeleteViaExternalCount = new LongAdder();
+    private final LongAdder segmentCreateViaRollupCount = new LongAdder();
+    private final LongAdder segmentCreateViaSqlCount = new LongAdder();
+    private final LongAdder cellCount = new LongAdder();
+    private final LongAdder cellCoordinateCount = new LongAdder();
     private final String stack;
 
-    public MutableServerInfo( String stack ) {
+    public ServerCounters( String stack ) {
       this.stack = stack;
     }
 
     public ServerInfo fix() {
       Util.MemoryInfo.Usage memoryUsage = MEMORY_INFO.get();
-      return new ServerInfo( stack, aggConn.startCount, aggConn.endCount, aggStmt.startCount, aggStmt.endCount,
-          aggSql.startCount, aggSql.executeCount, aggSql.endCount, aggSql.rowFetchCount, aggSql.executeNanos,
-          aggSql.cellRequestCount, aggExec.cellCacheHitCount, aggExec.cellCacheRequestCount,
-          aggExec.cellCacheMissCount, aggExec.cellCachePendingCount, aggExec.startCount, aggExec.endCount, memoryUsage
-              .getUsed(), memoryUsage.getCommitted(), memoryUsage.getMax(), ( aggExec.cellCacheSegmentCreateCount
-                  - aggExec.cellCacheSegmentDeleteCount ), aggExec.cellCacheSegmentCreateCount,
-          aggExec.cellCacheSegmentCreateViaExternalCount, aggExec.cellCacheSegmentDeleteViaExternalCount,
-          aggExec.cellCacheSegmentCreateViaRollupCount, aggExec.cellCacheSegmentCreateViaSqlCount,
-          aggExec.cellCacheSegmentCellCount, aggExec.cellCacheSegmentCoordinateSum );
+      final int hitCount = cellCacheHitCount.intValue();
+      final int missCount = cellCacheMissCount.intValue();
+      final int pendingCount = cellCachePendingCount.intValue();
+      final int createCount = segmentCreateCount.intValue();
+      return new ServerInfo( stack, connectionStartCount.intValue(), connectionEndCount.intValue(), statementStartCount
+          .intValue(), statementEndCount.intValue(), sqlStatementStartCount.intValue(), sqlStatementExecuteCount
+              .intValue(), sqlStatementEndCount.intValue(), sqlStatementRowFetchCount.sum(), sqlStatementExecuteNanos
+                  .sum(), sqlStatementCellRequestCount.intValue(), hitCount, hitCount + missCount + pendingCount,
+          missCount, pendingCount, executeStartCount.intValue(), executeEndCount.intValue(), memoryUsage.getUsed(),
+          memoryUsage.getCommitted(), memoryUsage.getMax(), createCount - segmentDeleteCount.intValue(), createCount,
+          segmentCreateViaExternalCount.intValue(), segmentDeleteViaExternalCount.intValue(),
+          segmentCreateViaRollupCount.intValue(), segmentCreateViaSqlCount.intValue(), cellCount.intValue(),
+          cellCoordinateCount.intValue(), ACTOR.droppedEventCount.sum() );
+    }
+
+    public Object visit( ConnectionStartEvent event ) {
+      connectionStartCount.increment();
+      return null;
+    }
+
+    public Object visit( ConnectionEndEvent event ) {
+      connectionEndCount.increment();
+      return null;
+    }
+
+    public Object visit( StatementStartEvent event ) {
+      statementStartCount.increment();
+      return null;
+    }
+
+    public Object visit( StatementEndEvent event ) {
+      statementEndCount.increment();
+      return null;
+    }
+
+    public Object visit( ExecutionStartEvent event ) {
+      executeStartCount.increment();
+      return null;
+    }
+
+    public Object visit( ExecutionPhaseEvent event ) {
+      return null;
+    }
+
+    public Object visit( ExecutionEndEvent event ) {
+      executeEndCount.increment();
+      cellCacheHitCount.add( event.cellCacheHitCount );
+      cellCacheMissCount.add( event.cellCacheMissCount );
+      cellCachePendingCount.add( event.cellCachePendingCount );
+      return null;
+    }
+
+    public Object visit( SqlStatementStartEvent event ) {
+      sqlStatementStartCount.increment();
+      sqlStatementCellRequestCount.add( event.cellRequestCount );
+      return null;
+    }
+
+    public Object visit( SqlStatementExecuteEvent event ) {
+      sqlStatementExecuteCount.increment();
+      sqlStatementExecuteNanos.add( event.executeNanos );
+      return null;
+    }
+
+    public Object visit( SqlStatementEndEvent event ) {
+      sqlStatementEndCount.increment();
+      sqlStatementRowFetchCount.add( event.rowFetchCount );
+      return null;
+    }
+
+    public Object visit( CellCacheSegmentCreateEvent event ) {
+      segmentCreateCount.increment();
+      cellCoordinateCount.add( event.coordinateCount );
+      cellCount.add( event.actualCellCount );
+      switch ( event.source ) {
+        case ROLLUP:
+          segmentCreateViaRollupCount.increment();
+          break;
+        case EXTERNAL:
+          segmentCreateViaExternalCount.increment();
+          break;
+        case SQL:
+          segmentCreateViaSqlCount.increment();
+          break;
+        default:
+          throw Util.unexpected( event.source );
+      }
+      return null;
+    }
+
+    public Object visit( CellCacheSegmentDeleteEvent event ) {
+      segmentDeleteCount.increment();
+      cellCoordinateCount.add( -event.coordinateCount );
+      switch ( event.source ) {
+        case EXTERNAL:
+          segmentDeleteViaExternalCount.increment();
+          break;
+      }
+      return null;
+    }
+
+    public Object visit( SchemaLoadEvent event ) {
+      return null;
+    }
+
+    public Object visit( CacheWarmupEvent event ) {
+      return null;
     }
   }
 
@@ -359,8 +498,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
 
   private static class Handler implements CommandVisitor<Object> {
 
-    private final MutableServerInfo server = new MutableServerInfo( null );
-
     private final Map<Integer, MutableConnectionInfo> connectionMap =
         new LinkedHashMap<Integer, MutableConnectionInfo>( MondrianProperties.instance().ExecutionHistorySize.get(),
             0.8f, false ) {
@@ -455,6 +592,34 @@ class MonitorImpl implements Monitor, MonitorMXBean {
           }
         };
 
+    /**
+     * Most recent load of each schema, keyed by schema id.
+     */
+    private final Map<String, SchemaLoadInfo> schemaLoadMap =
+        new LinkedHashMap<String, SchemaLoadInfo>( MondrianProperties.instance().ExecutionHistorySize.get(), 0.8f,
+            false ) {
+          private final int maxSize = MondrianProperties.instance().ExecutionHistorySize.get();
+          private static final long serialVersionUID = 1L;
+
+          protected boolean removeEldestEntry( Map.Entry<String, SchemaLoadInfo> e ) {
+            return size() > maxSize;
+          }
+        };
+
+    /**
+     * Most recent cache warm-up of each schema, keyed by schema id.
+     */
+    private final Map<String, CacheWarmupInfo> cacheWarmupMap =
+        new LinkedHashMap<String, CacheWarmupInfo>( MondrianProperties.instance().ExecutionHistorySize.get(), 0.8f,
+            false ) {
+          private final int maxSize = MondrianProperties.instance().ExecutionHistorySize.get();
+          private static final long serialVersionUID = 1L;
+
+          protected boolean removeEldestEntry( Map.Entry<String, CacheWarmupInfo> e ) {
+            return size() > maxSize;
+          }
+        };
+
     /**
      * Method for debugging that does nothing, but is a place to put a break point to find out places where an event or
      * its parent should be registered but is not.
@@ -471,7 +636,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       final MutableConnectionInfo conn = new MutableConnectionInfo( event.stack );
       connectionMap.put( event.connectionId, conn );
       foo( conn, event );
-      foo( server.aggConn, event );
       if ( RolapUtil.MONITOR_LOGGER.isTraceEnabled() ) {
         RolapUtil.MONITOR_LOGGER.trace( "Connection(" + event.connectionId + ") created. stack is:" + Util.nl
             + event.stack );
@@ -489,7 +653,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
         return missing( event );
       }
       foo( conn, event );
-      foo( server.aggConn, event );
 
       // Since the connection info will no longer be in the table,
       // broadcast the final info to anyone who is interested.
@@ -510,7 +673,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       statementMap.put( event.statementId, stmt );
       foo( stmt, event );
       foo( conn.aggStmt, event );
-      foo( server.aggStmt, event );
       if ( RolapUtil.MONITOR_LOGGER.isTraceEnabled() ) {
         RolapUtil.MONITOR_LOGGER.trace( "Statement(" + event.statementId + ") created. stack is:" + Util.nl
             + event.stack );
@@ -529,7 +691,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       }
       foo( stmt, event );
       foo( stmt.conn.aggStmt, event );
-      foo( server.aggStmt, event );
 
       // Since the statement info will no longer be in the table,
       // broadcast the final info to anyone who is interested.
@@ -552,7 +713,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       foo( exec, event );
       foo( stmt.aggExec, event );
       foo( stmt.conn.aggExec, event );
-      foo( server.aggExec, event );
       if ( RolapUtil.MONITOR_LOGGER.isTraceEnabled() ) {
         RolapUtil.MONITOR_LOGGER.trace( "Execution(" + event.executionId + ") created. stack is:" + Util.nl
             + event.stack );
@@ -574,7 +734,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       foo( exec, event );
       foo( exec.stmt.aggExec, event );
       foo( exec.stmt.conn.aggExec, event );
-      foo( server.aggExec, event );
       return null;
     }
 
@@ -594,7 +753,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       foo( exec, event );
       foo( exec.stmt.aggExec, event );
       foo( exec.stmt.conn.aggExec, event );
-      foo( server.aggExec, event );
 
       // Since the execution info will no longer be in the table,
       // broadcast the final info to anyone who is interested.
@@ -636,7 +794,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       foo( exec, event );
       foo( exec.stmt.aggExec, event );
       foo( exec.stmt.conn.aggExec, event );
-      foo( server.aggExec, event );
       return null;
     }
 
@@ -668,7 +825,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       foo( exec, event );
       foo( exec.stmt.aggExec, event );
       foo( exec.stmt.conn.aggExec, event );
-      foo( server.aggExec, event );
       return null;
     }
 
@@ -692,7 +848,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       sqlStatementMap.put( event.sqlStatementId, sql );
       foo( sql, event );
       foo( sql.stmt.aggSql, event );
-      foo( server.aggSql, event );
       if ( RolapUtil.MONITOR_LOGGER.isTraceEnabled() ) {
         RolapUtil.MONITOR_LOGGER.trace( "SqlStatement(" + event.sqlStatementId + ") created. stack is:" + Util.nl
             + event.stack );
@@ -712,7 +867,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       }
       foo( sql, event );
       foo( sql.stmt.aggSql, event );
-      foo( server.aggSql, event );
       return null;
     }
 
@@ -728,7 +882,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       }
       foo( sql, event );
       foo( sql.stmt.aggSql, event );
-      foo( server.aggSql, event );
 
       // Since the SQL statement info will no longer be in the table,
       // broadcast the final info to anyone who is interested.
@@ -741,6 +894,21 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       sql.rowFetchCount += event.rowFetchCount;
     }
 
+    public Object visit( SchemaLoadEvent event ) {
+      schemaLoadMap.remove( event.schemaId );
+      schemaLoadMap.put( event.schemaId,
+          new SchemaLoadInfo( event.stack, event.schemaId, event.schemaName, event.timestamp, event.phaseNanos ) );
+      return null;
+    }
+
+    public Object visit( CacheWarmupEvent event ) {
+      cacheWarmupMap.remove( event.schemaId );
+      cacheWarmupMap.put( event.schemaId,
+          new CacheWarmupInfo( event.stack, event.schemaId, event.schemaName, event.timestamp, event.state.name(),
+              event.segmentCount, event.loadCount, event.skipCount, event.failureCount, event.elapsedNanos ) );
+      return null;
+    }
+
     public Object visit( ConnectionsCommand connectionsCommand ) {
       List<ConnectionInfo> list = new ArrayList<ConnectionInfo>();
       for ( MutableConnectionInfo info : connectionMap.values() ) {
@@ -749,10 +917,6 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       return list;
     }
 
-    public Object visit( ServerCommand serverCommand ) {
-      return server.fix();
-    }
-
     public Object visit( SqlStatementsCommand command ) {
       List<SqlStatementInfo> list = new ArrayList<SqlStatementInfo>();
       for ( MutableSqlStatementInfo info : sqlStatementMap.values() ) {
@@ -769,6 +933,14 @@ class MonitorImpl implements Monitor, MonitorMXBean {
       return list;
     }
 
+    public Object visit( SchemaLoadsCommand command ) {
+      return new ArrayList<SchemaLoadInfo>( schemaLoadMap.values() );
+    }
+
+    public Object visit( CacheWarmupsCommand command ) {
+      return new ArrayList<CacheWarmupInfo>( cacheWarmupMap.values() );
+    }
+
     public Object visit( ShutdownCommand command ) {
       return "Shutdown succeeded";
     }
@@ -777,8 +949,13 @@ class MonitorImpl implements Monitor, MonitorMXBean {
   private static class Actor implements Runnable {
     private boolean running = true;
 
-    private final BlockingQueue<Pair<Handler, Message>> eventQueue =
-        new ArrayBlockingQueue<Pair<Handler, Message>>( 1000 );
+    private final MpscRingBuffer<Pair<Handler, Message>> eventQueue =
+        new MpscRingBuffer<Pair<Handler, Message>>( MondrianProperties.instance().MonitorEventBufferSize.get() );
+
+    /**
+     * Number of events discarded because {@link #eventQueue} was full.
+     */
+    private final LongAdder droppedEventCount = new LongAdder();
 
     private final BlockingHashMap<Command, Object> responseMap = new BlockingHashMap<Command, Object>( 1000 );
 
@@ -823,10 +1000,14 @@ class MonitorImpl implements Monitor, MonitorMXBean {
     }
 
     Object execute( Handler handler, Command command ) {
-      try {
-        eventQueue.put( Pair.<Handler, Message> of( handler, command ) );
-      } catch ( InterruptedException e ) {
-        throw Util.newError( e, "Interrupted while sending " + command );
+      // Unlike events, commands must not be dropped. The caller is going to
+      // wait for the response anyway, so wait for room in the queue.
+      final Pair<Handler, Message> entry = Pair.<Handler, Message> of( handler, command );
+      while ( !eventQueue.offer( entry ) ) {
+        if ( Thread.interrupted() ) {
+          throw Util.newError( new InterruptedException(), "Interrupted while sending " + command );
+        }
+        LockSupport.parkNanos( 100000L );
       }
       try {
         return responseMap.get( command );
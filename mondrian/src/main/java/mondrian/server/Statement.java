@@ -15,12 +15,14 @@
 package mondrian.server;
 
 import mondrian.olap.Query;
+import mondrian.olap.Result;
 import mondrian.olap.SchemaReader;
 import mondrian.rolap.RolapConnection;
 import mondrian.rolap.RolapSchema;
 import mondrian.spi.ProfileHandler;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Internal context corresponding to a statement.
@@ -104,6 +106,42 @@ public interface Statement {
      */
     long getQueryTimeoutMillis();
 
+    /**
+     * Sets the priority of this statement's executions.
+     *
+     * <p>When all query threads are busy, executions wait in a queue;
+     * one of higher priority starts before one of lower priority. Priority
+     * does not affect an execution once it has started.
+     *
+     * @param priority Priority; higher values run first
+     */
+    void setPriority(int priority);
+
+    /**
+     * Returns the priority of this statement's executions.
+     *
+     * <p>If {@link #setPriority(int)} has not been called, returns the
+     * connection's "QueryPriority" property, or 0 if that is not set.
+     *
+     * @return Priority
+     */
+    int getPriority();
+
+    /**
+     * Executes this statement's query without blocking the calling thread.
+     *
+     * <p>The execution is queued and then run on one of the server's query
+     * threads, the same as a synchronous execution. The returned future
+     * completes with the result, or exceptionally with the same exception
+     * that a synchronous execution would throw. Cancelling the future
+     * cancels the execution.
+     *
+     * @return Future result
+     * @throws mondrian.olap.MondrianException if the server's query queue
+     *   is full
+     */
+    CompletableFuture<Result> executeAsync();
+
     /**
      * Checks if either a cancel request has been issued on the query or
      * the execution time has exceeded the timeout value (if one has been
@@ -15,10 +15,12 @@
 package mondrian.server;
 
 import mondrian.olap.*;
+import mondrian.rolap.RolapConnectionProperties;
 import mondrian.rolap.RolapSchema;
 import mondrian.spi.ProfileHandler;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -57,6 +59,12 @@ public abstract class StatementImpl implements Statement {
      */
     private boolean cancelBeforeStart;
 
+    /**
+     * Priority of this statement's executions, or null to use the
+     * connection's default priority.
+     */
+    private Integer priority;
+
     private final long id;
 
     /**
@@ -118,6 +126,32 @@ public abstract class StatementImpl implements Statement {
         return queryTimeout;
     }
 
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        if (priority == null) {
+            final Object value =
+                getMondrianConnection().getProperty(
+                    RolapConnectionProperties.QueryPriority.name());
+            priority =
+                value == null
+                    ? 0
+                    : Integer.parseInt(String.valueOf(value).trim());
+        }
+        return priority;
+    }
+
+    public CompletableFuture<Result> executeAsync() {
+        if (query == null) {
+            throw new IllegalStateException("statement has no query");
+        }
+        final Execution execution =
+            new Execution(this, getQueryTimeoutMillis());
+        return getMondrianConnection().executeAsync(execution);
+    }
+
     public void checkCancelOrTimeout() {
         final Execution execution0 = execution;
         if (execution0 == null) {
@@ -0,0 +1,418 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.server;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Query;
+import mondrian.olap.Util;
+import mondrian.rolap.RolapConnection;
+import mondrian.rolap.RolapConnectionProperties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures the MDX workload of a server to a file, and reads it back.
+ *
+ * <p>
+ * When {@link MondrianProperties#WorkloadCaptureFile} is set, {@link RolapConnection} appends a line to the file for
+ * each query it executes, whether the query arrived through olap4j, XMLA or the legacy API. Each line holds the start
+ * time, elapsed time, catalog (schema name), role and MDX text, separated by tabs; tabs, newlines and backslashes in
+ * the MDX are escaped. The file can be replayed using {@link mondrian.tui.WorkloadReplayer}.
+ * </p>
+ *
+ * <p>
+ * Lines are written by a background thread, so that capture does not add file I/O or lock contention to query
+ * execution.
+ * </p>
+ */
+public class WorkloadLog {
+  private static final Logger LOGGER = LogManager.getLogger( WorkloadLog.class );
+
+  /**
+   * First line of every workload file.
+   */
+  public static final String HEADER = "# mondrian workload v1";
+
+  /**
+   * Maximum number of captured queries waiting to be written. Beyond this, queries are dropped rather than slowing
+   * down the threads that execute them.
+   */
+  public static final int QUEUE_CAPACITY = 10000;
+
+  private static final AtomicLong DROPPED_COUNT = new AtomicLong();
+
+  /**
+   * Single thread that writes the capture file. Only this thread touches {@link #writer} and {@link #currentPath}.
+   */
+  private static final ExecutorService WRITER =
+      Util.getExecutorService( 1, 1, 1, Util.newThreadFactory( "mondrian.server.WorkloadLog$writer", false ),
+          new RejectedExecutionHandler() {
+            public void rejectedExecution( Runnable r, ThreadPoolExecutor executor ) {
+              if ( r instanceof Write ) {
+                if ( DROPPED_COUNT.getAndIncrement() == 0 ) {
+                  LOGGER.warn( "Workload capture queue is full; dropping captured queries" );
+                }
+              } else {
+                // Close and flush requests are never dropped; wait for room.
+                try {
+                  executor.getQueue().put( r );
+                } catch ( InterruptedException e ) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            }
+          }, new ArrayBlockingQueue<Runnable>( QUEUE_CAPACITY ) );
+
+  private static volatile String currentPath;
+  private static Writer writer;
+
+  /**
+   * Path that could not be written to. Capture stays off until the property changes.
+   */
+  private static volatile String failedPath;
+
+  private WorkloadLog() {
+  }
+
+  /**
+   * Records an executed query, if capture is enabled.
+   *
+   * <p>
+   * The query is written to the file by a background thread. If {@link #QUEUE_CAPACITY} queries are already waiting
+   * to be written, the query is dropped and counted in {@link #getDroppedCount()}.
+   * </p>
+   *
+   * @param connection
+   *          Connection that executed the query
+   * @param query
+   *          Query
+   * @param timestamp
+   *          When execution started, in milliseconds since the epoch
+   * @param elapsedMillis
+   *          How long it took
+   */
+  public static void capture( RolapConnection connection, Query query, long timestamp, long elapsedMillis ) {
+    final String path = MondrianProperties.instance().WorkloadCaptureFile.get();
+    if ( path == null || path.isEmpty() ) {
+      if ( currentPath != null ) {
+        WRITER.execute( new Runnable() {
+          public void run() {
+            close();
+          }
+        } );
+      }
+      return;
+    }
+    if ( path.equals( failedPath ) ) {
+      return;
+    }
+    final String mdx;
+    try {
+      mdx = Util.unparse( query );
+    } catch ( RuntimeException e ) {
+      return;
+    }
+    final String role = connection.getConnectInfo().get( RolapConnectionProperties.Role.name() );
+    final Entry entry =
+        new Entry( timestamp, elapsedMillis, connection.getSchema().getName(), role == null ? "" : role, mdx );
+    WRITER.execute( new Write( path, entry.toLine() ) );
+  }
+
+  /**
+   * Returns the number of captured queries that have been dropped because the queue of queries waiting to be written
+   * was full.
+   */
+  public static long getDroppedCount() {
+    return DROPPED_COUNT.get();
+  }
+
+  /**
+   * Waits until every query captured so far has been written to the file.
+   *
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public static void flush() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    WRITER.execute( new Runnable() {
+      public void run() {
+        try {
+          if ( writer != null ) {
+            writer.flush();
+          }
+        } catch ( IOException e ) {
+          LOGGER.warn( "Error flushing workload capture file " + currentPath, e );
+        } finally {
+          latch.countDown();
+        }
+      }
+    } );
+    latch.await();
+  }
+
+  /**
+   * Writes a line to the capture file. Called on the writer thread.
+   */
+  private static void write( String path, String line ) {
+    if ( path.equals( failedPath ) ) {
+      return;
+    }
+    try {
+      if ( !path.equals( currentPath ) ) {
+        close();
+        final File file = new File( path );
+        final boolean isNew = !file.exists() || file.length() == 0;
+        writer =
+            new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file, true ),
+                StandardCharsets.UTF_8 ) );
+        currentPath = path;
+        if ( isNew ) {
+          writer.write( HEADER );
+          writer.write( '\n' );
+        }
+      }
+      writer.write( line );
+      writer.write( '\n' );
+      // When queries arrive faster than they are written, flush once the queue is empty rather than after every line.
+      if ( ( (ThreadPoolExecutor) WRITER ).getQueue().isEmpty() ) {
+        writer.flush();
+      }
+    } catch ( IOException e ) {
+      LOGGER.warn( "Error writing workload capture file " + path + "; capture suspended", e );
+      close();
+      failedPath = path;
+    }
+  }
+
+  private static void close() {
+    if ( writer != null ) {
+      try {
+        writer.close();
+      } catch ( IOException e ) {
+        // ignore
+      }
+    }
+    writer = null;
+    currentPath = null;
+  }
+
+  /**
+   * Request to write one captured query.
+   */
+  private static class Write implements Runnable {
+    private final String path;
+    private final String line;
+
+    Write( String path, String line ) {
+      this.path = path;
+      this.line = line;
+    }
+
+    public void run() {
+      write( path, line );
+    }
+  }
+
+  /**
+   * Reads a workload file.
+   *
+   * @param reader
+   *          Reader
+   * @return List of entries, in file order
+   * @throws IOException
+   *           on read error
+   */
+  public static List<Entry> read( Reader reader ) throws IOException {
+    final BufferedReader r = new BufferedReader( reader );
+    final List<Entry> list = new ArrayList<Entry>();
+    String line;
+    int lineNumber = 0;
+    while ( ( line = r.readLine() ) != null ) {
+      ++lineNumber;
+      if ( line.isEmpty() || line.startsWith( "#" ) ) {
+        continue;
+      }
+      final String[] fields = line.split( "\t", -1 );
+      if ( fields.length != 5 ) {
+        throw new IOException( "Bad workload line " + lineNumber + ": " + line );
+      }
+      list.add( new Entry( Long.parseLong( fields[0] ), Long.parseLong( fields[1] ), unescape( fields[2] ), unescape(
+          fields[3] ), unescape( fields[4] ) ) );
+    }
+    return list;
+  }
+
+  /**
+   * Reduces an MDX query to a template, by replacing string and numeric literals and member keys with '?' and
+   * collapsing white space. Queries that differ only in those respects are treated as the same template when a workload
+   * is replayed.
+   *
+   * @param mdx
+   *          MDX query
+   * @return Template
+   */
+  public static String template( String mdx ) {
+    final StringBuilder buf = new StringBuilder( mdx.length() );
+    final int n = mdx.length();
+    int i = 0;
+    while ( i < n ) {
+      final char c = mdx.charAt( i );
+      if ( c == '[' ) {
+        // Identifier; copy verbatim, unless it is a key ("&[...]").
+        int j = i + 1;
+        while ( j < n ) {
+          if ( mdx.charAt( j ) == ']' ) {
+            if ( j + 1 < n && mdx.charAt( j + 1 ) == ']' ) {
+              j += 2;
+              continue;
+            }
+            break;
+          }
+          ++j;
+        }
+        final int end = Math.min( j + 1, n );
+        if ( i > 0 && mdx.charAt( i - 1 ) == '&' ) {
+          buf.append( "[?]" );
+        } else {
+          buf.append( mdx, i, end );
+        }
+        i = end;
+      } else if ( c == '\'' || c == '"' ) {
+        int j = i + 1;
+        while ( j < n ) {
+          if ( mdx.charAt( j ) == c ) {
+            if ( j + 1 < n && mdx.charAt( j + 1 ) == c ) {
+              j += 2;
+              continue;
+            }
+            break;
+          }
+          ++j;
+        }
+        buf.append( '?' );
+        i = Math.min( j + 1, n );
+      } else if ( Character.isDigit( c ) && ( i == 0 || !Character.isLetterOrDigit( mdx.charAt( i - 1 ) ) && mdx
+          .charAt( i - 1 ) != '_' ) ) {
+        int j = i + 1;
+        while ( j < n && ( Character.isDigit( mdx.charAt( j ) ) || mdx.charAt( j ) == '.' ) ) {
+          ++j;
+        }
+        buf.append( '?' );
+        i = j;
+      } else if ( Character.isWhitespace( c ) ) {
+        while ( i < n && Character.isWhitespace( mdx.charAt( i ) ) ) {
+          ++i;
+        }
+        if ( buf.length() > 0 && i < n ) {
+          buf.append( ' ' );
+        }
+      } else {
+        buf.append( c );
+        ++i;
+      }
+    }
+    return buf.toString();
+  }
+
+  private static String escape( String s ) {
+    final StringBuilder buf = new StringBuilder( s.length() + 16 );
+    for ( int i = 0; i < s.length(); i++ ) {
+      final char c = s.charAt( i );
+      switch ( c ) {
+        case '\\':
+          buf.append( "\\\\" );
+          break;
+        case '\t':
+          buf.append( "\\t" );
+          break;
+        case '\n':
+          buf.append( "\\n" );
+          break;
+        case '\r':
+          buf.append( "\\r" );
+          break;
+        default:
+          buf.append( c );
+      }
+    }
+    return buf.toString();
+  }
+
+  private static String unescape( String s ) {
+    if ( s.indexOf( '\\' ) < 0 ) {
+      return s;
+    }
+    final StringBuilder buf = new StringBuilder( s.length() );
+    for ( int i = 0; i < s.length(); i++ ) {
+      final char c = s.charAt( i );
+      if ( c == '\\' && i + 1 < s.length() ) {
+        final char d = s.charAt( ++i );
+        switch ( d ) {
+          case 't':
+            buf.append( '\t' );
+            break;
+          case 'n':
+            buf.append( '\n' );
+            break;
+          case 'r':
+            buf.append( '\r' );
+            break;
+          default:
+            buf.append( d );
+        }
+      } else {
+        buf.append( c );
+      }
+    }
+    return buf.toString();
+  }
+
+  /**
+   * One captured query.
+   */
+  public static class Entry {
+    public final long timestamp;
+    public final long elapsedMillis;
+    public final String catalog;
+    public final String role;
+    public final String mdx;
+
+    public Entry( long timestamp, long elapsedMillis, String catalog, String role, String mdx ) {
+      this.timestamp = timestamp;
+      this.elapsedMillis = elapsedMillis;
+      this.catalog = catalog;
+      this.role = role;
+      this.mdx = mdx;
+    }
+
+    String toLine() {
+      return timestamp + "\t" + elapsedMillis + "\t" + escape( catalog ) + "\t" + escape( role ) + "\t" + escape(
+          mdx );
+    }
+  }
+}
+
+// End WorkloadLog.java
@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.server.monitor;
+
+/**
+ * Event signalling the progress of warming the segment cache of a schema
+ * from its workload profile.
+ *
+ * <p>An event is sent when warm-up starts, after each segment, and when
+ * warm-up finishes or is cancelled.
+ *
+ * @see mondrian.rolap.agg.SegmentCacheWarmer
+ */
+public class CacheWarmupEvent extends Event {
+    /**
+     * State of a warm-up.
+     */
+    public enum State {
+        RUNNING,
+        FINISHED,
+        CANCELLED
+    }
+
+    /**
+     * Server identifier; corresponds to
+     * {@link mondrian.olap.MondrianServer#getId()}.
+     */
+    public final int serverId;
+
+    /**
+     * Schema identifier; corresponds to
+     * {@link mondrian.rolap.RolapSchema#getId()}.
+     */
+    public final String schemaId;
+
+    public final String schemaName;
+
+    public final State state;
+
+    /** Number of segments in the profile. */
+    public final int segmentCount;
+
+    /** Number of segments loaded so far. */
+    public final int loadCount;
+
+    /** Number of segments skipped because they were already in the cache
+     * or no longer match the schema. */
+    public final int skipCount;
+
+    /** Number of segments whose load failed. */
+    public final int failureCount;
+
+    /** Time since warm-up started, in nanoseconds. */
+    public final long elapsedNanos;
+
+    /**
+     * Creates a CacheWarmupEvent.
+     *
+     * @param timestamp Timestamp
+     * @param serverId Server id
+     * @param schemaId Schema id
+     * @param schemaName Schema name
+     * @param state State
+     * @param segmentCount Number of segments in profile
+     * @param loadCount Number of segments loaded
+     * @param skipCount Number of segments skipped
+     * @param failureCount Number of segments that failed
+     * @param elapsedNanos Time since warm-up started
+     */
+    public CacheWarmupEvent(
+        long timestamp,
+        int serverId,
+        String schemaId,
+        String schemaName,
+        State state,
+        int segmentCount,
+        int loadCount,
+        int skipCount,
+        int failureCount,
+        long elapsedNanos)
+    {
+        super(timestamp);
+        this.serverId = serverId;
+        this.schemaId = schemaId;
+        this.schemaName = schemaName;
+        this.state = state;
+        this.segmentCount = segmentCount;
+        this.loadCount = loadCount;
+        this.skipCount = skipCount;
+        this.failureCount = failureCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheWarmupEvent(" + schemaName + ", " + state
+            + ", " + (loadCount + skipCount + failureCount)
+            + "/" + segmentCount + ")";
+    }
+
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
+
+// End CacheWarmupEvent.java
@@ -0,0 +1,97 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+package mondrian.server.monitor;
+
+/**
+ * Information about the most recent warm-up of a schema's segment cache.
+ *
+ * @see CacheWarmupEvent
+ */
+public class CacheWarmupInfo extends Info {
+    public final String schemaId;
+    public final String schemaName;
+    public final long timestamp;
+    public final String state;
+    public final int segmentCount;
+    public final int loadCount;
+    public final int skipCount;
+    public final int failureCount;
+    public final long elapsedNanos;
+
+    public CacheWarmupInfo(
+        String stack,
+        String schemaId,
+        String schemaName,
+        long timestamp,
+        String state,
+        int segmentCount,
+        int loadCount,
+        int skipCount,
+        int failureCount,
+        long elapsedNanos)
+    {
+        super(stack);
+        this.schemaId = schemaId;
+        this.schemaName = schemaName;
+        this.timestamp = timestamp;
+        this.state = state;
+        this.segmentCount = segmentCount;
+        this.loadCount = loadCount;
+        this.skipCount = skipCount;
+        this.failureCount = failureCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getSchemaId() {
+        return schemaId;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the state of the warm-up: "RUNNING", "FINISHED" or
+     * "CANCELLED".
+     */
+    public String getState() {
+        return state;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
+
+// End CacheWarmupInfo.java
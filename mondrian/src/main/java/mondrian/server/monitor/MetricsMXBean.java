@@ -0,0 +1,38 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.server.monitor;
+
+import java.util.Map;
+
+/**
+ * Defines the MXBean interface required to register
+ * {@link MetricsRegistry} with a JMX agent.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns the current value of every series, keyed by series name
+     * (including label). Each histogram contributes its count, sum, and
+     * estimated 50th, 95th and 99th percentiles, in seconds.
+     */
+    Map<String, Double> getMetrics();
+
+    /**
+     * Returns all metrics in Prometheus text exposition format.
+     */
+    String getText();
+}
+
+// End MetricsMXBean.java
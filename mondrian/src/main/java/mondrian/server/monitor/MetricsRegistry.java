@@ -0,0 +1,562 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.server.monitor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of counters, gauges and latency histograms, and writer of the
+ * Prometheus / OpenMetrics text exposition format.
+ *
+ * <p>Each metric family has a name, a help string, and at most one label.
+ * Updating a metric takes no locks: counters are {@link LongAdder}s, and a
+ * histogram is an array of atomic bucket counts. The cost of combining
+ * them is paid by whoever reads the registry, typically a scrape of
+ * {@link mondrian.web.servlet.MetricsServlet} or a JMX client of
+ * {@link MetricsMXBean}.</p>
+ *
+ * <p>Mondrian's own metrics are declared in {@link MondrianMetrics}.</p>
+ */
+public class MetricsRegistry implements MetricsMXBean {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /** Content type of the Prometheus text format, version 0.0.4. */
+    public static final String PROMETHEUS_CONTENT_TYPE =
+        "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Content type of the OpenMetrics text format, version 1.0.0. */
+    public static final String OPENMETRICS_CONTENT_TYPE =
+        "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /**
+     * Upper bounds, in seconds, of the histogram buckets that are exported.
+     * Internally each histogram is much finer; see {@link Histogram}.
+     */
+    private static final double[] EXPORT_BOUNDS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+        1, 2.5, 5, 10, 30, 60, 300
+    };
+
+    private final ConcurrentMap<String, Family> families =
+        new ConcurrentHashMap<String, Family>();
+
+    /**
+     * Returns the registry shared by all servers in this JVM.
+     *
+     * @return Registry
+     */
+    public static MetricsRegistry instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates an empty registry. Most code should use {@link #instance()};
+     * this constructor is for testing.
+     */
+    public MetricsRegistry() {
+    }
+
+    /**
+     * Returns a counter family, creating it if necessary.
+     *
+     * @param name Name, without the "_total" suffix
+     * @param help Description
+     * @param labelName Name of the label, or null if the family has
+     *   only one counter
+     * @return Family of counters
+     */
+    public Family<Counter> counter(String name, String help, String labelName) {
+        return family(name, help, Type.COUNTER, labelName);
+    }
+
+    /**
+     * Returns a histogram family, creating it if necessary. Values are
+     * recorded in nanoseconds and exported in seconds.
+     *
+     * @param name Name, conventionally ending in "_seconds"
+     * @param help Description
+     * @param labelName Name of the label, or null if the family has
+     *   only one histogram
+     * @return Family of histograms
+     */
+    public Family<Histogram> histogram(
+        String name, String help, String labelName)
+    {
+        return family(name, help, Type.HISTOGRAM, labelName);
+    }
+
+    /**
+     * Registers a gauge, whose value is computed when the registry is read.
+     * Replaces any previous gauge of the same name.
+     *
+     * @param name Name
+     * @param help Description
+     * @param supplier Computes the current value
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        final Family<Gauge> family = family(name, help, Type.GAUGE, null);
+        family.metrics.put("", new Gauge(supplier));
+    }
+
+    private <M> Family<M> family(
+        String name, String help, Type type, String labelName)
+    {
+        Family family = families.get(name);
+        if (family == null) {
+            final Family newFamily =
+                new Family<M>(name, help, type, labelName);
+            family = families.putIfAbsent(name, newFamily);
+            if (family == null) {
+                family = newFamily;
+            }
+        }
+        if (family.type != type
+            || !Objects.equals(family.labelName, labelName))
+        {
+            throw new IllegalArgumentException(
+                "metric " + name + " is already registered as " + family.type
+                + (family.labelName == null
+                    ? ""
+                    : " with label " + family.labelName));
+        }
+        //noinspection unchecked
+        return family;
+    }
+
+    /**
+     * Writes all metrics in text exposition format.
+     *
+     * @param w Writer
+     * @param openMetrics Whether to write OpenMetrics format (which
+     *   ends with "# EOF" and names counter families without the "_total"
+     *   suffix) rather than Prometheus 0.0.4 format
+     * @throws IOException on error writing
+     */
+    public void write(Writer w, boolean openMetrics) throws IOException {
+        final StringBuilder buf = new StringBuilder(4096);
+        for (Family family : sortedFamilies()) {
+            family.write(buf, openMetrics);
+        }
+        if (openMetrics) {
+            buf.append("# EOF\n");
+        }
+        w.write(buf.toString());
+    }
+
+    private List<Family> sortedFamilies() {
+        final List<Family> list = new ArrayList<Family>(families.values());
+        Collections.sort(
+            list,
+            new Comparator<Family>() {
+                public int compare(Family o1, Family o2) {
+                    return o1.name.compareTo(o2.name);
+                }
+            });
+        return list;
+    }
+
+    // implement MetricsMXBean
+
+    public Map<String, Double> getMetrics() {
+        final Map<String, Double> map = new TreeMap<String, Double>();
+        for (Family family : sortedFamilies()) {
+            family.snapshot(map);
+        }
+        return map;
+    }
+
+    public String getText() {
+        final StringWriter w = new StringWriter();
+        try {
+            write(w, false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return w.toString();
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Set of metrics that share a name and differ in the value of a label.
+     *
+     * @param <M> Metric type: {@link Counter}, {@link Histogram} or gauge
+     */
+    public static class Family<M> {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final String labelName;
+        private final ConcurrentMap<String, M> metrics =
+            new ConcurrentHashMap<String, M>();
+
+        private Family(String name, String help, Type type, String labelName) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelName = labelName;
+        }
+
+        /**
+         * Returns the metric for a family that has no label.
+         *
+         * @return Metric
+         */
+        public M get() {
+            assert labelName == null : name;
+            return get("");
+        }
+
+        /**
+         * Returns the metric for a given value of the label, creating it
+         * if necessary.
+         *
+         * @param labelValue Label value
+         * @return Metric
+         */
+        public M get(String labelValue) {
+            M m = metrics.get(labelValue);
+            if (m == null) {
+                //noinspection unchecked
+                final M newM = (M) (type == Type.COUNTER
+                    ? new Counter()
+                    : new Histogram());
+                m = metrics.putIfAbsent(labelValue, newM);
+                if (m == null) {
+                    m = newM;
+                }
+            }
+            return m;
+        }
+
+        private String seriesName(String suffix, String labelValue) {
+            final StringBuilder buf = new StringBuilder(name).append(suffix);
+            if (labelName != null) {
+                buf.append('{').append(labelName).append("=\"");
+                escape(buf, labelValue);
+                buf.append("\"}");
+            }
+            return buf.toString();
+        }
+
+        private void write(StringBuilder buf, boolean openMetrics) {
+            final String familyName =
+                type == Type.COUNTER && !openMetrics ? name + "_total" : name;
+            buf.append("# HELP ").append(familyName).append(' ');
+            escape(buf, help);
+            buf.append('\n');
+            buf.append("# TYPE ").append(familyName).append(' ')
+                .append(type.text).append('\n');
+            for (Map.Entry<String, M> entry : new TreeMap<String, M>(metrics)
+                .entrySet())
+            {
+                final String labelValue = entry.getKey();
+                final Object metric = entry.getValue();
+                switch (type) {
+                case COUNTER:
+                    buf.append(seriesName("_total", labelValue)).append(' ')
+                        .append(((Counter) metric).get()).append('\n');
+                    break;
+                case GAUGE:
+                    buf.append(name).append(' ');
+                    appendDouble(buf, ((Gauge) metric).get());
+                    buf.append('\n');
+                    break;
+                case HISTOGRAM:
+                    ((Histogram) metric).write(this, labelValue, buf);
+                    break;
+                }
+            }
+        }
+
+        private void snapshot(Map<String, Double> map) {
+            for (Map.Entry<String, M> entry : metrics.entrySet()) {
+                final String labelValue = entry.getKey();
+                final Object metric = entry.getValue();
+                switch (type) {
+                case COUNTER:
+                    map.put(
+                        seriesName("_total", labelValue),
+                        (double) ((Counter) metric).get());
+                    break;
+                case GAUGE:
+                    map.put(name, ((Gauge) metric).get());
+                    break;
+                case HISTOGRAM:
+                    final Histogram h = (Histogram) metric;
+                    map.put(seriesName("_count", labelValue),
+                        (double) h.getCount());
+                    map.put(seriesName("_sum", labelValue),
+                        h.getSumNanos() / 1e9);
+                    map.put(seriesName("_p50", labelValue),
+                        h.getQuantileNanos(0.5) / 1e9);
+                    map.put(seriesName("_p95", labelValue),
+                        h.getQuantileNanos(0.95) / 1e9);
+                    map.put(seriesName("_p99", labelValue),
+                        h.getQuantileNanos(0.99) / 1e9);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Monotonically increasing count.
+     */
+    public static class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(long n) {
+            adder.add(n);
+        }
+
+        public long get() {
+            return adder.sum();
+        }
+    }
+
+    private static class Gauge {
+        private final DoubleSupplier supplier;
+
+        Gauge(DoubleSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        double get() {
+            return supplier.getAsDouble();
+        }
+    }
+
+    /**
+     * Distribution of durations.
+     *
+     * <p>Like an HDR histogram, bucket boundaries are log-linear: each power
+     * of two is divided into {@link #SUB_BUCKET_COUNT} equal sub-buckets, so
+     * any recorded value is known to within 12.5%, from 1 nanosecond to
+     * centuries, in a fixed 488-slot array. Recording is one atomic
+     * increment and two adder updates.</p>
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKET_COUNT =
+            (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+        private final AtomicLongArray buckets =
+            new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+        }
+
+        /**
+         * Records a duration.
+         *
+         * @param nanos Duration in nanoseconds; negative values are
+         *   treated as zero
+         */
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(bucketIndex(nanos));
+            count.increment();
+            sumNanos.add(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSumNanos() {
+            return sumNanos.sum();
+        }
+
+        /**
+         * Returns an estimate of a quantile: the upper bound of the bucket
+         * containing it.
+         *
+         * @param q Quantile, between 0 and 1
+         * @return Estimated value in nanoseconds, or 0 if empty
+         */
+        public long getQuantileNanos(double q) {
+            final long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        static int bucketIndex(long v) {
+            if (v < SUB_BUCKET_COUNT) {
+                return (int) v;
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(v);
+            final int sub =
+                (int) (v >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKET_COUNT - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+        }
+
+        static long bucketLowerBound(int index) {
+            if (index < SUB_BUCKET_COUNT) {
+                return index;
+            }
+            final int exponent =
+                index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+            final long sub = index % SUB_BUCKET_COUNT;
+            return (SUB_BUCKET_COUNT + sub) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        /** Returns the exclusive upper bound of a bucket. */
+        static long bucketUpperBound(int index) {
+            return index + 1 < BUCKET_COUNT
+                ? bucketLowerBound(index + 1)
+                : Long.MAX_VALUE;
+        }
+
+        private void write(
+            Family family, String labelValue, StringBuilder buf)
+        {
+            final long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            // Each exported bucket counts the internal buckets that lie
+            // wholly below its bound, plus a pro rata share of the one that
+            // straddles it.
+            int i = 0;
+            long cumulative = 0;
+            for (double bound : EXPORT_BOUNDS) {
+                final long boundNanos = (long) (bound * 1e9);
+                while (i < BUCKET_COUNT && bucketUpperBound(i) <= boundNanos) {
+                    cumulative += counts[i++];
+                }
+                long partial = 0;
+                if (i < BUCKET_COUNT && counts[i] > 0) {
+                    final long lower = bucketLowerBound(i);
+                    if (lower < boundNanos) {
+                        partial = (long) (counts[i]
+                            * (double) (boundNanos - lower)
+                            / (bucketUpperBound(i) - lower));
+                    }
+                }
+                appendBucket(
+                    family, labelValue, bound, cumulative + partial, buf);
+            }
+            appendBucket(
+                family, labelValue, Double.POSITIVE_INFINITY, total, buf);
+            buf.append(family.seriesName("_sum", labelValue)).append(' ');
+            appendDouble(buf, getSumNanos() / 1e9);
+            buf.append('\n');
+            buf.append(family.seriesName("_count", labelValue)).append(' ')
+                .append(total).append('\n');
+        }
+
+        private static void appendBucket(
+            Family family,
+            String labelValue,
+            double bound,
+            long cumulative,
+            StringBuilder buf)
+        {
+            buf.append(family.name).append("_bucket{");
+            if (family.labelName != null) {
+                buf.append(family.labelName).append("=\"");
+                escape(buf, labelValue);
+                buf.append("\",");
+            }
+            buf.append("le=\"");
+            appendDouble(buf, bound);
+            buf.append("\"} ").append(cumulative).append('\n');
+        }
+    }
+
+    private static void appendDouble(StringBuilder buf, double d) {
+        if (Double.isNaN(d)) {
+            buf.append("NaN");
+        } else if (Double.isInfinite(d)) {
+            buf.append(d > 0 ? "+Inf" : "-Inf");
+        } else if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+            buf.append((long) d).append(".0");
+        } else {
+            buf.append(
+                BigDecimal.valueOf(d).stripTrailingZeros().toPlainString());
+        }
+    }
+
+    private static void escape(StringBuilder buf, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '"':
+                buf.append("\\\"");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            default:
+                buf.append(c);
+            }
+        }
+    }
+}
+
+// End MetricsRegistry.java
@@ -0,0 +1,266 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.server.monitor;
+
+import mondrian.server.monitor.MetricsRegistry.Counter;
+import mondrian.server.monitor.MetricsRegistry.Family;
+import mondrian.server.monitor.MetricsRegistry.Histogram;
+import mondrian.util.Counters;
+
+/**
+ * Metrics that Mondrian records about itself, in the shared
+ * {@link MetricsRegistry}.
+ *
+ * <p>Most metrics are recorded directly where the work happens. Those that
+ * can be derived from monitor events are recorded by {@link #RECORDER},
+ * which the monitor applies to each event on the thread that sends it.</p>
+ */
+public abstract class MondrianMetrics {
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.instance();
+
+    /** Duration of MDX statement executions, by final state. */
+    public static final Family<Histogram> MDX_EXECUTE =
+        REGISTRY.histogram(
+            "mondrian_mdx_execute_seconds",
+            "Time from start to end of an MDX statement execution.",
+            "state");
+
+    /** Duration of evaluation phases (cell batch rounds). */
+    public static final Family<Histogram> MDX_PHASE =
+        REGISTRY.histogram(
+            "mondrian_mdx_phase_seconds",
+            "Time spent in each evaluation phase of an MDX execution,"
+            + " ending when the phase's cell requests are sent to SQL.",
+            null);
+
+    /** Time SQL requests wait for a thread, by purpose. */
+    public static final Family<Histogram> SQL_QUEUE_WAIT =
+        REGISTRY.histogram(
+            "mondrian_sql_queue_wait_seconds",
+            "Time a SQL request waits in the executor queue before it starts.",
+            "purpose");
+
+    /** Time to execute SQL statements, by purpose. */
+    public static final Family<Histogram> SQL_EXECUTE =
+        REGISTRY.histogram(
+            "mondrian_sql_execute_seconds",
+            "Time to execute a SQL statement, up to the first row.",
+            "purpose");
+
+    /** Rows fetched by SQL statements, by purpose. */
+    public static final Family<Counter> SQL_ROWS =
+        REGISTRY.counter(
+            "mondrian_sql_rows",
+            "Rows fetched by SQL statements.",
+            "purpose");
+
+    /** Cell lookups in the segment cache, by result. */
+    public static final Family<Counter> CELL_CACHE_REQUESTS =
+        REGISTRY.counter(
+            "mondrian_cell_cache_requests",
+            "Cell lookups in the segment cache; result is hit, miss or"
+            + " pending (segment being loaded).",
+            "result");
+
+    /** Segments added to the cache, by source. */
+    public static final Family<Counter> SEGMENT_CREATES =
+        REGISTRY.counter(
+            "mondrian_segment_cache_creates",
+            "Segments added to the segment cache.",
+            "source");
+
+    /** Segments removed from the cache, by source. */
+    public static final Family<Counter> SEGMENT_EVICTIONS =
+        REGISTRY.counter(
+            "mondrian_segment_cache_evictions",
+            "Segments removed from the segment cache.",
+            "source");
+
+    /** Estimated bytes of segment data loaded into the cache. */
+    public static final Family<Counter> SEGMENT_BYTES =
+        REGISTRY.counter(
+            "mondrian_segment_cache_loaded_bytes",
+            "Estimated size of segment bodies loaded into the segment cache.",
+            null);
+
+    /** Time to resolve a batch of cell requests, by batch sizing mode. */
+    public static final Family<Histogram> CELL_BATCH_LOAD =
+        REGISTRY.histogram(
+            "mondrian_cell_batch_load_seconds",
+            "Time to resolve a batch of cell requests from the cache,"
+            + " rollups and SQL, end to end; mode is adaptive or fixed.",
+            "mode");
+
+    /** Cell requests resolved in batches, by batch sizing mode. */
+    public static final Family<Counter> CELL_BATCH_CELLS =
+        REGISTRY.counter(
+            "mondrian_cell_batch_cells",
+            "Cell requests resolved in batches; mode is adaptive or fixed.",
+            "mode");
+
+    /** Statements that cell batches were split into. */
+    public static final Family<Counter> CELL_BATCH_PARTITIONS =
+        REGISTRY.counter(
+            "mondrian_cell_batch_partitions",
+            "Statements executed for cell batches that were split into"
+            + " parallel statements.",
+            null);
+
+    /** Statements that partitioned segment loads were split into. */
+    public static final Family<Counter> SEGMENT_LOAD_PARTITIONS =
+        REGISTRY.counter(
+            "mondrian_segment_load_partitions",
+            "Statements executed for segments that were loaded in parallel"
+            + " partitions and merged.",
+            null);
+
+    /** Segments visited by incremental refreshes, by result. */
+    public static final Family<Counter> SEGMENT_REFRESHES =
+        REGISTRY.counter(
+            "mondrian_segment_refreshes",
+            "Segments that intersected a region refreshed incrementally;"
+            + " result is merged or invalidated.",
+            "result");
+
+    /** Attempts at native evaluation, by result. */
+    public static final Family<Counter> NATIVE_EVALUATIONS =
+        REGISTRY.counter(
+            "mondrian_native_evaluations",
+            "Set functions that could be evaluated in SQL; result is native"
+            + " if a native evaluator was created, fallback otherwise.",
+            "result");
+
+    /** Expression cache lookups, by result. */
+    public static final Family<Counter> EXP_CACHE_REQUESTS =
+        REGISTRY.counter(
+            "mondrian_expression_cache_requests",
+            "Expression cache lookups; result is hit or miss.",
+            "result");
+
+    /**
+     * Visitor that records metrics from monitor events.
+     */
+    public static final Visitor<Object> RECORDER = new Recorder();
+
+    static {
+        REGISTRY.gauge(
+            "mondrian_sql_statements_executing",
+            "SQL statements currently executing.",
+            () -> Counters.SQL_STATEMENT_EXECUTING_IDS.size());
+    }
+
+    /**
+     * Returns the registry that holds these metrics. Calling this method
+     * ensures that they are registered, even if none has been recorded yet.
+     *
+     * @return Registry
+     */
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Records the end of an MDX statement execution.
+     *
+     * @param state Final state
+     * @param nanos Duration
+     * @param cellCacheHitCount Cell cache hits
+     * @param cellCacheMissCount Cell cache misses
+     * @param cellCachePendingCount Cell cache requests for segments that were
+     *   being loaded
+     * @param expCacheHitCount Expression cache hits
+     * @param expCacheMissCount Expression cache misses
+     */
+    public static void executionEnd(
+        String state,
+        long nanos,
+        int cellCacheHitCount,
+        int cellCacheMissCount,
+        int cellCachePendingCount,
+        int expCacheHitCount,
+        int expCacheMissCount)
+    {
+        MDX_EXECUTE.get(state).record(nanos);
+        CELL_CACHE_REQUESTS.get("hit").add(cellCacheHitCount);
+        CELL_CACHE_REQUESTS.get("miss").add(cellCacheMissCount);
+        CELL_CACHE_REQUESTS.get("pending").add(cellCachePendingCount);
+        EXP_CACHE_REQUESTS.get("hit").add(expCacheHitCount);
+        EXP_CACHE_REQUESTS.get("miss").add(expCacheMissCount);
+    }
+
+    private static class Recorder implements Visitor<Object> {
+        public Object visit(ConnectionStartEvent event) {
+            return null;
+        }
+
+        public Object visit(ConnectionEndEvent event) {
+            return null;
+        }
+
+        public Object visit(StatementStartEvent event) {
+            return null;
+        }
+
+        public Object visit(StatementEndEvent event) {
+            return null;
+        }
+
+        public Object visit(ExecutionStartEvent event) {
+            return null;
+        }
+
+        public Object visit(ExecutionPhaseEvent event) {
+            return null;
+        }
+
+        public Object visit(ExecutionEndEvent event) {
+            return null;
+        }
+
+        public Object visit(SqlStatementStartEvent event) {
+            return null;
+        }
+
+        public Object visit(SqlStatementExecuteEvent event) {
+            SQL_EXECUTE.get(event.purpose.name()).record(event.executeNanos);
+            return null;
+        }
+
+        public Object visit(SqlStatementEndEvent event) {
+            SQL_ROWS.get(event.purpose.name()).add(event.rowFetchCount);
+            return null;
+        }
+
+        public Object visit(CellCacheSegmentCreateEvent event) {
+            SEGMENT_CREATES.get(event.source.name()).increment();
+            return null;
+        }
+
+        public Object visit(CellCacheSegmentDeleteEvent event) {
+            SEGMENT_EVICTIONS.get(event.source.name()).increment();
+            return null;
+        }
+
+        public Object visit(SchemaLoadEvent event) {
+            return null;
+        }
+
+        public Object visit(CacheWarmupEvent event) {
+            return null;
+        }
+    }
+}
+
+// End MondrianMetrics.java
@@ -36,6 +36,22 @@ public interface Monitor {
 
     List<SqlStatementInfo> getSqlStatements();
 
+    /**
+     * Returns information about the most recent loads of schemas, including
+     * the time spent in each phase.
+     *
+     * @return List of schema loads, oldest first
+     */
+    List<SchemaLoadInfo> getSchemaLoads();
+
+    /**
+     * Returns information about the most recent warm-up of each schema's
+     * segment cache.
+     *
+     * @return List of cache warm-ups, oldest first
+     */
+    List<CacheWarmupInfo> getCacheWarmups();
+
     /**
      * Sends an event to the monitor.
      *
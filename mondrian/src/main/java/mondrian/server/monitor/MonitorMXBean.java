@@ -29,6 +29,10 @@ public interface MonitorMXBean {
     List<StatementInfo> getStatements();
 
     List<SqlStatementInfo> getSqlStatements();
+
+    List<SchemaLoadInfo> getSchemaLoads();
+
+    List<CacheWarmupInfo> getCacheWarmups();
 }
 
 // End MonitorMXBean.java
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.server.monitor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Event signalling that a schema has been loaded, with the time spent in
+ * each phase of loading it.
+ */
+public class SchemaLoadEvent extends Event {
+    /**
+     * Server identifier; corresponds to
+     * {@link mondrian.olap.MondrianServer#getId()}.
+     */
+    public final int serverId;
+
+    /**
+     * Schema identifier; corresponds to
+     * {@link mondrian.rolap.RolapSchema#getId()}.
+     */
+    public final String schemaId;
+
+    public final String schemaName;
+
+    /**
+     * Elapsed time of each phase of loading, in nanoseconds, in the order
+     * the phases were recorded. Phases may overlap if cubes are loaded in
+     * parallel.
+     */
+    public final Map<String, Long> phaseNanos;
+
+    /**
+     * Creates a SchemaLoadEvent.
+     *
+     * @param timestamp Timestamp
+     * @param serverId Server id
+     * @param schemaId Schema id
+     * @param schemaName Schema name
+     * @param phaseNanos Elapsed time of each phase, in nanoseconds
+     */
+    public SchemaLoadEvent(
+        long timestamp,
+        int serverId,
+        String schemaId,
+        String schemaName,
+        Map<String, Long> phaseNanos)
+    {
+        super(timestamp);
+        this.serverId = serverId;
+        this.schemaId = schemaId;
+        this.schemaName = schemaName;
+        this.phaseNanos =
+            Collections.unmodifiableMap(
+                new LinkedHashMap<String, Long>(phaseNanos));
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaLoadEvent(" + schemaName + ", " + phaseNanos + ")";
+    }
+
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
+
+// End SchemaLoadEvent.java
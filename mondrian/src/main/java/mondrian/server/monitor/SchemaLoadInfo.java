@@ -0,0 +1,67 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.server.monitor;
+
+import java.util.Map;
+
+/**
+ * Information about the most recent load of a schema.
+ *
+ * @see SchemaLoadEvent
+ */
+public class SchemaLoadInfo extends Info {
+    public final String schemaId;
+    public final String schemaName;
+    public final long timestamp;
+    public final Map<String, Long> phaseNanos;
+
+    public SchemaLoadInfo(
+        String stack,
+        String schemaId,
+        String schemaName,
+        long timestamp,
+        Map<String, Long> phaseNanos)
+    {
+        super(stack);
+        this.schemaId = schemaId;
+        this.schemaName = schemaName;
+        this.timestamp = timestamp;
+        this.phaseNanos = phaseNanos;
+    }
+
+    public String getSchemaId() {
+        return schemaId;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the elapsed time of each phase of loading the schema, in
+     * nanoseconds.
+     *
+     * @return Map from phase name to elapsed nanoseconds
+     */
+    public Map<String, Long> getPhaseNanos() {
+        return phaseNanos;
+    }
+}
+
+// End SchemaLoadInfo.java
@@ -106,6 +106,14 @@ public class ServerInfo extends Info {
      */
     public final int cellCoordinateCount;
 
+    /**
+     * The number of events that the monitor has discarded, since the server
+     * started, because its event buffer was full. Dropped events do not
+     * affect the counters in this object, but may cause the monitor to lose
+     * track of individual connections, statements and SQL statements.
+     */
+    public final long monitorEventDropCount;
+
     public ServerInfo(
         String stack,
         int connectionStartCount,
@@ -134,7 +142,8 @@ public class ServerInfo extends Info {
         int segmentCreateViaRollupCount,
         int segmentCreateViaSqlCount,
         int cellCount,
-        int cellCoordinateCount)
+        int cellCoordinateCount,
+        long monitorEventDropCount)
     {
         super(stack);
         this.connectionStartCount = connectionStartCount;
@@ -164,6 +173,7 @@ public class ServerInfo extends Info {
         this.segmentCreateViaSqlCount = segmentCreateViaSqlCount;
         this.cellCount = cellCount;
         this.cellCoordinateCount = cellCoordinateCount;
+        this.monitorEventDropCount = monitorEventDropCount;
     }
 
     public int getCellCacheMissCount() {
@@ -301,6 +311,10 @@ public class ServerInfo extends Info {
     public int getCellCoordinateCount() {
         return cellCoordinateCount;
     }
+
+    public long getMonitorEventDropCount() {
+        return monitorEventDropCount;
+    }
 }
 
 // End ServerInfo.java
@@ -30,6 +30,8 @@ public interface Visitor<T> {
     T visit(SqlStatementEndEvent event);
     T visit(CellCacheSegmentCreateEvent event);
     T visit(CellCacheSegmentDeleteEvent event);
+    T visit(SchemaLoadEvent event);
+    T visit(CacheWarmupEvent event);
 }
 
 // End Visitor.java
@@ -0,0 +1,475 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.tui;
+
+import mondrian.olap.*;
+import mondrian.rolap.RolapConnection;
+import mondrian.rolap.RolapConnectionProperties;
+import mondrian.server.Execution;
+import mondrian.server.Statement;
+import mondrian.server.WorkloadLog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Replays a workload captured by {@link WorkloadLog} and reports, for each
+ * query template, latency percentiles, SQL statements per query and cell
+ * cache hit ratio.
+ *
+ * <p>Queries are submitted in the order they were captured, at the
+ * intervals they were captured, divided by a speed-up factor; a speed-up of
+ * 0 submits them as fast as the worker threads can take them. Queries run
+ * against the connect string given, with the role recorded for each
+ * query.</p>
+ *
+ * <p>Every query of the workload must have been captured against the
+ * catalog that the connect string opens. A workload that spans several
+ * catalogs is rejected; split it by catalog and replay each part against
+ * its own connect string.</p>
+ *
+ * <p>Usage:</p>
+ *
+ * <blockquote><code>java mondrian.tui.WorkloadReplayer -file workload.log
+ * [-connect connectString] [-threads n] [-speedup factor]</code></blockquote>
+ *
+ * <p>If <code>-connect</code> is not given, the connect string is
+ * {@link MondrianProperties#TestConnectString}; for example, FoodMart in
+ * HSQLDB.</p>
+ */
+public class WorkloadReplayer {
+    private final Util.PropertyList connectProperties;
+    private final int threadCount;
+    private final double speedUp;
+    private final Map<String, Connection> connections =
+        new ConcurrentHashMap<String, Connection>();
+
+    /**
+     * Creates a WorkloadReplayer.
+     *
+     * @param connectProperties Connect properties
+     * @param threadCount Number of queries to run concurrently
+     * @param speedUp Factor by which to compress the time between queries,
+     *   or 0 to run without pauses
+     */
+    public WorkloadReplayer(
+        Util.PropertyList connectProperties,
+        int threadCount,
+        double speedUp)
+    {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(
+                "threadCount must be positive: " + threadCount);
+        }
+        if (speedUp < 0) {
+            throw new IllegalArgumentException(
+                "speedUp must not be negative: " + speedUp);
+        }
+        this.connectProperties = connectProperties;
+        this.threadCount = threadCount;
+        this.speedUp = speedUp;
+    }
+
+    /**
+     * Replays a list of captured queries and waits for them to complete.
+     *
+     * @param entries Captured queries
+     * @return Report
+     * @throws IllegalArgumentException if the queries were captured against
+     *   more than one catalog, or against a catalog other than the one the
+     *   connect string opens
+     */
+    public Report replay(List<WorkloadLog.Entry> entries)
+        throws InterruptedException
+    {
+        final List<WorkloadLog.Entry> sorted =
+            new ArrayList<WorkloadLog.Entry>(entries);
+        Collections.sort(
+            sorted,
+            new Comparator<WorkloadLog.Entry>() {
+                public int compare(WorkloadLog.Entry o1, WorkloadLog.Entry o2) {
+                    return Long.compare(o1.timestamp, o2.timestamp);
+                }
+            });
+        final Report report = new Report();
+        final ExecutorService executor =
+            Util.getExecutorService(
+                threadCount, threadCount, 1,
+                "mondrian.tui.WorkloadReplayer$worker", null);
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            checkCatalog(sorted);
+            final long startNanos = System.nanoTime();
+            final long t0 = sorted.isEmpty() ? 0 : sorted.get(0).timestamp;
+            for (final WorkloadLog.Entry entry : sorted) {
+                if (speedUp > 0) {
+                    final long dueNanos =
+                        startNanos
+                        + (long) ((entry.timestamp - t0) * 1000000d / speedUp);
+                    final long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+                futures.add(
+                    executor.submit(
+                        new Runnable() {
+                            public void run() {
+                                report.add(run1(entry));
+                            }
+                        }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw Util.newInternal(e.getCause(), "replay failed");
+                }
+            }
+            report.elapsedMillis =
+                (System.nanoTime() - startNanos) / 1000000L;
+            return report;
+        } finally {
+            executor.shutdownNow();
+            for (Connection connection : connections.values()) {
+                connection.close();
+            }
+            connections.clear();
+        }
+    }
+
+    /**
+     * Checks that every entry was captured against the catalog of the
+     * connect string.
+     */
+    private void checkCatalog(List<WorkloadLog.Entry> entries) {
+        final Set<String> catalogs = new TreeSet<String>();
+        for (WorkloadLog.Entry entry : entries) {
+            catalogs.add(entry.catalog);
+        }
+        if (catalogs.isEmpty()) {
+            return;
+        }
+        if (catalogs.size() > 1) {
+            throw new IllegalArgumentException(
+                "Workload contains queries against more than one catalog "
+                + catalogs + "; replay each catalog's queries separately");
+        }
+        final String catalog = catalogs.iterator().next();
+        final String schemaName =
+            getConnection(entries.get(0).role).getSchema().getName();
+        if (!catalog.equals(schemaName)) {
+            throw new IllegalArgumentException(
+                "Workload was captured against catalog '" + catalog
+                + "', but the connect string opens '" + schemaName + "'");
+        }
+    }
+
+    private Sample run1(WorkloadLog.Entry entry) {
+        final String template = WorkloadLog.template(entry.mdx);
+        final long startNanos = System.nanoTime();
+        Execution execution = null;
+        Throwable error = null;
+        try {
+            final Connection connection = getConnection(entry.role);
+            final Query query = connection.parseQuery(entry.mdx);
+            final Statement statement = query.getStatement();
+            execution =
+                new Execution(statement, statement.getQueryTimeoutMillis());
+            ((RolapConnection) connection).execute(execution);
+        } catch (Throwable e) {
+            error = e;
+        }
+        final long nanos = System.nanoTime() - startNanos;
+        if (execution == null) {
+            return new Sample(template, entry.mdx, nanos, 0, 0, 0, error);
+        }
+        return new Sample(
+            template, entry.mdx, nanos,
+            execution.getSqlStatementCount(),
+            execution.getCellCacheHitCount(),
+            execution.getCellCacheMissCount()
+            + execution.getCellCachePendingCount(),
+            error);
+    }
+
+    private Connection getConnection(String role) {
+        Connection connection = connections.get(role);
+        if (connection == null) {
+            synchronized (connections) {
+                connection = connections.get(role);
+                if (connection == null) {
+                    final Util.PropertyList properties =
+                        connectProperties.clone();
+                    if (!role.isEmpty()) {
+                        properties.put(
+                            RolapConnectionProperties.Role.name(), role);
+                    }
+                    connection =
+                        DriverManager.getConnection(properties, null);
+                    connections.put(role, connection);
+                }
+            }
+        }
+        return connection;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = null;
+        String connectString = null;
+        int threadCount = 1;
+        double speedUp = 1d;
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("Missing value for " + arg);
+                return;
+            }
+            if (arg.equals("-file")) {
+                file = args[++i];
+            } else if (arg.equals("-connect")) {
+                connectString = args[++i];
+            } else if (arg.equals("-threads")) {
+                threadCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-speedup")) {
+                speedUp = Double.parseDouble(args[++i]);
+            } else {
+                usage("Unknown argument " + arg);
+                return;
+            }
+        }
+        if (file == null) {
+            usage("-file is required");
+            return;
+        }
+        if (connectString == null) {
+            connectString =
+                MondrianProperties.instance().TestConnectString.get();
+        }
+        final List<WorkloadLog.Entry> entries;
+        final Reader reader =
+            new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8);
+        try {
+            entries = WorkloadLog.read(reader);
+        } finally {
+            reader.close();
+        }
+        final WorkloadReplayer replayer =
+            new WorkloadReplayer(
+                Util.parseConnectString(connectString), threadCount, speedUp);
+        final Report report = replayer.replay(entries);
+        final PrintWriter pw = new PrintWriter(System.out);
+        report.print(pw);
+        pw.flush();
+    }
+
+    private static void usage(String msg) {
+        System.out.println(msg);
+        System.out.println(
+            "Usage: java mondrian.tui.WorkloadReplayer -file workload.log"
+            + " [-connect connectString] [-threads n] [-speedup factor]");
+        System.out.println(
+            "  -speedup 0 runs queries without pauses; default is 1,"
+            + " the captured rate.");
+    }
+
+    /**
+     * Outcome of one replayed query.
+     */
+    private static class Sample {
+        final String template;
+        final String mdx;
+        final long nanos;
+        final int sqlCount;
+        final int cellHitCount;
+        final int cellMissCount;
+        final Throwable error;
+
+        Sample(
+            String template,
+            String mdx,
+            long nanos,
+            int sqlCount,
+            int cellHitCount,
+            int cellMissCount,
+            Throwable error)
+        {
+            this.template = template;
+            this.mdx = mdx;
+            this.nanos = nanos;
+            this.sqlCount = sqlCount;
+            this.cellHitCount = cellHitCount;
+            this.cellMissCount = cellMissCount;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Statistics for the queries of one template.
+     */
+    public static class TemplateStats {
+        /** Template, as returned by {@link WorkloadLog#template}. */
+        public final String template;
+        /** Text of the first query of this template. */
+        public final String exampleMdx;
+        private final List<Long> nanos = new ArrayList<Long>();
+        private int errorCount;
+        private Throwable firstError;
+        private long sqlCount;
+        private long cellHitCount;
+        private long cellMissCount;
+
+        TemplateStats(String template, String exampleMdx) {
+            this.template = template;
+            this.exampleMdx = exampleMdx;
+        }
+
+        void add(Sample sample) {
+            nanos.add(sample.nanos);
+            if (sample.error != null) {
+                if (errorCount++ == 0) {
+                    firstError = sample.error;
+                }
+            }
+            sqlCount += sample.sqlCount;
+            cellHitCount += sample.cellHitCount;
+            cellMissCount += sample.cellMissCount;
+        }
+
+        public int getCount() {
+            return nanos.size();
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * Returns the first error, or null if every query succeeded.
+         */
+        public Throwable getFirstError() {
+            return firstError;
+        }
+
+        /**
+         * Returns a latency percentile, by the nearest-rank method.
+         *
+         * @param percent Percentile, between 0 and 100
+         * @return Latency, in milliseconds
+         */
+        public double getPercentileMillis(double percent) {
+            final List<Long> sorted = new ArrayList<Long>(nanos);
+            Collections.sort(sorted);
+            int rank = (int) Math.ceil(percent / 100d * sorted.size());
+            rank = Math.max(1, Math.min(rank, sorted.size()));
+            return sorted.get(rank - 1) / 1000000d;
+        }
+
+        public double getSqlPerQuery() {
+            return (double) sqlCount / nanos.size();
+        }
+
+        /**
+         * Returns the fraction of cell lookups that were satisfied from the
+         * cache, or NaN if there were none.
+         */
+        public double getCellCacheHitRatio() {
+            final long total = cellHitCount + cellMissCount;
+            return total == 0 ? Double.NaN : (double) cellHitCount / total;
+        }
+    }
+
+    /**
+     * Result of a replay.
+     */
+    public static class Report {
+        private final Map<String, TemplateStats> map =
+            new LinkedHashMap<String, TemplateStats>();
+        private long elapsedMillis;
+
+        synchronized void add(Sample sample) {
+            TemplateStats stats = map.get(sample.template);
+            if (stats == null) {
+                stats = new TemplateStats(sample.template, sample.mdx);
+                map.put(sample.template, stats);
+            }
+            stats.add(sample);
+        }
+
+        /**
+         * Returns the statistics for each template, in the order the
+         * templates were first seen.
+         */
+        public synchronized List<TemplateStats> getTemplates() {
+            return new ArrayList<TemplateStats>(map.values());
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Prints the report as a table, followed by the text of each
+         * template.
+         *
+         * @param pw Print writer
+         */
+        public void print(PrintWriter pw) {
+            final List<TemplateStats> list = getTemplates();
+            int count = 0;
+            for (TemplateStats stats : list) {
+                count += stats.getCount();
+            }
+            pw.println(
+                "Replayed " + count + " queries, " + list.size()
+                + " templates, in " + elapsedMillis + " ms");
+            pw.println(
+                String.format(
+                    "%-4s %7s %6s %10s %10s %10s %8s %7s",
+                    "id", "count", "errors", "p50 ms", "p95 ms", "p99 ms",
+                    "sql/q", "hit %"));
+            int id = 0;
+            for (TemplateStats stats : list) {
+                final double ratio = stats.getCellCacheHitRatio();
+                pw.println(
+                    String.format(
+                        "%-4s %7d %6d %10.1f %10.1f %10.1f %8.1f %7s",
+                        "T" + (++id),
+                        stats.getCount(),
+                        stats.getErrorCount(),
+                        stats.getPercentileMillis(50),
+                        stats.getPercentileMillis(95),
+                        stats.getPercentileMillis(99),
+                        stats.getSqlPerQuery(),
+                        Double.isNaN(ratio)
+                            ? "-"
+                            : String.format("%.1f", ratio * 100d)));
+            }
+            pw.println();
+            id = 0;
+            for (TemplateStats stats : list) {
+                pw.println("T" + (++id) + ": " + stats.template);
+                if (stats.getFirstError() != null) {
+                    pw.println("    error: " + stats.getFirstError());
+                }
+            }
+        }
+    }
+}
+
+// End WorkloadReplayer.java
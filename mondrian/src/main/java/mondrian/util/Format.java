@@ -21,6 +21,8 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <code>Format</code> formats numbers, strings and dates according to the
@@ -73,17 +75,57 @@ public class Format {
     public static final int CacheLimit = 1000;
 
     /**
-     * Maps (formatString, locale) pairs to {@link Format} objects.
+     * Maps locales to maps from format strings to {@link Format} objects.
      *
-     * <p>If the number of entries in the cache exceeds 1000,
+     * <p>Lookups neither lock nor allocate a key. Each locale's map holds at
+     * most {@link #CacheLimit} entries; when it is full, an arbitrary entry is
+     * removed to make room.
      */
-    private static final Map<String, Format> cache =
-        new LinkedHashMap<String, Format>() {
-            public boolean removeEldestEntry(Map.Entry<String, Format> entry) {
-                return size() > CacheLimit;
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, Format>>
+        cache = new ConcurrentHashMap<Locale, ConcurrentMap<String, Format>>();
+
+    /**
+     * Key in {@link #cache} for formats whose locale is null.
+     */
+    private static final Locale NULL_LOCALE = new Locale("", "", "null");
+
+    /**
+     * Per-thread buffer used by {@link #format(Object)}, so that formatting
+     * a value does not allocate a new StringBuilder each time.
+     */
+    private static final ThreadLocal<FormatBuffer> buffer =
+        new ThreadLocal<FormatBuffer>() {
+            protected FormatBuffer initialValue() {
+                return new FormatBuffer();
             }
         };
 
+    /**
+     * Buffers larger than this are discarded after use rather than being
+     * retained by their thread.
+     */
+    private static final int MAX_BUFFER_CAPACITY = 1024;
+
+    /**
+     * Whether {@link NumericFormat} may format simple numeric formats such as
+     * "#,##0.00", "Standard" and "Percent" using long arithmetic rather than
+     * {@link MondrianFloatingDecimal}. Tests set this to false to compare the
+     * two paths.
+     */
+    static boolean enableFastNumericFormat = true;
+
+    /**
+     * Powers of ten that are exactly representable as a long.
+     */
+    private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+    static {
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
     static final char thousandSeparator_en = ',';
     static final char decimalPlaceholder_en = '.';
     static final String dateSeparator_en = "/";
@@ -112,7 +154,7 @@ public class Format {
      * "en", or "" for the default) to a {@link Format.FormatLocale}.
      */
     private static final Map<String, FormatLocale> mapLocaleToFormatLocale =
-        new HashMap<String, FormatLocale>();
+        new ConcurrentHashMap<String, FormatLocale>();
 
     /**
      * Cache of parsed format strings and their thousand separator
@@ -120,7 +162,8 @@ public class Format {
      * over and over again.
      */
     private static final Map<String, ArrayStack<Integer>>
-        thousandSeparatorTokenMap = new HashMap<String, ArrayStack<Integer>>();
+        thousandSeparatorTokenMap =
+            new ConcurrentHashMap<String, ArrayStack<Integer>>();
 
     /**
      * Locale for US English, also the default for English and for all
@@ -696,6 +739,12 @@ public class Format {
 
         final ArrayStack<Integer> cachedThousandSeparatorPositions;
 
+        /**
+         * Whether thousand separators, if any, are every three digits, which
+         * {@link #formatFast} can handle.
+         */
+        private final boolean simpleThousandSeparators;
+
         NumericFormat(
             String token,
             FormatLocale locale,
@@ -803,6 +852,10 @@ public class Format {
                 thousandSeparatorTokenMap.put(
                     formatString, cachedThousandSeparatorPositions);
             }
+            simpleThousandSeparators =
+                cachedThousandSeparatorPositions.isEmpty()
+                || cachedThousandSeparatorPositions.size() == 1
+                && cachedThousandSeparatorPositions.get(0) == 3;
         }
 
         FormatType getFormatType() {
@@ -810,6 +863,11 @@ public class Format {
         }
 
         private ArrayStack<Integer> getThousandSeparatorPositions() {
+            // Formatting pops all but the last position, so a list of one or
+            // fewer positions is never modified and need not be copied.
+            if (cachedThousandSeparatorPositions.size() <= 1) {
+                return cachedThousandSeparatorPositions;
+            }
             // Defensive copy
             return new ArrayStack<Integer>(cachedThousandSeparatorPositions);
         }
@@ -827,6 +885,9 @@ public class Format {
 
         void format(double n, StringBuilder buf)
         {
+            if (enableFastNumericFormat && formatFast(n, buf)) {
+                return;
+            }
             MondrianFloatingDecimal fd = new MondrianFloatingDecimal(n);
             shift(fd, decimalShift);
             final int formatDigitsRightOfPoint =
@@ -851,6 +912,78 @@ public class Format {
                 getThousandSeparatorPositions());
         }
 
+        /**
+         * Formats a number without creating a {@link MondrianFloatingDecimal},
+         * if the format is simple and the result is certain to be the same
+         * as {@link #format(double, StringBuilder)} would produce.
+         *
+         * <p>The format must have no exponent, no optional ('#') digits after
+         * the point and at most one thousand separator. The number, scaled by
+         * the number of decimal places, must be less than 10<sup>15</sup>, and
+         * not so close to half way between two results that rounding the
+         * binary value might differ from rounding its decimal digits.
+         *
+         * @return Whether the number was formatted
+         */
+        private boolean formatFast(double n, StringBuilder buf) {
+            final int scale = zeroesRightOfPoint + decimalShift;
+            if (expChar != 0
+                || digitsRightOfPoint != 0
+                || !simpleThousandSeparators
+                || scale < 0
+                || scale > 15)
+            {
+                return false;
+            }
+            final double scaled =
+                Math.abs(n) * LONG_POWERS_OF_TEN[scale];
+            if (!(scaled < 1e15)) {
+                // Too large, infinite or NaN.
+                return false;
+            }
+            final double floor = Math.floor(scaled);
+            if (Math.abs(scaled - floor - 0.5) <= 4 * Math.ulp(scaled)) {
+                return false;
+            }
+            final long rounded = (long) floor + (scaled - floor > 0.5 ? 1 : 0);
+            final long pow = LONG_POWERS_OF_TEN[zeroesRightOfPoint];
+            final long whole = rounded / pow;
+            final long fraction = rounded % pow;
+
+            // Negative numbers that round to zero are printed without a sign.
+            if (n < 0 && rounded != 0) {
+                buf.append('-');
+            }
+
+            int wholeDigits = 0;
+            while (wholeDigits < 19
+                && whole >= LONG_POWERS_OF_TEN[wholeDigits])
+            {
+                wholeDigits++;
+            }
+            final int printDigits = Math.max(wholeDigits, zeroesLeftOfPoint);
+            final char thousandChar =
+                useThouSep && !cachedThousandSeparatorPositions.isEmpty()
+                    ? locale.thousandSeparator
+                    : '\0';
+            for (int p = printDigits - 1; p >= 0; p--) {
+                buf.append(
+                    p < wholeDigits
+                        ? (char) ('0' + whole / LONG_POWERS_OF_TEN[p] % 10)
+                        : '0');
+                if (thousandChar != '\0' && p > 0 && p % 3 == 0) {
+                    buf.append(thousandChar);
+                }
+            }
+            if (zeroesRightOfPoint > 0 || useDecimal) {
+                buf.append(locale.decimalPlaceholder);
+            }
+            for (int p = zeroesRightOfPoint - 1; p >= 0; p--) {
+                buf.append((char) ('0' + fraction / LONG_POWERS_OF_TEN[p] % 10));
+            }
+            return true;
+        }
+
         boolean isApplicableTo(double n) {
             if (n >= 0) {
                 return true;
@@ -2125,16 +2258,33 @@ public class Format {
      * @return format for given format string in given locale
      */
     public static Format get(String formatString, Locale locale) {
-        String key = formatString + "@@@" + locale;
-        Format format = cache.get(key);
+        if (formatString == null) {
+            formatString = "";
+        }
+        final Locale key = locale == null ? NULL_LOCALE : locale;
+        ConcurrentMap<String, Format> formats = cache.get(key);
+        if (formats == null) {
+            formats = new ConcurrentHashMap<String, Format>();
+            final ConcurrentMap<String, Format> previous =
+                cache.putIfAbsent(key, formats);
+            if (previous != null) {
+                formats = previous;
+            }
+        }
+        Format format = formats.get(formatString);
         if (format == null) {
-            synchronized (cache) {
-                format = cache.get(key);
-                if (format == null) {
-                    format = new Format(formatString, locale);
-                    cache.put(key, format);
+            format = new Format(formatString, locale);
+            if (formats.size() >= CacheLimit) {
+                final Iterator<String> iterator = formats.keySet().iterator();
+                if (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
                 }
             }
+            final Format previous = formats.putIfAbsent(formatString, format);
+            if (previous != null) {
+                format = previous;
+            }
         }
         return format;
     }
@@ -2296,7 +2446,7 @@ public class Format {
      * Returns the best {@link FormatLocale} for a given {@link Locale}.
      * Never returns null, even if <code>locale</code> is null.
      */
-    public static synchronized FormatLocale getBestFormatLocale(Locale locale)
+    public static FormatLocale getBestFormatLocale(Locale locale)
     {
         FormatLocale formatLocale;
         if (locale == null) {
@@ -2311,8 +2461,12 @@ public class Format {
             if (formatLocale == null) {
                 formatLocale = locale_US;
             }
-            // Add to cache.
-            mapLocaleToFormatLocale.put(key, formatLocale);
+            // Add to cache, unless another thread got there first.
+            final FormatLocale previous =
+                mapLocaleToFormatLocale.putIfAbsent(key, formatLocale);
+            if (previous != null) {
+                formatLocale = previous;
+            }
         }
         return formatLocale;
     }
@@ -2352,6 +2506,9 @@ public class Format {
         FormatLocale formatLocale, Locale locale)
     {
         String key = locale.toString(); // e.g. "en_us_Boston"
+        if (formatLocale == null) {
+            return mapLocaleToFormatLocale.remove(key);
+        }
         return mapLocaleToFormatLocale.put(key, formatLocale);
     }
 
@@ -2854,9 +3011,34 @@ public class Format {
 
     public String format(Object o)
     {
+        final FormatBuffer formatBuffer = buffer.get();
+        if (formatBuffer.inUse) {
+            // Re-entrant call, say from a value's toString method.
+            StringBuilder buf = new StringBuilder();
+            format(o, buf);
+            return buf.toString();
+        }
+        formatBuffer.inUse = true;
+        try {
+            final StringBuilder buf = formatBuffer.buf;
+            buf.setLength(0);
+            format(o, buf);
+            final String s = buf.toString();
+            if (buf.capacity() > MAX_BUFFER_CAPACITY) {
+                formatBuffer.buf = new StringBuilder();
+            }
+            return s;
+        } finally {
+            formatBuffer.inUse = false;
+        }
+    }
+
+    /**
+     * Buffer owned by one thread, used by {@link #format(Object)}.
+     */
+    private static class FormatBuffer {
         StringBuilder buf = new StringBuilder();
-        format(o, buf);
-        return buf.toString();
+        boolean inUse;
     }
 
     private StringBuilder format(Object o, StringBuilder buf) {
@@ -53,6 +53,14 @@ public class MDCUtil {
     }
   }
 
+  /**
+   * This is called on the child thread when the task that called {@link #setContextMap()} is complete. Pooled
+   * threads, virtual or not, run tasks of many executions, so a task must not leave its context for the next one.
+   */
+  public static void clearContextMap() {
+    ThreadContext.clearMap();
+  }
+
 }
 
 // End MdcUtil.java
@@ -0,0 +1,181 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free queue that supports many producer threads and a single
+ * consumer thread.
+ *
+ * <p>Each slot carries a sequence number. A producer claims a slot by
+ * advancing the shared tail with a compare-and-set, writes the element, and
+ * then publishes it by bumping the slot's sequence; the consumer reads the
+ * sequence to know whether the slot at the head is ready. Producers never
+ * wait: {@link #offer} returns false if the buffer is full, and it is up to
+ * the caller to decide whether to drop the element or retry.</p>
+ *
+ * <p>The consumer may block in {@link #take}. Producers only pay for
+ * waking it up (an unpark) if it has announced that it is about to sleep.</p>
+ *
+ * <p><b>Thread safety</b>. {@link #offer} may be called from any thread;
+ * {@link #poll} and {@link #take} must only be called from one thread at a
+ * time.</p>
+ *
+ * @param <E> element type
+ */
+public class MpscRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+
+    /**
+     * Creates a MpscRingBuffer.
+     *
+     * @param capacity Minimum capacity; rounded up to a power of 2
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                "capacity must be positive: " + capacity);
+        }
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity) {
+            n <<= 1;
+        }
+        mask = n - 1;
+        elements = new AtomicReferenceArray<E>(n);
+        sequences = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Returns the number of slots in this buffer.
+     *
+     * @return Capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the approximate number of elements in this buffer.
+     *
+     * @return Number of elements
+     */
+    public int size() {
+        final long n = tail.get() - head;
+        return n < 0 ? 0 : (int) Math.min(n, capacity());
+    }
+
+    /**
+     * Adds an element if there is room. Never blocks.
+     *
+     * @param e Element; must not be null
+     * @return Whether the element was added; false if the buffer was full
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            final long pos = tail.get();
+            final int index = (int) pos & mask;
+            final long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements.lazySet(index, e);
+                    sequences.set(index, pos + 1);
+                    if (consumerWaiting) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The consumer has not yet released this slot from the
+                // previous lap.
+                return false;
+            }
+            // Another producer claimed the slot first; try the next one.
+        }
+    }
+
+    /**
+     * Removes and returns the element at the head of the buffer, or returns
+     * null if the buffer is empty. Consumer thread only.
+     *
+     * @return Head element, or null
+     */
+    public E poll() {
+        final long pos = head;
+        final int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        final E e = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, pos + mask + 1);
+        head = pos + 1;
+        return e;
+    }
+
+    /**
+     * Removes and returns the element at the head of the buffer, waiting if
+     * necessary until one is available. Consumer thread only.
+     *
+     * @return Head element
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        consumer = Thread.currentThread();
+        for (;;) {
+            consumerWaiting = true;
+            try {
+                // Check again after announcing that we are about to sleep,
+                // so that a producer that published in between will either
+                // be seen here or will see the flag and unpark us.
+                e = poll();
+                if (e != null) {
+                    return e;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            } finally {
+                consumerWaiting = false;
+            }
+            e = poll();
+            if (e != null) {
+                return e;
+            }
+        }
+    }
+}
+
+// End MpscRingBuffer.java
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package mondrian.web.servlet;
+
+import mondrian.server.monitor.MetricsRegistry;
+import mondrian.server.monitor.MondrianMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * <code>MetricsServlet</code> serves Mondrian's metrics in the text format
+ * scraped by Prometheus.
+ *
+ * <p>Deploy it next to {@link mondrian.xmla.impl.MondrianXmlaServlet} and
+ * {@link MdxQueryServlet}, for example at <code>/metrics</code>. A client
+ * that sends <code>Accept: application/openmetrics-text</code>, or the
+ * parameter <code>format=openmetrics</code>, receives OpenMetrics format;
+ * any other client receives Prometheus text format 0.0.4.</p>
+ *
+ * <p>The same metrics are available over JMX, as the
+ * <code>mondrian.server:type=Metrics</code> MXBean.</p>
+ *
+ * @see MondrianMetrics
+ */
+public class MetricsServlet extends HttpServlet {
+    private final MetricsRegistry registry;
+
+    /**
+     * Creates a MetricsServlet that serves the shared registry, which
+     * contains {@link MondrianMetrics}.
+     */
+    public MetricsServlet() {
+        this(MondrianMetrics.registry());
+    }
+
+    /**
+     * Creates a MetricsServlet that serves a given registry.
+     *
+     * @param registry Registry
+     */
+    public MetricsServlet(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    protected void doGet(
+        HttpServletRequest request, HttpServletResponse response)
+        throws IOException
+    {
+        final boolean openMetrics = wantsOpenMetrics(request);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(
+            openMetrics
+                ? MetricsRegistry.OPENMETRICS_CONTENT_TYPE
+                : MetricsRegistry.PROMETHEUS_CONTENT_TYPE);
+        final Writer writer = response.getWriter();
+        registry.write(writer, openMetrics);
+        writer.flush();
+    }
+
+    private static boolean wantsOpenMetrics(HttpServletRequest request) {
+        if ("openmetrics".equals(request.getParameter("format"))) {
+            return true;
+        }
+        final String accept = request.getHeader("Accept");
+        return accept != null
+            && accept.contains("application/openmetrics-text");
+    }
+}
+
+// End MetricsServlet.java
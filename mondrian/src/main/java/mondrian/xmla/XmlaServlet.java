@@ -14,10 +14,15 @@
 
 package mondrian.xmla;
 
+import mondrian.olap.MondrianServer;
+import mondrian.rolap.RolapConnectionProperties;
+import mondrian.rolap.RolapResultShepherd;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.w3c.dom.Element;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -45,6 +50,9 @@ public abstract class XmlaServlet
     "OptionalDataSourceConfig";
   public static final String PARAM_CHAR_ENCODING = "CharacterEncoding";
   public static final String PARAM_CALLBACKS = "Callbacks";
+  public static final String PARAM_ASYNC = "Async";
+  public static final String PARAM_QUERY_PRIORITY =
+    RolapConnectionProperties.QueryPriority.name();
   protected static final Logger LOGGER = LogManager.getLogger( XmlaServlet.class );
   private final List<XmlaRequestCallback> callbackList =
     new ArrayList<XmlaRequestCallback>();
@@ -52,6 +60,12 @@ public abstract class XmlaServlet
   protected String charEncoding = null;
   private XmlaHandler.ConnectionFactory connectionFactory;
 
+  /**
+   * Shepherd that runs requests in async mode, or null if requests are
+   * handled on the container's thread.
+   */
+  private RolapResultShepherd asyncShepherd;
+
   public XmlaServlet() {
   }
 
@@ -86,6 +100,17 @@ public abstract class XmlaServlet
     initCallbacks( servletConfig );
 
     this.connectionFactory = createConnectionFactory( servletConfig );
+
+    // init: async
+    initAsync( servletConfig );
+  }
+
+  /**
+   * Stops handling requests in async mode.
+   */
+  public void destroy() {
+    asyncShepherd = null;
+    super.destroy();
   }
 
   protected abstract XmlaHandler.ConnectionFactory createConnectionFactory(
@@ -121,9 +146,99 @@ public abstract class XmlaServlet
   }
 
   /**
-   * Main entry for HTTP post method
+   * Main entry for HTTP post method.
+   *
+   * <p>In async mode, and if the container supports it, returns as soon
+   * as the request is queued for a query thread, which releases the
+   * container's thread while the request is processed. If the queue is
+   * full, responds with status 503 (Service Unavailable). Otherwise
+   * processes the request on the calling thread.
    */
   protected void doPost(
+    final HttpServletRequest request,
+    final HttpServletResponse response )
+    throws ServletException, IOException {
+    final RolapResultShepherd shepherd = asyncShepherd;
+    if ( shepherd == null || !request.isAsyncSupported() ) {
+      handleRequest( request, response );
+      return;
+    }
+    final int priority = getPriority( request );
+    final AsyncContext asyncContext = request.startAsync( request, response );
+    // Mondrian's query timeout applies; the container's async timeout
+    // (typically 30 seconds) would abort long queries.
+    asyncContext.setTimeout( 0 );
+    try {
+      shepherd.execute( new Runnable() {
+        public void run() {
+          try {
+            handleRequest( request, response );
+          } catch ( Throwable t ) {
+            LOGGER.error( "Unknown Error when handling XML/A message", t );
+            if ( !response.isCommitted() ) {
+              response.setStatus(
+                HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+            }
+          } finally {
+            asyncContext.complete();
+          }
+        }
+      }, priority );
+    } catch ( RuntimeException e ) {
+      // The wait queue is full, or the server is shutting down.
+      LOGGER.warn( "Rejected XML/A request: " + e.getMessage() );
+      try {
+        response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+      } finally {
+        asyncContext.complete();
+      }
+    }
+  }
+
+  /**
+   * Returns the priority of a request in async mode. Requests of higher
+   * priority leave the wait queue first.
+   *
+   * <p>The default implementation returns the value of the request's
+   * {@link #PARAM_QUERY_PRIORITY} parameter, or 0 if it is not set.
+   *
+   * @param request HTTP request
+   * @return Priority
+   */
+  protected int getPriority( HttpServletRequest request ) {
+    final String priority = request.getParameter( PARAM_QUERY_PRIORITY );
+    if ( priority != null ) {
+      try {
+        return Integer.parseInt( priority.trim() );
+      } catch ( NumberFormatException e ) {
+        LOGGER.warn(
+          "Invalid value '" + priority + "' for parameter '"
+            + PARAM_QUERY_PRIORITY + "': using 0" );
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the shepherd whose query threads handle requests in async mode.
+   *
+   * <p>The default implementation returns the shepherd of the default
+   * server. Derived classes that create their own server override.
+   *
+   * @return Shepherd
+   */
+  protected RolapResultShepherd getResultShepherd() {
+    return MondrianServer.forId( null ).getResultShepherd();
+  }
+
+  /**
+   * Processes an XML/A request: runs the callbacks, unmarshals the SOAP
+   * message, handles its header and body, and marshals the response.
+   *
+   * @param request HTTP request
+   * @param response HTTP response
+   */
+  protected void handleRequest(
     HttpServletRequest request,
     HttpServletResponse response )
     throws ServletException, IOException {
@@ -365,6 +480,23 @@ public abstract class XmlaServlet
     }
   }
 
+  /**
+   * Initializes async mode.
+   *
+   * <p>If the {@link #PARAM_ASYNC} init parameter is true, requests run on
+   * the query threads of the {@link #getResultShepherd() shepherd}, so that
+   * container threads are not held while queries run. Requests wait in the
+   * same bounded queue as queries from olap4j clients, in order of their
+   * {@link #getPriority(HttpServletRequest) priority}, and queries run on
+   * the request's thread. Callbacks are then invoked on query threads, so
+   * must not depend on state held by the container's thread.
+   */
+  protected void initAsync( ServletConfig servletConfig ) {
+    if ( getBooleanInitParameter( servletConfig, PARAM_ASYNC ) ) {
+      asyncShepherd = getResultShepherd();
+    }
+  }
+
   /**
    * Implement to provide application specified SOAP unmarshalling algorithm.
    */
@@ -16,6 +16,7 @@ package mondrian.xmla.impl;
 
 import mondrian.olap.MondrianServer;
 import mondrian.olap.Util;
+import mondrian.rolap.RolapResultShepherd;
 import mondrian.server.RepositoryContentFinder;
 import mondrian.server.UrlRepositoryContentFinder;
 import mondrian.spi.CatalogLocator;
@@ -62,6 +63,11 @@ public class MondrianXmlaServlet extends DefaultXmlaServlet {
         return (XmlaHandler.ConnectionFactory) server;
     }
 
+    @Override
+    protected RolapResultShepherd getResultShepherd() {
+        return server.getResultShepherd();
+    }
+
     @Override
     public void destroy() {
         super.destroy();